@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave;
+
+import eu.simuline.octave.type.OctaveObject;
+
+/**
+ * An append of a block of rows or of columns
+ * to a matrix variable in octave
+ * performed by {@link OctaveEngine#appendAll(java.util.List)}.
+ * Only the block is transferred
+ * and concatenated with the variable on the octave side.
+ * If the variable does not exist, it is set to the block.
+ * Optionally, only the last rows or columns are kept
+ * as in a ring buffer holding a rolling window.
+ * <p>
+ * Instances are immutable, but the block is referenced, not copied.
+ */
+public final class OctaveAppend {
+
+    /**
+     * The name of the variable appended to.
+     */
+    private final String name;
+
+    /**
+     * The block of rows or of columns appended.
+     */
+    private final OctaveObject block;
+
+    /**
+     * Whether {@link #block} consists of columns rather than rows.
+     */
+    private final boolean columns;
+
+    /**
+     * The number of last rows or columns to be kept
+     * or a non-positive number if all are kept.
+     */
+    private final int keep;
+
+    private OctaveAppend(final String name,
+			 final OctaveObject block,
+			 final boolean columns,
+			 final int keep) {
+	this.name = name;
+	this.block = block;
+	this.columns = columns;
+	this.keep = keep;
+    }
+
+    /**
+     * Returns an append of the rows <code>block</code>
+     * to the variable <code>name</code> keeping all rows.
+     *
+     * @param name
+     *    the name of the variable appended to.
+     * @param block
+     *    the rows appended with as many columns as the variable.
+     * @return
+     *    the append.
+     */
+    public static OctaveAppend rows(final String name,
+				    final OctaveObject block) {
+	return rows(name, block, 0);
+    }
+
+    /**
+     * Returns an append of the rows <code>block</code>
+     * to the variable <code>name</code>
+     * keeping the last <code>keep</code> rows only.
+     *
+     * @param name
+     *    the name of the variable appended to.
+     * @param block
+     *    the rows appended with as many columns as the variable.
+     * @param keep
+     *    the number of last rows to be kept
+     *    or a non-positive number if all are kept.
+     * @return
+     *    the append.
+     */
+    public static OctaveAppend rows(final String name,
+				    final OctaveObject block,
+				    final int keep) {
+	return new OctaveAppend(name, block, false, keep);
+    }
+
+    /**
+     * Returns an append of the columns <code>block</code>
+     * to the variable <code>name</code> keeping all columns.
+     *
+     * @param name
+     *    the name of the variable appended to.
+     * @param block
+     *    the columns appended with as many rows as the variable.
+     * @return
+     *    the append.
+     */
+    public static OctaveAppend columns(final String name,
+				       final OctaveObject block) {
+	return columns(name, block, 0);
+    }
+
+    /**
+     * Returns an append of the columns <code>block</code>
+     * to the variable <code>name</code>
+     * keeping the last <code>keep</code> columns only.
+     *
+     * @param name
+     *    the name of the variable appended to.
+     * @param block
+     *    the columns appended with as many rows as the variable.
+     * @param keep
+     *    the number of last columns to be kept
+     *    or a non-positive number if all are kept.
+     * @return
+     *    the append.
+     */
+    public static OctaveAppend columns(final String name,
+				       final OctaveObject block,
+				       final int keep) {
+	return new OctaveAppend(name, block, true, keep);
+    }
+
+    /**
+     * Returns the name of the variable appended to.
+     */
+    public String getName() {
+	return this.name;
+    }
+
+    /**
+     * Returns the block of rows or of columns appended.
+     */
+    public OctaveObject getBlock() {
+	return this.block;
+    }
+
+    /**
+     * Returns the script appending the block
+     * held by the temporary variable <code>tmpVar</code>
+     * to the variable {@link #name}.
+     *
+     * @param tmpVar
+     *    the name of the temporary variable holding {@link #block}.
+     * @return
+     *    the script.
+     */
+    String script(final String tmpVar) {
+	final String sep = this.columns ? ", " : "; ";
+	final StringBuilder script = new StringBuilder();
+	script.append(String.format("if exist(\"%1$s\", \"var\")\n"
+				    + "  %1$s = [%1$s%3$s%2$s];\n"
+				    + "else\n"
+				    + "  %1$s = %2$s;\n"
+				    + "end\n",
+				    this.name, tmpVar, sep));
+	if (this.keep > 0) {
+	    script.append(String.format(this.columns
+					? "if columns(%1$s) > %2$d\n"
+					+ "  %1$s = %1$s(:, end - %2$d + 1:end);\n"
+					+ "end\n"
+					: "if rows(%1$s) > %2$d\n"
+					+ "  %1$s = %1$s(end - %2$d + 1:end, :);\n"
+					+ "end\n",
+					this.name, this.keep));
+	}
+	return script.toString();
+    }
+
+}
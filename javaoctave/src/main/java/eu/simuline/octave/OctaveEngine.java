@@ -26,15 +26,32 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.time.Duration;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
 
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
@@ -44,25 +61,41 @@ import java.util.regex.Pattern;
 import eu.simuline.octave.exception.OctaveEvalException;
 import eu.simuline.octave.exception.OctaveClassCastException;
 import eu.simuline.octave.exception.OctaveIOException;
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.exception.OctaveInterruptedException;
+import eu.simuline.octave.exception.OctaveTimeoutException;
+import eu.simuline.octave.exec.OctaveDiagnostic;
 import eu.simuline.octave.exec.OctaveExec;
 import eu.simuline.octave.exec.ReadFunctor;
 import eu.simuline.octave.exec.ReaderWriteFunctor;
+import eu.simuline.octave.exec.StatusReadFunctor;
 import eu.simuline.octave.exec.WriteFunctor;
 import eu.simuline.octave.exec.WriterReadFunctor;
+import eu.simuline.octave.io.MappedSideChannel;
+import eu.simuline.octave.io.OctaveFifo;
 import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextParser;
+import eu.simuline.octave.metrics.OctaveMetrics;
 import eu.simuline.octave.type.OctaveBoolean;
 import eu.simuline.octave.type.OctaveCell;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveInt;
 import eu.simuline.octave.type.OctaveObject;
 import eu.simuline.octave.type.OctaveString;
 import eu.simuline.octave.type.OctaveStruct;
 import eu.simuline.octave.type.cast.Cast;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 /**
  * The connection to an octave process.
  *
  * This is inspired by the javax.script.ScriptEngine interface.
  */
 public final class OctaveEngine {
+
+    private static final Log LOG = LogFactory.getLog(OctaveEngine.class);
     
     // TBD: clarify whether these versions are the correct ones. 
     // In the repo for octave, typing `hg tags` I found the following release tags
@@ -104,12 +137,99 @@ public final class OctaveEngine {
     */
     private final OctaveEngineFactory factory;
 
+    /**
+     * The number of engines created so far, used to create {@link #id}. 
+     */
+    private static final AtomicInteger NUM_ENGINES = new AtomicInteger();
+
+    /**
+     * The id of this engine which is unique within the runtime. 
+     * It identifies the MBean of {@link #metrics}. 
+     */
+    private final int id = NUM_ENGINES.incrementAndGet();
+
+    /**
+     * The metrics of the round trips of this engine to octave 
+     * or <code>null</code> if metrics are disabled. 
+     * If enabled, they are registered as an MBean 
+     * as long as this engine is not closed or destroyed. 
+     * They survive replacements of {@link #octaveExec} in watchdog mode. 
+     */
+    private final OctaveMetrics metrics;
+
     /**
      * The executor of this octave engine. 
+     * In watchdog mode, this is replaced if the octave process died, 
+     * else this is never changed. 
+     */
+    private volatile OctaveExec octaveExec;
+
+    /**
+     * The io of this octave engine based on {@link #octaveExec}. 
+     * This is replaced together with {@link #octaveExec}. 
+     */
+    private volatile OctaveIO octaveIO;
+
+    /**
+     * Whether {@link #octaveIO} transfers variables in binary format 
+     * as far as possible. 
+     */
+    private final boolean useBinary;
+
+    /**
+     * The side channel of {@link #octaveIO} for large numeric matrices 
+     * or <code>null</code> if switched off. 
+     */
+    private final MappedSideChannel sideChannel;
+
+    /**
+     * Creates an executor with the parameters this engine is created with. 
+     * This creates {@link #octaveExec} and, in watchdog mode, its replacements. 
+     */
+    private final Supplier<OctaveExec> execFactory;
+
+    /**
+     * The writer for the error output of octave, 
+     * kept to pass it to replacements of {@link #octaveExec}. 
      */
-    private final OctaveExec octaveExec;
+    private volatile Writer errorWriter;
 
-    private final OctaveIO octaveIO;
+    /**
+     * The journal of the requests defining the workspace 
+     * if this engine is in watchdog mode, else <code>null</code>. 
+     * In watchdog mode, if the octave process dies, 
+     * {@link #octaveExec} is replaced by a new one 
+     * and the journal is replayed 
+     * before further requests are accepted. 
+     * Death is detected by {@link OctaveExec#onExit()} 
+     * and also when a request finds {@link #octaveExec} not alive, 
+     * e.g. because it had to be destroyed after a timeout. 
+     */
+    private final OctaveJournal journal;
+
+    /**
+     * In watchdog mode, the lock held while replacing {@link #octaveExec}. 
+     * Requests wait for it if {@link #octaveExec} is not alive 
+     * or if {@link #restarting} is set. 
+     */
+    private final Lock watchdogLock = new ReentrantLock();
+
+    /**
+     * Whether {@link #octaveExec} is being replaced 
+     * and the journal is being replayed. 
+     */
+    private volatile boolean restarting = false;
+
+    /**
+     * Whether {@link #close()} or {@link #destroy()} has been invoked. 
+     * Then {@link #octaveExec} is no longer replaced. 
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * The number of replacements of {@link #octaveExec} in watchdog mode. 
+     */
+    private volatile int numRestarts = 0;
 
     // TBD: it seems that the writer is not needed but the functor. 
     // maybe reuse that and set this field to the functor 
@@ -128,6 +248,88 @@ public final class OctaveEngine {
      */
     private final Random random = new Random();
 
+    /**
+     * The single threaded executor 
+     * the queue of which is the queue of asynchronous requests 
+     * like {@link #evalAsync(String)}. 
+     * Since there is a single thread, 
+     * requests are executed and completed in the order of submission. 
+     * This is created lazily by {@link #getAsyncExecutor()} 
+     * and so it is <code>null</code> as long as no asynchronous request occurred. 
+     */
+    private ExecutorService asyncExecutor;
+
+    /**
+     * The futures returned by asynchronous requests 
+     * which are not yet completed. 
+     * On {@link #destroy()} these are completed exceptionally. 
+     */
+    private final Set<CompletableFuture<?>> pendingAsync = 
+	ConcurrentHashMap.newKeySet();
+
+    /**
+     * The facts about the octave installation and the packages 
+     * fetched in a single round trip by {@link #getMetaInfo()} 
+     * or <code>null</code> if not yet fetched. 
+     * This is valid only if its generation is {@link #metaGeneration}. 
+     */
+    private volatile MetaInfo metaInfo;
+
+    /**
+     * The generation of {@link #metaInfo}, 
+     * incremented by {@link #clearMetaInfo()} 
+     * if a script may change these facts, 
+     * see {@link #PATTERN_META_CHANGE}, 
+     * and if the octave process is replaced in watchdog mode. 
+     * As the generation is read before fetching, 
+     * a meta info fetched concurrently with an invalidation 
+     * is never taken as valid. 
+     */
+    private final AtomicLong metaGeneration = new AtomicLong();
+
+    /**
+     * The name of the temporary variable 
+     * defined by {@link #META_SCRIPT}. 
+     */
+    private static final String META_VAR = "javaoctave_meta";
+
+    /**
+     * The script defining {@link #META_VAR} as a struct 
+     * with the version of octave, the file separator, 
+     * the m-file of {@link #JAVA_FUN} and the list of packages. 
+     * These are read by {@link MetaInfo#MetaInfo(OctaveStruct, long)}. 
+     * If octave has no java interface or no package manager, 
+     * the according field is empty. 
+     */
+    private static final String META_SCRIPT = 
+	META_VAR + ".version = OCTAVE_VERSION();\n" +
+	META_VAR + ".filesep = filesep();\n" +
+	"try\n" +
+	"  " + META_VAR + ".javafun = which('" + OctaveEngine.JAVA_FUN + "');\n" +
+	"catch\n" +
+	"  " + META_VAR + ".javafun = '';\n" +
+	"end\n" +
+	"try\n" +
+	"  " + META_VAR + ".pkgs = pkg('list');\n" +
+	"catch\n" +
+	"  " + META_VAR + ".pkgs = {};\n" +
+	"end";
+
+    /**
+     * The pattern of scripts which may change {@link #metaInfo}: 
+     * loading, unloading, installing packages and changing directory or path. 
+     * This is conservative, i.e. it matches also scripts 
+     * which just use variables with these names. 
+     */
+    private static final Pattern PATTERN_META_CHANGE = Pattern
+	.compile("\\b(pkg|cd|chdir|addpath|rmpath|path|restoredefaultpath)\\b");
+
+    /**
+     * The pattern of the temporary variables created by {@link #eval(String)}. 
+     */
+    private static final Pattern PATTERN_EVAL_VAR = 
+	Pattern.compile("javaoctave_[0-9a-f]{12}_eval");
+
 
     // TBC: in which version does this occur in listVars? 
     // seemingly not in 5.2.0. 
@@ -147,15 +349,49 @@ public final class OctaveEngine {
      */
     private static final String NARGIN = "__nargin__";
 
+    /**
+     * The default maximal fraction of changed entries 
+     * which {@link #sync(String, OctaveDouble)} transfers 
+     * as indices and values instead of the full value. 
+     * An index and a value take about twice the text of a value. 
+     */
+    public static final double SYNC_MAX_FRACTION = 0.25;
+
     /**
      * Creates an octave engine with the given parameters. 
      * The first one is nowhere used and the others are handed over to 
-     * {@link OctaveExec#OctaveExec(int,Writer,Writer,Charset,String[],String[],File)}. 
+     * {@link OctaveExec#OctaveExec(int,int,boolean,boolean,int,boolean,OctaveMetrics,Writer,Writer,Charset,String[],String[],File)}. 
      * 
      * @param factory
      *    the factory used to create this engine. 
      * @param numThreadsReuse
      *    TBC
+     * @param useVirtualThreads
+     *    whether all io runs on virtual threads. 
+     * @param isPipelined
+     *    whether the executor allows multiple requests in flight. 
+     * @param callerRunsThreshold
+     *    the maximal number of characters of a script 
+     *    written and read back by the calling thread 
+     *    or <code>0</code> if this is switched off. 
+     * @param isMultiplexed
+     *    whether standard output and error stream of octave 
+     *    are read by the multiplexer shared by all engines. 
+     * @param useWatchdog
+     *    whether to replace the octave process if it dies 
+     *    replaying the journal of requests defining the workspace. 
+     * @param useMetrics
+     *    whether to record metrics of the round trips to octave 
+     *    and to expose them as an MBean. 
+     * @param useBinary
+     *    whether variables are transferred in binary format if possible. 
+     * @param sideChannelThreshold
+     *    the minimal number of bytes of a numeric matrix 
+     *    transferred via a memory-mapped file 
+     *    or <code>0</code> if this side channel is switched off. 
+     * @param sideChannelDir
+     *    the directory of the memory-mapped files 
+     *    or <code>null</code> for the default. 
      * @param octaveInputLog
      *    a writer to log octave's standard output to, if not <code>null</code>. 
      * @param errorWriter
@@ -169,6 +405,15 @@ public final class OctaveEngine {
      */
     OctaveEngine(final OctaveEngineFactory factory,
 		 final int numThreadsReuse,
+		 final boolean useVirtualThreads,
+		 final boolean isPipelined,
+		 final int callerRunsThreshold,
+		 final boolean isMultiplexed,
+		 final boolean useWatchdog,
+		 final boolean useMetrics,
+		 final boolean useBinary,
+		 final int sideChannelThreshold,
+		 final File sideChannelDir, // may be null 
 		 final Writer octaveInputLog, // may be null 
 		 final Writer errorWriter,// may be null 
 		 final Charset charset,
@@ -180,14 +425,128 @@ public final class OctaveEngine {
 
         this.writer = new OutputStreamWriter(System.out);
 
-        this.octaveExec = new OctaveExec(numThreadsReuse,
-					 octaveInputLog, // may be null
-					 errorWriter,
-					 charset,
-					 cmdArray,
-					 environment,
-					 workingDir);
-        this.octaveIO = new OctaveIO(this.octaveExec);
+        this.errorWriter = errorWriter;
+        this.metrics = useMetrics ? new OctaveMetrics() : null;
+        this.execFactory = () -> new OctaveExec(this.id,
+						numThreadsReuse,
+						useVirtualThreads,
+						isPipelined,
+						callerRunsThreshold,
+						isMultiplexed,
+						this.metrics,
+						octaveInputLog, // may be null
+						this.errorWriter,
+						charset,
+						cmdArray,
+						environment,
+						workingDir);
+        this.octaveExec = this.execFactory.get();
+        this.useBinary = useBinary;
+        this.sideChannel = sideChannelThreshold == 0
+	    ? null
+	    : new MappedSideChannel(sideChannelDir, sideChannelThreshold);
+        this.octaveIO = new OctaveIO(this.octaveExec, useBinary, this.sideChannel);
+        this.journal = useWatchdog ? new OctaveJournal() : null;
+        if (useWatchdog) {
+	    watch(this.octaveExec);
+	}
+        if (useMetrics) {
+	    this.metrics.registerMBean(this.id);
+	}
+    }
+
+    /**
+     * In watchdog mode, registers <code>exec</code> to be replaced 
+     * as soon as its process terminates 
+     * unless this engine is closed or <code>exec</code> is replaced already. 
+     * The replacement runs on a thread of <code>exec</code>'s factory. 
+     */
+    private void watch(final OctaveExec exec) {
+	exec.onExit().thenRunAsync(() -> {
+		if (!this.closed && this.octaveExec == exec) {
+		    LOG.warn("Octave process terminated; restarting. ");
+		    try {
+			ensureAlive();
+		    } catch (RuntimeException e) { // NOPMD
+			// the next request tries again 
+			LOG.error("Could not restart octave. ", e);
+		    }
+		}
+	    }, task -> exec.getThreadFactory().newThread(task).start());
+    }
+
+    /**
+     * Returns {@link #octaveExec} after having ensured, in watchdog mode, 
+     * that it is alive or that this engine is closed. 
+     */
+    private OctaveExec exec() {
+	if (this.journal != null) {
+	    ensureAlive();
+	}
+	return this.octaveExec;
+    }
+
+    /**
+     * Returns {@link #octaveIO} after having ensured, in watchdog mode, 
+     * that {@link #octaveExec} is alive or that this engine is closed. 
+     */
+    private OctaveIO io() {
+	if (this.journal != null) {
+	    ensureAlive();
+	}
+	return this.octaveIO;
+    }
+
+    /**
+     * In watchdog mode, 
+     * ensures that {@link #octaveExec} is alive or that this engine is closed, 
+     * replacing a dead executor 
+     * and replaying {@link #journal} on the replacement. 
+     * If a replacement is in progress, this waits until it is complete. 
+     * Since {@link #watchdogLock} is reentrant, 
+     * the requests replaying the journal pass. 
+     *
+     * @throws OctaveIOException
+     *    if the replacement fails, e.g. because octave dies again. 
+     *    Then the next request tries again. 
+     */
+    private void ensureAlive() {
+	if (this.closed 
+	    || (!this.restarting && this.octaveExec.isAlive())) {
+	    return;
+	}
+	this.watchdogLock.lock();
+	try {
+	    if (this.closed || this.octaveExec.isAlive()) {
+		return;
+	    }
+	    this.restarting = true;
+	    // releases the threads of the dead executor 
+	    this.octaveExec.destroy();
+	    final OctaveExec exec = this.execFactory.get();
+	    this.octaveExec = exec;
+	    this.octaveIO = new OctaveIO(exec, this.useBinary, this.sideChannel);
+	    this.numRestarts++;
+	    clearMetaInfo();
+	    if (this.closed) {
+		// destroy() meanwhile 
+		exec.destroy();
+		return;
+	    }
+	    watch(exec);
+	    this.journal.replay(this.octaveIO::set, script -> {
+		    try {
+			eval(script);
+		    } catch (final OctaveEvalException e) {
+			LOG.error("Setup script failed on replay: " + script, e);
+		    }
+		});
+	    LOG.info("Octave restarted; journal replayed with " 
+		     + this.journal.size() + " entries. ");
+	} finally {
+	    this.restarting = false;
+	    this.watchdogLock.unlock();
+	}
     }
 
     /**
@@ -228,8 +587,13 @@ public final class OctaveEngine {
      *             if the script fails, this will kill the engine
      */
     public void unsafeEval(final Reader script) {
-        this.octaveExec.evalRW(new ReaderWriteFunctor(script), 
-			       getReadFunctor());
+	try {
+	    exec().evalRW(new ReaderWriteFunctor(script), 
+			  getReadFunctor());
+	} finally {
+	    // the script is not known 
+	    clearMetaInfo();
+	}
     }
 
     // ER: see also {@link #eval(final String script)}
@@ -242,13 +606,95 @@ public final class OctaveEngine {
      *             if the script fails, this will kill the engine
      */
     public void unsafeEval(final String script) {
-        this.octaveExec.evalRW(new WriteFunctor() {
+	try {
+	    exec().evalRW(getWriteFunctor(script), getReadFunctor());
+	} finally {
+	    invalidateMetaInfo(script);
+	}
+    }
+
+    /**
+     * Execute the given script 
+     * and return the warnings and errors octave reports meanwhile. 
+     * These are written to the error writer as well. 
+     * As for {@link #unsafeEval(String)}, 
+     * an error does not throw an exception 
+     * but is reported as an {@link OctaveDiagnostic}. 
+     * For details see 
+     * {@link OctaveExec#evalRWDiagnosed(WriteFunctor, ReadFunctor)}. 
+     *
+     * @param script
+     *    the script to execute
+     * @return
+     *    the messages octave wrote on its error stream 
+     *    while executing <code>script</code> in the order of arrival. 
+     * @throws OctaveIOException
+     *    if the script fails, this will kill the engine
+     */
+    public List<OctaveDiagnostic> unsafeEvalDiagnosed(final String script) {
+	try {
+	    return exec().evalRWDiagnosed(getWriteFunctor(script), 
+					  getReadFunctor());
+	} finally {
+	    invalidateMetaInfo(script);
+	}
+    }
+
+    /**
+     * Execute the given script 
+     * but interrupt it if it does not complete within <code>timeout</code>. 
+     * Interrupting keeps the octave process and so its workspace, 
+     * unless octave does not respond to the interrupt. 
+     * For details see 
+     * {@link OctaveExec#evalRW(WriteFunctor, ReadFunctor, long, TimeUnit)}. 
+     *
+     * @param script
+     *    the script to execute
+     * @param timeout
+     *    the maximal duration of evaluation. 
+     * @throws OctaveTimeoutException
+     *    if the script did not complete in time. 
+     *    Unless marked destroyed, the engine is still usable. 
+     * @throws OctaveIOException
+     *    if the script fails, this will kill the engine
+     */
+    public void unsafeEval(final String script, final Duration timeout) {
+	try {
+	    exec().evalRW(getWriteFunctor(script), getReadFunctor(),
+			  timeout.toNanos(), TimeUnit.NANOSECONDS);
+	} finally {
+	    invalidateMetaInfo(script);
+	}
+    }
+
+    /**
+     * Invalidates {@link #metaInfo} 
+     * if <code>script</code> matches {@link #PATTERN_META_CHANGE}. 
+     */
+    private void invalidateMetaInfo(final String script) {
+	if (PATTERN_META_CHANGE.matcher(script).find()) {
+	    clearMetaInfo();
+	}
+    }
+
+    /**
+     * Invalidates {@link #metaInfo} by incrementing {@link #metaGeneration}. 
+     */
+    private void clearMetaInfo() {
+	this.metaGeneration.incrementAndGet();
+	this.metaInfo = null;
+    }
+
+    /**
+     * Returns a write functor writing <code>script</code>. 
+     */
+    private static WriteFunctor getWriteFunctor(final String script) {
+        return new WriteFunctor() {
 		@Override
 		public void doWrites(final Writer writer2) throws IOException {
 		    writer2.write(script);
 		}
-	    },
-	    getReadFunctor());
+	    };
     }
 
     // ER: 
@@ -267,6 +713,8 @@ public final class OctaveEngine {
     //
     // That way, in case of an error, 
     // javaoctave_X_lasterr contains the string representtion of this error. 
+    // This is printed following a status marker 
+    // which is read in the same round trip. 
     /**
      * A safe eval that will not break the engine on syntax errors 
      * or other errors. 
@@ -276,30 +724,132 @@ public final class OctaveEngine {
      * @throws OctaveEvalException
      *             if the script fails
      */
-    @SuppressWarnings("checkstyle:magicnumber")
     public void eval(final String script) {
-        final String tag = String.format("%06x%06x",
-					 this.random.nextInt(1 << 23),
-					 this.random.nextInt(1 << 23));
-        put(String.format("javaoctave_%1$s_eval", tag),
-	    new OctaveString(script));
+	eval(script, (input, output) -> exec().evalRW(input, output));
+    }
+
+    /**
+     * A safe eval like {@link #eval(String)} 
+     * but interrupting the script 
+     * if it does not complete within <code>timeout</code>. 
+     * Interrupting keeps the octave process and so its workspace, 
+     * unless octave does not respond to the interrupt. 
+     *
+     * @param script
+     *    the script to execute
+     * @param timeout
+     *    the maximal duration of evaluation of <code>script</code>. 
+     * @throws OctaveEvalException
+     *    if the script fails
+     * @throws OctaveTimeoutException
+     *    if the script did not complete in time. 
+     *    Unless marked destroyed, the engine is still usable. 
+     */
+    public void eval(final String script, final Duration timeout) {
+	eval(script, (input, output) -> exec()
+	     .evalRW(input, output, timeout.toNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * A safe eval like {@link #eval(String)} of a script 
+     * defining the workspace, e.g. loading packages or defining functions. 
+     * In watchdog mode, if evaluation succeeds, the script is journaled 
+     * and so evaluated again, if the octave process must be replaced. 
+     * Else, this is just {@link #eval(String)}. 
+     *
+     * @param script
+     *    the script to execute
+     * @throws OctaveEvalException
+     *    if the script fails
+     */
+    public void evalSetup(final String script) {
+	eval(script);
+	if (this.journal != null) {
+	    this.journal.evalSetup(script);
+	}
+    }
+
+    /**
+     * A safe eval of <code>script</code> as described for {@link #eval(String)} 
+     * where the round trip is performed by <code>evalRW</code>. 
+     * The script is set as a variable and evaluated by a wrapper 
+     * which prints a status marker read by a {@link StatusReadFunctor}, 
+     * both in the same round trip. 
+     */
+    private void eval(final String script, 
+		      final BiConsumer<WriteFunctor, ReadFunctor> evalRW) {
+	eval(newTag(), Collections.<String, OctaveObject>emptyMap(), 
+	     script, evalRW);
+    }
+
+    /**
+     * Returns a random tag for the names of temporary variables. 
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    private String newTag() {
+        return String.format("%06x%06x",
+			     this.random.nextInt(1 << 23),
+			     this.random.nextInt(1 << 23));
+    }
+
+    /**
+     * A safe eval of <code>script</code> like {@link #eval(String, BiConsumer)} 
+     * where the temporary variables <code>vars</code> are set 
+     * in the same round trip before evaluation 
+     * and cleared afterwards, even if evaluation fails. 
+     *
+     * @param tag
+     *    the tag of the names of the temporary variables. 
+     * @param vars
+     *    a map from names of temporary variables to their values. 
+     */
+    private void eval(final String tag, 
+		      final Map<String, OctaveObject> vars, 
+		      final String script, 
+		      final BiConsumer<WriteFunctor, ReadFunctor> evalRW) {
+	final String evalVar = String.format("javaoctave_%1$s_eval",    tag);
+	final String errVar  = String.format("javaoctave_%1$s_lasterr", tag);
+	final StringBuilder clearVars = new StringBuilder();
+	for (String name : vars.keySet()) {
+	    clearVars.append(' ').append(name);
+	}
+	final String clear = String.format("clear %1$s %2$s%3$s\n", 
+					   evalVar, errVar, clearVars);
         // Does not use lasterror() as that returns data in a matrix struct,
 	// we can not read that yet
-        unsafeEval(String.format("eval(javaoctave_%1$s_eval, " +
-				 "\"javaoctave_%1$s_lasterr = lasterr();\");",
-				 tag));
-        final OctaveString lastError =
-	    get(OctaveString.class,
-		String.format("javaoctave_%1$s_lasterr", tag));
-        unsafeEval(String.format("clear javaoctave_%1$s_eval  " +
-				 "javaoctave_%1$s_lasterr", tag));
-        if (lastError != null) {
-            throw new OctaveEvalException(lastError.getString());
+	final String wrapper = 
+	    String.format("eval(%1$s, \"%2$s = lasterr();\");\n", evalVar, errVar)
+	    + StatusReadFunctor.printStatus(errVar) 
+	    + clear;
+	final Map<String, OctaveObject> name2val = 
+	    new LinkedHashMap<String, OctaveObject>(vars);
+	name2val.put(evalVar, new OctaveString(script));
+	final StatusReadFunctor status = new StatusReadFunctor(getReadFunctor());
+        try {
+	    // not put: a temporary variable shall not be journaled 
+	    evalRW.accept(OctaveIO.setThenEval(name2val, wrapper), status);
+	} catch (final OctaveTimeoutException e) {
+	    if (!e.isDestroyed()) {
+		unsafeEval(clear);
+	    }
+	    throw e;
+	} finally {
+	    invalidateMetaInfo(script);
+	}
+	if (!status.hasStatus()) {
+	    throw new OctaveParseException
+		("Missing status after evaluation of script. ");
+	}
+        if (status.getErrorMessage() != null) {
+            throw new OctaveEvalException(status.getErrorMessage());
         }
     }
 
     /**
      * Sets a value in octave.
+     * In watchdog mode, the value is journaled 
+     * and so set again, if the octave process must be replaced. 
+     * Then <code>value</code> shall not be modified afterwards. 
      *
      * @param key
      *     the name of the variable to be set to value <code>value</code>. 
@@ -307,7 +857,7 @@ public final class OctaveEngine {
      *     the value to set for the variable <code>key</code>
      */
     public void put(final String key, final OctaveObject value) {
-        this.octaveIO.set(Collections.singletonMap(key, value));
+	putAll(Collections.singletonMap(key, value));
     }
 
     /**
@@ -320,7 +870,261 @@ public final class OctaveEngine {
      *    o be stored in the according variables in octave. 
      */
     public void putAll(final Map<String, OctaveObject> vars) {
-        this.octaveIO.set(vars);
+        io().set(vars);
+	if (this.journal != null) {
+	    this.journal.put(vars);
+	}
+    }
+
+    /**
+     * Sets the variable <code>key</code> to a real double matrix 
+     * with dimensions <code>dims</code> 
+     * the entries of which are produced by <code>values</code> 
+     * in column major order while they are written to octave, 
+     * e.g. from a database cursor or a file. 
+     * Unlike {@link #put(String, OctaveObject)}, 
+     * no {@link OctaveObject} is built, 
+     * so the memory needed does not depend on the size of the matrix. 
+     * In watchdog mode, the variable is not journaled 
+     * because the entries can not be supplied again; 
+     * a value journaled before is forgotten, 
+     * so that after a restart the variable is undefined rather than stale. 
+     *
+     * @param key
+     *    the name of the variable to be set. 
+     * @param dims
+     *    the dimensions of the matrix, at least two. 
+     * @param values
+     *    supplies the entries in column major order, 
+     *    invoked once for each entry. 
+     * @throws IllegalArgumentException
+     *    if there are less than two dimensions or a negative one. 
+     * @throws RuntimeException
+     *    the exception thrown by <code>values</code>. 
+     *    Then the variable <code>key</code> is cleared 
+     *    after at most a chunk of further entries has been written. 
+     */
+    public void putStreaming(final String key, 
+			     final int[] dims, 
+			     final DoubleSupplier values) {
+	if (this.journal != null) {
+	    this.journal.forget(key);
+	}
+	io().setStreaming(key, dims, values);
+    }
+
+    /**
+     * Like {@link #sync(String, OctaveDouble, double)} 
+     * with maximal fraction {@link #SYNC_MAX_FRACTION}. 
+     *
+     * @param key
+     *    the name of the variable. 
+     * @param matrix
+     *    the value of the variable. 
+     */
+    public void sync(final String key, final OctaveDouble matrix) {
+	sync(key, matrix, SYNC_MAX_FRACTION);
+    }
+
+    /**
+     * Sets the variable <code>key</code> to <code>matrix</code> 
+     * transferring only the entries changed since the last sync 
+     * if <code>matrix</code> tracks changes, 
+     * see {@link OctaveDouble#trackChanges()}. 
+     * The changed entries are sent as vectors of indices and values 
+     * and assigned by indexing on the octave side 
+     * in a single round trip. 
+     * The full value is put by {@link #put(String, OctaveObject)} instead, 
+     * if <code>matrix</code> does not track changes, 
+     * if the fraction of changed entries exceeds <code>maxFraction</code> 
+     * or if the variable does not exist in octave with the size of the matrix. 
+     * Afterwards, <code>matrix</code> tracks changes 
+     * and no entry is considered changed. 
+     * <p>
+     * The variable shall not be modified in octave between two syncs. 
+     * In watchdog mode, <code>matrix</code> is journaled 
+     * like a value set by {@link #put(String, OctaveObject)}. 
+     *
+     * @param key
+     *    the name of the variable. 
+     * @param matrix
+     *    the value of the variable. 
+     * @param maxFraction
+     *    the maximal fraction of changed entries 
+     *    transferred as indices and values. 
+     */
+    public void sync(final String key, 
+		     final OctaveDouble matrix, 
+		     final double maxFraction) {
+	if (!matrix.isTrackingChanges() 
+	    || matrix.getNumChanged() > maxFraction * matrix.dataSize()) {
+	    put(key, matrix);
+	    matrix.trackChanges();
+	    return;
+	}
+	final int[] positions = matrix.getChangedPositions();
+	if (positions.length == 0) {
+	    return;
+	}
+	final int[] indices = new int[positions.length];
+	final double[] values = new double[positions.length];
+	for (int idx = 0; idx < positions.length; idx++) {
+	    indices[idx] = positions[idx] + 1;
+	    values [idx] = matrix.getPlain(positions[idx]);
+	}
+	final StringBuilder size = new StringBuilder();
+	for (int dim = 1; dim <= matrix.getSizeLength(); dim++) {
+	    size.append(' ').append(matrix.getSize(dim));
+	}
+	final String tag = newTag();
+	final String idxVar = String.format("javaoctave_%1$s_syncidx", tag);
+	final String valVar = String.format("javaoctave_%1$s_syncval", tag);
+	final Map<String, OctaveObject> vars = 
+	    new LinkedHashMap<String, OctaveObject>();
+	vars.put(idxVar, new OctaveInt(indices, 1, indices.length));
+	vars.put(valVar, new OctaveDouble(values, 1, values.length));
+	try {
+	    eval(tag, vars, 
+		 String.format("if !exist(\"%1$s\", \"var\") "
+			       + "|| !isequal(size(%1$s), [%4$s])\n"
+			       + "  error(\"javaoctave: %1$s not synced\");\n"
+			       + "end\n"
+			       + "%1$s(%2$s) = %3$s;\n",
+			       key, idxVar, valVar, size.toString().trim()),
+		 (input, output) -> exec().evalRW(input, output));
+	} catch (final OctaveEvalException e) {
+	    LOG.debug("Delta of " + key + " not applied; put instead. ", e);
+	    put(key, matrix);
+	    matrix.clearChanges();
+	    return;
+	}
+	if (this.journal != null) {
+	    this.journal.put(Collections.singletonMap(key, matrix));
+	}
+	matrix.clearChanges();
+    }
+
+    /**
+     * Appends the rows <code>rows</code> to the matrix variable <code>key</code> 
+     * transferring only the new rows. 
+     * This is {@link #appendAll(List)} 
+     * for a single {@link OctaveAppend#rows(String, OctaveObject)}. 
+     *
+     * @param key
+     *    the name of the variable appended to. 
+     * @param rows
+     *    the rows appended with as many columns as the variable. 
+     * @throws OctaveEvalException
+     *    if concatenation fails, e.g. because the numbers of columns differ. 
+     */
+    public void appendRows(final String key, final OctaveObject rows) {
+	appendAll(Collections.singletonList(OctaveAppend.rows(key, rows)));
+    }
+
+    /**
+     * Appends the rows <code>rows</code> to the matrix variable <code>key</code> 
+     * keeping the last <code>keep</code> rows only, 
+     * e.g. to maintain a rolling window. 
+     * This is {@link #appendAll(List)} 
+     * for a single {@link OctaveAppend#rows(String, OctaveObject, int)}. 
+     *
+     * @param key
+     *    the name of the variable appended to. 
+     * @param rows
+     *    the rows appended with as many columns as the variable. 
+     * @param keep
+     *    the number of last rows to be kept 
+     *    or a non-positive number if all are kept. 
+     * @throws OctaveEvalException
+     *    if concatenation fails, e.g. because the numbers of columns differ. 
+     */
+    public void appendRows(final String key, 
+			   final OctaveObject rows, 
+			   final int keep) {
+	appendAll(Collections.singletonList(OctaveAppend.rows(key, rows, keep)));
+    }
+
+    /**
+     * Appends the columns <code>columns</code> 
+     * to the matrix variable <code>key</code> 
+     * transferring only the new columns. 
+     * This is {@link #appendAll(List)} 
+     * for a single {@link OctaveAppend#columns(String, OctaveObject)}. 
+     *
+     * @param key
+     *    the name of the variable appended to. 
+     * @param columns
+     *    the columns appended with as many rows as the variable. 
+     * @throws OctaveEvalException
+     *    if concatenation fails, e.g. because the numbers of rows differ. 
+     */
+    public void appendColumns(final String key, final OctaveObject columns) {
+	appendAll(Collections.singletonList(OctaveAppend.columns(key, columns)));
+    }
+
+    /**
+     * Appends the columns <code>columns</code> 
+     * to the matrix variable <code>key</code> 
+     * keeping the last <code>keep</code> columns only. 
+     * This is {@link #appendAll(List)} 
+     * for a single {@link OctaveAppend#columns(String, OctaveObject, int)}. 
+     *
+     * @param key
+     *    the name of the variable appended to. 
+     * @param columns
+     *    the columns appended with as many rows as the variable. 
+     * @param keep
+     *    the number of last columns to be kept 
+     *    or a non-positive number if all are kept. 
+     * @throws OctaveEvalException
+     *    if concatenation fails, e.g. because the numbers of rows differ. 
+     */
+    public void appendColumns(final String key, 
+			      final OctaveObject columns, 
+			      final int keep) {
+	appendAll(Collections.singletonList
+		  (OctaveAppend.columns(key, columns, keep)));
+    }
+
+    /**
+     * Performs the appends <code>appends</code> in the order given 
+     * in a single round trip: 
+     * the blocks are set as temporary variables in a single <code>load</code> 
+     * and concatenated with the variables appended to on the octave side 
+     * by a safe eval like {@link #eval(String)}. 
+     * So the data transferred is proportional to the blocks 
+     * and not to the variables appended to. 
+     * In watchdog mode, the appends are not journaled, 
+     * since the journal would keep every block; 
+     * instead, values journaled before for the variables appended to 
+     * are forgotten, 
+     * so that after a restart these are undefined rather than stale. 
+     *
+     * @param appends
+     *    the appends to be performed, possibly several to the same variable. 
+     * @throws OctaveEvalException
+     *    if an append fails. 
+     *    Then the preceding appends are performed, the following are not. 
+     */
+    public void appendAll(final List<OctaveAppend> appends) {
+	if (appends.isEmpty()) {
+	    return;
+	}
+	final String tag = newTag();
+	final Map<String, OctaveObject> blocks = 
+	    new LinkedHashMap<String, OctaveObject>();
+	final StringBuilder script = new StringBuilder();
+	for (OctaveAppend append : appends) {
+	    if (this.journal != null) {
+		this.journal.forget(append.getName());
+	    }
+	    final String tmpVar = String.format("javaoctave_%1$s_append%2$d", 
+						tag, blocks.size());
+	    blocks.put(tmpVar, append.getBlock());
+	    script.append(append.script(tmpVar));
+	}
+	eval(tag, blocks, script.toString(), 
+	     (input, output) -> exec().evalRW(input, output));
     }
 
     /**
@@ -329,7 +1133,75 @@ public final class OctaveEngine {
      * @return the value from octave or null if the variable does not exist
      */
     public OctaveObject get(final String key) {
-        return this.octaveIO.get(key);
+        return io().get(key);
+    }
+
+    /**
+     * Gets the values of all variables named <code>names</code> 
+     * in a single round trip, 
+     * whereas {@link #get(String)} takes a round trip for each variable. 
+     *
+     * @param names
+     *    the names of the variables 
+     * @return 
+     *    a map from <code>names</code> in the order given 
+     *    to the values from octave 
+     *    or to <code>null</code> if a variable does not exist. 
+     */
+    public Map<String, OctaveObject> getAll(final Collection<String> names) {
+        return io().getAll(names);
+    }
+
+    /**
+     * Streams the value of the variable <code>name</code> 
+     * through a pull parser passed to <code>consumer</code> 
+     * which reports the structure and blocks of numbers as events, 
+     * whereas {@link #get(String)} builds the whole value in memory. 
+     *
+     * @param name
+     *    the name of the variable 
+     * @param consumer
+     *    pulls the events of the variable 
+     *    starting with {@link OctaveTextParser.Event#VARIABLE}. 
+     * @return 
+     *    whether the variable exists. 
+     *    If not, <code>consumer</code> is not invoked. 
+     */
+    public boolean parse(final String name, 
+			 final Consumer<OctaveTextParser> consumer) {
+        return io().parse(name, consumer);
+    }
+
+    /**
+     * Creates a named pipe by octave's <code>mkfifo</code>
+     * streaming frames of data between java and octave
+     * without ever holding them in a single {@link OctaveObject}.
+     * Typically, a script evaluated by {@link #evalAsync(String)}
+     * reads or writes the frames in a loop,
+     * while java writes or reads them concurrently.
+     * The FIFO shall be closed if no longer needed.
+     *
+     * @return
+     *    a new FIFO.
+     * @throws OctaveIOException
+     *    if the directory of the FIFO could not be created.
+     * @throws OctaveEvalException
+     *    if octave could not create the FIFO, e.g. on windows.
+     */
+    public OctaveFifo createFifo() {
+	final OctaveFifo fifo;
+	try {
+	    fifo = OctaveFifo.create();
+	} catch (final IOException e) {
+	    throw new OctaveIOException(e);
+	}
+	try {
+	    eval(fifo.mkfifoScript());
+	} catch (final RuntimeException e) {
+	    fifo.close();
+	    throw e;
+	}
+	return fifo;
     }
 
     /**
@@ -380,21 +1252,364 @@ public final class OctaveEngine {
      *    the errorWriter to set
      */
     public void setErrorWriter(final Writer errorWriter) {
+	this.errorWriter = errorWriter;
         this.octaveExec.setErrorWriter(errorWriter);
     }
 
+    /**
+     * Returns {@link #asyncExecutor} creating it if necessary. 
+     */
+    private synchronized ExecutorService getAsyncExecutor() {
+	if (this.asyncExecutor == null) {
+	    this.asyncExecutor = 
+		Executors.newSingleThreadExecutor(this.octaveExec.getThreadFactory());
+	}
+	return this.asyncExecutor;
+    }
+
+    /**
+     * The thread performing an asynchronous request, if any, 
+     * to be interrupted if the future of the request is cancelled. 
+     * Setting, unsetting and interrupting are guarded by a lock, 
+     * so that an interrupt never hits the thread 
+     * after the request is performed. 
+     * A lock is used instead of <code>synchronized</code> 
+     * to avoid pinning virtual threads. 
+     */
+    private static final class AsyncRunner {
+
+	private final Lock lock = new ReentrantLock();
+
+	/**
+	 * The thread performing the request 
+	 * or <code>null</code> if the request is not running. 
+	 */
+	private Thread thread;
+
+	/**
+	 * Registers the current thread as performing the request. 
+	 */
+	void start() {
+	    this.lock.lock();
+	    try {
+		this.thread = Thread.currentThread();
+	    } finally {
+		this.lock.unlock();
+	    }
+	}
+
+	/**
+	 * Unregisters the current thread and clears its interrupted state 
+	 * which may stem from cancellation. 
+	 */
+	void stop() {
+	    this.lock.lock();
+	    try {
+		this.thread = null;
+		Thread.interrupted();
+	    } finally {
+		this.lock.unlock();
+	    }
+	}
+
+	/**
+	 * Interrupts the thread performing the request, if running. 
+	 */
+	void interrupt() {
+	    this.lock.lock();
+	    try {
+		if (this.thread != null) {
+		    this.thread.interrupt();
+		}
+	    } finally {
+		this.lock.unlock();
+	    }
+	}
+    } // class AsyncRunner
+
+    /**
+     * Submits <code>task</code> to the queue of asynchronous requests 
+     * and returns a future completing with the result of the task 
+     * or exceptionally with the exception thrown by the task. 
+     * A task whose future is already completed, e.g. cancelled, 
+     * when its turn comes, is skipped. 
+     * If the future is cancelled while the task is running, 
+     * the thread performing the task is interrupted 
+     * which in turn interrupts the script running in octave, 
+     * keeping the engine usable, 
+     * see {@link OctaveExec#evalRW(WriteFunctor, ReadFunctor, long, TimeUnit)}. 
+     * This does not apply in caller-runs mode and in pipelined mode: 
+     * then the request is performed completely but its result is discarded. 
+     *
+     * @param task
+     *    the task to be performed on {@link #asyncExecutor}. 
+     * @return
+     *    a future completing if <code>task</code> completes. 
+     *    If this engine is already closed or destroyed, 
+     *    this completes exceptionally with an {@link OctaveIOException}. 
+     */
+    private <T> CompletableFuture<T> submitAsync(final Supplier<T> task) {
+	final CompletableFuture<T> future = new CompletableFuture<T>();
+	final AsyncRunner runner = new AsyncRunner();
+	this.pendingAsync.add(future);
+	future.whenComplete((res, exc) -> {
+		this.pendingAsync.remove(future);
+		if (future.isCancelled()) {
+		    runner.interrupt();
+		}
+	    });
+	try {
+	    getAsyncExecutor().execute(() -> {
+		    runner.start();
+		    try {
+			// after start: later cancellation interrupts 
+			if (future.isDone()) {
+			    return;
+			}
+			future.complete(task.get());
+		    } catch (RuntimeException e) { // NOPMD
+			future.completeExceptionally(e);
+		    } finally {
+			runner.stop();
+		    }
+		});
+	} catch (final RejectedExecutionException e) {
+	    future.completeExceptionally
+		(new OctaveIOException("Engine is closed. ", e));
+	}
+	return future;
+    }
+
+    /**
+     * Asynchronous variant of {@link #eval(String)}. 
+     * Requests are executed and completed in the order of submission. 
+     *
+     * @param script
+     *    the script to execute
+     * @return
+     *    a future completing if the script has been evaluated. 
+     *    If the script fails, it completes exceptionally 
+     *    with an {@link OctaveEvalException}. 
+     */
+    public CompletableFuture<Void> evalAsync(final String script) {
+	return submitAsync(() -> {
+		eval(script);
+		return null;
+	    });
+    }
+
+    /**
+     * Asynchronous variant of {@link #unsafeEval(String)}. 
+     * Requests are executed and completed in the order of submission. 
+     *
+     * @param script
+     *    the script to execute
+     * @return
+     *    a future completing if the script has been evaluated. 
+     *    If the script fails, it completes exceptionally 
+     *    with an {@link OctaveIOException}. 
+     */
+    public CompletableFuture<Void> unsafeEvalAsync(final String script) {
+	return submitAsync(() -> {
+		unsafeEval(script);
+		return null;
+	    });
+    }
+
+    /**
+     * Asynchronous variant of {@link #put(String, OctaveObject)}. 
+     * Requests are executed and completed in the order of submission. 
+     *
+     * @param key
+     *     the name of the variable to be set to value <code>value</code>. 
+     * @param value
+     *     the value to set for the variable <code>key</code>. 
+     *     It shall not be modified before the future completes. 
+     * @return
+     *    a future completing if the variable has been set. 
+     */
+    public CompletableFuture<Void> putAsync(final String key, 
+					    final OctaveObject value) {
+	return submitAsync(() -> {
+		put(key, value);
+		return null;
+	    });
+    }
+
+    /**
+     * Asynchronous variant of {@link #putAll(Map)}. 
+     * Requests are executed and completed in the order of submission. 
+     *
+     * @param vars
+     *    a map from variable names to according values 
+     *    to be stored in the according variables in octave. 
+     *    Neither map nor values shall be modified before the future completes. 
+     * @return
+     *    a future completing if the variables have been set. 
+     */
+    public CompletableFuture<Void> putAllAsync(final Map<String, OctaveObject> vars) {
+	return submitAsync(() -> {
+		putAll(vars);
+		return null;
+	    });
+    }
+
+    /**
+     * Asynchronous variant of {@link #get(String)}. 
+     * Requests are executed and completed in the order of submission. 
+     *
+     * @param key
+     *    the name of the variable
+     * @return
+     *    a future completing with the value from octave 
+     *    or with <code>null</code> if the variable does not exist. 
+     */
+    public CompletableFuture<OctaveObject> getAsync(final String key) {
+	return submitAsync(() -> get(key));
+    }
+
+    /**
+     * Asynchronous variant of {@link #get(Class, String)}. 
+     * Requests are executed and completed in the order of submission. 
+     *
+     * @param castClass
+     *    Class to cast to
+     * @param key
+     *    the name of the variable
+     * @param <T>
+     *    the class of the return value
+     * @return
+     *    a future completing with the value from octave 
+     *    or with <code>null</code> if the variable does not exist. 
+     *    If the value cannot be cast, it completes exceptionally 
+     *    with an {@link OctaveClassCastException}. 
+     */
+    public <T extends OctaveObject> CompletableFuture<T> getAsync(final Class<T> castClass,
+								  final String key) {
+	return submitAsync(() -> get(castClass, key));
+    }
+
     /**
      * Close the octave process in an orderly fashion.
+     * Pending asynchronous requests are performed before. 
+     *
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting for pending asynchronous requests. 
      */
     public void close() {
-        this.octaveExec.close();
+	final ExecutorService asyncExec;
+	synchronized (this) {
+	    asyncExec = this.asyncExecutor;
+	    if (asyncExec != null) {
+		asyncExec.shutdown();
+	    }
+	}
+	// await outside the lock: pending requests may submit further ones 
+	if (asyncExec != null) {
+	    try {
+		asyncExec.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	    } catch (final InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new OctaveInterruptedException
+		    ("Interrupted when waiting for asynchronous requests", e);
+	    }
+	}
+	this.closed = true;
+	if (this.metrics != null) {
+	    this.metrics.unregisterMBean();
+	}
+	// wait for a replacement in progress 
+	this.watchdogLock.lock();
+	try {
+	    this.octaveExec.close();
+	} finally {
+	    this.watchdogLock.unlock();
+	}
     }
 
     /**
      * Kill the octave process without remorse.
+     * Pending asynchronous requests complete exceptionally 
+     * with an {@link OctaveIOException} marked as destroyed. 
      */
     public void destroy() {
+	this.closed = true;
+	if (this.metrics != null) {
+	    this.metrics.unregisterMBean();
+	}
+	synchronized (this) {
+	    if (this.asyncExecutor != null) {
+		this.asyncExecutor.shutdownNow();
+	    }
+	}
         this.octaveExec.destroy();
+	for (CompletableFuture<?> future : this.pendingAsync) {
+	    final OctaveIOException exc = 
+		new OctaveIOException("Engine destroyed. ");
+	    exc.setDestroyed(true);
+	    future.completeExceptionally(exc);
+	}
+    }
+
+    /**
+     * Returns whether the underlying octave process is still running 
+     * and this engine is neither closed nor destroyed. 
+     * This is cheap, because it does not involve a round trip to octave. 
+     * To detect a hanging process, evaluate some script. 
+     *
+     * @return
+     *    whether the octave process is still alive. 
+     */
+    public boolean isAlive() {
+	return this.octaveExec.isAlive();
+    }
+
+    /**
+     * Returns the id of this engine which is unique within the runtime. 
+     *
+     * @return
+     *    the id of this engine. 
+     */
+    public int getId() {
+	return this.id;
+    }
+
+    /**
+     * Returns the metrics of the round trips of this engine to octave. 
+     * They are also registered as an MBean 
+     * with name <code>eu.simuline.octave:type=OctaveEngine,id=</code> 
+     * followed by {@link #getId()}. 
+     *
+     * @return
+     *    the metrics of this engine 
+     *    or <code>null</code> if metrics are disabled, 
+     *    see {@link OctaveEngineFactory#setMetrics(boolean)}. 
+     */
+    public OctaveMetrics getMetrics() {
+	return this.metrics;
+    }
+
+    /**
+     * Returns whether this engine is in watchdog mode, 
+     * i.e. replaces its octave process if it dies. 
+     * For details see {@link OctaveEngineFactory#setWatchdog(boolean)}. 
+     *
+     * @return
+     *    whether this engine is in watchdog mode. 
+     */
+    public boolean isWatchdog() {
+	return this.journal != null;
+    }
+
+    /**
+     * Returns the number of times the octave process has been replaced 
+     * in watchdog mode. 
+     *
+     * @return
+     *    the number of restarts of the octave process. 
+     */
+    public int getNumRestarts() {
+	return this.numRestarts;
     }
     
     
@@ -495,14 +1710,15 @@ public final class OctaveEngine {
     /**
      * Return the version of the octave implementation invoked by this bridge. 
      * E.g. a string like "3.0.5" or "3.2.3".
+     * Like the file separator, the home directories and the packages, 
+     * this is fetched in a single round trip on first use and cached. 
      *
      * @return 
      *    The version of octave as a string. 
      * @see #getOctaveInJavaVersion()
      */
     public String getOctaveVersion() {
-	eval("OCTAVE_VERSION();");
-	return get(OctaveString.class, ANS).getString();
+	return getMetaInfo().octaveVersion;
     }
 
     /**
@@ -526,8 +1742,82 @@ public final class OctaveEngine {
      *    the file-separator for this os.
      */
     public String getFilesep() {
-	eval("filesep();");
-	return get(OctaveString.class, ANS).getString();
+	return getMetaInfo().filesep;
+    }
+
+    /**
+     * The facts about the octave installation and the packages 
+     * as cached in {@link #metaInfo}. 
+     */
+    private static final class MetaInfo {
+
+	/**
+	 * The version of octave as returned by {@link #getOctaveVersion()}. 
+	 */
+	private final String octaveVersion;
+
+	/**
+	 * The file separator as returned by {@link #getFilesep()}. 
+	 */
+	private final String filesep;
+
+	/**
+	 * The m-file of {@link #JAVA_FUN} 
+	 * determining the home directories, see {@link #getHomeDir(String)}. 
+	 * This is empty if octave has no java interface. 
+	 */
+	private final String javaFunFile;
+
+	/**
+	 * The packages as returned by {@link #getPackagesInstalled()}. 
+	 * This is unmodifiable. 
+	 */
+	private final Map<String, PackageDesc> packages;
+
+	/**
+	 * The value of {@link #metaGeneration} before fetching. 
+	 */
+	private final long generation;
+
+	/**
+	 * Creates the meta info from the struct defined by {@link #META_SCRIPT} 
+	 * fetched in generation <code>generation</code>. 
+	 */
+	MetaInfo(final OctaveStruct meta, final long generation) {
+	    this.generation    = generation;
+	    this.octaveVersion = meta.get(OctaveString.class, "version").getString();
+	    this.filesep       = meta.get(OctaveString.class, "filesep").getString();
+	    this.javaFunFile   = meta.get(OctaveString.class, "javafun").getString();
+	    final OctaveCell cell = meta.get(OctaveCell.class, "pkgs");
+	    final int len = cell.dataSize();
+	    final Map<String, PackageDesc> name2pkg = 
+		new HashMap<String, PackageDesc>();
+	    PackageDesc pkg;
+	    for (int idx = 1; idx <= len; idx++) {
+		pkg = new PackageDesc(cell.get(OctaveStruct.class, 1, idx));
+		name2pkg.put(pkg.name, pkg);
+	    }
+	    this.packages = Collections.unmodifiableMap(name2pkg);
+	}
+    } // class MetaInfo 
+
+    /**
+     * Returns {@link #metaInfo} fetching it in a single round trip 
+     * if not yet fetched or invalidated. 
+     * A meta info fetched while invalidated concurrently 
+     * is returned but cached with its outdated generation, 
+     * so it is fetched again next time. 
+     */
+    private MetaInfo getMetaInfo() {
+	final long generation = this.metaGeneration.get();
+	MetaInfo res = this.metaInfo;
+	if (res == null || res.generation != generation) {
+	    res = new MetaInfo(Cast.cast(OctaveStruct.class, 
+					 io().evalGet(META_SCRIPT, META_VAR)), 
+			       generation);
+	    this.metaInfo = res;
+	}
+	return res;
     }
 
     /**
@@ -549,10 +1839,6 @@ public final class OctaveEngine {
 	return collection;
     }
 
-    // This is a little strange: pkg('list') returns a cell array 
-    // but the entries have uniform type. 
-    // TBD: we need more than the mere names. 
-    // TBC: maybe this shall be reimplemented in terms of getPackagesInstalled()
     /**
      * Returns a collection of names of installed packages. 
      * 
@@ -561,8 +1847,7 @@ public final class OctaveEngine {
      * @see #getPackagesInstalled()
      */
     public Collection<String> getNamesOfPackagesInstalled() {
-	eval("cellfun(@(x) x.name, pkg('list'), 'UniformOutput', false);");
-	return getStringCellFromAns();
+	return new HashSet<String>(getMetaInfo().packages.keySet());
     }
 
 //    // TBC: dependency only with name okg possible. 
@@ -692,23 +1977,16 @@ public final class OctaveEngine {
     /**
      * Returns a map mapping the names of the installed packages 
      * to the description of the according package. 
+     * This is cached like the version of octave 
+     * but fetched again after a script 
+     * which may load, unload or install packages. 
      * 
      * @return
      *    a map from the names to the description of the packages installed. 
      * @see #getNamesOfPackagesInstalled()
      */
     public Map<String, PackageDesc> getPackagesInstalled() {
-	eval(ANS + "=pkg('list');");
-	// TBC: why ans=necessary??? without like pkg list .. bug? 
-	OctaveCell cell = get(OctaveCell.class, ANS);
-	int len = cell.dataSize();
-	Map<String, PackageDesc> res = new HashMap<String, PackageDesc>();
-	PackageDesc pkg;
-	for (int idx = 1; idx <= len; idx++) {
-	    pkg = new PackageDesc(cell.get(OctaveStruct.class, 1, idx));
-	    res.put(pkg.name, pkg);
-	}
-	return res;
+	return new HashMap<String, PackageDesc>(getMetaInfo().packages);
     }
 
     /**
@@ -728,9 +2006,7 @@ public final class OctaveEngine {
 	Collection<String> collection = getStringCellFromAns();
 	collection.removeIf(p -> NARGIN.equals(p));
 	collection.removeIf(p -> ANS.equals(p));
-	// TBD: eliminate magic literal 
-	Pattern pattern = Pattern.compile("javaoctave_[0-9a-f]{12}_eval");
-	collection.removeIf(p -> pattern.matcher(p).matches());
+	collection.removeIf(p -> PATTERN_EVAL_VAR.matcher(p).matches());
 	return collection;
     }
 
@@ -900,7 +2176,7 @@ public final class OctaveEngine {
     public NameDesc getDescForName(String name) {
 	StringReader checkCmd = new StringReader(String.format("which %s", name));
         final StringWriter fileResultWr = new StringWriter();
-        this.octaveExec.evalRW(new ReaderWriteFunctor(checkCmd),
+        exec().evalRW(new ReaderWriteFunctor(checkCmd),
         	new WriterReadFunctor(fileResultWr));
         return new NameDesc(PATTERN_NAME_TYPE_FILE.matcher(fileResultWr.toString()), name);
     }
@@ -918,16 +2194,16 @@ public final class OctaveEngine {
      * as its group with number two and the java home directory as its group number one. 
      * The pattern is made independent of the octave version and of the specific command. 
      */
-    private final static String PATTERN_HOMEDIR = String
+    private final static Pattern PATTERN_HOMEDIR = Pattern.compile(String
 	    .format("(?<javaHome>(?<octHome>/.+)/share/octave/(?<octVrs>[^/]+)/m/java/)%s.m", JAVA_FUN)
-	    .replace("/", File.separator);
+	    .replace("/", File.separator));
 
     private File getHomeDir(String nameGrp) {
-	Matcher matcher = Pattern.compile(PATTERN_HOMEDIR)
-		.matcher(getDescForName(JAVA_FUN).file.toString());
+	final MetaInfo meta = getMetaInfo();
+	Matcher matcher = PATTERN_HOMEDIR.matcher(meta.javaFunFile);
 	boolean found = matcher.find();
 	assert found;
-	assert matcher.group("octVrs").equals(getOctaveVersion());
+	assert matcher.group("octVrs").equals(meta.octaveVersion);
 	return new File(matcher.group(nameGrp));
     }
 
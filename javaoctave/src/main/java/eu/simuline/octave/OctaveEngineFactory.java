@@ -25,8 +25,23 @@ import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.simuline.octave.metrics.EngineStartEvent;
+import eu.simuline.octave.util.VirtualThreads;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 /**
  * Factory that creates OctaveEngines. 
@@ -46,6 +61,8 @@ import java.util.Objects;
  */
 public final class OctaveEngineFactory {
 
+    private static final Log LOG = LogFactory.getLog(OctaveEngineFactory.class);
+
     /**
      * The custom system property 
      * which determines where the executable is found if {@link #octaveProgramFile} is not set. 
@@ -170,6 +187,291 @@ public final class OctaveEngineFactory {
      */
     private int numThreadsReuse = 2;
 
+    /**
+     * Whether the engines created run all their io on virtual threads. 
+     * Then the engines do not own thread pools, 
+     * but each task runs on a new virtual thread 
+     * and the scheduler is shared by the whole runtime. 
+     * This is appropriate for hundreds of engines within a single runtime. 
+     * If set, {@link #numThreadsReuse} is ignored. 
+     * This requires java 21 or later. 
+     * By default, this is <code>false</code>. 
+     * The according setter method is {@link #setVirtualThreads(boolean)}. 
+     */
+    private boolean useVirtualThreads = false;
+
+    /**
+     * Whether the engines created run in pipelined mode, 
+     * i.e. allow multiple requests in flight. 
+     * In pipelined mode, a script is written while the output 
+     * of previously written scripts is still being read. 
+     * This saves the round trip latency 
+     * if requests are submitted from several threads. 
+     * By default, this is <code>false</code>. 
+     * The according setter method is {@link #setPipelined(boolean)}. 
+     */
+    private boolean isPipelined = false;
+
+    /**
+     * The maximal number of characters of a script 
+     * which is written and whose result is read back by the calling thread, 
+     * avoiding two thread hand-offs per request, 
+     * or <code>0</code> if this caller-runs mode is switched off. 
+     * Then each request writes and reads via a thread pool 
+     * as described for {@link #numThreadsReuse}. 
+     * Larger scripts are read by the thread pool 
+     * to avoid deadlock if the pipe buffer is full. 
+     * So the threshold shall not exceed the capacity of the pipe buffer 
+     * which is 64k bytes on linux but may be 4k bytes on other platforms. 
+     * Caller-runs mode does not apply in pipelined mode, 
+     * see {@link #isPipelined}. 
+     * By default, this is <code>0</code>. 
+     * The according setter method is {@link #setCallerRunsThreshold(int)}. 
+     */
+    private int callerRunsThreshold = 0;
+
+    /**
+     * Whether the engines created run in multiplexed mode. 
+     * In multiplexed mode, standard output and error stream 
+     * of the octave processes of all engines 
+     * are read by a single thread shared by the whole runtime, 
+     * and each request is written and read back by the calling thread. 
+     * So an engine needs no thread of its own, 
+     * which is appropriate for hundreds of engines within a single runtime. 
+     * Since output is consumed while writing, 
+     * scripts of any size are written without thread hand-off, 
+     * so this supersedes caller-runs mode, see {@link #callerRunsThreshold}. 
+     * The pipes are polled without blocking, 
+     * which costs up to a millisecond of latency for long running scripts. 
+     * Multiplexed mode does not apply in pipelined mode, 
+     * see {@link #isPipelined}. 
+     * By default, this is <code>false</code>. 
+     * The according setter method is {@link #setMultiplexed(boolean)}. 
+     */
+    private boolean isMultiplexed = false;
+
+    /**
+     * Whether the engines created run in watchdog mode. 
+     * In watchdog mode, an engine journals the requests defining its workspace, 
+     * i.e. {@link OctaveEngine#put(String, eu.simuline.octave.type.OctaveObject)}, 
+     * {@link OctaveEngine#putAll(java.util.Map)} 
+     * and {@link OctaveEngine#evalSetup(String)}. 
+     * If its octave process dies, 
+     * it starts a replacement and replays the journal 
+     * before it accepts further requests. 
+     * So for long-lived services a crash of octave 
+     * causes a latency spike instead of an outage. 
+     * Requests in flight when octave dies fail nevertheless. 
+     * By default, this is <code>false</code>. 
+     * The according setter method is {@link #setWatchdog(boolean)}. 
+     */
+    private boolean useWatchdog = false;
+
+    /**
+     * Whether the engines created record metrics of their round trips: 
+     * counts, errors, characters written and read 
+     * and histograms of the durations of the phases of round trips 
+     * per operation. 
+     * The metrics are accessible via {@link OctaveEngine#getMetrics()} 
+     * and as an MBean per engine. 
+     * Disabled metrics cost a check for <code>null</code> per round trip. 
+     * By default, this is <code>false</code>. 
+     * The according setter method is {@link #setMetrics(boolean)}. 
+     */
+    private boolean useMetrics = false;
+
+    /**
+     * Whether the engines created transfer variables 
+     * in octave's binary format written by <code>save -binary</code> 
+     * and read by <code>load -binary</code> 
+     * instead of the text format, as far as the types are supported, 
+     * i.e. for {@link eu.simuline.octave.type.OctaveDouble}, 
+     * {@link eu.simuline.octave.type.OctaveInt} 
+     * and {@link eu.simuline.octave.type.OctaveLong}. 
+     * Then numbers are transferred bit-exact 
+     * without formatting and parsing decimals. 
+     * Since the communication with octave is based on characters, 
+     * the binary data is transferred via temporary files, 
+     * which requires octave to see the file system of the java process. 
+     * Small values pay for creating the file. 
+     * By default, this is <code>false</code>. 
+     * The according setter method is {@link #setBinary(boolean)}. 
+     */
+    private boolean useBinary = false;
+
+    /**
+     * The minimal number of bytes of the data of a numeric matrix, 
+     * i.e. of an {@link eu.simuline.octave.type.OctaveDouble}, 
+     * {@link eu.simuline.octave.type.OctaveInt} 
+     * or {@link eu.simuline.octave.type.OctaveLong}, 
+     * which is transferred via a memory-mapped file 
+     * by put and get of the engines created, 
+     * or <code>0</code> if this side channel is switched off. 
+     * Then only a short script passes the pipe 
+     * and octave reads and writes the raw data by <code>fread</code> 
+     * and <code>fwrite</code>. 
+     * This takes precedence over the binary format, see {@link #useBinary}, 
+     * and pays off for matrices of megabytes. 
+     * The files are created in {@link #sideChannelDir}. 
+     * By default, this is <code>0</code>. 
+     * The according setter method is {@link #setSideChannelThreshold(int)}. 
+     */
+    private int sideChannelThreshold = 0;
+
+    /**
+     * The directory the memory-mapped files 
+     * of the side channel described for {@link #sideChannelThreshold} 
+     * are created in, 
+     * or <code>null</code> for <code>/dev/shm</code> if it is writable 
+     * and the directory for temporary files otherwise. 
+     * It shall be on a tmpfs not to write the data to disk 
+     * and it must be accessible to octave. 
+     * By default, this is <code>null</code>. 
+     * The according setter method is {@link #setSideChannelDir(File)}. 
+     */
+    private File sideChannelDir = null;
+
+    /**
+     * The number of standby engines the factory keeps in reserve 
+     * or <code>0</code> if prefork mode is switched off. 
+     * In prefork mode, the factory keeps that many engines 
+     * started and readiness-probed, 
+     * i.e. each has completed a round trip 
+     * so that octave has booted its interpreter. 
+     * Then {@link #getScriptEngine()} hands out a standby engine immediately 
+     * and starts its replacement in the background, 
+     * which hides the startup latency of octave. 
+     * A standby engine is handed out only 
+     * if it was started with the parameters currently set; 
+     * otherwise it is closed in the background. 
+     * So the according setter method shall be invoked 
+     * after setting the other parameters. 
+     * By default, this is <code>0</code>. 
+     * The according setter method is {@link #setPrefork(int)}. 
+     */
+    private int numStandby = 0;
+
+    /**
+     * The standby engines in prefork mode, see {@link #numStandby}, 
+     * each with the parameters it was started with. 
+     */
+    private final Queue<Standby> standby = new ConcurrentLinkedQueue<Standby>();
+
+    /**
+     * The number of standby engines being started in the background. 
+     */
+    private final AtomicInteger numSpawning = new AtomicInteger();
+
+    /**
+     * The executor starting engines in the background 
+     * or <code>null</code> if not yet needed. 
+     * Its threads are daemons, so they do not keep the runtime alive. 
+     * This is created by {@link #getSpawner()}. 
+     */
+    private ExecutorService spawner = null;
+
+    /**
+     * The parameters of a factory 
+     * which determine the engines it creates. 
+     * Parameters compare equal if engines created are equivalent. 
+     * The writers are compared by identity. 
+     */
+    private static final class Settings {
+	private final int numThreadsReuse;
+	private final boolean useVirtualThreads;
+	private final boolean isPipelined;
+	private final int callerRunsThreshold;
+	private final boolean isMultiplexed;
+	private final boolean useWatchdog;
+	private final boolean useMetrics;
+	private final boolean useBinary;
+	private final int sideChannelThreshold;
+	private final File sideChannelDir;
+	private final Writer octaveInputLog;
+	private final Writer errWriter;
+	private final Charset charset;
+	private final String[] cmdArray;
+	private final String[] environment;
+	private final File workingDir;
+
+	/**
+	 * Takes a snapshot of the current parameters of <code>factory</code>. 
+	 */
+	Settings(final OctaveEngineFactory factory) {
+	    this.numThreadsReuse     = factory.numThreadsReuse;
+	    this.useVirtualThreads   = factory.useVirtualThreads;
+	    this.isPipelined         = factory.isPipelined;
+	    this.callerRunsThreshold = factory.callerRunsThreshold;
+	    this.isMultiplexed       = factory.isMultiplexed;
+	    this.useWatchdog         = factory.useWatchdog;
+	    this.useMetrics          = factory.useMetrics;
+	    this.useBinary           = factory.useBinary;
+	    this.sideChannelThreshold = factory.sideChannelThreshold;
+	    this.sideChannelDir      = factory.sideChannelDir;
+	    this.octaveInputLog      = factory.octaveInputLog;
+	    this.errWriter           = factory.errWriter;
+	    this.charset             = factory.charset;
+	    this.environment = factory.environment == null
+		? null : factory.environment.clone();
+	    this.workingDir          = factory.workingDir;
+
+	    // determine the command/path of the octave program 
+	    String octaveProgramPathCmd = (factory.octaveProgramFile == null)
+		? System.getProperty(PROPERTY_EXECUTABLE, factory.octaveProgramCmd)
+		: factory.octaveProgramFile.getPath();
+
+	    // determine the command array 
+	    this.cmdArray = new String[factory.argsArray.length + 1];
+	    this.cmdArray[0] = octaveProgramPathCmd;
+	    System.arraycopy(factory.argsArray, 0, 
+			     this.cmdArray, 1, factory.argsArray.length);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+	    if (!(obj instanceof Settings)) {
+		return false;
+	    }
+	    final Settings other = (Settings) obj;
+	    return this.numThreadsReuse     == other.numThreadsReuse
+		&& this.useVirtualThreads   == other.useVirtualThreads
+		&& this.isPipelined         == other.isPipelined
+		&& this.callerRunsThreshold == other.callerRunsThreshold
+		&& this.isMultiplexed       == other.isMultiplexed
+		&& this.useWatchdog         == other.useWatchdog
+		&& this.useMetrics          == other.useMetrics
+		&& this.useBinary           == other.useBinary
+		&& this.sideChannelThreshold == other.sideChannelThreshold
+		&& Objects.equals(this.sideChannelDir, other.sideChannelDir)
+		&& this.octaveInputLog      == other.octaveInputLog
+		&& this.errWriter           == other.errWriter
+		&& this.charset.equals(other.charset)
+		&& Arrays.equals(this.cmdArray,    other.cmdArray)
+		&& Arrays.equals(this.environment, other.environment)
+		&& Objects.equals(this.workingDir, other.workingDir);
+	}
+
+	@Override
+	public int hashCode() {
+	    return Arrays.hashCode(this.cmdArray) 
+		^ Arrays.hashCode(this.environment) 
+		^ this.charset.hashCode();
+	}
+    } // class Settings
+
+    /**
+     * A standby engine together with the parameters it was started with. 
+     */
+    private static final class Standby {
+	private final Settings settings;
+	private final OctaveEngine engine;
+
+	Standby(final Settings settings, final OctaveEngine engine) {
+	    this.settings = settings;
+	    this.engine = engine;
+	}
+    } // class Standby
+
     /**
      * Default constructor creating a factory with default parameters. 
      */
@@ -179,29 +481,239 @@ public final class OctaveEngineFactory {
 
     /**
      * Returns a script engine with the parameters set for this factory. 
+     * In prefork mode, see {@link #numStandby}, 
+     * this is a standby engine started with these parameters if one is ready, 
+     * and its replacement is started in the background. 
+     * If enabled, its startup is recorded 
+     * as an {@link EngineStartEvent} for the flight recorder. 
      *
      * @return 
      *    a new OctaveEngine with the current parameters. 
      */
     public OctaveEngine getScriptEngine() {
-	// determine the command/path of the octave program 
-	String octaveProgramPathCmd = (this.octaveProgramFile == null)
-	    ? System.getProperty(PROPERTY_EXECUTABLE, this.octaveProgramCmd)
-	    : this.octaveProgramFile.getPath();
-
-	// determine the command array 
-	final String[] cmdArray = new String[this.argsArray.length + 1];
-	cmdArray[0] = octaveProgramPathCmd;
-	System.arraycopy(this.argsArray, 0, cmdArray, 1, this.argsArray.length);
-
-        return new OctaveEngine(this, 
-		                this.numThreadsReuse,
-				this.octaveInputLog, 
-				this.errWriter,
-				this.charset,
-				cmdArray,
-				this.environment,
-				this.workingDir);
+	final Settings settings = new Settings(this);
+	if (this.numStandby == 0) {
+	    return startEngine(settings);
+	}
+	OctaveEngine engine = pollStandby(settings);
+	if (engine == null) {
+	    // no standby engine ready: start one like without prefork 
+	    engine = startEngine(settings);
+	}
+	refill(settings);
+	return engine;
+    }
+
+    /**
+     * Returns <code>num</code> script engines 
+     * with the parameters set for this factory, 
+     * each readiness-probed, i.e. having completed a round trip. 
+     * In prefork mode, see {@link #numStandby}, 
+     * standby engines started with these parameters are handed out first 
+     * and replacements are started in the background. 
+     * The other engines are started and probed in parallel, 
+     * so this takes about the startup time of a single engine. 
+     * If starting one of the engines fails, 
+     * the engines started already are closed. 
+     *
+     * @param num
+     *    the number of engines to be returned which must not be negative. 
+     * @return 
+     *    a list of <code>num</code> new OctaveEngines 
+     *    with the current parameters. 
+     * @throws IllegalArgumentException
+     *    if <code>num</code> is negative. 
+     * @throws eu.simuline.octave.exception.OctaveIOException 
+     *    if starting an engine failed. 
+     */
+    public List<OctaveEngine> getScriptEngines(final int num) {
+	if (num < 0) {
+	    throw new IllegalArgumentException
+		("Expected non-negative number of engines but found " + num + ". ");
+	}
+	final Settings settings = new Settings(this);
+	final List<CompletableFuture<OctaveEngine>> futures = 
+	    new ArrayList<CompletableFuture<OctaveEngine>>(num);
+	for (int i = 0; i < num; i++) {
+	    final OctaveEngine engine = this.numStandby == 0 
+		? null 
+		: pollStandby(settings);
+	    futures.add(engine == null
+			? CompletableFuture.supplyAsync(() -> startProbed(settings), 
+							getSpawner())
+			: CompletableFuture.completedFuture(engine));
+	}
+	if (this.numStandby != 0) {
+	    refill(settings);
+	}
+
+	final List<OctaveEngine> engines = new ArrayList<OctaveEngine>(num);
+	RuntimeException failure = null;
+	for (CompletableFuture<OctaveEngine> future : futures) {
+	    try {
+		engines.add(future.join());
+	    } catch (final CompletionException e) {
+		if (failure == null) {
+		    failure = e.getCause() instanceof RuntimeException
+			? (RuntimeException) e.getCause()
+			: e;
+		}
+	    }
+	}
+	if (failure != null) {
+	    for (OctaveEngine engine : engines) {
+		engine.destroy();
+	    }
+	    throw failure;
+	}
+	return engines;
+    }
+
+    /**
+     * Returns a standby engine started with <code>settings</code> 
+     * or <code>null</code> if no such engine is ready. 
+     * Standby engines started with other parameters 
+     * or no longer alive are discarded, 
+     * closing them in the background. 
+     */
+    private OctaveEngine pollStandby(final Settings settings) {
+	Standby cand;
+	while ((cand = this.standby.poll()) != null) {
+	    if (cand.settings.equals(settings) && cand.engine.isAlive()) {
+		return cand.engine;
+	    }
+	    discard(cand.engine);
+	}
+	return null;
+    }
+
+    /**
+     * Closes <code>engine</code> in the background. 
+     */
+    private void discard(final OctaveEngine engine) {
+	getSpawner().execute(() -> {
+		try {
+		    engine.close();
+		} catch (final RuntimeException e) {
+		    LOG.warn("Could not close standby octave engine. ", e);
+		    engine.destroy();
+		}
+	    });
+    }
+
+    /**
+     * Starts engines with <code>settings</code> in the background 
+     * until {@link #numStandby} engines are ready or being started. 
+     * Standby engines started with other parameters are discarded first. 
+     * Each engine is probed by a round trip before it becomes a standby. 
+     * If starting fails, this is logged 
+     * and the next invocation of this method tries again. 
+     */
+    private synchronized void refill(final Settings settings) {
+	for (Standby cand : this.standby) {
+	    if (!cand.settings.equals(settings) && this.standby.remove(cand)) {
+		discard(cand.engine);
+	    }
+	}
+	while (this.standby.size() + this.numSpawning.get() < this.numStandby) {
+	    this.numSpawning.incrementAndGet();
+	    getSpawner().execute(() -> {
+		    try {
+			offerStandby(new Standby(settings, startProbed(settings)));
+		    } catch (final RuntimeException e) {
+			LOG.warn("Could not start standby octave engine. ", e);
+		    } finally {
+			this.numSpawning.decrementAndGet();
+		    }
+		});
+	}
+    }
+
+    /**
+     * Adds <code>cand</code> to the standby engines 
+     * unless there are {@link #numStandby} standby engines already, 
+     * e.g. because prefork mode was switched off meanwhile. 
+     * In that case, <code>cand</code> is discarded. 
+     */
+    private synchronized void offerStandby(final Standby cand) {
+	if (this.standby.size() < this.numStandby) {
+	    this.standby.add(cand);
+	} else {
+	    discard(cand.engine);
+	}
+    }
+
+    /**
+     * Returns {@link #spawner} creating it if necessary. 
+     */
+    private synchronized ExecutorService getSpawner() {
+	if (this.spawner == null) {
+	    final AtomicInteger threadNumber = new AtomicInteger(1);
+	    this.spawner = Executors.newCachedThreadPool(runnable -> {
+		    final Thread thread = new Thread(runnable, 
+			"javaoctave-Prefork-" + threadNumber.getAndIncrement());
+		    thread.setDaemon(true);
+		    return thread;
+		});
+	}
+	return this.spawner;
+    }
+
+    /**
+     * Returns a new engine started with <code>settings</code> 
+     * after a round trip ensuring that octave is ready. 
+     * If the round trip fails, the engine is destroyed. 
+     */
+    private OctaveEngine startProbed(final Settings settings) {
+	final OctaveEngine engine = startEngine(settings);
+	try {
+	    engine.unsafeEval("");
+	} catch (final RuntimeException e) {
+	    engine.destroy();
+	    throw e;
+	}
+	return engine;
+    }
+
+    /**
+     * Returns a new engine started with <code>settings</code>. 
+     * If enabled, its startup is recorded 
+     * as an {@link EngineStartEvent} for the flight recorder. 
+     */
+    private OctaveEngine startEngine(final Settings settings) {
+	// record startup as a flight recorder event if enabled 
+	final EngineStartEvent event = EngineStartEvent.isTypeEnabled()
+	    ? new EngineStartEvent()
+	    : null;
+	if (event != null) {
+	    event.begin();
+	}
+        final OctaveEngine engine = new OctaveEngine(this, 
+		                settings.numThreadsReuse,
+				settings.useVirtualThreads,
+				settings.isPipelined,
+				settings.callerRunsThreshold,
+				settings.isMultiplexed,
+				settings.useWatchdog,
+				settings.useMetrics,
+				settings.useBinary,
+				settings.sideChannelThreshold,
+				settings.sideChannelDir,
+				settings.octaveInputLog, 
+				settings.errWriter,
+				settings.charset,
+				settings.cmdArray,
+				settings.environment,
+				settings.workingDir);
+	if (event != null) {
+	    event.end();
+	    if (event.shouldCommit()) {
+		event.setEngineId(engine.getId());
+		event.setCommand(String.join(" ", settings.cmdArray));
+		event.commit();
+	    }
+	}
+	return engine;
     }
 
     /**
@@ -381,4 +893,192 @@ public final class OctaveEngineFactory {
 	this.numThreadsReuse = numThreadsReuse;
         return this;
     }
+
+    /**
+     * Setter method for {@link #isPipelined}. 
+     * The details are documented with {@link #isPipelined}. 
+     *
+     * @param isPipelined
+     *    whether the engines created shall run in pipelined mode. 
+     * @return
+     *   this octave engine factory after modification. 
+     */
+    public OctaveEngineFactory setPipelined(final boolean isPipelined) {
+	this.isPipelined = isPipelined;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #callerRunsThreshold}. 
+     * The details are documented with {@link #callerRunsThreshold}. 
+     *
+     * @param callerRunsThreshold
+     *    the maximal number of characters of a script 
+     *    written and read back by the calling thread, 
+     *    or <code>0</code> to switch off caller-runs mode. 
+     * @return
+     *   this octave engine factory after modification. 
+     * @throws IllegalArgumentException
+     *    if <code>callerRunsThreshold</code> is negative. 
+     */
+    public OctaveEngineFactory setCallerRunsThreshold(final int callerRunsThreshold) {
+	if (callerRunsThreshold < 0) {
+	    throw new IllegalArgumentException
+		("Expected non-negative threshold but found " + 
+		 callerRunsThreshold + ". ");
+	}
+	this.callerRunsThreshold = callerRunsThreshold;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #useVirtualThreads}. 
+     * The details are documented with {@link #useVirtualThreads}. 
+     *
+     * @param useVirtualThreads
+     *    whether the engines created shall run their io on virtual threads. 
+     * @return
+     *   this octave engine factory after modification. 
+     * @throws UnsupportedOperationException
+     *    if <code>useVirtualThreads</code> is set 
+     *    but the runtime does not provide virtual threads. 
+     */
+    public OctaveEngineFactory setVirtualThreads(final boolean useVirtualThreads) {
+	if (useVirtualThreads && !VirtualThreads.isAvailable()) {
+	    throw new UnsupportedOperationException
+		("Virtual threads require java 21 or later. ");
+	}
+	this.useVirtualThreads = useVirtualThreads;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #isMultiplexed}. 
+     * The details are documented with {@link #isMultiplexed}. 
+     *
+     * @param isMultiplexed
+     *    whether the engines created run in multiplexed mode. 
+     * @return
+     *    this octave engine factory after modification. 
+     */
+    public OctaveEngineFactory setMultiplexed(final boolean isMultiplexed) {
+	this.isMultiplexed = isMultiplexed;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #useWatchdog}. 
+     * The details are documented with {@link #useWatchdog}. 
+     *
+     * @param useWatchdog
+     *    whether the engines created shall run in watchdog mode. 
+     * @return
+     *   this octave engine factory after modification. 
+     */
+    public OctaveEngineFactory setWatchdog(final boolean useWatchdog) {
+	this.useWatchdog = useWatchdog;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #useMetrics}. 
+     * The details are documented with {@link #useMetrics}. 
+     *
+     * @param useMetrics
+     *    whether the engines created shall record metrics. 
+     * @return
+     *   this octave engine factory after modification. 
+     */
+    public OctaveEngineFactory setMetrics(final boolean useMetrics) {
+	this.useMetrics = useMetrics;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #useBinary}. 
+     * The details are documented with {@link #useBinary}. 
+     *
+     * @param useBinary
+     *    whether the engines created shall transfer variables 
+     *    in binary format. 
+     * @return
+     *   this octave engine factory after modification. 
+     */
+    public OctaveEngineFactory setBinary(final boolean useBinary) {
+	this.useBinary = useBinary;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #sideChannelThreshold}. 
+     * The details are documented with {@link #sideChannelThreshold}. 
+     *
+     * @param sideChannelThreshold
+     *    the minimal number of bytes of the data of a numeric matrix 
+     *    transferred via a memory-mapped file, 
+     *    or <code>0</code> to switch off the side channel. 
+     * @return
+     *   this octave engine factory after modification. 
+     * @throws IllegalArgumentException
+     *    if <code>sideChannelThreshold</code> is negative. 
+     */
+    public OctaveEngineFactory setSideChannelThreshold(final int sideChannelThreshold) {
+	if (sideChannelThreshold < 0) {
+	    throw new IllegalArgumentException
+		("Expected non-negative threshold but found " + 
+		 sideChannelThreshold + ". ");
+	}
+	this.sideChannelThreshold = sideChannelThreshold;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #sideChannelDir}. 
+     * The details are documented with {@link #sideChannelDir}. 
+     *
+     * @param sideChannelDir
+     *    the directory of the memory-mapped files of the side channel 
+     *    or <code>null</code> for the default. 
+     * @return
+     *   this octave engine factory after modification. 
+     */
+    public OctaveEngineFactory setSideChannelDir(final File sideChannelDir) {
+	this.sideChannelDir = sideChannelDir;
+	return this;
+    }
+
+    /**
+     * Setter method for {@link #numStandby}. 
+     * The details are documented with {@link #numStandby}. 
+     * If positive, standby engines with the parameters currently set 
+     * are started in the background immediately. 
+     * Excess standby engines are closed in the background, 
+     * so <code>0</code> switches prefork mode off 
+     * and closes all standby engines. 
+     *
+     * @param numStandby
+     *    the number of standby engines to keep in reserve 
+     *    which must not be negative. 
+     * @return
+     *   this octave engine factory after modification. 
+     * @throws IllegalArgumentException
+     *    if <code>numStandby</code> is negative. 
+     */
+    public synchronized OctaveEngineFactory setPrefork(final int numStandby) {
+	if (numStandby < 0) {
+	    throw new IllegalArgumentException
+		("Expected non-negative number of standby engines but found " 
+		 + numStandby + ". ");
+	}
+	this.numStandby = numStandby;
+	Standby cand;
+	while (this.standby.size() > numStandby
+	       && (cand = this.standby.poll()) != null) {
+	    discard(cand.engine);
+	}
+	if (numStandby > 0) {
+	    refill(new Settings(this));
+	}
+	return this;
+    }
 }
@@ -0,0 +1,723 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.simuline.octave.exception.OctaveException;
+import eu.simuline.octave.exception.OctaveInterruptedException;
+import eu.simuline.octave.util.NamedThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A pool of pre-warmed {@link OctaveEngine}s.
+ * Starting an octave process, loading packages and defining functions
+ * takes seconds, whereas a round trip to a running octave takes far less.
+ * So applications serving many short requests
+ * shall not create an engine per request but borrow one from this pool.
+ * <p>
+ * All engines are created by a common {@link OctaveEngineFactory}.
+ * After creation, each engine evaluates the warm-up scripts
+ * given in the constructor, e.g. to load packages, to add paths
+ * or to define functions and constants.
+ * The variables defined by warm-up scripts are recorded
+ * and are kept whenever the workspace is reset.
+ * <p>
+ * An engine is obtained by {@link #borrow()} or {@link #borrow(long, TimeUnit)}
+ * and must be given back by {@link #release(OctaveEngine)},
+ * or, more conveniently, by {@link #lease()}
+ * in a try-with-resources statement.
+ * On release, the workspace is reset clearing all variables
+ * except those defined by the warm-up scripts.
+ * This is a round trip to octave and so it also checks liveness.
+ * Engines which died or failed in reset are destroyed
+ * and replaced by fresh ones asynchronously.
+ * If creating a replacement fails, the engine is lost
+ * and borrowers waiting for an engine retry creation:
+ * {@link #borrow()} creates the engine itself
+ * and gets the exception if it fails again,
+ * whereas {@link #borrow(long, TimeUnit)} retries asynchronously
+ * and so does not exceed its timeout.
+ * Note that variables defined by warm-up scripts are kept
+ * but not restored, if modified by a borrower.
+ * Also the writers set by a borrower are not reset.
+ * <p>
+ * The pool collects statistics on utilization and waiting time
+ * returned by {@link #getStatistics()}.
+ * <p>
+ * This class is thread-safe,
+ * whereas a borrowed engine shall be used by a single thread at a time.
+ */
+public final class OctaveEnginePool implements AutoCloseable {
+
+    private static final Log LOG = LogFactory.getLog(OctaveEnginePool.class);
+
+    /**
+     * The script to clear all variables,
+     * used in reset if no variable is defined by the warm-up scripts.
+     */
+    private static final String CLEAR_ALL_VARS = "clear -variables";
+
+    /**
+     * The script prefix to clear all variables except the ones listed.
+     */
+    private static final String CLEAR_VARS_EXCEPT = "clear -exclusive";
+
+    /**
+     * The maximal time in nanoseconds a borrower waits for an idle engine
+     * before checking for engines lost because replacement failed.
+     */
+    private static final long LOST_CHECK_NANOS =
+	TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The factory to create all engines of this pool.
+     */
+    private final OctaveEngineFactory factory;
+
+    /**
+     * The number of engines in this pool,
+     * both idle and borrowed ones and those being replaced.
+     */
+    private final int size;
+
+    /**
+     * The scripts to be evaluated in a freshly created engine.
+     */
+    private final List<String> warmUpScripts;
+
+    /**
+     * The engines ready to be borrowed.
+     */
+    private final BlockingQueue<OctaveEngine> idle;
+
+    /**
+     * Maps each engine of this pool, idle or borrowed,
+     * to the script resetting its workspace.
+     */
+    private final Map<OctaveEngine, String> engine2reset;
+
+    /**
+     * The engines currently borrowed and not yet given back.
+     */
+    private final Set<OctaveEngine> borrowed;
+
+    /**
+     * The number of engines destroyed
+     * for which creating a replacement failed.
+     * These are recreated by borrowers finding no idle engine.
+     */
+    private final AtomicInteger numLost;
+
+    /**
+     * Creates replacements for engines which turned out to be dead.
+     */
+    private final ExecutorService replacer;
+
+    private volatile boolean closed;
+
+    // statistics
+
+    /**
+     * The number of engines currently borrowed.
+     */
+    private final AtomicInteger numBorrowed = new AtomicInteger();
+
+    /**
+     * The number of calls to {@link #borrow(long, TimeUnit)}
+     * which returned an engine.
+     */
+    private final AtomicLong numBorrows = new AtomicLong();
+
+    /**
+     * The number of calls to {@link #borrow(long, TimeUnit)}
+     * which timed out.
+     */
+    private final AtomicLong numTimeouts = new AtomicLong();
+
+    /**
+     * The sum of the waiting times in nanoseconds.
+     */
+    private final AtomicLong waitNanosTotal = new AtomicLong();
+
+    /**
+     * The maximal waiting time in nanoseconds.
+     */
+    private final AtomicLong waitNanosMax = new AtomicLong();
+
+    /**
+     * The number of engines replaced because dead or failed.
+     */
+    private final AtomicLong numReplaced = new AtomicLong();
+
+    /**
+     * Creates a pool of <code>size</code> engines created by <code>factory</code>
+     * each of which evaluated the given warm-up scripts.
+     * This blocks until all engines are started and warmed up.
+     *
+     * @param factory
+     *    the factory to create the engines.
+     *    Changing its configuration later affects only replacements.
+     * @param size
+     *    the number of engines in this pool which must be positive.
+     * @param warmUpScripts
+     *    the scripts to be evaluated in each freshly created engine
+     *    via {@link OctaveEngine#eval(String)}.
+     * @throws IllegalArgumentException
+     *    if <code>size</code> is not positive.
+     * @throws OctaveException
+     *    if creation or warming up of an engine fails.
+     *    Then all engines created so far are destroyed.
+     */
+    public OctaveEnginePool(final OctaveEngineFactory factory,
+			    final int size,
+			    final String... warmUpScripts) {
+	if (size <= 0) {
+	    throw new IllegalArgumentException
+		("Expected positive size; found " + size + ". ");
+	}
+	this.factory = factory;
+	this.size = size;
+	this.warmUpScripts = Collections.unmodifiableList
+	    (new ArrayList<String>(Arrays.asList(warmUpScripts)));
+	this.idle = new LinkedBlockingQueue<OctaveEngine>();
+	this.engine2reset = new ConcurrentHashMap<OctaveEngine, String>();
+	this.borrowed = ConcurrentHashMap.newKeySet();
+	this.numLost = new AtomicInteger();
+	this.replacer = Executors.newSingleThreadExecutor(new NamedThreadFactory());
+	this.closed = false;
+
+	try {
+	    for (int i = 0; i < size; i++) {
+		this.idle.add(createEngine());
+	    }
+	} catch (final OctaveException e) {
+	    destroy();
+	    throw e;
+	}
+    }
+
+    /**
+     * Creates an engine, evaluates the warm-up scripts
+     * and registers the reset script in {@link #engine2reset}.
+     *
+     * @throws OctaveException
+     *    if creation or warming up fails.
+     *    In the latter case, the engine is destroyed.
+     */
+    private OctaveEngine createEngine() {
+	final OctaveEngine engine = this.factory.getScriptEngine();
+	String resetScript = CLEAR_ALL_VARS;
+	try {
+	    if (!this.warmUpScripts.isEmpty()) {
+		for (String script : this.warmUpScripts) {
+		    engine.eval(script);
+		}
+		final Collection<String> keep = engine.getVarNames();
+		if (!keep.isEmpty()) {
+		    resetScript = CLEAR_VARS_EXCEPT + " " + String.join(" ", keep);
+		}
+	    }
+	} catch (final OctaveException e) {
+	    engine.destroy();
+	    throw e;
+	}
+	this.engine2reset.put(engine, resetScript);
+	return engine;
+    }
+
+    /**
+     * Borrows an engine, waiting as long as necessary.
+     * The engine must be given back via {@link #release(OctaveEngine)}.
+     *
+     * If no engine is idle and the replacement of an engine failed before,
+     * the borrower recreates that engine itself.
+     *
+     * @return
+     *    an idle engine of this pool which is alive.
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting.
+     * @throws OctaveException
+     *    if no engine is idle and recreating a lost one fails.
+     * @throws IllegalStateException
+     *    if this pool is closed.
+     */
+    public OctaveEngine borrow() {
+	return borrow(Long.MAX_VALUE, true);
+    }
+
+    /**
+     * Borrows an engine, waiting at most the given time.
+     * The engine must be given back via {@link #release(OctaveEngine)}.
+     * Engines which turn out to be dead are replaced
+     * and the time to find a living one is part of the waiting time.
+     * If no engine is idle and the replacement of an engine failed before,
+     * recreation of that engine is retried asynchronously
+     * while the borrower keeps waiting within its timeout.
+     *
+     * @param timeout
+     *    the maximal time to wait for an engine in units of <code>unit</code>.
+     * @param unit
+     *    the time unit of <code>timeout</code>.
+     * @return
+     *    an idle engine of this pool which is alive
+     *    or <code>null</code> if the timeout elapsed.
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting.
+     * @throws IllegalStateException
+     *    if this pool is closed.
+     */
+    public OctaveEngine borrow(final long timeout, final TimeUnit unit) {
+	return borrow(unit.toNanos(timeout), false);
+    }
+
+    /**
+     * Borrows an engine, waiting at most the given time.
+     *
+     * @param timeoutNanos
+     *    the maximal time to wait for an engine in nanoseconds.
+     * @param recreateInline
+     *    whether an engine lost is recreated in the current thread
+     *    or asynchronously.
+     * @return
+     *    an idle engine of this pool which is alive
+     *    or <code>null</code> if the timeout elapsed.
+     */
+    private OctaveEngine borrow(final long timeoutNanos,
+				final boolean recreateInline) {
+	checkOpen();
+	final long start = System.nanoTime();
+	long remaining = timeoutNanos;
+	OctaveEngine engine;
+	try {
+	    while (true) {
+		engine = this.idle.poll(Math.min(remaining, LOST_CHECK_NANOS),
+					TimeUnit.NANOSECONDS);
+		if (engine == null) {
+		    if (recreateInline) {
+			engine = recreateLost();
+		    } else {
+			recreateLostAsync();
+		    }
+		}
+		if (engine == null) {
+		    remaining = timeoutNanos - (System.nanoTime() - start);
+		    if (remaining <= 0) {
+			this.numTimeouts.incrementAndGet();
+			return null;
+		    }
+		    continue;
+		}
+		if (engine.isAlive()) {
+		    break;
+		}
+		replace(engine);
+		remaining = timeoutNanos - (System.nanoTime() - start);
+	    }
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new OctaveInterruptedException(e);
+	}
+	final long waited = System.nanoTime() - start;
+	this.borrowed.add(engine);
+	this.numBorrowed.incrementAndGet();
+	this.numBorrows.incrementAndGet();
+	this.waitNanosTotal.addAndGet(waited);
+	this.waitNanosMax.accumulateAndGet(waited, Math::max);
+	return engine;
+    }
+
+    /**
+     * Recreates an engine for which creating a replacement failed, if any.
+     *
+     * @return
+     *    the recreated engine
+     *    or <code>null</code> if no engine is lost.
+     * @throws OctaveException
+     *    if recreation fails.
+     *    Then the engine is still lost and the next borrower tries again.
+     */
+    private OctaveEngine recreateLost() {
+	if (this.numLost.getAndUpdate(num -> num > 0 ? num - 1 : 0) == 0) {
+	    return null;
+	}
+	try {
+	    return createEngine();
+	} catch (final OctaveException e) {
+	    this.numLost.incrementAndGet();
+	    throw e;
+	}
+    }
+
+    /**
+     * Recreates an engine for which creating a replacement failed, if any,
+     * asynchronously like {@link #replace(OctaveEngine)}.
+     * If recreation fails, the engine is still lost
+     * and the next borrower tries again.
+     */
+    private void recreateLostAsync() {
+	if (this.numLost.getAndUpdate(num -> num > 0 ? num - 1 : 0) == 0) {
+	    return;
+	}
+	createAsync();
+    }
+
+    /**
+     * Gives back an engine borrowed from this pool
+     * after resetting its workspace.
+     * If reset fails, e.g. because the engine died,
+     * it is destroyed and replaced asynchronously.
+     * If this pool is closed meanwhile, the engine is closed.
+     *
+     * @param engine
+     *    an engine borrowed from this pool and not yet given back.
+     * @throws IllegalArgumentException
+     *    if <code>engine</code> does not belong to this pool.
+     * @throws IllegalStateException
+     *    if <code>engine</code> is not borrowed,
+     *    e.g. because it is already given back.
+     */
+    public void release(final OctaveEngine engine) {
+	final String resetScript = this.engine2reset.get(engine);
+	if (resetScript == null) {
+	    throw new IllegalArgumentException
+		("Engine does not belong to this pool. ");
+	}
+	if (!this.borrowed.remove(engine)) {
+	    throw new IllegalStateException
+		("Engine is not borrowed or already given back. ");
+	}
+	this.numBorrowed.decrementAndGet();
+	if (this.closed) {
+	    this.engine2reset.remove(engine);
+	    closeQuietly(engine);
+	    return;
+	}
+	if (!engine.isAlive()) {
+	    replace(engine);
+	    return;
+	}
+	try {
+	    // round trip which checks liveness also
+	    engine.unsafeEval(resetScript);
+	} catch (final OctaveException e) {
+	    LOG.warn("Engine failed in reset; replacing it. ", e);
+	    replace(engine);
+	    return;
+	}
+	this.idle.add(engine);
+    }
+
+    /**
+     * Borrows an engine via {@link #borrow()}
+     * wrapped in a lease which gives it back when closed.
+     * Thus this is intended for try-with-resources statements.
+     *
+     * @return
+     *    a lease of an idle engine of this pool which is alive.
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting.
+     * @throws OctaveException
+     *    if no engine is idle and recreating a lost one fails.
+     * @throws IllegalStateException
+     *    if this pool is closed.
+     */
+    public Lease lease() {
+	return new Lease(borrow());
+    }
+
+    /**
+     * Borrows an engine via {@link #borrow(long, TimeUnit)}
+     * wrapped in a lease which gives it back when closed.
+     * Thus this is intended for try-with-resources statements.
+     *
+     * @param timeout
+     *    the maximal time to wait for an engine in units of <code>unit</code>.
+     * @param unit
+     *    the time unit of <code>timeout</code>.
+     * @return
+     *    a lease of an idle engine of this pool which is alive
+     *    or <code>null</code> if the timeout elapsed.
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting.
+     * @throws IllegalStateException
+     *    if this pool is closed.
+     */
+    public Lease lease(final long timeout, final TimeUnit unit) {
+	final OctaveEngine engine = borrow(timeout, unit);
+	return engine == null ? null : new Lease(engine);
+    }
+
+    /**
+     * The lease of an engine borrowed from the enclosing pool.
+     * Closing the lease gives back the engine.
+     */
+    public final class Lease implements AutoCloseable {
+
+	private final OctaveEngine engine;
+
+	private boolean released;
+
+	private Lease(final OctaveEngine engine) {
+	    this.engine = engine;
+	    this.released = false;
+	}
+
+	/**
+	 * Returns the engine leased.
+	 *
+	 * @return
+	 *    the engine leased.
+	 * @throws IllegalStateException
+	 *    if this lease is already closed.
+	 */
+	public OctaveEngine getEngine() {
+	    if (this.released) {
+		throw new IllegalStateException("Lease already closed. ");
+	    }
+	    return this.engine;
+	}
+
+	/**
+	 * Gives back the engine leased via {@link #release(OctaveEngine)},
+	 * if not yet done.
+	 */
+	@Override
+	public void close() {
+	    if (this.released) {
+		return;
+	    }
+	    this.released = true;
+	    release(this.engine);
+	}
+    } // class Lease
+
+    /**
+     * Destroys <code>engine</code>
+     * and creates a replacement asynchronously.
+     */
+    private void replace(final OctaveEngine engine) {
+	this.engine2reset.remove(engine);
+	engine.destroy();
+	if (this.closed) {
+	    return;
+	}
+	createAsync();
+    }
+
+    /**
+     * Creates an engine asynchronously and adds it to the idle ones.
+     * If creation fails, the engine is lost and borrowers shall retry.
+     */
+    private void createAsync() {
+	this.replacer.execute(() -> {
+		try {
+		    final OctaveEngine repl = createEngine();
+		    if (this.closed) {
+			this.engine2reset.remove(repl);
+			closeQuietly(repl);
+			return;
+		    }
+		    this.numReplaced.incrementAndGet();
+		    this.idle.add(repl);
+		} catch (final OctaveException e) {
+		    LOG.error("Could not replace engine; "
+			      + "borrowers shall retry. ", e);
+		    this.numLost.incrementAndGet();
+		}
+	    });
+    }
+
+    private static void closeQuietly(final OctaveEngine engine) {
+	try {
+	    engine.close();
+	} catch (final OctaveException e) {
+	    LOG.debug("Ignored error closing engine; destroying it. ", e);
+	    engine.destroy();
+	}
+    }
+
+    private void checkOpen() {
+	if (this.closed) {
+	    throw new IllegalStateException("Pool is closed. ");
+	}
+    }
+
+    /**
+     * Returns the number of engines of this pool.
+     *
+     * @return
+     *    the number of engines of this pool, idle or borrowed.
+     */
+    public int getSize() {
+	return this.size;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this pool.
+     *
+     * @return
+     *    a snapshot of the statistics of this pool.
+     */
+    public Statistics getStatistics() {
+	return new Statistics(this.size,
+			      this.numBorrowed.get(),
+			      this.numBorrows.get(),
+			      this.numTimeouts.get(),
+			      this.waitNanosTotal.get(),
+			      this.waitNanosMax.get(),
+			      this.numReplaced.get());
+    }
+
+    /**
+     * A snapshot of the statistics of an {@link OctaveEnginePool}.
+     */
+    public static final class Statistics {
+
+	/**
+	 * The number of engines of the pool.
+	 */
+	public final int size;
+
+	/**
+	 * The number of engines borrowed at the time of the snapshot.
+	 */
+	public final int numBorrowed;
+
+	/**
+	 * The number of successful borrows.
+	 */
+	public final long numBorrows;
+
+	/**
+	 * The number of borrows which timed out.
+	 */
+	public final long numTimeouts;
+
+	/**
+	 * The total time in nanoseconds waited in successful borrows.
+	 */
+	public final long waitNanosTotal;
+
+	/**
+	 * The maximal time in nanoseconds waited in a successful borrow.
+	 */
+	public final long waitNanosMax;
+
+	/**
+	 * The number of engines replaced because dead or failed.
+	 */
+	public final long numReplaced;
+
+	Statistics(final int size,
+		   final int numBorrowed,
+		   final long numBorrows,
+		   final long numTimeouts,
+		   final long waitNanosTotal,
+		   final long waitNanosMax,
+		   final long numReplaced) {
+	    this.size           = size;
+	    this.numBorrowed    = numBorrowed;
+	    this.numBorrows     = numBorrows;
+	    this.numTimeouts    = numTimeouts;
+	    this.waitNanosTotal = waitNanosTotal;
+	    this.waitNanosMax   = waitNanosMax;
+	    this.numReplaced    = numReplaced;
+	}
+
+	/**
+	 * Returns the fraction of engines borrowed at the time of the snapshot.
+	 *
+	 * @return
+	 *    the utilization, a number between 0 and 1.
+	 */
+	public double getUtilization() {
+	    return ((double) this.numBorrowed) / this.size;
+	}
+
+	/**
+	 * Returns the average time in nanoseconds waited in successful borrows.
+	 *
+	 * @return
+	 *    the average waiting time or 0 if nothing was borrowed so far.
+	 */
+	public double getWaitNanosAvg() {
+	    return this.numBorrows == 0
+		? 0 : ((double) this.waitNanosTotal) / this.numBorrows;
+	}
+
+	@Override public String toString() {
+	    StringBuilder res = new StringBuilder();
+	    res.append("<pool>\n");
+	    res.append("size=          " + this.size           + "\n");
+	    res.append("numBorrowed=   " + this.numBorrowed    + "\n");
+	    res.append("numBorrows=    " + this.numBorrows     + "\n");
+	    res.append("numTimeouts=   " + this.numTimeouts    + "\n");
+	    res.append("waitNanosAvg=  " + getWaitNanosAvg()   + "\n");
+	    res.append("waitNanosMax=  " + this.waitNanosMax   + "\n");
+	    res.append("numReplaced=   " + this.numReplaced    + "\n");
+	    res.append("</pool>\n");
+	    return res.toString();
+	}
+    } // class Statistics
+
+    /**
+     * Closes this pool:
+     * idle engines are closed in an orderly fashion
+     * and borrowed engines are closed when given back.
+     * Afterwards, borrowing is no longer possible.
+     */
+    @Override
+    public void close() {
+	this.closed = true;
+	this.replacer.shutdown();
+	OctaveEngine engine;
+	while ((engine = this.idle.poll()) != null) {
+	    this.engine2reset.remove(engine);
+	    closeQuietly(engine);
+	}
+    }
+
+    /**
+     * Kills all octave processes of this pool without remorse,
+     * also those of borrowed engines.
+     */
+    public void destroy() {
+	this.closed = true;
+	this.replacer.shutdownNow();
+	this.idle.clear();
+	this.borrowed.clear();
+	for (OctaveEngine engine : this.engine2reset.keySet()) {
+	    engine.destroy();
+	}
+	this.engine2reset.clear();
+    }
+
+}
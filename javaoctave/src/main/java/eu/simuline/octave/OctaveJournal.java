@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import eu.simuline.octave.type.OctaveObject;
+
+/**
+ * The journal of the requests of an {@link OctaveEngine} in watchdog mode
+ * which define its workspace:
+ * variables set by {@link OctaveEngine#put(String, OctaveObject)}
+ * and {@link OctaveEngine#putAll(Map)}
+ * and setup scripts evaluated by {@link OctaveEngine#evalSetup(String)}.
+ * If the octave process dies,
+ * the journal is replayed to a replacement process
+ * to restore the workspace.
+ * <p>
+ * The journal is a sequence of entries,
+ * each of which is either a setup script
+ * or a map of variables set between two setup scripts.
+ * Setting a variable again replaces its former value
+ * unless a setup script is in between,
+ * which might depend on the former value.
+ * So repeated setting of the same variables does not grow the journal.
+ * Also a former value journaled before setup scripts is dropped
+ * if none of these scripts mentions the variable,
+ * so that alternating puts and unrelated setup scripts
+ * grow the journal by the scripts only.
+ * Variables which can no longer be restored,
+ * e.g. because modified by requests not journaled,
+ * are removed by {@link #forget(String)}.
+ * <p>
+ * The values journaled are referenced, not copied.
+ * Variables cleared or modified by other scripts are not tracked.
+ * This class is thread-safe.
+ */
+final class OctaveJournal {
+
+    /**
+     * The entries, each of which is either a {@link String}
+     * representing a setup script
+     * or a {@link Map} from variable names to values.
+     */
+    private final List<Object> entries = new ArrayList<Object>();
+
+    /**
+     * Records that the variables given by <code>vars</code> are set.
+     *
+     * @param vars
+     *    a map from variable names to values.
+     */
+    synchronized void put(final Map<String, OctaveObject> vars) {
+	final Object last = this.entries.isEmpty()
+	    ? null
+	    : this.entries.get(this.entries.size() - 1);
+	if (last instanceof Map) {
+	    @SuppressWarnings("unchecked")
+	    final Map<String, OctaveObject> lastVars =
+		(Map<String, OctaveObject>) last;
+	    lastVars.putAll(vars);
+	} else {
+	    this.entries.add(new LinkedHashMap<String, OctaveObject>(vars));
+	}
+	for (String name : vars.keySet()) {
+	    dropSuperseded(name);
+	}
+    }
+
+    /**
+     * Removes the former values of variable <code>name</code>
+     * from the maps before the last entry
+     * as long as the setup scripts after them do not mention
+     * <code>name</code> as a word.
+     * The last entry is a map holding the current value.
+     */
+    private void dropSuperseded(final String name) {
+	final Pattern word = Pattern.compile("\\b" + Pattern.quote(name) + "\\b");
+	for (int idx = this.entries.size() - 2; idx >= 0; idx--) {
+	    final Object entry = this.entries.get(idx);
+	    if (entry instanceof String) {
+		if (word.matcher((String) entry).find()) {
+		    // the script may depend on the former value 
+		    return;
+		}
+		continue;
+	    }
+	    final Map<?, ?> vars = (Map<?, ?>) entry;
+	    if (vars.remove(name) != null && vars.isEmpty()) {
+		this.entries.remove(idx);
+	    }
+	}
+    }
+
+    /**
+     * Removes variable <code>name</code> from this journal,
+     * so that it is no longer restored on replay.
+     * This is appropriate if the variable is cleared
+     * or modified by requests which are not journaled,
+     * because replaying a former value would restore an outdated state.
+     * Setup scripts are kept.
+     *
+     * @param name
+     *    the name of the variable to be forgotten.
+     */
+    synchronized void forget(final String name) {
+	final Iterator<Object> iter = this.entries.iterator();
+	while (iter.hasNext()) {
+	    final Object entry = iter.next();
+	    if (entry instanceof Map) {
+		final Map<?, ?> vars = (Map<?, ?>) entry;
+		if (vars.remove(name) != null && vars.isEmpty()) {
+		    iter.remove();
+		}
+	    }
+	}
+    }
+
+    /**
+     * Records that the setup script <code>script</code> is evaluated.
+     *
+     * @param script
+     *    the setup script evaluated.
+     */
+    synchronized void evalSetup(final String script) {
+	this.entries.add(script);
+    }
+
+    /**
+     * Replays this journal in the order of recording.
+     *
+     * @param put
+     *    sets the variables of a map in octave.
+     * @param eval
+     *    evaluates a setup script in octave.
+     */
+    void replay(final Consumer<Map<String, OctaveObject>> put,
+		final Consumer<String> eval) {
+	// copy: no io while holding the monitor which pins virtual threads
+	final List<Object> copy;
+	synchronized (this) {
+	    copy = new ArrayList<Object>(this.entries.size());
+	    for (Object entry : this.entries) {
+		copy.add(entry instanceof Map
+			 ? new LinkedHashMap<Object, Object>((Map<?, ?>) entry)
+			 : entry);
+	    }
+	}
+	for (Object entry : copy) {
+	    if (entry instanceof String) {
+		eval.accept((String) entry);
+	    } else {
+		@SuppressWarnings("unchecked")
+		final Map<String, OctaveObject> vars =
+		    (Map<String, OctaveObject>) entry;
+		put.accept(vars);
+	    }
+	}
+    }
+
+    /**
+     * Returns the number of entries of this journal.
+     *
+     * @return
+     *    the number of entries of this journal.
+     */
+    synchronized int size() {
+	return this.entries.size();
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exception;
+
+import java.time.Duration;
+
+import eu.simuline.octave.OctaveEngine;
+
+/**
+ * Exception thrown when evaluation of a script 
+ * in {@link OctaveEngine#eval(String, Duration)} 
+ * does not complete within the given time. 
+ * Then the script is interrupted and the engine stays usable, 
+ * unless {@link #isDestroyed()} signifies 
+ * that octave did not respond to the interrupt 
+ * and so the octave process had to be destroyed. 
+ */
+public class OctaveTimeoutException extends OctaveRecoverableException {
+
+    /**
+     * Constructor. 
+     *
+     * @see Throwable
+     */
+    public OctaveTimeoutException() {
+        // Do nothing
+    }
+
+    /**
+     * Constructor. 
+     *
+     * @param message
+     * @see Throwable
+     */
+    public OctaveTimeoutException(final String message) {
+        super(message);
+    }
+
+    /**
+     * Constructor. 
+     *
+     * @param cause
+     * @see Throwable
+     */
+    public OctaveTimeoutException(final Throwable cause) {
+        super(cause);
+    }
+
+    /**
+     * Constructor. 
+     *
+     * @param message
+     * @param cause
+     * @see Throwable
+     */
+    public OctaveTimeoutException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+}
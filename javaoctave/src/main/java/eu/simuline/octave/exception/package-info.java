@@ -37,6 +37,7 @@ package eu.simuline.octave.exception;
  *   OctaveRecoverableException
  *     OctaveClassCastException
  *     OctaveParseException
+ *     OctaveTimeoutException
  *   OctaveNonrecoverableException
  *     OctaveIOException
  *     OctaveInterruptedException
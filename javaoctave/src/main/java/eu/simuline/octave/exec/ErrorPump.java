@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The pump shared by all {@link OctaveErrorPipe}s of the runtime
+ * which drains their ring buffers to their error writers.
+ * A pipe with output pending schedules itself at most once
+ * via {@link #schedule(OctaveErrorPipe)};
+ * the single daemon thread of the pump
+ * then writes all output pending in one batch and flushes once.
+ * So the number of engines does not multiply the threads writing
+ * nor the flushes.
+ */
+final class ErrorPump implements Runnable {
+
+    private static final Log LOG = LogFactory.getLog(ErrorPump.class);
+
+    /**
+     * Holds the shared pump, started on first use.
+     */
+    private static final class Holder {
+	static final ErrorPump PUMP = new ErrorPump();
+    } // class Holder
+
+    /**
+     * The pipes with output pending, each at most once.
+     */
+    private final BlockingQueue<OctaveErrorPipe> pending =
+	new LinkedBlockingQueue<OctaveErrorPipe>();
+
+    /**
+     * The buffer used for draining, accessed by the pump thread only.
+     */
+    private final char[] buf = new char[OctaveErrorPipe.BUF_SIZE];
+
+    private ErrorPump() {
+	final Thread thread = new Thread(this, "javaoctave-ErrorPump");
+	thread.setDaemon(true);
+	thread.start();
+    }
+
+    /**
+     * Schedules <code>pipe</code> to be drained by the shared pump.
+     * The caller ensures that a pipe is scheduled at most once at a time.
+     *
+     * @param pipe
+     *    a pipe with output pending.
+     */
+    static void schedule(final OctaveErrorPipe pipe) {
+	Holder.PUMP.pending.add(pipe);
+    }
+
+    @Override
+    public void run() {
+	while (true) {
+	    final OctaveErrorPipe pipe;
+	    try {
+		pipe = this.pending.take();
+	    } catch (final InterruptedException e) {
+		// daemon thread never interrupted: keep pumping
+		continue;
+	    }
+	    try {
+		pipe.drain(this.buf);
+	    } catch (final RuntimeException e) {
+		// one failing writer shall not stop the others
+		LOG.error("Error when draining octave error stream", e);
+	    }
+	}
+    }
+
+}
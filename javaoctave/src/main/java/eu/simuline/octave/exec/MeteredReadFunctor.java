@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import eu.simuline.octave.metrics.OctaveMetrics;
+
+/**
+ * A read functor delegating to a wrapped one
+ * counting the characters read
+ * and recording the first read and the end of reading
+ * in a {@link OctaveMetrics.Sample}.
+ * Used by {@link OctaveExec} if metrics are enabled only.
+ */
+final class MeteredReadFunctor implements ReadFunctor {
+
+    private final ReadFunctor wrapped;
+
+    private final OctaveMetrics.Sample sample;
+
+    MeteredReadFunctor(final ReadFunctor wrapped,
+		       final OctaveMetrics.Sample sample) {
+	this.wrapped = wrapped;
+	this.sample = sample;
+    }
+
+    @Override
+    public void doReads(final Reader reader) throws IOException {
+	final long[] count = new long[1];
+	this.wrapped.doReads(new FilterReader(reader) {
+		@Override
+		public int read() throws IOException {
+		    final int chr = super.read();
+		    MeteredReadFunctor.this.sample.firstRead();
+		    if (chr != -1) {
+			count[0]++;
+		    }
+		    return chr;
+		}
+
+		@Override
+		public int read(final char[] cbuf, final int off, final int len)
+		    throws IOException {
+		    final int num = super.read(cbuf, off, len);
+		    MeteredReadFunctor.this.sample.firstRead();
+		    if (num > 0) {
+			count[0] += num;
+		    }
+		    return num;
+		}
+	    });
+	this.sample.read(count[0]);
+    }
+
+}
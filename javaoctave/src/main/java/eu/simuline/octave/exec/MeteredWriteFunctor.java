@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import eu.simuline.octave.metrics.OctaveMetrics;
+
+/**
+ * A write functor delegating to a wrapped one
+ * counting the characters written
+ * and recording the end of writing in a {@link OctaveMetrics.Sample}.
+ * Used by {@link OctaveExec} if metrics are enabled only.
+ */
+final class MeteredWriteFunctor implements WriteFunctor {
+
+    private final WriteFunctor wrapped;
+
+    private final OctaveMetrics.Sample sample;
+
+    MeteredWriteFunctor(final WriteFunctor wrapped,
+			final OctaveMetrics.Sample sample) {
+	this.wrapped = wrapped;
+	this.sample = sample;
+    }
+
+    @Override
+    public void doWrites(final Writer writer) throws IOException {
+	final long[] count = new long[1];
+	this.wrapped.doWrites(new FilterWriter(writer) {
+		@Override
+		public void write(final int chr) throws IOException {
+		    count[0]++;
+		    super.write(chr);
+		}
+
+		@Override
+		public void write(final char[] cbuf, final int off, final int len)
+		    throws IOException {
+		    count[0] += len;
+		    super.write(cbuf, off, len);
+		}
+
+		@Override
+		public void write(final String str, final int off, final int len)
+		    throws IOException {
+		    count[0] += len;
+		    super.write(str, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+		    // the process writer is not closed by functors
+		    flush();
+		}
+	    });
+	this.sample.written(count[0]);
+    }
+
+}
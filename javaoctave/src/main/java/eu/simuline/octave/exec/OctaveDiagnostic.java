@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+/**
+ * A message octave wrote on its error stream,
+ * tagged with the request in flight when it arrived.
+ * A message consists of a line starting with <code>warning: </code>,
+ * <code>error: </code> or any other text
+ * and the indented lines following it,
+ * as octave writes e.g. the call stack of an error.
+ * Instances are created by {@link OctaveErrorPipe}
+ * and returned by
+ * {@link OctaveExec#evalRWDiagnosed(WriteFunctor, ReadFunctor)}.
+ */
+public final class OctaveDiagnostic {
+
+    /**
+     * The severity of a diagnostic
+     * as indicated by the prefix of its first line.
+     */
+    public enum Severity {
+	/**
+	 * A message starting with <code>warning: </code>.
+	 */
+	WARNING,
+	/**
+	 * A message starting with <code>error: </code>.
+	 */
+	ERROR,
+	/**
+	 * Any other message, e.g. written by <code>fprintf(stderr, ...)</code>.
+	 */
+	OTHER;
+
+	/**
+	 * Returns the severity indicated by the first line of a message.
+	 *
+	 * @param line
+	 *    the first line of a message.
+	 * @return
+	 *    the severity indicated by the prefix of <code>line</code>.
+	 */
+	static Severity of(final String line) {
+	    if (line.startsWith("warning: ")) {
+		return WARNING;
+	    }
+	    if (line.startsWith("error: ")) {
+		return ERROR;
+	    }
+	    return OTHER;
+	}
+    } // enum Severity
+
+    /**
+     * The number of the request in flight when this message arrived.
+     */
+    private final long requestId;
+
+    /**
+     * The severity of this message.
+     */
+    private final Severity severity;
+
+    /**
+     * The text of this message, lines separated by newline.
+     */
+    private final String message;
+
+    OctaveDiagnostic(final long requestId, final String message) {
+	this.requestId = requestId;
+	this.severity = Severity.of(message);
+	this.message = message;
+    }
+
+    /**
+     * Returns the number of the request in flight when this message arrived.
+     * Requests are numbered per {@link OctaveExec} starting with one.
+     *
+     * @return
+     *    the number of the request this message is tagged with.
+     */
+    public long getRequestId() {
+	return this.requestId;
+    }
+
+    /**
+     * Returns the severity of this message.
+     *
+     * @return
+     *    the severity of this message.
+     */
+    public Severity getSeverity() {
+	return this.severity;
+    }
+
+    /**
+     * Returns the text of this message including the prefix
+     * indicating the severity.
+     *
+     * @return
+     *    the text of this message, lines separated by newline.
+     */
+    public String getMessage() {
+	return this.message;
+    }
+
+    @Override
+    public String toString() {
+	return "#" + this.requestId + " " + this.message;
+    }
+
+}
@@ -0,0 +1,725 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import eu.simuline.octave.exception.OctaveInterruptedException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Reads the error stream of an octave process on a thread of its own
+ * or is fed by the {@link OctaveMultiplexer},
+ * forwards it to an error writer
+ * and splits it into {@link OctaveDiagnostic}s.
+ * <p>
+ * This replaces the former <code>ReaderWriterPipeThread</code>
+ * which copied through a buffer shared by all instances
+ * and flushed the writer after each copy.
+ * Each pipe has its own read buffer
+ * and a bounded ring buffer of {@link #RING_CAPACITY} characters
+ * which is drained by the {@link ErrorPump} shared by all pipes,
+ * flushing once per batch.
+ * So octave never blocks on a slow error writer:
+ * if the ring buffer is full, the oldest characters are dropped
+ * and this is logged.
+ * <p>
+ * Each message is tagged with the request in flight
+ * set by {@link #setRequest(long)}.
+ * As the error stream is read on a thread of its own,
+ * a message may be tagged with the request following its own.
+ * So for requests registered via {@link #collect(long)},
+ * the script is enclosed in markers written by {@link #printMarker(long)}
+ * and exactly the messages between the markers are tagged and collected,
+ * so that {@link #diagnostics(long, long)} returns all of them.
+ * The markers are not forwarded to the error writer.
+ */
+final class OctaveErrorPipe implements Runnable {
+
+    private static final Log LOG = LogFactory.getLog(OctaveErrorPipe.class);
+
+    /**
+     * The size of the buffer for reading.
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    static final int BUF_SIZE = 4 * 1024;
+
+    /**
+     * The capacity of the ring buffer in characters.
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    static final int RING_CAPACITY = 16 * 1024;
+
+    /**
+     * The maximal time in milliseconds {@link #close()} waits
+     * for the end of the error stream.
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * The character starting a marker.
+     * This is not forwarded until the line is complete,
+     * so the markers can be removed.
+     */
+    private static final String MARKER_START = "\u0001";
+
+    /**
+     * The marker followed by the number of a request
+     * printed on the error stream before and after the script of that request.
+     */
+    static final String MARKER = MARKER_START + "javaoctave-diagnostics ";
+
+    /**
+     * The diagnostics of a request collected so far
+     * and whether the markers of the request arrived.
+     */
+    private static final class Collector {
+	private final List<OctaveDiagnostic> diagnostics =
+	    Collections.synchronizedList(new ArrayList<OctaveDiagnostic>());
+	/**
+	 * Whether the first marker arrived, accessed by the reading thread only.
+	 */
+	private boolean started;
+	/**
+	 * Counted down when the second marker arrived.
+	 */
+	private final CountDownLatch done = new CountDownLatch(1);
+    } // class Collector
+
+    /**
+     * The error stream of the octave process 
+     * or <code>null</code> if fed by the {@link OctaveMultiplexer}.
+     */
+    private final Reader reader;
+
+    /**
+     * The decoder for the bytes fed by the {@link OctaveMultiplexer} 
+     * or <code>null</code> if this pipe reads {@link #reader}.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * The bytes fed but not yet decoded in write mode 
+     * or <code>null</code> if this pipe reads {@link #reader}.
+     */
+    private final ByteBuffer undecoded;
+
+    /**
+     * The buffer for reading or decoding, 
+     * accessed by the reading thread only, 
+     * i.e. the thread of this pipe or the {@link OctaveMultiplexer}.
+     */
+    private final char[] buf = new char[BUF_SIZE];
+
+    /**
+     * Counted down at the end of the error stream. 
+     */
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * The ring buffer of characters to be written to {@link #writer}.
+     * This is also the monitor guarding itself,
+     * {@link #head}, {@link #size} and {@link #numDropped}.
+     * The monitor is never held while blocking.
+     */
+    private final char[] ring = new char[RING_CAPACITY];
+
+    /**
+     * The index of the first character in {@link #ring}.
+     */
+    private int head;
+
+    /**
+     * The number of characters in {@link #ring}.
+     */
+    private int size;
+
+    /**
+     * The number of characters dropped since last drained.
+     */
+    private long numDropped;
+
+    /**
+     * Whether this pipe is scheduled in the {@link ErrorPump}.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Serializes draining by the pump and by {@link #close()}.
+     * This is a lock rather than <code>synchronized</code>,
+     * because writing blocks
+     * and a virtual thread blocked inside <code>synchronized</code>
+     * pins its carrier thread.
+     */
+    private final Lock drainLock = new ReentrantLock();
+
+    /**
+     * The writer the error stream is forwarded to
+     * or <code>null</code> if it is discarded.
+     */
+    private volatile Writer writer;
+
+    /**
+     * The number of the request in flight.
+     */
+    private volatile long request;
+
+    /**
+     * The number of the request between whose markers the stream is
+     * or <code>0</code> if none, accessed by the reading thread only.
+     * This takes precedence over {@link #request}.
+     */
+    private long markedRequest;
+
+    /**
+     * The line currently read, accessed by the reading thread only.
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * The number of characters of {@link #line} already forwarded.
+     */
+    private int numForwarded;
+
+    /**
+     * The message currently read or <code>null</code> if none,
+     * accessed by the reading thread only.
+     */
+    private StringBuilder message;
+
+    /**
+     * The number of the request {@link #message} is tagged with.
+     */
+    private long messageRequest;
+
+    /**
+     * The collectors of the requests registered by {@link #collect(long)}.
+     */
+    private final Map<Long, Collector> collectors =
+	new ConcurrentHashMap<Long, Collector>();
+
+    private OctaveErrorPipe(final Reader reader, 
+			    final Charset charset, 
+			    final Writer writer) {
+	this.reader = reader;
+	this.decoder = charset == null
+	    ? null
+	    : charset.newDecoder()
+	    .onMalformedInput(CodingErrorAction.REPLACE)
+	    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+	this.undecoded = charset == null ? null : ByteBuffer.allocate(BUF_SIZE);
+	this.writer = writer;
+    }
+
+    /**
+     * Creates a pipe reading <code>reader</code> until end of stream
+     * and forwarding to <code>writer</code>
+     * on a thread created by <code>threadFactory</code>.
+     * Remember to {@link #close()} this before closing reader or writer.
+     *
+     * @param reader
+     *    the error stream of an octave process.
+     * @param writer
+     *    the writer to forward to or <code>null</code> to discard.
+     * @param threadFactory
+     *    the factory to create the thread reading.
+     * @return
+     *    the new pipe running on the new thread.
+     */
+    static OctaveErrorPipe start(final Reader reader,
+				 final Writer writer,
+				 final ThreadFactory threadFactory) {
+	final OctaveErrorPipe pipe = new OctaveErrorPipe(reader, null, writer);
+	threadFactory.newThread(pipe).start();
+	return pipe;
+    }
+
+    /**
+     * Creates a pipe without a thread of its own 
+     * which is fed by the {@link OctaveMultiplexer} 
+     * via {@link #feed(byte[], int, int)} and {@link #endOfStream()}. 
+     *
+     * @param charset
+     *    the charset to decode the error stream. 
+     * @param writer
+     *    the writer to forward to or <code>null</code> to discard.
+     * @return
+     *    the new pipe.
+     */
+    static OctaveErrorPipe fed(final Charset charset, final Writer writer) {
+	return new OctaveErrorPipe(null, charset, writer);
+    }
+
+    /**
+     * Returns the octave command printing the marker of request
+     * <code>requestId</code> on the error stream
+     * to be written before and after its script.
+     *
+     * @param requestId
+     *    the number of a request.
+     * @return
+     *    the command printing the marker on a line of its own.
+     */
+    static String printMarker(final long requestId) {
+	return "\nfprintf(stderr, \"%c%s\\n\", 1, \""
+	    + MARKER.substring(1) + requestId + "\");\n";
+    }
+
+    @Override
+    public void run() {
+	try {
+	    int len;
+	    while ((len = this.reader.read(this.buf)) != -1) {
+		consume(len);
+	    }
+	} catch (final IOException e) {
+	    LOG.error("Error when reading from octave error stream", e);
+	} finally {
+	    finish();
+	}
+    }
+
+    /**
+     * Passes bytes read from the error stream by the {@link OctaveMultiplexer} 
+     * to this pipe, which decodes and processes them. 
+     * A character may be split across invocations. 
+     *
+     * @param bytes
+     *    the buffer containing the bytes read. 
+     * @param off
+     *    the offset of the bytes read in <code>bytes</code>. 
+     * @param len
+     *    the number of bytes read. 
+     */
+    void feed(final byte[] bytes, final int off, final int len) {
+	int pos = off;
+	while (pos < off + len) {
+	    final int num = Math.min(this.undecoded.remaining(), off + len - pos);
+	    this.undecoded.put(bytes, pos, num);
+	    pos += num;
+	    decode(false);
+	}
+    }
+
+    /**
+     * Signals the end of the error stream fed by {@link #feed(byte[], int, int)}. 
+     */
+    void endOfStream() {
+	decode(true);
+	final CharBuffer chars = CharBuffer.wrap(this.buf);
+	this.decoder.flush(chars);
+	consume(chars.position());
+	finish();
+    }
+
+    /**
+     * Decodes the bytes in {@link #undecoded} into {@link #buf} 
+     * and processes them, keeping an incomplete character. 
+     */
+    private void decode(final boolean endOfInput) {
+	this.undecoded.flip();
+	CoderResult res;
+	do {
+	    final CharBuffer chars = CharBuffer.wrap(this.buf);
+	    res = this.decoder.decode(this.undecoded, chars, endOfInput);
+	    consume(chars.position());
+	} while (res.isOverflow());
+	this.undecoded.compact();
+    }
+
+    /**
+     * Processes the first <code>len</code> characters of {@link #buf}: 
+     * splits them into lines and forwards them. 
+     */
+    private void consume(final int len) {
+	for (int idx = 0; idx < len; idx++) {
+	    final char chr = this.buf[idx];
+	    if (chr == '\n') {
+		endLine(true);
+		continue;
+	    }
+	    this.line.append(chr);
+	    if (this.line.length() == RING_CAPACITY) {
+		endLine(false);
+	    }
+	}
+	// forward what cannot be part of a marker
+	int end = this.line.indexOf(MARKER_START, this.numForwarded);
+	if (end == -1) {
+	    end = this.line.length();
+	}
+	forward(this.numForwarded, end, false);
+	this.numForwarded = end;
+	schedule();
+    }
+
+    /**
+     * Processes the end of the error stream: 
+     * the last line even if not terminated, 
+     * releases all requests waiting for diagnostics 
+     * and signals {@link #close()} to go on. 
+     */
+    private void finish() {
+	if (this.line.length() > 0) {
+	    endLine(false);
+	    schedule();
+	}
+	emit();
+	for (Collector collector : this.collectors.values()) {
+	    collector.done.countDown();
+	}
+	this.finished.countDown();
+	LOG.debug("OctaveErrorPipe finished");
+    }
+
+    /**
+     * Processes {@link #line} as complete:
+     * forwards the part not yet forwarded except a marker
+     * and passes it to {@link #handleLine(String)}.
+     *
+     * @param newline
+     *    whether the line was terminated by newline.
+     */
+    private void endLine(final boolean newline) {
+	final int markerIdx = this.line.indexOf(MARKER);
+	if (markerIdx == -1) {
+	    forward(this.numForwarded, this.line.length(), newline);
+	    handleLine(this.line.toString());
+	} else {
+	    if (markerIdx > this.numForwarded) {
+		forward(this.numForwarded, markerIdx, false);
+	    }
+	    if (markerIdx > 0) {
+		handleLine(this.line.substring(0, markerIdx));
+	    }
+	    emit();
+	    handleMarker(this.line.substring(markerIdx + MARKER.length()).trim());
+	}
+	this.line.setLength(0);
+	this.numForwarded = 0;
+    }
+
+    /**
+     * Processes a marker: 
+     * the first one of a request starts tagging with its number, 
+     * the second one stops tagging and completes its collector. 
+     *
+     * @param requestId
+     *    the number of the request following the marker as a string.
+     */
+    private void handleMarker(final String requestId) {
+	final long req;
+	try {
+	    req = Long.parseLong(requestId);
+	} catch (final NumberFormatException e) {
+	    LOG.warn("Corrupt marker on octave error stream: " + requestId);
+	    return;
+	}
+	final Collector collector = this.collectors.get(req);
+	if (collector == null) {
+	    // no longer waited for 
+	    this.markedRequest = 0;
+	    return;
+	}
+	if (collector.started) {
+	    this.markedRequest = 0;
+	    collector.done.countDown();
+	} else {
+	    collector.started = true;
+	    this.markedRequest = req;
+	}
+    }
+
+    /**
+     * Adds a line to the current message
+     * if it is indented and tagged with the same request
+     * and starts a new message otherwise.
+     */
+    private void handleLine(final String rawLine) {
+	final String text = rawLine.endsWith("\r")
+	    ? rawLine.substring(0, rawLine.length() - 1)
+	    : rawLine;
+	final long req = this.markedRequest == 0
+	    ? this.request
+	    : this.markedRequest;
+	final boolean continues = !text.isEmpty()
+	    && (text.charAt(0) == ' ' || text.charAt(0) == '\t');
+	if (this.message != null && (!continues || req != this.messageRequest)) {
+	    emit();
+	}
+	if (text.isEmpty()) {
+	    return;
+	}
+	if (this.message == null) {
+	    this.message = new StringBuilder(text);
+	    this.messageRequest = req;
+	} else {
+	    this.message.append('\n').append(text);
+	}
+    }
+
+    /**
+     * Passes the current message, if any,
+     * to the collector of its request, if any.
+     */
+    private void emit() {
+	if (this.message == null) {
+	    return;
+	}
+	final Collector collector = this.collectors.get(this.messageRequest);
+	if (collector != null && collector.started) {
+	    collector.diagnostics.add(new OctaveDiagnostic(this.messageRequest,
+							   this.message.toString()));
+	}
+	this.message = null;
+    }
+
+    /**
+     * Appends the characters of {@link #line} from <code>from</code>
+     * to <code>to</code> and possibly a newline to the ring buffer,
+     * unless the error stream is discarded.
+     * If the ring buffer is full, the oldest characters are dropped.
+     */
+    private void forward(final int from, final int to, final boolean newline) {
+	if (this.writer == null) {
+	    return;
+	}
+	synchronized (this.ring) {
+	    for (int idx = from; idx < to; idx++) {
+		put(this.line.charAt(idx));
+	    }
+	    if (newline) {
+		put('\n');
+	    }
+	}
+    }
+
+    /**
+     * Appends <code>chr</code> to the ring buffer
+     * dropping the oldest character if it is full.
+     * The monitor of {@link #ring} must be held.
+     */
+    private void put(final char chr) {
+	if (this.size == RING_CAPACITY) {
+	    this.head = (this.head + 1) % RING_CAPACITY;
+	    this.size--;
+	    this.numDropped++;
+	}
+	this.ring[(this.head + this.size) % RING_CAPACITY] = chr;
+	this.size++;
+    }
+
+    /**
+     * Moves characters from the ring buffer to <code>dst</code>.
+     *
+     * @return
+     *    the number of characters moved.
+     */
+    private int poll(final char[] dst) {
+	synchronized (this.ring) {
+	    final int len = Math.min(this.size, dst.length);
+	    final int len1 = Math.min(len, RING_CAPACITY - this.head);
+	    System.arraycopy(this.ring, this.head, dst, 0, len1);
+	    System.arraycopy(this.ring, 0, dst, len1, len - len1);
+	    this.head = (this.head + len) % RING_CAPACITY;
+	    this.size -= len;
+	    return len;
+	}
+    }
+
+    /**
+     * Schedules this pipe in the {@link ErrorPump}
+     * if there is something to drain and it is not scheduled yet.
+     */
+    private void schedule() {
+	synchronized (this.ring) {
+	    if (this.size == 0) {
+		return;
+	    }
+	}
+	if (!this.scheduled.getAndSet(true)) {
+	    ErrorPump.schedule(this);
+	}
+    }
+
+    /**
+     * Writes all characters in the ring buffer to the error writer
+     * and flushes once.
+     *
+     * @param dst
+     *    a buffer to move the characters through.
+     */
+    void drain(final char[] dst) {
+	this.drainLock.lock();
+	try {
+	    // cleared first: output added after is scheduled again
+	    this.scheduled.set(false);
+	    final Writer wrt = this.writer;
+	    boolean written = false;
+	    int len;
+	    while ((len = poll(dst)) > 0) {
+		if (wrt != null) {
+		    wrt.write(dst, 0, len);
+		    written = true;
+		}
+	    }
+	    final long dropped;
+	    synchronized (this.ring) {
+		dropped = this.numDropped;
+		this.numDropped = 0;
+	    }
+	    if (dropped > 0) {
+		LOG.warn("Dropped " + dropped + " characters of octave "
+			 + "error stream since the error writer is too slow. ");
+	    }
+	    if (written) {
+		wrt.flush();
+	    }
+	} catch (final IOException e) {
+	    LOG.error("Error when writing to error writer", e);
+	} finally {
+	    this.drainLock.unlock();
+	}
+    }
+
+    /**
+     * Sets the number of the request in flight.
+     * Messages arriving from now on are tagged with that number.
+     *
+     * @param requestId
+     *    the number of the request in flight.
+     */
+    void setRequest(final long requestId) {
+	this.request = requestId;
+    }
+
+    /**
+     * Registers the request <code>requestId</code>
+     * to collect the messages tagged with its number
+     * until its marker arrives.
+     *
+     * @param requestId
+     *    the number of a request not yet in flight.
+     */
+    void collect(final long requestId) {
+	this.collectors.put(requestId, new Collector());
+    }
+
+    /**
+     * Returns the messages collected for request <code>requestId</code>
+     * and unregisters it.
+     * This waits for its marker at most <code>timeoutMillis</code>:
+     * as the error stream is read on a thread of its own,
+     * messages may arrive after the output of the request.
+     *
+     * @param requestId
+     *    the number of a request registered by {@link #collect(long)}.
+     * @param timeoutMillis
+     *    the maximal time to wait for the marker in milliseconds.
+     * @return
+     *    the messages collected in the order of arrival.
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting.
+     */
+    List<OctaveDiagnostic> diagnostics(final long requestId,
+				       final long timeoutMillis) {
+	final Collector collector = this.collectors.get(requestId);
+	try {
+	    if (!collector.done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+		LOG.warn("Diagnostics of request " + requestId
+			 + " may be incomplete. ");
+	    }
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new OctaveInterruptedException(e);
+	} finally {
+	    this.collectors.remove(requestId);
+	}
+	synchronized (collector.diagnostics) {
+	    return new ArrayList<OctaveDiagnostic>(collector.diagnostics);
+	}
+    }
+
+    /**
+     * Unregisters the request <code>requestId</code>
+     * without waiting for its messages.
+     *
+     * @param requestId
+     *    the number of a request.
+     */
+    void discard(final long requestId) {
+	this.collectors.remove(requestId);
+    }
+
+    /**
+     * @param writer
+     *    the writer to forward to or <code>null</code> to discard.
+     */
+    void setWriter(final Writer writer) {
+	this.writer = writer;
+    }
+
+    /**
+     * Waits at most {@link #CLOSE_TIMEOUT_MILLIS}
+     * for the end of the error stream,
+     * i.e. for the octave process to close it,
+     * and writes all pending output to the error writer.
+     * The stream may stay open after the octave process terminated,
+     * e.g. if inherited by a process started by octave;
+     * then this logs a warning and gives up waiting,
+     * leaving the thread of this pipe blocked in reading.
+     * The thread is not interrupted,
+     * since this would not unblock reading but lose output.
+     *
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting.
+     */
+    void close() {
+	try {
+	    if (!this.finished.await(CLOSE_TIMEOUT_MILLIS,
+				     TimeUnit.MILLISECONDS)) {
+		LOG.warn("Octave error stream not closed within "
+			 + CLOSE_TIMEOUT_MILLIS + " ms, "
+			 + "maybe inherited by a child process; "
+			 + "giving up waiting. ");
+	    }
+	} catch (final InterruptedException e) {
+	    throw new OctaveInterruptedException(e);
+	}
+	drain(new char[BUF_SIZE]);
+    }
+
+}
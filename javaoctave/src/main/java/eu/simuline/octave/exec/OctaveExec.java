@@ -18,27 +18,40 @@
  */
 package eu.simuline.octave.exec;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import eu.simuline.octave.exception.OctaveException;
 import eu.simuline.octave.exception.OctaveIOException;
+import eu.simuline.octave.exception.OctaveInterruptedException;
+import eu.simuline.octave.exception.OctaveTimeoutException;
+import eu.simuline.octave.metrics.OctaveMetrics;
+import eu.simuline.octave.metrics.Operation;
 import eu.simuline.octave.util.NamedThreadFactory;
 import eu.simuline.octave.util.NoCloseWriter;
-import eu.simuline.octave.util.ReaderWriterPipeThread;
 import eu.simuline.octave.util.TeeWriter;
+import eu.simuline.octave.util.VirtualThreads;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -59,11 +72,34 @@ public final class OctaveExec {
 
     private static final Log LOG = LogFactory.getLog(OctaveExec.class);
 
+    /**
+     * The time in milliseconds granted to the octave process 
+     * to respond to an interrupt sent on timeout or on interruption 
+     * by {@link #interruptAndDrain(String, Future, Future, ExecutorService)}. 
+     * If octave does not respond in time, it is destroyed. 
+     */
+    private static final long INTERRUPT_GRACE_MILLIS = 2000;
+
+    /**
+     * A read functor discarding all it reads. 
+     * This is used to drain the output of an interrupted script. 
+     */
+    private static final ReadFunctor DISCARD = new ReadFunctor() {
+	    private final char[] buffer = new char[4096];
+
+	    @Override
+	    public void doReads(final Reader reader) throws IOException {
+		while (reader.read(this.buffer) != -1) { // NOPMD
+		    // Do nothing
+		}
+	    }
+	};
+
     /**
      * The octave process created in the constructor 
      * with given command, arguments, environment and working directory. 
      * This is initialized 
-     * in {@link #OctaveExec(int, Writer, Writer, Charset, String[], String[], File)} 
+     * in {@link #OctaveExec(int, int, boolean, boolean, int, OctaveMetrics, Writer, Writer, Charset, String[], String[], File)} 
      * and used in {@link #close()} and {@link #destroy()} only. 
      */
     private final Process process;
@@ -77,8 +113,15 @@ public final class OctaveExec {
      * The input reader for {@link #process} derived from {@link Process#getInputStream()}. 
      * This is used by {@link #evalRW(WriteFunctor, ReadFunctor)} 
      * and used to close via {@link #close()}. 
+     * Its buffer is reused across all requests. 
+     * In multiplexed mode, this is <code>null</code>. 
+     */
+    private final OctaveProcessReader processReader;
+
+    /**
+     * The charset used for communication with the octave process. 
      */
-    private final BufferedReader processReader;
+    private final Charset charset;
 
     /**
      * Used in method {@link #evalRW(WriteFunctor, ReadFunctor)} 
@@ -89,22 +132,149 @@ public final class OctaveExec {
     private final ExecutorService executor;
 
     /**
-     * The error thread of the error stream of {@link #process} 
-     * writing the error stream to a given writer. 
-     * This is used to close but also to change the error writer 
-     * by {@link #setErrorWriter(Writer)}. 
+     * The factory for all threads of this executor: 
+     * those of {@link #executor}, of {@link #readExecutor} 
+     * and the one of {@link #errorPipe}. 
+     * This creates either virtual threads 
+     * scheduled by the scheduler shared by the whole runtime, 
+     * or platform threads via {@link NamedThreadFactory}. 
+     */
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Whether this executor is in pipelined mode. 
+     * If not, each evaluation is stop-and-wait: 
+     * The script is written and the output is read back completely, 
+     * before the next script can be written. 
+     * In pipelined mode, a script is written on the calling thread, 
+     * while the output of earlier scripts is still being read 
+     * by {@link #readExecutor}. 
+     * This is possible, because octave reads stdin sequentially 
+     * and so the output comes in the order the scripts were written. 
+     */
+    private final boolean isPipelined;
+
+    /**
+     * In pipelined mode, the single threaded executor 
+     * reading the output of the scripts written. 
+     * Its queue of submitted reader callables is the FIFO 
+     * matching each spacer with the read functor of its caller. 
+     * Callables are submitted in the order the scripts are written 
+     * which is ensured by {@link #writeLock}. 
+     * If not in pipelined mode, this is <code>null</code>. 
      */
-    private final ReaderWriterPipeThread errorStreamThread;
+    private final ExecutorService readExecutor;
 
-    private boolean destroyed = false;
+    /**
+     * In pipelined mode, the lock 
+     * to write a script to {@link #processWriter} 
+     * and to submit the according reader callable to {@link #readExecutor} 
+     * as an atomic action. 
+     */
+    private final Lock writeLock = new ReentrantLock();
+
+    /**
+     * The maximal number of characters of a script 
+     * to be evaluated in caller-runs mode 
+     * or <code>0</code> if caller-runs mode is switched off. 
+     * In caller-runs mode, the calling thread writes the script 
+     * and afterwards reads the result without any thread hand-off. 
+     * This is safe as long as the script fits into the pipe buffer to octave; 
+     * else octave may block writing output nobody reads 
+     * while the calling thread blocks writing further input. 
+     * So if a script exceeds this threshold while being written, 
+     * reading is handed over to {@link #executor} immediately. 
+     * Caller-runs mode applies only if not in pipelined mode. 
+     */
+    private final int callerRunsThreshold;
+
+    /**
+     * In multiplexed mode, the channel of {@link #process} 
+     * registered with the {@link OctaveMultiplexer} 
+     * which reads standard output and error stream 
+     * of the processes of all executors in multiplexed mode 
+     * on a single thread. 
+     * The calling thread writes the script 
+     * and waits for the response collected by the multiplexer. 
+     * So this executor needs no thread of its own. 
+     * This is like caller-runs mode without threshold, 
+     * since the output is consumed while writing. 
+     * Multiplexed mode applies only if not in pipelined mode 
+     * and supersedes caller-runs mode. 
+     * If not in multiplexed mode, this is <code>null</code>. 
+     */
+    private final OctaveMultiplexer.Channel channel;
+
+    /**
+     * The metrics round trips are recorded in 
+     * or <code>null</code> if metrics are disabled. 
+     * This may be shared with the replacements of this executor 
+     * in watchdog mode. 
+     */
+    private final OctaveMetrics metrics;
+
+    /**
+     * The id of the engine this executor belongs to, 
+     * recorded in flight recorder events. 
+     */
+    private final int engineId;
+
+    /**
+     * The pipe reading the error stream of {@link #process} 
+     * on a thread of its own, 
+     * forwarding it to a given writer 
+     * and splitting it into {@link OctaveDiagnostic}s. 
+     * This is used to close, to change the error writer 
+     * by {@link #setErrorWriter(Writer)} 
+     * and to tag diagnostics with the request in flight. 
+     */
+    private final OctaveErrorPipe errorPipe;
+
+    /**
+     * The number of requests passed to octave so far 
+     * used to number requests for tagging diagnostics. 
+     */
+    private final AtomicLong numRequests = new AtomicLong();
+
+    /**
+     * Whether this executor is destroyed. 
+     * This is volatile rather than guarded by <code>synchronized</code> 
+     * to avoid pinning virtual threads. 
+     */
+    private volatile boolean destroyed = false;
 
     /**
      * Will start the octave process.
      *
+     * @param engineId
+     *    the id of the engine this executor belongs to, 
+     *    recorded in flight recorder events. 
      * @param numThreadsReuse
      *    the number of threads to be reused in a fixed thread pool. 
      *    This is either positive or <code>-1</code>, 
      *    which means that a cached thread pool is used instead of a fixed one. 
+     *    This is ignored if <code>useVirtualThreads</code> is set. 
+     * @param useVirtualThreads
+     *    whether to run all io on virtual threads. 
+     *    Then, instead of a thread pool, 
+     *    each task runs on a new virtual thread 
+     *    and scheduling is shared by the whole runtime. 
+     *    This requires java 21. 
+     * @param isPipelined
+     *    whether to run in pipelined mode, 
+     *    allowing multiple requests in flight. 
+     *    For details see {@link #isPipelined}. 
+     * @param callerRunsThreshold
+     *    the maximal number of characters of a script 
+     *    evaluated in caller-runs mode, 
+     *    or <code>0</code> to switch off caller-runs mode. 
+     *    For details see {@link #callerRunsThreshold}. 
+     * @param isMultiplexed
+     *    whether this executor runs in multiplexed mode. 
+     *    For details see {@link #channel}. 
+     * @param metrics
+     *    the metrics to record round trips in 
+     *    or <code>null</code> to disable metrics. 
      * @param stdinLog
      *    This writer will capture all
      *    that is written to the octave process via stdin,
@@ -135,18 +305,41 @@ public final class OctaveExec {
      *    of the current process.
      * @throws OctaveIOException
      *    If execution
+     * @throws UnsupportedOperationException
+     *    if <code>useVirtualThreads</code> is set 
+     *    but the runtime does not provide virtual threads. 
      */
-    public OctaveExec(final int numThreadsReuse,
+    public OctaveExec(final int engineId,
+		      final int numThreadsReuse,
+		      final boolean useVirtualThreads,
+		      final boolean isPipelined,
+		      final int callerRunsThreshold,
+		      final boolean isMultiplexed,
+		      final OctaveMetrics metrics,
 		      final Writer stdinLog, 
 		      final Writer stderrLog, 
 		      final Charset charset, // TBD: ensure that various charsets fit. 
 		      final String[] cmdArray,
 		      final String[] environment, // always invoked with null 
 		      final File workingDir) {
-	ThreadFactory threadFactory = new NamedThreadFactory();
-	this.executor = numThreadsReuse == -1
-	    ? Executors.newCachedThreadPool(threadFactory)
-	    : Executors.newFixedThreadPool(numThreadsReuse, threadFactory);
+	if (useVirtualThreads) {
+	    // may throw UnsupportedOperationException 
+	    this.threadFactory = VirtualThreads.threadFactory();
+	    this.executor = VirtualThreads.newThreadPerTaskExecutor();
+	} else {
+	    this.threadFactory = new NamedThreadFactory();
+	    this.executor = numThreadsReuse == -1
+		? Executors.newCachedThreadPool(this.threadFactory)
+		: Executors.newFixedThreadPool(numThreadsReuse, this.threadFactory);
+	}
+	this.isPipelined = isPipelined;
+	this.callerRunsThreshold = callerRunsThreshold;
+	this.charset = charset;
+	this.engineId = engineId;
+	this.metrics = metrics;
+	this.readExecutor = isPipelined
+	    ? Executors.newSingleThreadExecutor(this.threadFactory)
+	    : null;
 
 	try {
 	    // exec may throw 
@@ -163,14 +356,23 @@ public final class OctaveExec {
         } catch (final IOException e) {
             throw new OctaveIOException(e);
         }
-        // Connect stderr
-        this.errorStreamThread = ReaderWriterPipeThread
-	    .instantiate(new InputStreamReader(this.process.getErrorStream(), charset),
-			 stderrLog);
+	if (isMultiplexed && !isPipelined) {
+	    // Connect stderr and stdout to the multiplexer 
+	    this.errorPipe = OctaveErrorPipe.fed(charset, stderrLog);
+	    this.channel = OctaveMultiplexer.register(this.process, this.errorPipe);
+	    this.processReader = null;
+	} else {
+	    // Connect stderr
+	    this.errorPipe = OctaveErrorPipe
+		.start(new InputStreamReader(this.process.getErrorStream(), charset),
+		       stderrLog,
+		       this.threadFactory);
+	    this.channel = null;
 
-        // Connect stdout
-        this.processReader = new BufferedReader
-	    (new InputStreamReader(this.process.getInputStream(), charset));
+	    // Connect stdout
+	    this.processReader = new OctaveProcessReader
+		(this.process.getInputStream(), charset);
+	}
 
         // Connect stdin
 	Writer pw = new OutputStreamWriter(this.process.getOutputStream(), charset);
@@ -200,26 +402,354 @@ public final class OctaveExec {
      *    After evaluation of this method, 
      *    the <code>output</code> is asked for the result. 
      *///<code></code>
-    // used in OctaveIO#set(Map), OctaveIO#get(String), 
-    // OctaveIO#checkIfVarExists(String) and in 
+    // used in OctaveIO#set(Map), OctaveIO#get(String) and in 
     // OctaveEngine#unsafeEval(String) OctaveEngine#unsafeEval(Reader) and 
     // OctaveEngine#getVersion() only 
     // TBD: document which exceptions can be thrown in detail 
     public void evalRW(final WriteFunctor input, final ReadFunctor output) {
+	evalRW(Operation.EVAL, input, output);
+    }
+
+    /**
+     * Passes <code>input</code> to octave, get back <code>output</code> 
+     * as {@link #evalRW(WriteFunctor, ReadFunctor)} does, 
+     * recording the round trip as <code>operation</code> 
+     * if metrics are enabled. 
+     *
+     * @param operation
+     *    the operation the round trip is recorded as. 
+     * @param input
+     *    a write functor which represents the script 
+     *    to be executed in octave. 
+     * @param output
+     *    the read functor which reads the result of octave execution. 
+     */
+    public void evalRW(final Operation operation, 
+		       final WriteFunctor input, 
+		       final ReadFunctor output) {
+	evalRW(operation, null, input, output);
+    }
+
+    /**
+     * Passes <code>input</code> to octave, get back <code>output</code> 
+     * as {@link #evalRW(WriteFunctor, ReadFunctor)} does, 
+     * recording the round trip as <code>operation</code> 
+     * on the variables <code>variables</code>
+     * if metrics or flight recorder events are enabled. 
+     *
+     * @param operation
+     *    the operation the round trip is recorded as. 
+     * @param variables
+     *    the names of the variables set or got separated by commas 
+     *    or <code>null</code> if not applicable. 
+     * @param input
+     *    a write functor which represents the script 
+     *    to be executed in octave. 
+     * @param output
+     *    the read functor which reads the result of octave execution. 
+     */
+    public void evalRW(final Operation operation, 
+		       final String variables, 
+		       final WriteFunctor input, 
+		       final ReadFunctor output) {
+	this.errorPipe.setRequest(this.numRequests.incrementAndGet());
+	evalRWMetered(operation, variables, input, output);
+    }
+
+    /**
+     * Passes <code>input</code> to octave, get back <code>output</code> 
+     * as {@link #evalRW(WriteFunctor, ReadFunctor)} does 
+     * and returns the messages octave writes on its error stream meanwhile, 
+     * e.g. warnings and errors. 
+     * These are written to the error writer as well. 
+     * To collect exactly the messages of this request, 
+     * even if they arrive after the output, 
+     * the script is enclosed in markers written to the error stream. 
+     * This waits for the second marker 
+     * at most {@link #INTERRUPT_GRACE_MILLIS}. 
+     *
+     * @param input
+     *    a write functor which represents the script 
+     *    to be executed in octave. 
+     * @param output
+     *    the read functor which reads the result of octave execution. 
+     * @return
+     *    the messages octave wrote on its error stream 
+     *    while evaluating <code>input</code> in the order of arrival. 
+     */
+    public List<OctaveDiagnostic> evalRWDiagnosed(final WriteFunctor input, 
+						  final ReadFunctor output) {
+	final long requestId = this.numRequests.incrementAndGet();
+	this.errorPipe.collect(requestId);
+	this.errorPipe.setRequest(requestId);
+	try {
+	    evalRWMetered(Operation.EVAL, null, writer -> {
+		    writer.write(OctaveErrorPipe.printMarker(requestId));
+		    input.doWrites(writer);
+		    writer.write(OctaveErrorPipe.printMarker(requestId));
+		}, output);
+	} catch (final RuntimeException e) {
+	    this.errorPipe.discard(requestId);
+	    throw e;
+	}
+	return this.errorPipe.diagnostics(requestId, INTERRUPT_GRACE_MILLIS);
+    }
+
+    /**
+     * Implements {@link #evalRW(Operation, String, WriteFunctor, ReadFunctor)} 
+     * after the request is tagged. 
+     */
+    private void evalRWMetered(final Operation operation, 
+			       final String variables, 
+			       final WriteFunctor input, 
+			       final ReadFunctor output) {
+	final OctaveMetrics.Sample sample = 
+	    OctaveMetrics.start(this.metrics, this.engineId, operation, variables);
+	if (sample == null) {
+	    evalRWUnmetered(input, output);
+	    return;
+	}
+	boolean success = false;
+	try {
+	    evalRWUnmetered(new MeteredWriteFunctor(input, sample), 
+			    new MeteredReadFunctor(output, sample));
+	    success = true;
+	} finally {
+	    sample.stop(success);
+	}
+    }
+
+    /**
+     * Implements {@link #evalRW(Operation, String, WriteFunctor, ReadFunctor)} 
+     * without recording metrics. 
+     */
+    private void evalRWUnmetered(final WriteFunctor input, 
+				 final ReadFunctor output) {
+	if (this.isPipelined) {
+	    final Future<Void> future = submitRW(input, output);
+	    // requests in flight cannot be interrupted selectively: 
+	    // if interrupted, wait nevertheless to keep reads in order 
+	    boolean interrupted = false;
+	    while (!future.isDone()) {
+		try {
+		    future.get();
+		} catch (final InterruptedException e) {
+		    interrupted = true;
+		} catch (final ExecutionException | CancellationException e) {
+		    // handled by getFromFuture 
+		}
+	    }
+	    final RuntimeException readerException = getFromFuture(future);
+	    if (interrupted) {
+		Thread.currentThread().interrupt();
+	    }
+	    if (readerException != null) {
+		throw readerException;
+	    }
+	    if (interrupted) {
+		throw new OctaveInterruptedException("Interrupted evaluating script");
+	    }
+	    return;
+	}
+	if (this.channel != null) {
+	    evalRWMultiplexed(input, output, Long.MAX_VALUE, System.nanoTime());
+	    return;
+	}
+	if (this.callerRunsThreshold > 0) {
+	    evalCallerRuns(input, output);
+	    return;
+	}
+	evalRWInterruptibly(input, output, this.executor, 
+			    Long.MAX_VALUE, System.nanoTime());
+    }
+
+    /**
+     * Passes <code>input</code> to octave and get back <code>output</code> 
+     * like {@link #evalRW(WriteFunctor, ReadFunctor)}, 
+     * but throws an exception if this does not complete in time. 
+     * Then the script is interrupted sending <code>SIGINT</code> 
+     * to the octave process and its output is drained, 
+     * so that this executor stays usable. 
+     * This takes milliseconds whereas restarting octave takes seconds. 
+     * Only if octave does not respond to the interrupt 
+     * within {@link #INTERRUPT_GRACE_MILLIS}, 
+     * or if sending signals is not supported by the operating system, 
+     * the process is destroyed. 
+     * <p>
+     * If the calling thread is interrupted while waiting, 
+     * the script is interrupted likewise 
+     * and an {@link OctaveInterruptedException} is thrown. 
+     * This is how cancellation of asynchronous requests works. 
+     * <p>
+     * In pipelined mode, the script is written 
+     * only after all requests in flight are completed, 
+     * so that the interrupt cannot hit a script of another request. 
+     * Caller-runs mode does not apply to requests with timeout. 
+     *
+     * @param input
+     *    a write functor which represents the script 
+     *    to be executed in octave. 
+     * @param output
+     *    the read functor which reads the result of octave execution. 
+     *    In case of a timeout, it may have read part of the output. 
+     * @param timeout
+     *    the maximal time to wait in units of <code>unit</code>. 
+     * @param unit
+     *    the time unit of <code>timeout</code>. 
+     * @throws OctaveTimeoutException
+     *    if evaluation did not complete in time. 
+     *    If this is marked destroyed, the octave process had to be destroyed. 
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting. 
+     *    Then the interrupted state of the current thread is set again. 
+     */
+    public void evalRW(final WriteFunctor input, 
+		       final ReadFunctor output, 
+		       final long timeout, 
+		       final TimeUnit unit) {
+	this.errorPipe.setRequest(this.numRequests.incrementAndGet());
+	final OctaveMetrics.Sample sample = 
+	    OctaveMetrics.start(this.metrics, this.engineId, Operation.EVAL, null);
+	if (sample == null) {
+	    evalRWUnmetered(input, output, timeout, unit);
+	    return;
+	}
+	boolean success = false;
+	try {
+	    evalRWUnmetered(new MeteredWriteFunctor(input, sample), 
+			    new MeteredReadFunctor(output, sample), 
+			    timeout, unit);
+	    success = true;
+	} finally {
+	    sample.stop(success);
+	}
+    }
+
+    /**
+     * Implements {@link #evalRW(WriteFunctor, ReadFunctor, long, TimeUnit)} 
+     * without recording metrics. 
+     */
+    private void evalRWUnmetered(final WriteFunctor input, 
+				 final ReadFunctor output, 
+				 final long timeout, 
+				 final TimeUnit unit) {
+	final long start = System.nanoTime();
+	final long timeoutNanos = unit.toNanos(timeout);
+	if (this.channel != null) {
+	    evalRWMultiplexed(input, output, timeoutNanos, start);
+	    return;
+	}
+	if (!this.isPipelined) {
+	    evalRWInterruptibly(input, output, this.executor, 
+				timeoutNanos, start);
+	    return;
+	}
+	this.writeLock.lock();
+	try {
+	    // wait until the requests in flight are completed 
+	    final Future<?> idle = this.readExecutor.submit(() -> { });
+	    try {
+		await(idle, timeoutNanos, start);
+	    } catch (final TimeoutException e) {
+		// nothing written so far, so nothing to interrupt 
+		throw new OctaveTimeoutException
+		    ("Timeout waiting for requests in flight. ", e);
+	    } catch (final InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new OctaveInterruptedException
+		    ("Interrupted waiting for requests in flight", e);
+	    } catch (final ExecutionException e) {
+		throw new IllegalStateException(MSG_EXE_NH, e);
+	    }
+	    evalRWInterruptibly(input, output, this.readExecutor, 
+				timeoutNanos, start);
+	} finally {
+	    this.writeLock.unlock();
+	}
+    }
+
+    /**
+     * Waits for <code>future</code> to complete 
+     * but not longer than <code>timeoutNanos</code> after <code>start</code>. 
+     * A timeout of {@link Long#MAX_VALUE} means to wait without limit. 
+     */
+    private static void await(final Future<?> future, 
+			      final long timeoutNanos, 
+			      final long start) 
+	throws InterruptedException, ExecutionException, TimeoutException {
+	if (timeoutNanos == Long.MAX_VALUE) {
+	    future.get();
+	} else {
+	    future.get(timeoutNanos - (System.nanoTime() - start), 
+		       TimeUnit.NANOSECONDS);
+	}
+    }
+
+    /**
+     * Passes <code>input</code> to octave, get back <code>output</code> 
+     * and throws according exceptions if reading or writing went wrong. 
+     * Writing takes place on {@link #executor}, 
+     * reading on <code>readerExecutor</code>. 
+     * If this does not complete in time or if interrupted while waiting, 
+     * the script is interrupted 
+     * by {@link #interruptAndDrain(String, Future, Future, ExecutorService)}. 
+     *
+     * @param input
+     *    a write functor which represents the script 
+     *    to be executed in octave. 
+     * @param output
+     *    the read functor which reads the result of octave execution. 
+     * @param readerExecutor
+     *    the executor to read the result on: 
+     *    {@link #executor} or, in pipelined mode, {@link #readExecutor}. 
+     * @param timeoutNanos
+     *    the timeout in nanoseconds 
+     *    or {@link Long#MAX_VALUE} if there is no timeout. 
+     * @param start
+     *    the time in nanoseconds as returned by {@link System#nanoTime()} 
+     *    the timeout refers to. 
+     * @throws OctaveTimeoutException
+     *    if not completed in time. 
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting. 
+     */
+    private void evalRWInterruptibly(final WriteFunctor input, 
+				     final ReadFunctor output,
+				     final ExecutorService readerExecutor,
+				     final long timeoutNanos,
+				     final long start) {
         final String spacer = generateSpacer();
         final Future<Void> writerFuture = 
 	    this.executor.submit(new OctaveWriterCallable(this.processWriter, 
 							  input, 
 							  spacer));
         final Future<Void> readerFuture = 
-	    this.executor.submit(new OctaveReaderCallable(this.processReader, 
-							  output, 
-							  spacer));
+	    readerExecutor.submit(new OctaveReaderCallable(this.processReader, 
+							   output, 
+							   spacer,
+							   this.isPipelined));
+	try {
+	    // writer first: if writing fails, the reader never completes 
+	    await(writerFuture, timeoutNanos, start);
+	    await(readerFuture, timeoutNanos, start);
+	} catch (final TimeoutException e) {
+	    interruptAndDrain(spacer, writerFuture, readerFuture, readerExecutor);
+	    final OctaveTimeoutException octaveException = 
+		new OctaveTimeoutException("Timeout evaluating script. ", e);
+	    octaveException.setDestroyed(isDestroyed());
+	    throw octaveException;
+	} catch (final InterruptedException e) {
+	    interruptAndDrain(spacer, writerFuture, readerFuture, readerExecutor);
+	    Thread.currentThread().interrupt();
+	    final OctaveInterruptedException octaveException = 
+		new OctaveInterruptedException("Interrupted evaluating script", e);
+	    octaveException.setDestroyed(isDestroyed());
+	    throw octaveException;
+	} catch (final ExecutionException e) {
+	    // handled below: both futures are done or writing failed 
+	}
+
         final RuntimeException writerException = getFromFuture(writerFuture);
-        // if (writerException instanceof CancellationException) {
-        //     LOG.error("Did not expect writer to be canceled", 
-	//               writerException);
-        // }
         if (writerException != null) {
             if (writerException instanceof CancellationException) {
                 LOG.error("Did not expect writer to be canceled", 
@@ -229,9 +759,6 @@ public final class OctaveExec {
 	    throw writerException;
         }
         final RuntimeException readerException = getFromFuture(readerFuture);
-        // if (writerException != null) {
-        //     throw writerException;
-        // }
         if (readerException != null) {
             // Only gets here when writerException==null, 
 	    // and in that case we don't expect the reader to be cancelled
@@ -243,6 +770,390 @@ public final class OctaveExec {
         }
     }
 
+    /**
+     * Interrupts the script currently executed by octave 
+     * and drains its output, so that this executor stays usable. 
+     * To that end, <code>SIGINT</code> is sent to {@link #process}. 
+     * Since octave may discard input buffered when interrupted, 
+     * the spacer of the interrupted script is printed once more 
+     * followed by a fresh spacer. 
+     * After the reader of the script completed with the first spacer, 
+     * all up to the fresh spacer is drained, 
+     * also the spacer printed twice if octave did not discard it. 
+     * If anything fails or takes longer than {@link #INTERRUPT_GRACE_MILLIS}, 
+     * this executor is destroyed. 
+     *
+     * @param spacer
+     *    the spacer of the script to be interrupted. 
+     * @param writerFuture
+     *    the future of the writer of the script to be interrupted. 
+     * @param readerFuture
+     *    the future of the reader of the script to be interrupted. 
+     * @param readerExecutor
+     *    the executor <code>readerFuture</code> stems from. 
+     * @return
+     *    whether recovery succeeded, i.e. this executor is not destroyed. 
+     */
+    private boolean interruptAndDrain(final String spacer,
+				      final Future<Void> writerFuture,
+				      final Future<Void> readerFuture,
+				      final ExecutorService readerExecutor) {
+	try {
+	    sendInterrupt();
+	    // if not even the script is written, give up 
+	    writerFuture.get(INTERRUPT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+
+	    final String drainSpacer = generateSpacer();
+	    new OctaveWriterCallable(this.processWriter, 
+				     w -> w.write(OctaveWriterCallable
+						  .printSpacer(spacer)), 
+				     drainSpacer).call();
+	    try {
+		readerFuture.get(INTERRUPT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+	    } catch (final ExecutionException e) {
+		// the output of an interrupted script may well be corrupt 
+		LOG.debug("Reader of interrupted script failed. ", e);
+	    }
+	    readerExecutor.submit(new OctaveReaderCallable(this.processReader, 
+							   DISCARD, 
+							   drainSpacer,
+							   this.isPipelined))
+		.get(INTERRUPT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+	    return true;
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    LOG.error("Interrupted during interrupt, destroying octave. ", e);
+	} catch (final IOException | ExecutionException | TimeoutException 
+		 | OctaveIOException e) {
+	    LOG.error("Octave did not respond to interrupt, destroying. ", e);
+	}
+	destroy();
+	return false;
+    }
+
+    /**
+     * Sends <code>SIGINT</code> to {@link #process}. 
+     *
+     * @throws IOException
+     *    if the signal could not be sent, 
+     *    e.g. because the operating system has no <code>kill</code> command. 
+     * @throws InterruptedException
+     *    if interrupted while waiting for the signal to be sent. 
+     */
+    private void sendInterrupt() throws IOException, InterruptedException {
+	LOG.debug("Interrupting octave process " + this.process.pid());
+	// may throw IOException, e.g. if there is no kill command 
+	final Process kill = new ProcessBuilder
+	    ("kill", "-INT", Long.toString(this.process.pid())).start();
+	if (!kill.waitFor(INTERRUPT_GRACE_MILLIS, TimeUnit.MILLISECONDS)
+	    || kill.exitValue() != 0) {
+	    throw new IOException("Could not send SIGINT to octave. ");
+	}
+    }
+
+    /**
+     * Passes <code>input</code> to octave in multiplexed mode: 
+     * writes on the calling thread, 
+     * waits for the response collected by the {@link OctaveMultiplexer} 
+     * and reads it on the calling thread. 
+     * Timeout and interruption are handled 
+     * as for {@link #evalRWInterruptibly(WriteFunctor, ReadFunctor, ExecutorService, long, long)} 
+     * except that writing blocks until octave accepts the script. 
+     *
+     * @param input
+     *    a write functor which represents the script 
+     *    to be executed in octave. 
+     * @param output
+     *    the read functor which reads the result of octave execution. 
+     * @param timeoutNanos
+     *    the maximal time to wait in nanoseconds 
+     *    or {@link Long#MAX_VALUE} to wait without timeout. 
+     * @param start
+     *    the time the request started as given by {@link System#nanoTime()}. 
+     */
+    private void evalRWMultiplexed(final WriteFunctor input, 
+				   final ReadFunctor output,
+				   final long timeoutNanos,
+				   final long start) {
+        final String spacer = generateSpacer();
+	final CompletableFuture<byte[]> response = this.channel.expect(spacer);
+	try {
+	    // may throw OctaveIOException 
+	    new OctaveWriterCallable(this.processWriter, input, spacer).call();
+	} catch (final RuntimeException e) {
+	    // else the channel is polled as active forever 
+	    this.channel.cancel(response);
+	    throw e;
+	}
+	try {
+	    await(response, timeoutNanos, start);
+	} catch (final TimeoutException e) {
+	    interruptAndDrainMultiplexed(spacer, response);
+	    final OctaveTimeoutException octaveException = 
+		new OctaveTimeoutException("Timeout evaluating script. ", e);
+	    octaveException.setDestroyed(isDestroyed());
+	    throw octaveException;
+	} catch (final InterruptedException e) {
+	    interruptAndDrainMultiplexed(spacer, response);
+	    Thread.currentThread().interrupt();
+	    final OctaveInterruptedException octaveException = 
+		new OctaveInterruptedException("Interrupted evaluating script", e);
+	    octaveException.setDestroyed(isDestroyed());
+	    throw octaveException;
+	} catch (final ExecutionException e) {
+	    throw new OctaveIOException(e.getCause());
+	}
+	// may throw OctaveIOException 
+	new OctaveReaderCallable(new OctaveProcessReader
+				 (new ByteArrayInputStream(response.join()), 
+				  this.charset), 
+				 output, spacer, false).call();
+    }
+
+    /**
+     * Interrupts the script currently executed by octave in multiplexed mode 
+     * and drains its output like 
+     * {@link #interruptAndDrain(String, Future, Future, ExecutorService)}. 
+     *
+     * @param spacer
+     *    the spacer of the script to be interrupted. 
+     * @param response
+     *    the response of the script to be interrupted. 
+     * @return
+     *    whether recovery succeeded, i.e. this executor is not destroyed. 
+     */
+    private boolean interruptAndDrainMultiplexed
+	(final String spacer, final CompletableFuture<byte[]> response) {
+	try {
+	    sendInterrupt();
+	    final String drainSpacer = generateSpacer();
+	    new OctaveWriterCallable(this.processWriter, 
+				     w -> w.write(OctaveWriterCallable
+						  .printSpacer(spacer)), 
+				     drainSpacer).call();
+	    response.get(INTERRUPT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+	    this.channel.expect(drainSpacer)
+		.get(INTERRUPT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+	    return true;
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    LOG.error("Interrupted during interrupt, destroying octave. ", e);
+	} catch (final IOException | ExecutionException | TimeoutException 
+		 | OctaveIOException e) {
+	    LOG.error("Octave did not respond to interrupt, destroying. ", e);
+	}
+	destroy();
+	return false;
+    }
+
+    /**
+     * Passes <code>input</code> to octave in caller-runs mode, 
+     * i.e. writes and reads on the current thread, 
+     * unless the script written exceeds {@link #callerRunsThreshold}. 
+     * In the latter case, reading is handed over to {@link #executor} 
+     * as soon as the threshold is exceeded. 
+     *
+     * @param input
+     *    a write functor which represents the script 
+     *    to be executed in octave. 
+     * @param output
+     *    the read functor which reads the result of octave execution. 
+     */
+    private void evalCallerRuns(final WriteFunctor input, 
+				final ReadFunctor output) {
+        final String spacer = generateSpacer();
+	final OctaveReaderCallable reader = 
+	    new OctaveReaderCallable(this.processReader, output, spacer, false);
+	final ThresholdWriter thresholdWriter = 
+	    new ThresholdWriter(this.processWriter, this.callerRunsThreshold, 
+				() -> this.executor.submit(reader));
+	try {
+	    // may throw OctaveIOException 
+	    new OctaveWriterCallable(thresholdWriter, input, spacer).call();
+	} catch (final OctaveIOException e) {
+	    if (thresholdWriter.readerFuture != null) {
+		thresholdWriter.readerFuture.cancel(true);
+	    }
+	    throw e;
+	}
+	if (thresholdWriter.readerFuture == null) {
+	    // may throw OctaveIOException 
+	    reader.call();
+	    return;
+	}
+	final RuntimeException readerException = 
+	    getFromFuture(thresholdWriter.readerFuture);
+	if (readerException != null) {
+	    throw readerException;
+	}
+    }
+
+    /**
+     * A writer passing all to a wrapped writer 
+     * counting the characters written. 
+     * As soon as a given threshold is exceeded, 
+     * a given reader task is started before passing further characters. 
+     * This is used in caller-runs mode only. 
+     */
+    private static final class ThresholdWriter extends Writer {
+
+	/**
+	 * The writer all is passed to. 
+	 */
+	private final Writer wrapped;
+
+	/**
+	 * The number of characters which may be written 
+	 * before the reader task is started. 
+	 */
+	private long remaining;
+
+	/**
+	 * The task starting the reader, invoked at most once. 
+	 */
+	private final Supplier<Future<Void>> startReader;
+
+	/**
+	 * The future of the reader started 
+	 * or <code>null</code> if the threshold is not yet exceeded. 
+	 */
+	private Future<Void> readerFuture;
+
+	ThresholdWriter(final Writer wrapped, 
+			final int threshold, 
+			final Supplier<Future<Void>> startReader) {
+	    super();
+	    this.wrapped = wrapped;
+	    this.remaining = threshold;
+	    this.startReader = startReader;
+	    this.readerFuture = null;
+	}
+
+	@Override
+	public void write(final char[] cbuf, final int off, final int len) 
+	    throws IOException {
+	    if (this.readerFuture == null) {
+		this.remaining -= len;
+		if (this.remaining < 0) {
+		    this.readerFuture = this.startReader.get();
+		}
+	    }
+	    this.wrapped.write(cbuf, off, len);
+	}
+
+	@Override
+	public void write(final String str, final int off, final int len) 
+	    throws IOException {
+	    if (this.readerFuture == null) {
+		this.remaining -= len;
+		if (this.remaining < 0) {
+		    this.readerFuture = this.startReader.get();
+		}
+	    }
+	    this.wrapped.write(str, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+	    this.wrapped.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+	    // the wrapped writer is the process writer: do not close 
+	    flush();
+	}
+    } // class ThresholdWriter
+
+    /**
+     * Passes <code>input</code> to octave in pipelined mode 
+     * and returns a future which completes 
+     * as soon as the according output is read by <code>output</code>. 
+     * The script is written on the current thread 
+     * whereas the output is read on a separate thread, 
+     * so this returns as soon as writing is complete. 
+     * Scripts are processed in the order they are submitted, 
+     * also if submitted from different threads. 
+     *
+     * @param input
+     *    a write functor which represents the script 
+     *    to be executed in octave. 
+     * @param output
+     *    the read functor which reads the result of octave execution. 
+     * @return
+     *    a future which completes if <code>output</code> has read the result. 
+     *    Its {@link Future#get()} throws an {@link ExecutionException} 
+     *    wrapping an {@link OctaveException} if reading failed. 
+     * @throws IllegalStateException
+     *    if not in pipelined mode. 
+     * @throws OctaveIOException
+     *    if writing failed. 
+     *    Then the pending reads cannot be matched any more 
+     *    and so this executor is unusable. 
+     */
+    public Future<Void> submitRW(final WriteFunctor input, 
+				 final ReadFunctor output) {
+	if (!this.isPipelined) {
+	    throw new IllegalStateException("Not in pipelined mode. ");
+	}
+        final String spacer = generateSpacer();
+	final OctaveWriterCallable writer = 
+	    new OctaveWriterCallable(this.processWriter, input, spacer);
+	final OctaveReaderCallable reader = 
+	    new OctaveReaderCallable(this.processReader, output, spacer, true);
+	this.writeLock.lock();
+	try {
+	    // submit first, so that the read is registered before the spacer 
+	    // can arrive. Order of submission equals order of writing. 
+	    final Future<Void> readerFuture = this.readExecutor.submit(reader);
+	    try {
+		// may throw OctaveIOException 
+		writer.call();
+	    } catch (final OctaveIOException e) {
+		readerFuture.cancel(true);
+		throw e;
+	    }
+	    return readerFuture;
+	} finally {
+	    this.writeLock.unlock();
+	}
+    }
+
+    /**
+     * Returns the factory for the threads of this executor. 
+     * Components tied to this executor 
+     * shall create their threads by this factory also, 
+     * so that they run on virtual threads if this executor does. 
+     *
+     * @return
+     *    the factory for the threads of this executor. 
+     */
+    public ThreadFactory getThreadFactory() {
+	return this.threadFactory;
+    }
+
+    /**
+     * Returns the metrics of this executor. 
+     *
+     * @return
+     *    the metrics round trips are recorded in 
+     *    or <code>null</code> if metrics are disabled. 
+     */
+    public OctaveMetrics getMetrics() {
+	return this.metrics;
+    }
+
+    /**
+     * Returns whether this executor is in pipelined mode. 
+     *
+     * @return
+     *    whether this executor is in pipelined mode, 
+     *    i.e. whether {@link #submitRW(WriteFunctor, ReadFunctor)} may be used. 
+     */
+    public boolean isPipelined() {
+	return this.isPipelined;
+    }
+
     /**
      * Completes computation on future 
      * and returns an exception thrown or null. 
@@ -307,25 +1218,53 @@ public final class OctaveExec {
     /**
      * Sets {@link #destroyed} to the parameter value given. 
      */
-    private synchronized void setDestroyed(final boolean destroyed) {
+    private void setDestroyed(final boolean destroyed) {
         this.destroyed = destroyed;
     }
 
     /**
      * Returns {@link #destroyed}. 
      */
-    private synchronized boolean isDestroyed() {
+    private boolean isDestroyed() {
         return this.destroyed;
     }
 
+    /**
+     * Returns whether the octave process is still running 
+     * and this executor is not destroyed. 
+     * This does not involve a round trip to octave 
+     * and so it is cheap but does not detect a hanging process. 
+     *
+     * @return
+     *    whether {@link #process} is alive and {@link #destroyed} is not set. 
+     */
+    public boolean isAlive() {
+	return !isDestroyed() && this.process.isAlive();
+    }
+
+    /**
+     * Returns a future completing when the octave process terminates, 
+     * no matter whether by {@link #close()}, by {@link #destroy()} 
+     * or because it died. 
+     *
+     * @return
+     *    a future completing when {@link #process} terminates. 
+     */
+    public CompletableFuture<Void> onExit() {
+	return this.process.onExit().thenApply(proc -> null);
+    }
+
     /**
      * Kill the octave process without remorse. 
      */
     public void destroy() {
         setDestroyed(true);
         this.executor.shutdownNow(); // returns list of tasks awaiting exec. 
+	if (this.isPipelined) {
+	    this.readExecutor.shutdownNow();
+	}
         this.process.destroy();
-        this.errorStreamThread.close();
+        this.errorPipe.close();
         try {
             this.processWriter.close();
         } catch (final IOException e) {
@@ -343,29 +1282,38 @@ public final class OctaveExec {
      *    if 
      */
     public void close() {
+	if (this.isPipelined) {
+	    awaitPendingReads();
+	}
         try {
             // it is not worth it to rewrite this 
 	    // to use eval() and some specialized Functors
             // the next three commands all may throw IOException 
             this.processWriter.write("exit\n");
             this.processWriter.close();
-            final String read1 = this.processReader.readLine();
+	    // in multiplexed mode, read the output remaining at its end 
+	    final OctaveProcessReader reader = this.channel == null
+		? this.processReader
+		: new OctaveProcessReader(new ByteArrayInputStream
+					  (this.channel.end().join()), 
+					  this.charset);
+            final String read1 = reader.readLine();
             
             // Allow a single blank line, exit in octave 3.2 returns that:
             if (read1 != null && !"".equals(read1)) {
                 throw new OctaveIOException
 		    ("Expected a blank line, read '" + read1 + "'");
             }
-            final String read2 = this.processReader.readLine();// may throw IOExceptino 
+            final String read2 = reader.readLine();// may throw IOExceptino 
             if (read2 != null) {
                 throw new OctaveIOException
 		    ("Expected reader to be at end of stream, read '" + 
 		     read2 + "'");
             }
             // may throw IOException 
-            this.processReader.close();
+            reader.close();
             // may throw IOException 
-            this.errorStreamThread.close();
+            this.errorPipe.close();
             int exitValue;
             try {
                 exitValue = this.process.waitFor();
@@ -393,12 +1341,33 @@ public final class OctaveExec {
         }
     }
 
+    /**
+     * In pipelined mode, prevents further requests 
+     * and waits until the output of all requests in flight has been read. 
+     *
+     * @throws OctaveInterruptedException
+     *    if interrupted while waiting. 
+     */
+    private void awaitPendingReads() {
+	this.writeLock.lock();
+	try {
+	    this.readExecutor.shutdown();
+	    this.readExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new OctaveInterruptedException
+		("Interrupted when waiting for pending reads", e);
+	} finally {
+	    this.writeLock.unlock();
+	}
+    }
+
     /**
      * @param writer
      *    the new writer to write the error output to
      */
     public void setErrorWriter(final Writer writer) {
-        this.errorStreamThread.setWriter(writer);
+        this.errorPipe.setWriter(writer);
     }
 
 }
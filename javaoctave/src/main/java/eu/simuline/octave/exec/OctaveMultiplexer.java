@@ -0,0 +1,516 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The single thread shared by all {@link OctaveExec}s in multiplexed mode
+ * reading the standard output and the error stream
+ * of all their octave processes.
+ * So an executor in multiplexed mode needs no thread of its own:
+ * the calling thread writes the script
+ * and waits for the completion of the response,
+ * which is collected by this multiplexer in memory.
+ * Since the output is consumed while writing,
+ * writing cannot deadlock however large the script.
+ * <p>
+ * The JDK provides no selectable channels for the pipes of a process.
+ * Instead, this multiplexer polls the pipes without blocking
+ * via {@link InputStream#available()},
+ * which on pipes asks the operating system for the bytes pending.
+ * A {@link Channel} waiting for a response is polled continuously
+ * backing off from {@link #MIN_PARK_NANOS} to {@link #MAX_PARK_NANOS}
+ * while there is no output,
+ * whereas idle channels are polled every {@link #IDLE_POLL_NANOS}
+ * backing off to every {@link #MAX_IDLE_POLL_NANOS}
+ * as long as they produce no output.
+ * A response is detected within {@link #MAX_PARK_NANOS}.
+ * <p>
+ * Polling a channel costs about three system calls:
+ * one per pipe asking for the bytes pending
+ * and one checking whether the process is alive.
+ * So an engine idle for a while costs about six system calls per second
+ * and if all engines are idle,
+ * the multiplexer thread parks until the next channel is due.
+ * Output of an idle engine, e.g. of a background job,
+ * is read with a delay of up to {@link #MAX_IDLE_POLL_NANOS}.
+ */
+final class OctaveMultiplexer implements Runnable {
+
+    private static final Log LOG = LogFactory.getLog(OctaveMultiplexer.class);
+
+    /**
+     * The minimal time to park if there is no output.
+     */
+    private static final long MIN_PARK_NANOS = 10_000;
+
+    /**
+     * The maximal time to park if there is no output
+     * while a response is awaited.
+     */
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    /**
+     * The minimal time between polls of a channel not awaiting a response.
+     */
+    private static final long IDLE_POLL_NANOS = 20_000_000;
+
+    /**
+     * The maximal time between polls of a channel not awaiting a response,
+     * reached by doubling {@link #IDLE_POLL_NANOS} while there is no output.
+     */
+    private static final long MAX_IDLE_POLL_NANOS = 500_000_000;
+
+    /**
+     * The size of the buffer for reading.
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    private static final int BUF_SIZE = 64 * 1024;
+
+    /**
+     * Holds the shared multiplexer, started on first use.
+     */
+    private static final class Holder {
+	static final OctaveMultiplexer MULTIPLEXER = new OctaveMultiplexer();
+    } // class Holder
+
+    /**
+     * The pipes of an octave process registered with the multiplexer
+     * and the response awaited, if any.
+     * The state accessed by both the multiplexer and the calling thread
+     * is guarded by the monitor of this channel
+     * which is never held while blocking.
+     */
+    static final class Channel {
+
+	/**
+	 * The process the pipes belong to.
+	 */
+	private final Process process;
+
+	/**
+	 * The standard output of {@link #process}.
+	 */
+	private final InputStream stdout;
+
+	/**
+	 * The error stream of {@link #process}.
+	 */
+	private final InputStream stderr;
+
+	/**
+	 * The pipe the error stream is fed to.
+	 */
+	private final OctaveErrorPipe errorPipe;
+
+	/**
+	 * The bytes of the standard output not yet passed to a response.
+	 */
+	private byte[] out = new byte[BUF_SIZE];
+
+	/**
+	 * The number of valid bytes in {@link #out}.
+	 */
+	private int outLen;
+
+	/**
+	 * The index in {@link #out} to continue searching the spacer.
+	 */
+	private int scanFrom;
+
+	/**
+	 * The spacer terminating the response awaited
+	 * or <code>null</code> if no response is awaited.
+	 */
+	private byte[] spacer;
+
+	/**
+	 * The response awaited, completed with its bytes
+	 * including the line of the spacer.
+	 */
+	private CompletableFuture<byte[]> response;
+
+	/**
+	 * Completed with the remaining bytes of the standard output
+	 * at its end.
+	 */
+	private final CompletableFuture<byte[]> end =
+	    new CompletableFuture<byte[]>();
+
+	/**
+	 * The time of the last poll, accessed by the multiplexer only.
+	 */
+	private long lastPoll;
+
+	/**
+	 * Whether the last poll read anything,
+	 * accessed by the multiplexer only.
+	 */
+	private boolean lastProgress;
+
+	/**
+	 * The time between polls while this channel is idle,
+	 * accessed by the multiplexer only.
+	 */
+	private long idleNanos = IDLE_POLL_NANOS;
+
+	private Channel(final Process process, final OctaveErrorPipe errorPipe) {
+	    this.process = process;
+	    this.stdout = process.getInputStream();
+	    this.stderr = process.getErrorStream();
+	    this.errorPipe = errorPipe;
+	}
+
+	/**
+	 * Registers that the response terminated by a line
+	 * consisting of <code>spacerStr</code> is awaited
+	 * and wakes up the multiplexer.
+	 * This replaces a response awaited before.
+	 *
+	 * @param spacerStr
+	 *    the spacer terminating the response.
+	 * @return
+	 *    the future completed with the bytes of the response
+	 *    including the line of the spacer
+	 *    or completed exceptionally if the standard output ends before.
+	 */
+	CompletableFuture<byte[]> expect(final String spacerStr) {
+	    final CompletableFuture<byte[]> res = new CompletableFuture<byte[]>();
+	    synchronized (this) {
+		if (this.end.isDone()) {
+		    res.completeExceptionally(new IOException
+			("Pipe to octave-process broken"));
+		    return res;
+		}
+		this.spacer = spacerStr.getBytes(StandardCharsets.US_ASCII);
+		this.response = res;
+		this.scanFrom = 0;
+		// the response may be complete already
+		matchResponse();
+	    }
+	    Holder.MULTIPLEXER.wakeup();
+	    return res;
+	}
+
+	/**
+	 * Withdraws the response <code>res</code> awaited,
+	 * e.g. because writing the script failed,
+	 * so that this channel is no longer polled as active.
+	 * If <code>res</code> is no longer awaited, this does nothing.
+	 *
+	 * @param res
+	 *    a future returned by {@link #expect(String)}.
+	 */
+	synchronized void cancel(final CompletableFuture<byte[]> res) {
+	    if (this.response != res) {
+		return;
+	    }
+	    this.response = null;
+	    this.spacer = null;
+	    this.scanFrom = 0;
+	    res.cancel(false);
+	}
+
+	/**
+	 * Returns the future completed with the remaining bytes
+	 * of the standard output at its end.
+	 *
+	 * @return
+	 *    the future completed at the end of the standard output.
+	 */
+	CompletableFuture<byte[]> end() {
+	    return this.end;
+	}
+
+	/**
+	 * Returns whether a response is awaited or the last poll read anything.
+	 */
+	private boolean isActive() {
+	    synchronized (this) {
+		return this.response != null || this.lastProgress;
+	    }
+	}
+
+	/**
+	 * Reads the bytes pending on both pipes without blocking.
+	 *
+	 * @param buf
+	 *    the buffer to read into.
+	 * @param now
+	 *    the current time in nanoseconds.
+	 * @return
+	 *    whether anything was read.
+	 * @throws IOException
+	 *    if reading fails.
+	 */
+	private boolean poll(final byte[] buf, final long now) throws IOException {
+	    this.lastPoll = now;
+	    boolean progress = false;
+	    int len = Math.min(this.stdout.available(), buf.length);
+	    if (len > 0) {
+		len = this.stdout.read(buf, 0, len);
+		append(buf, len);
+		progress = true;
+	    }
+	    len = Math.min(this.stderr.available(), buf.length);
+	    if (len > 0) {
+		len = this.stderr.read(buf, 0, len);
+		this.errorPipe.feed(buf, 0, len);
+		progress = true;
+	    }
+	    this.lastProgress = progress;
+	    return progress;
+	}
+
+	/**
+	 * Returns whether both pipes reached their end,
+	 * i.e. the process terminated and nothing is pending.
+	 */
+	private boolean isAtEnd() throws IOException {
+	    return !this.process.isAlive()
+		&& this.stdout.available() == 0
+		&& this.stderr.available() == 0;
+	}
+
+	/**
+	 * Completes the end of both pipes:
+	 * a response awaited fails.
+	 */
+	private void finish() {
+	    synchronized (this) {
+		if (this.response != null) {
+		    this.response.completeExceptionally
+			(new IOException("Pipe to octave-process broken"));
+		    this.response = null;
+		}
+		this.end.complete(Arrays.copyOf(this.out, this.outLen));
+		this.outLen = 0;
+	    }
+	    this.errorPipe.endOfStream();
+	}
+
+	/**
+	 * Appends <code>len</code> bytes of <code>buf</code>
+	 * to the standard output collected
+	 * and completes the response awaited if its spacer arrived.
+	 */
+	private synchronized void append(final byte[] buf, final int len) {
+	    if (this.outLen + len > this.out.length) {
+		this.out = Arrays.copyOf
+		    (this.out, Math.max(2 * this.out.length, this.outLen + len));
+	    }
+	    System.arraycopy(buf, 0, this.out, this.outLen, len);
+	    this.outLen += len;
+	    matchResponse();
+	}
+
+	/**
+	 * Completes the response awaited, if any,
+	 * if the line of its spacer is in {@link #out}.
+	 * The monitor must be held.
+	 */
+	private void matchResponse() {
+	    if (this.response == null) {
+		return;
+	    }
+	    final int spacerLen = this.spacer.length;
+	    int idx = this.scanFrom;
+	    // search the spacer at the start of a line followed by a newline
+	    while (idx + spacerLen < this.outLen) {
+		if ((idx == 0 || this.out[idx - 1] == '\n')
+		    && startsWithSpacer(idx)) {
+		    int responseEnd = idx + spacerLen;
+		    switch (this.out[responseEnd]) {
+		    case '\n':
+			responseEnd++;
+			break;
+		    case '\r':
+			responseEnd++;
+			if (responseEnd == this.outLen) {
+			    // wait whether \n follows
+			    this.scanFrom = idx;
+			    return;
+			}
+			if (this.out[responseEnd] == '\n') {
+			    responseEnd++;
+			}
+			break;
+		    default:
+			// no line of its own 
+			idx++;
+			continue;
+		    }
+		    final byte[] bytes = Arrays.copyOf(this.out, responseEnd);
+		    this.outLen -= responseEnd;
+		    System.arraycopy(this.out, responseEnd, this.out, 0, this.outLen);
+		    final CompletableFuture<byte[]> res = this.response;
+		    this.response = null;
+		    this.spacer = null;
+		    this.scanFrom = 0;
+		    res.complete(bytes);
+		    return;
+		}
+		idx++;
+	    }
+	    this.scanFrom = idx;
+	}
+
+	/**
+	 * Returns whether {@link #out} contains the spacer at <code>idx</code>.
+	 */
+	private boolean startsWithSpacer(final int idx) {
+	    for (int i = 0; i < this.spacer.length; i++) {
+		if (this.out[idx + i] != this.spacer[i]) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+    } // class Channel
+
+    /**
+     * The channels registered but not yet polled.
+     */
+    private final Queue<Channel> added = new ConcurrentLinkedQueue<Channel>();
+
+    /**
+     * The channels polled, accessed by the multiplexer thread only.
+     */
+    private final List<Channel> channels = new ArrayList<Channel>();
+
+    /**
+     * The buffer for reading, accessed by the multiplexer thread only.
+     */
+    private final byte[] buf = new byte[BUF_SIZE];
+
+    /**
+     * Whether a response is awaited since the multiplexer last parked.
+     */
+    private volatile boolean woken;
+
+    /**
+     * The thread of this multiplexer.
+     */
+    private final Thread thread;
+
+    private OctaveMultiplexer() {
+	this.thread = new Thread(this, "javaoctave-Multiplexer");
+	this.thread.setDaemon(true);
+	this.thread.start();
+    }
+
+    /**
+     * Registers the pipes of <code>process</code> with the shared multiplexer.
+     * From now on, the standard output and the error stream
+     * must not be read by others.
+     *
+     * @param process
+     *    an octave process.
+     * @param errorPipe
+     *    the pipe the error stream is fed to.
+     * @return
+     *    the channel to await responses.
+     */
+    static Channel register(final Process process,
+			    final OctaveErrorPipe errorPipe) {
+	final Channel channel = new Channel(process, errorPipe);
+	Holder.MULTIPLEXER.added.add(channel);
+	Holder.MULTIPLEXER.wakeup();
+	return channel;
+    }
+
+    /**
+     * Wakes up the multiplexer to poll with minimal latency.
+     */
+    private void wakeup() {
+	this.woken = true;
+	LockSupport.unpark(this.thread);
+    }
+
+    @Override
+    public void run() {
+	long parkNanos = MIN_PARK_NANOS;
+	while (true) {
+	    Channel channel;
+	    while ((channel = this.added.poll()) != null) {
+		this.channels.add(channel);
+	    }
+	    final long now = System.nanoTime();
+	    boolean progress = false;
+	    boolean active = false;
+	    // the time until the next idle channel is due
+	    long idleWait = MAX_IDLE_POLL_NANOS;
+	    final Iterator<Channel> iter = this.channels.iterator();
+	    while (iter.hasNext()) {
+		channel = iter.next();
+		final boolean chActive = channel.isActive();
+		if (!chActive && now - channel.lastPoll < channel.idleNanos) {
+		    idleWait = Math.min(idleWait,
+					channel.lastPoll + channel.idleNanos - now);
+		    continue;
+		}
+		try {
+		    if (channel.poll(this.buf, now)) {
+			progress = true;
+			channel.idleNanos = IDLE_POLL_NANOS;
+		    } else if (channel.isAtEnd()) {
+			iter.remove();
+			channel.finish();
+			continue;
+		    }
+		} catch (final IOException | RuntimeException e) {
+		    LOG.error("Error when reading from octave process", e);
+		    iter.remove();
+		    channel.finish();
+		    continue;
+		}
+		if (chActive) {
+		    channel.idleNanos = IDLE_POLL_NANOS;
+		} else if (!channel.lastProgress) {
+		    channel.idleNanos =
+			Math.min(2 * channel.idleNanos, MAX_IDLE_POLL_NANOS);
+		}
+		idleWait = Math.min(idleWait, channel.idleNanos);
+		active |= chActive;
+	    }
+	    if (progress) {
+		parkNanos = MIN_PARK_NANOS;
+		continue;
+	    }
+	    if (this.woken) {
+		// a response is awaited: poll again at once 
+		this.woken = false;
+		parkNanos = MIN_PARK_NANOS;
+		continue;
+	    }
+	    LockSupport.parkNanos(this, active ? parkNanos : idleWait);
+	    parkNanos = Math.min(2 * parkNanos, MAX_PARK_NANOS);
+	}
+    }
+
+}
@@ -0,0 +1,632 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import eu.simuline.octave.util.StringUtil;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Reads the standard output of the octave process
+ * which is a sequence of responses each terminated by a spacer line.
+ * This replaces a {@link java.io.BufferedReader}
+ * reading line by line and comparing each line with the spacer.
+ * Instead, the bytes are scanned for the spacer in a single reusable buffer
+ * with a matcher precomputed for the spacer.
+ * The bytes in front of the spacer are decoded
+ * directly into the char array passed to
+ * the reader returned by {@link #responseReader(String)}.
+ * So there is no allocation per line.
+ * <p>
+ * The content of a response is what octave writes
+ * in front of <code>\n&lt;spacer&gt;\n</code>.
+ * As for {@link java.io.BufferedReader#readLine()},
+ * each of <code>\r\n</code>, <code>\r</code> and <code>\n</code>
+ * is delivered as <code>\n</code>.
+ * <p>
+ * There is a single object of this class for each {@link OctaveExec}
+ * and at most one response is read at a time.
+ */
+final class OctaveProcessReader {
+
+    private static final Log LOG = LogFactory.getLog(OctaveProcessReader.class);
+
+    /**
+     * The default size of {@link #buf}.
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    static final int BUF_SIZE = 64 * 1024;
+
+    private static final byte LF = '\n';
+
+    private static final byte CR = '\r';
+
+    /**
+     * The standard output of the octave process.
+     */
+    private final InputStream inStream;
+
+    /**
+     * The charset of the octave process.
+     */
+    private final Charset charset;
+
+    /**
+     * Whether {@link #charset} coincides with ascii on ascii characters
+     * and encodes other characters by bytes outside ascii.
+     * If so, ascii bytes are converted to chars by a cast.
+     */
+    private final boolean isAsciiCompatible;
+
+    /**
+     * The decoder for {@link #charset}, reused for all responses.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * The buffer for bytes read from {@link #inStream}, reused.
+     * Valid bytes are those from {@link #pos} to {@link #lim}.
+     */
+    private final byte[] buf;
+
+    /**
+     * The index of the next byte in {@link #buf}
+     * not yet handed out.
+     */
+    private int pos;
+
+    /**
+     * The index of the next byte in {@link #buf} not yet scanned
+     * for the spacer.
+     */
+    private int scan;
+
+    /**
+     * The index after the last valid byte in {@link #buf}.
+     */
+    private int lim;
+
+    /**
+     * Creates a reader of the given stream
+     * with a buffer of size {@link #BUF_SIZE}.
+     *
+     * @param inStream
+     *    the standard output of the octave process.
+     * @param charset
+     *    the charset of the octave process.
+     */
+    OctaveProcessReader(final InputStream inStream, final Charset charset) {
+	this(inStream, charset, BUF_SIZE);
+    }
+
+    /**
+     * Creates a reader of the given stream with a buffer of the given size.
+     *
+     * @param inStream
+     *    the standard output of the octave process.
+     * @param charset
+     *    the charset of the octave process.
+     * @param bufSize
+     *    the size of the buffer which must exceed the length of the spacer.
+     */
+    OctaveProcessReader(final InputStream inStream,
+			final Charset charset,
+			final int bufSize) {
+	this.inStream = inStream;
+	this.charset = charset;
+	this.isAsciiCompatible = StandardCharsets.UTF_8     .equals(charset)
+	    ||                   StandardCharsets.US_ASCII  .equals(charset)
+	    ||                   StandardCharsets.ISO_8859_1.equals(charset);
+	this.decoder = charset.newDecoder()
+	    .onMalformedInput     (CodingErrorAction.REPLACE)
+	    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+	this.buf = new byte[bufSize];
+	this.pos = 0;
+	this.scan = 0;
+	this.lim = 0;
+    }
+
+    /**
+     * Reads further bytes from {@link #inStream} into {@link #buf}
+     * moving the bytes not yet handed out to the start of the buffer.
+     *
+     * @return
+     *    whether bytes could be read, i.e. no end of stream.
+     * @throws IOException
+     *    if reading fails.
+     */
+    private boolean fill() throws IOException {
+	if (this.pos > 0) {
+	    System.arraycopy(this.buf, this.pos, this.buf, 0, this.lim - this.pos);
+	    this.scan -= this.pos;
+	    this.lim  -= this.pos;
+	    this.pos = 0;
+	}
+	assert this.lim < this.buf.length;
+	final int num = this.inStream.read(this.buf, this.lim,
+					   this.buf.length - this.lim);
+	if (num == -1) {
+	    return false;
+	}
+	this.lim += num;
+	return true;
+    }
+
+    /**
+     * Returns whether bytes can be read without blocking.
+     * This is the replacement for {@link java.io.BufferedReader#ready()}.
+     *
+     * @return
+     *    whether bytes can be read without blocking.
+     * @throws IOException
+     *    if {@link InputStream#available()} fails.
+     */
+    boolean ready() throws IOException {
+	return this.pos < this.lim || this.inStream.available() > 0;
+    }
+
+    /**
+     * Reads a line outside a response
+     * as {@link java.io.BufferedReader#readLine()} does.
+     * This is used when closing only.
+     *
+     * @return
+     *    the line read without line terminator
+     *    or <code>null</code> if the end of the stream is reached.
+     * @throws IOException
+     *    if reading fails.
+     */
+    String readLine() throws IOException {
+	final ByteArrayOutputStream line = new ByteArrayOutputStream();
+	while (true) {
+	    if (this.pos == this.lim && !fill()) {
+		return line.size() == 0 ? null : line.toString(this.charset.name());
+	    }
+	    final byte bt = this.buf[this.pos++];
+	    this.scan = Math.max(this.scan, this.pos);
+	    if (bt == LF) {
+		return line.toString(this.charset.name());
+	    }
+	    if (bt == CR) {
+		if (this.pos == this.lim) {
+		    fill();
+		}
+		if (this.pos < this.lim && this.buf[this.pos] == LF) {
+		    this.pos++;
+		    this.scan = Math.max(this.scan, this.pos);
+		}
+		return line.toString(this.charset.name());
+	    }
+	    line.write(bt);
+	}
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException
+     *    if closing fails.
+     */
+    void close() throws IOException {
+	this.inStream.close();
+    }
+
+    /**
+     * Returns a reader for the next response
+     * which is terminated by the given spacer.
+     * The reader reaches its end as soon as the spacer is found.
+     * Closing the reader slurps the rest of the response and the spacer.
+     *
+     * @param spacer
+     *    the spacer terminating the response.
+     * @return
+     *    a reader for the next response.
+     */
+    Reader responseReader(final String spacer) {
+	return new ResponseReader(spacer);
+    }
+
+    /**
+     * The reader for a single response terminated by a spacer line.
+     * The pattern searched is <code>\n&lt;spacer&gt;</code>
+     * which is followed by a line terminator.
+     * Searching uses the Knuth-Morris-Pratt algorithm
+     * and so is linear in the number of bytes read.
+     * Its state {@link #matched} survives refilling the buffer.
+     */
+    final class ResponseReader extends Reader {
+
+	/**
+	 * The pattern <code>\n&lt;spacer&gt;</code> encoded.
+	 * It matches only if followed by a line terminator. 
+	 */
+	private final byte[] pattern;
+
+	/**
+	 * The failure function of {@link #pattern} for the KMP algorithm:
+	 * entry <code>i</code> is the length of the longest proper prefix
+	 * of the first <code>i+1</code> bytes of the pattern
+	 * which is also a suffix.
+	 */
+	private final int[] failure;
+
+	/**
+	 * The number of bytes of {@link #pattern} matched
+	 * by the bytes in front of {@link OctaveProcessReader#scan}.
+	 */
+	private int matched;
+
+	/**
+	 * The index in {@link OctaveProcessReader#buf}
+	 * where the pattern starts or <code>-1</code> if not yet found.
+	 */
+	private int end;
+
+	/**
+	 * The index in {@link OctaveProcessReader#buf}
+	 * where the content of the response ends,
+	 * which is {@link #end} unless preceded by <code>\r</code>,
+	 * or <code>-1</code> if the pattern is not yet found.
+	 */
+	private int contentEnd;
+
+	/**
+	 * Whether the last char delivered was a <code>\r</code>
+	 * delivered as <code>\n</code>,
+	 * so that a subsequent <code>\n</code> is to be skipped.
+	 */
+	private boolean pendingCR;
+
+	/**
+	 * Whether the end of the response is reached
+	 * and the spacer is consumed.
+	 */
+	private boolean eof;
+
+	/**
+	 * Buffer to read into if a single char is requested only, 
+	 * because decoding may yield a surrogate pair. 
+	 */
+	private final char[] pair = new char[2];
+
+	/**
+	 * Whether the second char of {@link #pair} is still to be delivered. 
+	 */
+	private boolean hasLeftover;
+
+	ResponseReader(final String spacer) {
+	    this.pattern = ("\n" + spacer).getBytes(OctaveProcessReader.this.charset);
+	    this.failure = new int[this.pattern.length];
+	    int len = 0;
+	    for (int i = 1; i < this.pattern.length; i++) {
+		while (len > 0 && this.pattern[i] != this.pattern[len]) {
+		    len = this.failure[len - 1];
+		}
+		if (this.pattern[i] == this.pattern[len]) {
+		    len++;
+		}
+		this.failure[i] = len;
+	    }
+	    this.matched = 0;
+	    this.end = -1;
+	    this.contentEnd = -1;
+	    this.pendingCR = false;
+	    this.eof = false;
+	    OctaveProcessReader.this.decoder.reset();
+	}
+
+	/**
+	 * Scans the bytes from {@link OctaveProcessReader#scan}
+	 * up to {@link OctaveProcessReader#lim} for the pattern.
+	 * If found, sets {@link #end}.
+	 */
+	private void scan() {
+	    final byte[] bytes = OctaveProcessReader.this.buf;
+	    final int lim = OctaveProcessReader.this.lim;
+	    int idx = OctaveProcessReader.this.scan;
+	    int len = this.matched;
+	    while (idx < lim) {
+		if (len == this.pattern.length) {
+		    // the spacer must be followed by a line terminator 
+		    if (bytes[idx] == LF || bytes[idx] == CR) {
+			this.end = idx - len;
+			// a \r in front belongs to the line terminator
+			this.contentEnd = this.end > OctaveProcessReader.this.pos
+			    && bytes[this.end - 1] == CR
+			    ? this.end - 1 : this.end;
+			len = 0;
+			break;
+		    }
+		    len = this.failure[len - 1];
+		}
+		if (len == 0) {
+		    // fast path: the pattern starts with the only \n in it 
+		    while (idx < lim && bytes[idx] != LF) {
+			idx++;
+		    }
+		    if (idx == lim) {
+			break;
+		    }
+		}
+		final byte bt = bytes[idx++];
+		while (len > 0 && bt != this.pattern[len]) {
+		    len = this.failure[len - 1];
+		}
+		if (bt == this.pattern[len]) {
+		    len++;
+		}
+	    }
+	    OctaveProcessReader.this.scan = idx;
+	    this.matched = len;
+	}
+
+	/**
+	 * Returns the index in {@link OctaveProcessReader#buf}
+	 * up to which bytes surely belong to the response.
+	 * These are the bytes in front of a partial match
+	 * and in front of a trailing <code>\r</code>,
+	 * because it is dropped if followed by the pattern.
+	 */
+	private int safeEnd() {
+	    if (this.end != -1) {
+		return this.contentEnd;
+	    }
+	    int safe = OctaveProcessReader.this.scan - this.matched;
+	    if (safe > OctaveProcessReader.this.pos
+		&& OctaveProcessReader.this.buf[safe - 1] == CR) {
+		safe--;
+	    }
+	    return safe;
+	}
+
+	/**
+	 * Reads and scans further bytes.
+	 *
+	 * @throws IOException
+	 *    if reading fails or the stream ends before the spacer.
+	 */
+	private void fillAndScan() throws IOException {
+	    if (OctaveProcessReader.this.scan == OctaveProcessReader.this.lim
+		&& !fill()) {
+		throw new IOException("Pipe to octave-process broken");
+	    }
+	    scan();
+	}
+
+	/**
+	 * Consumes the pattern and the following line terminator
+	 * and sets {@link #eof}.
+	 *
+	 * @throws IOException
+	 *    if reading fails.
+	 */
+	private void consumeSpacer() throws IOException {
+	    final OctaveProcessReader opr = OctaveProcessReader.this;
+	    opr.pos = this.end + this.pattern.length;
+	    // by scan() the line terminator is in the buffer 
+	    assert opr.pos < opr.lim;
+	    if (opr.buf[opr.pos++] == CR) {
+		if (opr.pos == opr.lim) {
+		    fill();
+		}
+		if (opr.pos < opr.lim && opr.buf[opr.pos] == LF) {
+		    opr.pos++;
+		}
+	    }
+	    opr.scan = opr.pos;
+	    this.eof = true;
+	    LOG.trace("spacer read");
+	}
+
+	@Override
+	public int read(final char[] cbuf, final int off, final int len)
+	    throws IOException {
+	    if (this.eof) {
+		return -1;
+	    }
+	    if (len == 0) {
+		return 0;
+	    }
+	    if (this.hasLeftover) {
+		this.hasLeftover = false;
+		cbuf[off] = this.pair[1];
+		return 1;
+	    }
+	    if (len == 1) {
+		// a surrogate pair does not fit into cbuf 
+		final int num = read(this.pair, 0, 2);
+		if (num == -1) {
+		    return -1;
+		}
+		cbuf[off] = this.pair[0];
+		this.hasLeftover = num == 2;
+		return 1;
+	    }
+	    final OctaveProcessReader opr = OctaveProcessReader.this;
+	    int num;
+	    while (true) {
+		int safe = safeEnd();
+		while (safe == opr.pos && this.end == -1) {
+		    fillAndScan();
+		    safe = safeEnd();
+		}
+		if (safe == opr.pos) {
+		    // end of response
+		    assert this.contentEnd == opr.pos;
+		    num = flushDecoder(cbuf, off, len);
+		    if (num > 0) {
+			break;
+		    }
+		    consumeSpacer();
+		    return -1;
+		}
+		final int before = opr.pos;
+		num = opr.isAsciiCompatible
+		    ? copyAscii(cbuf, off, len, safe)
+		    : 0;
+		if (num == 0) {
+		    num = decode(cbuf, off, len, safe);
+		}
+		if (num > 0) {
+		    break;
+		}
+		// no chars: skipped \n of \r\n or incomplete multi-byte sequence 
+		// In the latter case, further bytes are needed. 
+		if (opr.pos == before && this.end == -1) {
+		    fillAndScan();
+		}
+	    }
+	    if (LOG.isTraceEnabled()) {
+		LOG.trace("read: " + StringUtil.jQuote(new String(cbuf, off, num)));
+	    }
+	    return num;
+	}
+
+	/**
+	 * Converts ascii bytes from {@link OctaveProcessReader#pos}
+	 * up to <code>safe</code> into chars by a cast,
+	 * normalizing line terminators,
+	 * stopping at the first non-ascii byte.
+	 *
+	 * @return
+	 *    the number of chars written to <code>cbuf</code>.
+	 */
+	private int copyAscii(final char[] cbuf, final int off, final int len,
+			      final int safe) {
+	    final byte[] bytes = OctaveProcessReader.this.buf;
+	    int idx = OctaveProcessReader.this.pos;
+	    int out = off;
+	    final int outEnd = off + len;
+	    while (idx < safe && out < outEnd) {
+		final byte bt = bytes[idx];
+		if (bt < 0) {
+		    // not ascii
+		    break;
+		}
+		idx++;
+		if (this.pendingCR) {
+		    this.pendingCR = false;
+		    if (bt == LF) {
+			continue;
+		    }
+		}
+		if (bt == CR) {
+		    this.pendingCR = true;
+		    cbuf[out++] = '\n';
+		} else {
+		    cbuf[out++] = (char) bt;
+		}
+	    }
+	    OctaveProcessReader.this.pos = idx;
+	    return out - off;
+	}
+
+	/**
+	 * Decodes bytes from {@link OctaveProcessReader#pos}
+	 * up to <code>safe</code> into chars via the decoder,
+	 * normalizing line terminators.
+	 *
+	 * @return
+	 *    the number of chars written to <code>cbuf</code>.
+	 */
+	private int decode(final char[] cbuf, final int off, final int len,
+			   final int safe) {
+	    final OctaveProcessReader opr = OctaveProcessReader.this;
+	    final ByteBuffer in = ByteBuffer.wrap(opr.buf, opr.pos, safe - opr.pos);
+	    final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+	    // at the end of the response, no further bytes follow
+	    final CoderResult res = opr.decoder.decode(in, out, safe == this.contentEnd);
+	    assert !res.isError();
+	    opr.pos = in.position();
+	    return normalize(cbuf, off, out.position() - off);
+	}
+
+	/**
+	 * Flushes bytes remaining in the decoder at the end of the response.
+	 *
+	 * @return
+	 *    the number of chars written to <code>cbuf</code>.
+	 */
+	private int flushDecoder(final char[] cbuf, final int off, final int len) {
+	    final CharsetDecoder dec = OctaveProcessReader.this.decoder;
+	    final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+	    dec.decode(ByteBuffer.allocate(0), out, true);
+	    dec.flush(out);
+	    return normalize(cbuf, off, out.position() - off);
+	}
+
+	/**
+	 * Normalizes line terminators of the <code>num</code> chars
+	 * in <code>cbuf</code> starting at <code>off</code> in place.
+	 *
+	 * @return
+	 *    the number of chars after normalization.
+	 */
+	private int normalize(final char[] cbuf, final int off, final int num) {
+	    int out = off;
+	    for (int idx = off; idx < off + num; idx++) {
+		final char chr = cbuf[idx];
+		if (this.pendingCR) {
+		    this.pendingCR = false;
+		    if (chr == '\n') {
+			continue;
+		    }
+		}
+		if (chr == '\r') {
+		    this.pendingCR = true;
+		    cbuf[out++] = '\n';
+		} else {
+		    cbuf[out++] = chr;
+		}
+	    }
+	    return out - off;
+	}
+
+	/**
+	 * Slurps the rest of the response including the spacer.
+	 * This does not close the underlying stream.
+	 *
+	 * @throws IOException
+	 *    if reading fails or the stream ends before the spacer.
+	 */
+	@Override
+	public void close() throws IOException {
+	    if (this.eof) {
+		return;
+	    }
+	    final OctaveProcessReader opr = OctaveProcessReader.this;
+	    // skip bytes without decoding
+	    while (this.end == -1) {
+		opr.pos = safeEnd();
+		fillAndScan();
+	    }
+	    opr.pos = this.end;
+	    consumeSpacer();
+	}
+    } // class ResponseReader
+
+}
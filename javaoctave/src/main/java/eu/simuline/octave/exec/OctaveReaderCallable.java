@@ -15,13 +15,11 @@
  */
 package eu.simuline.octave.exec;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.concurrent.Callable;
 
 import eu.simuline.octave.exception.OctaveIOException;
-import eu.simuline.octave.util.StringUtil;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -44,7 +42,7 @@ final class OctaveReaderCallable implements Callable<Void> {
      * The reader for feedback on scripts received from octave. 
      * This is nothing but {@link OctaveExec#processReader}. 
      */
-    private final BufferedReader processReader;
+    private final OctaveProcessReader processReader;
 
     /**
      * The functor the reading task is delegated to. 
@@ -59,6 +57,15 @@ final class OctaveReaderCallable implements Callable<Void> {
      */
     private final String spacer;
 
+    /**
+     * Whether further requests may be in flight 
+     * as in the pipelined mode of {@link OctaveExec}. 
+     * If so, after having read {@link #spacer}, 
+     * {@link #processReader} may well be ready for reading, 
+     * so this is not considered as an error. 
+     */
+    private final boolean isPipelined;
+
     // TBC: strictly speaking, this goes wrong with a small but positive probability. 
     /**
      * @param processReader
@@ -70,155 +77,41 @@ final class OctaveReaderCallable implements Callable<Void> {
      *    printed at the end of the according write process 
      *    in {@link OctaveExec#evalRW(WriteFunctor, ReadFunctor)} 
      *    and thus signifying the end of the sequence to be read.
+     * @param isPipelined
+     *    whether further requests may be in flight. 
+     *    If not, the reader must not be ready after having read the spacer. 
      */
-    OctaveReaderCallable(final BufferedReader processReader, 
+    OctaveReaderCallable(final OctaveProcessReader processReader, 
 			 final ReadFunctor readFunctor, 
-			 final String spacer) {
+			 final String spacer,
+			 final boolean isPipelined) {
         this.processReader = processReader;
         this.readFunctor   = readFunctor;
         this.spacer        = spacer;
+        this.isPipelined   = isPipelined;
     }
 
-    /**
-     * Reader that passes the reading on to the output from the octave process, 
-     * i.e. from {@link OctaveReaderCallable#processReader} 
-     * until the spacer {@link OctaveReaderCallable#spacer} reached, then it returns EOF. 
-     * When this reader is closed 
-     * the underlying reader is slurped up to the spacer. 
-     * <p>
-     * This is used in {@link OctaveReaderCallable#call()} only. 
-     */
-    // TBC: maybe thus this shall be an inner class. 
-    final class OctaveExecuteReader extends Reader {
-
-        /**
-         * The current line read from {@link OctaveReaderCallable#processReader} 
-         * but not yet passed to a char-array by {@link #read(char[], int, int)}. 
-         * If this buffer were empty, it is <code>null</code> instead, 
-         * which is also the initial value. 
-         * If this is not the first line, the line read from {@link OctaveReaderCallable#processReader} 
-         * is preceded by newline before being passed to {@link #buffer}. 
-         */
-        private StringBuffer buffer = null;
-
-        /**
-         * Whether reading the first line. 
-         * Initially, this is true. 
-         * It is set to false, by {@link #read(char[], int, int)} 
-         * if {@link #buffer} is filled for the first time. 
-         */
-        private boolean firstLine = true;
-
-        /**
-         * Whether end of reader found. 
-         * Initially, this is false. 
-         * It is set to false, by {@link #read(char[], int, int)} 
-         * if {@link #buffer} equals {@link #spacer}, 
-         * not really end of {@link OctaveReaderCallable#processReader}. 
-         */
-        private boolean eof = false;
-
-        /**
-         * Reads characters into a portion of an array. 
-         * This method will block until some input is available, 
-         * an I/O error occurs, or the end of the stream is reached.
-         *
-         * @param cbuf 
-         *    Destination buffer
-         * @param off 
-         *    Offset at which to start storing characters. 
-         * @param len 
-         *    Maximum number of characters to read. 
-         * @return
-         *    The number of characters read, 
-         *    or -1 if the end of the stream has been reached. 
-         *    The latter is the case if {@link #eof} is set 
-         *    which means that line {@link #spacer} has been found. 
-         * @throws IOException 
-         *    If an I/O error occurs. 
-         *    This is true in particular, 
-         *    if null-line has been read from {@link OctaveReaderCallable#processReader}. 
-         */
-        @Override
-        public int read(final char[] cbuf, final int off, final int len) 
-    	throws IOException {
-            if (this.eof) {
-                return -1;
-            }
-            if (this.buffer == null) {
-                // may throw IOException 
-                final String line = OctaveReaderCallable.this.processReader.readLine();
-                if (OctaveReaderCallable.LOG.isTraceEnabled()) {
-                    OctaveReaderCallable.LOG.trace("octaveReader.readLine() = " + 
-    			  StringUtil.jQuote(line));
-                }
-                if (line == null) {
-                    throw new IOException("Pipe to octave-process broken");
-                }
-                if (OctaveReaderCallable.this.spacer.equals(line)) {
-                    this.eof = true;
-                    return -1;
-                }
-
-    	    // line possibly preceded by \n 
-                this.buffer = new StringBuffer(line.length() + 1);
-                if (this.firstLine) {
-                    this.firstLine = false;
-                } else {
-                    this.buffer.append('\n');
-                }
-                this.buffer.append(line);
-            }
-    	assert this.buffer != null;
-
-            final int charsRead = Math.min(this.buffer.length(), len);
-            this.buffer.getChars(0, charsRead, cbuf, off);
-            if (charsRead == buffer.length()) {
-                this.buffer = null;
-            } else {
-                this.buffer.delete(0, charsRead);
-            }
-            return charsRead;
-        }
-
-        @Override
-        @SuppressWarnings({"checkstyle:magicnumber", "checkstyle:emptyblock"})
-        // length of buffer is immaterial for function 
-        public void close() throws IOException {
-            final char[] buffer1 = new char[4096];
-            // Slurp the rest of the wrapped input
-            // may throw IOException 
-            while (read(buffer1) != -1) { // NOPMD 
-                // Do nothing
-            }
-            // may throw IOException 
-            if (OctaveReaderCallable.this.processReader.ready()) {
-                throw new IOException("octaveReader is ready()");
-            }
-            OctaveReaderCallable.LOG.debug("Reader closed()");
-        }
-
-    } // class OctaveExecuteReader
-
     // TBC: what about spacer?
     // where do deviations from OctaveWriterCallable.call() come from? 
     /**
      * Calling essentially reads from {@link #processReader} representing the octave process: 
      * Reads until {@link #spacer} is detected which is not really read but is interpreted 
      * as an eof symbol. 
-     * To that end, {@link #processReader} is wrapped into an {@link OctaveExecuteReader} 
+     * To that end, the reader for the current response 
+     * is obtained by {@link OctaveProcessReader#responseReader(String)} 
      * with parameter {@link #spacer} which yields eof if the spacer is detected. 
-     * Closing the {@link OctaveExecuteReader} reads the spacer without passing it further.  
+     * Closing that reader reads the spacer without passing it further.  
+     * If not {@link #isPipelined}, 
+     * afterwards {@link #processReader} must not be ready. 
      * Exceptions are logged on {@link #LOG}. 
      *
      * @throws OctaveIOException 
-     *    if underlying {@link #readFunctor} or the reader {@link #processReader} or 
-     *    the wrapping {@link  OctaveExecuteReader} 
+     *    if underlying {@link #readFunctor} or the reader {@link #processReader} 
      *    throws an {@link IOException}. 
      */
     @Override
     public Void call() {
-        final Reader reader = new OctaveExecuteReader();
+        final Reader reader = this.processReader.responseReader(this.spacer);
         try {
             this.readFunctor.doReads(reader);
         } catch (final IOException e) {
@@ -228,6 +121,10 @@ final class OctaveReaderCallable implements Callable<Void> {
             try {
         	// this slurps the spacer 
                 reader.close();
+		if (!this.isPipelined && this.processReader.ready()) {
+		    throw new IOException("octaveReader is ready()");
+		}
+		LOG.debug("Reader closed()");
             } catch (final IOException e) {
                 LOG.debug(MSG_IOE_CLS, e);
                 throw new OctaveIOException(MSG_IOE_CLS, e);
@@ -84,6 +84,19 @@ final class OctaveWriterCallable implements Callable<Void> {
         this.spacer        = spacer;
     }
 
+    /**
+     * Returns the octave command printing <code>spacer</code> 
+     * on a line of its own. 
+     *
+     * @param spacer
+     *    the spacer to be printed. 
+     * @return
+     *    the command printing the spacer preceded and followed by newline. 
+     */
+    static String printSpacer(final String spacer) {
+	return "\nprintf(\"\\n%s\\n\", \"" + spacer + "\");\n";
+    }
+
     /**
      * Calling writes to {@link #processWriter} 
      * representing the octave process: 
@@ -108,8 +121,7 @@ final class OctaveWriterCallable implements Callable<Void> {
             throw new OctaveIOException(MSG_IOE_WRITE, e);
         }
         try {
-	    this.processWriter.write("\nprintf(\"\\n%s\\n\", \"" + 
-				     this.spacer + "\");\n");
+	    this.processWriter.write(printSpacer(this.spacer));
             this.processWriter.flush();
         } catch (final IOException e) {
             LOG.debug(MSG_IOE_SPACER, e);
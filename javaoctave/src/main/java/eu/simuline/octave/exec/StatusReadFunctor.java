@@ -0,0 +1,267 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+
+import eu.simuline.octave.util.IOUtils;
+
+/**
+ * Reads the output of a script followed by a status marker
+ * printed by {@link #printStatus(String)}.
+ * The output up to the marker is handed over to a wrapped read functor
+ * while it arrives, the status is recorded.
+ * So a script is evaluated and checked for errors in a single round trip.
+ * The marker starts with a newline and a control character
+ * which is assumed not to occur in the output of the script.
+ */
+public final class StatusReadFunctor implements ReadFunctor {
+
+    /**
+     * The separator of the output and the status.
+     * Note that the newline occurs at the beginning only,
+     * which {@link HeadReader} relies on.
+     */
+    static final String SEPARATOR = "\n\u0001javaoctave-status ";
+
+    /**
+     * The size of the buffers for reading ahead and skipping.
+     */
+    private static final int BUF_SIZE = 4096;
+
+    /**
+     * The status signifying success.
+     */
+    private static final String OK = "ok\n";
+
+    /**
+     * The status signifying an error followed by the message.
+     */
+    private static final String ERROR = "error\n";
+
+    /**
+     * The read functor the output up to the marker is handed over to.
+     */
+    private final ReadFunctor output;
+
+    /**
+     * Whether the status marker was read by {@link #doReads(Reader)}.
+     */
+    private boolean hasStatus;
+
+    /**
+     * The error message read by {@link #doReads(Reader)}
+     * or <code>null</code> if the script succeeded
+     * or if there is no status.
+     */
+    private String errorMessage;
+
+    /**
+     * @param output
+     *    the read functor the output of the script is handed over to.
+     */
+    public StatusReadFunctor(final ReadFunctor output) {
+	this.output = output;
+    }
+
+    /**
+     * Returns an octave script printing the status marker
+     * signifying an error if the variable <code>errVar</code> is defined
+     * and its value as message, or success otherwise.
+     *
+     * @param errVar
+     *    the name of a variable holding an error message if defined.
+     * @return
+     *    a script printing the status marker terminated by a newline.
+     */
+    public static String printStatus(final String errVar) {
+	return String.format("if exist(\"%1$s\", \"var\")\n"
+			     + "  printf(\"\\n%%c%%s%%s\", 1, \"%2$s%3$s\", %1$s);\n"
+			     + "else\n"
+			     + "  printf(\"\\n%%c%%s\", 1, \"%2$s%4$s\");\n"
+			     + "end\n",
+			     errVar,
+			     SEPARATOR.substring(2),
+			     ERROR.replace("\n", "\\n"),
+			     OK.replace("\n", "\\n"));
+    }
+
+    /**
+     * Hands over the output up to the status marker
+     * to the wrapped read functor and reads the status.
+     *
+     * @param reader
+     *    the reader to read the output and the status from.
+     * @throws IOException
+     *    on IO error from reader
+     */
+    @Override
+    public void doReads(final Reader reader) throws IOException {
+	final HeadReader head = new HeadReader(reader);
+	this.output.doReads(head);
+	// skips output the wrapped functor did not read
+	final char[] skip = new char[BUF_SIZE];
+	while (head.read(skip, 0, skip.length) != -1) { // NOPMD
+	    // Do nothing
+	}
+	if (!head.found) {
+	    return;
+	}
+	final StringWriter rest = new StringWriter();
+	rest.write(head.buf, head.pos, head.lim - head.pos);
+	IOUtils.copy(reader, rest);
+	final String status = rest.toString();
+	if (OK.equals(status)) {
+	    this.hasStatus = true;
+	} else if (status.startsWith(ERROR)) {
+	    this.hasStatus = true;
+	    this.errorMessage = status.substring(ERROR.length());
+	}
+    }
+
+    /**
+     * Returns whether {@link #doReads(Reader)} read a valid status marker.
+     * If not, the script did not complete, e.g. because it was interrupted.
+     *
+     * @return
+     *    whether a status was read.
+     */
+    public boolean hasStatus() {
+	return this.hasStatus;
+    }
+
+    /**
+     * Returns the message of the error of the script
+     * or <code>null</code> if it succeeded or if there is no status.
+     *
+     * @return
+     *    the error message read or <code>null</code>.
+     */
+    public String getErrorMessage() {
+	return this.errorMessage;
+    }
+
+    /**
+     * A reader returning the characters of a wrapped reader
+     * up to {@link #SEPARATOR} exclusively.
+     * Characters which may start the separator are held back
+     * until it is clear whether they do.
+     */
+    private static final class HeadReader extends Reader {
+
+	private final Reader in;
+
+	/**
+	 * The characters read from {@link #in} ahead.
+	 * After the separator has been found,
+	 * those from {@link #pos} to {@link #lim} follow the separator.
+	 */
+	private final char[] buf = new char[BUF_SIZE];
+
+	private int pos;
+
+	private int lim;
+
+	/**
+	 * The number of characters of {@link #SEPARATOR}
+	 * matched by the last characters read and held back.
+	 */
+	private int matched;
+
+	/**
+	 * The held back characters of {@link #SEPARATOR}
+	 * from index {@link #emitPos} to {@link #emitEnd}
+	 * still to be returned because they turned out not to be the separator.
+	 */
+	private int emitPos;
+
+	private int emitEnd;
+
+	/**
+	 * Whether the separator or the end of {@link #in} has been reached.
+	 */
+	private boolean ended;
+
+	/**
+	 * Whether the separator has been found.
+	 */
+	private boolean found;
+
+	HeadReader(final Reader in) {
+	    this.in = in;
+	}
+
+	@Override
+	public int read(final char[] cbuf, final int off, final int len)
+	    throws IOException {
+	    if (len == 0) {
+		return 0;
+	    }
+	    int num = 0;
+	    while (num < len) {
+		if (this.emitPos < this.emitEnd) {
+		    cbuf[off + num++] = SEPARATOR.charAt(this.emitPos++);
+		    continue;
+		}
+		if (this.ended) {
+		    break;
+		}
+		if (this.pos == this.lim) {
+		    if (num > 0) {
+			// do not block if there is something to return
+			break;
+		    }
+		    final int numRead = this.in.read(this.buf, 0, this.buf.length);
+		    this.pos = 0;
+		    this.lim = Math.max(numRead, 0);
+		    if (numRead == -1) {
+			this.ended = true;
+			this.emitPos = 0;
+			this.emitEnd = this.matched;
+			this.matched = 0;
+		    }
+		    continue;
+		}
+		final char chr = this.buf[this.pos++];
+		if (chr == SEPARATOR.charAt(this.matched)) {
+		    this.matched++;
+		    if (this.matched == SEPARATOR.length()) {
+			this.ended = true;
+			this.found = true;
+		    }
+		    continue;
+		}
+		if (this.matched > 0) {
+		    // since the newline starts the separator only,
+		    // only chr itself may start the separator
+		    this.emitPos = 0;
+		    this.emitEnd = this.matched;
+		    this.matched = 0;
+		    this.pos--;
+		    continue;
+		}
+		cbuf[off + num++] = chr;
+	    }
+	    return num == 0 ? -1 : num;
+	}
+
+	@Override
+	public void close() {
+	    // the wrapped reader is closed by the caller
+	}
+    } // class HeadReader
+
+}
@@ -24,6 +24,10 @@
  * and an {@link eu.simuline.octave.exec.OctaveReaderCallable} 
  * to read back the output from octave. 
  * {@link eu.simuline.octave.exec.OctaveExec#evalRW(WriteFunctor, ReadFunctor)}.
+ * In pipelined mode, 
+ * {@link eu.simuline.octave.exec.OctaveExec#submitRW(WriteFunctor, ReadFunctor)} 
+ * writes a script on the calling thread 
+ * while the output of earlier scripts is still being read. 
  * <p>
  * The basic interfaces are {@link eu.simuline.octave.exec.ReadFunctor} 
  * and {@link eu.simuline.octave.exec.WriteFunctor} 
@@ -35,6 +39,10 @@
  * and {@link eu.simuline.octave.exec.WriterReadFunctor} 
  * which is a ReadFunctor reading from a reader 
  * and writing to a wrapped writer. 
+ * Moreover, {@link eu.simuline.octave.exec.StatusReadFunctor} 
+ * hands the output of a script over to a wrapped ReadFunctor 
+ * and reads the status marker printed after the script, 
+ * so that a script is checked for errors in the same round trip. 
  * <p>
  * Note that <code>eu.simuline.octave.io.DataReadFunctor</code> 
  * is the other implementation of {@link eu.simuline.octave.exec.ReadFunctor} 
@@ -49,6 +57,19 @@
  * only. 
  * The first one writes a command to octave, 
  * whereas the second one reads the result back. 
+ * <p>
+ * The error stream of octave is read by an 
+ * {@link eu.simuline.octave.exec.OctaveErrorPipe} per process 
+ * into a bounded ring buffer 
+ * drained by the {@link eu.simuline.octave.exec.ErrorPump} 
+ * shared by all processes. 
+ * It splits the error stream into 
+ * {@link eu.simuline.octave.exec.OctaveDiagnostic}s 
+ * tagged with the request in flight. 
+ * In multiplexed mode, the process has no threads of its own: 
+ * the {@link eu.simuline.octave.exec.OctaveMultiplexer} 
+ * shared by all processes reads standard output and error stream 
+ * without blocking and completes the responses awaited by the callers. 
  */
 package eu.simuline.octave.exec;
 
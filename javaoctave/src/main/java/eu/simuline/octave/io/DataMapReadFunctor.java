@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import static eu.simuline.octave.io.OctaveIO.readerReadLine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.exec.ReadFunctor;
+import eu.simuline.octave.type.OctaveObject;
+
+/**
+ * Functor that reads the variables named by the keys of {@link #data}
+ * into {@link #data} via {@link #doReads(Reader)}.
+ * This is the counterpart of {@link DataWriteFunctor}
+ * reading the reply of {@link OctaveIO#getAll(Collection)}:
+ * first a line {@link #MISSING} followed by the name
+ * for each variable which does not exist
+ * and then the other variables in the text format
+ * written by a single <code>save -text</code>.
+ */
+final class DataMapReadFunctor implements ReadFunctor {
+
+    /**
+     * The start of the line replied for a variable which does not exist
+     * followed by its name.
+     */
+    static final String MISSING = DataReadFunctor.MISSING + " ";
+
+    /**
+     * The maximal number of characters of a line
+     * which is read ahead to skip empty lines between variables.
+     */
+    private static final int READ_AHEAD = 8192;
+
+    /**
+     * After {@link #doReads(Reader)} returns,
+     * this maps the names of the variables to be read in the order given
+     * to the values read or to <code>null</code>
+     * if the variable does not exist.
+     */
+    private final Map<String, OctaveObject> data;
+
+    /**
+     * @param names
+     *    the names of the variables to be read.
+     */
+    DataMapReadFunctor(final Collection<String> names) {
+	this.data = new LinkedHashMap<String, OctaveObject>();
+	for (String name : names) {
+	    this.data.put(name, null);
+	}
+    }
+
+    /**
+     * @param reader
+     * @throws OctaveParseException
+     *    if the reply does not fit the names of the variables.
+     */
+    @Override
+    public void doReads(final Reader reader) throws IOException {
+        final BufferedReader bufferedReader = new BufferedReader(reader);
+	int numMissing = 0;
+	String line = readerReadLine(bufferedReader);
+	while (line != null && line.startsWith(MISSING)) {
+	    final String name = line.substring(MISSING.length());
+	    if (!this.data.containsKey(name)) {
+		throw new OctaveParseException
+		    ("Unexpected missing variable '" + name + "'");
+	    }
+	    numMissing++;
+	    line = readerReadLine(bufferedReader);
+	}
+	if (numMissing == this.data.size()) {
+	    return;
+	}
+        if (line == null || !line.startsWith("# Created by Octave")) {
+            throw new OctaveParseException
+		("Not created by Octave?: '" + line + "'");
+        }
+	int numRead = 0;
+	while (true) {
+	    // skip the empty lines between variables
+	    bufferedReader.mark(READ_AHEAD);
+	    line = readerReadLine(bufferedReader);
+	    if (line == null) {
+		break;
+	    }
+	    if (line.isEmpty()) {
+		continue;
+	    }
+	    bufferedReader.reset();
+	    for (Map.Entry<String, OctaveObject> entry
+		     : OctaveIO.readWithName(bufferedReader).entrySet()) {
+		if (!this.data.containsKey(entry.getKey())) {
+		    throw new OctaveParseException
+			("Unexpected variable '" + entry.getKey() + "'");
+		}
+		this.data.put(entry.getKey(), entry.getValue());
+		numRead++;
+	    }
+	}
+	if (numMissing + numRead != this.data.size()) {
+	    throw new OctaveParseException
+		("Expected " + this.data.size() + " variables but got "
+		 + numRead + " and " + numMissing + " missing. ");
+	}
+    }
+
+    /**
+     * @return
+     *    a map from the names of the variables
+     *    in the order given to the constructor
+     *    to the values read or to <code>null</code>
+     *    if the variable does not exist.
+     */
+    Map<String, OctaveObject> getData() {
+        return this.data;
+    }
+
+}
@@ -18,27 +18,84 @@ package eu.simuline.octave.io;
 import static eu.simuline.octave.io.OctaveIO.readerReadLine;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.util.Map;
 
 import eu.simuline.octave.exception.OctaveParseException;
 import eu.simuline.octave.exec.ReadFunctor;
+import eu.simuline.octave.io.bin.OctaveBinary;
+import eu.simuline.octave.type.OctaveDouble;
 import eu.simuline.octave.type.OctaveObject;
+import eu.simuline.octave.type.OctaveString;
+import eu.simuline.octave.util.IOUtils;
 
 /**
  * Functor that reads a single variable named {@link #name} 
  * into {@link #data} via {@link #doReads(Reader)}. 
+ * Besides the text format written by <code>save -text</code>, 
+ * the replies {@link #MISSING}, {@link #SCALAR}, {@link #STRING}, 
+ * {@link #BINARY} and {@link #MAPPED} 
+ * written by {@link OctaveIO#get(String)} are read. 
  */
 // ER: Very strange: whereas this read functor reads a single variable only 
 // the according write functor writes a map: 
 // see OctaveIO 
 final class DataReadFunctor implements ReadFunctor {
 
+    /**
+     * The line replied instead of data 
+     * if the variable to be read does not exist. 
+     * Then {@link #data} is <code>null</code>. 
+     */
+    static final String MISSING = "# javaoctave missing";
+
+    /**
+     * The line replied in front of the value of a real double scalar 
+     * in a single line. 
+     */
+    static final String SCALAR  = "# javaoctave scalar";
+
+    /**
+     * The line replied in front of a string, i.e. a row of characters, 
+     * which extends to the end of the reply. 
+     */
+    static final String STRING  = "# javaoctave string";
+
+    /**
+     * The line replied after the variable has been saved 
+     * in binary format to {@link #binFile}. 
+     */
+    static final String BINARY  = "# javaoctave binary";
+
+    /**
+     * The start of the line replied after the variable has been written 
+     * to {@link #mappedFile} by {@link MappedSideChannel} 
+     * followed by its class and its dimensions. 
+     */
+    static final String MAPPED  = "# javaoctave mapped";
+
     /**
      * The name of the variable to be read. 
      */
     private final String name;
 
+    /**
+     * The file the variable may be saved to in binary format 
+     * or <code>null</code> if the binary format is not used. 
+     * It is deleted after having been read. 
+     */
+    private final File binFile;
+
+    /**
+     * The file the variable may be written to by {@link MappedSideChannel} 
+     * or <code>null</code> if the side channel is not used. 
+     * It is deleted after having been read. 
+     */
+    private final File mappedFile;
+
     /**
      * After {@link #doReads(Reader)} returns, this contains the read data. 
      */
@@ -48,16 +105,75 @@ final class DataReadFunctor implements ReadFunctor {
      * @param name
      */
     DataReadFunctor(final String name) {
+        this(name, null, null);
+    }
+
+    /**
+     * @param name
+     * @param binFile
+     *    the file the variable may be saved to in binary format 
+     *    or <code>null</code>. 
+     * @param mappedFile
+     *    the file the variable may be written to by the side channel 
+     *    or <code>null</code>. 
+     */
+    DataReadFunctor(final String name, 
+		    final File binFile, 
+		    final File mappedFile) {
         this.name = name;
+        this.binFile = binFile;
+        this.mappedFile = mappedFile;
     }
 
     /**
      * @param reader
      */
     @Override
-    public void doReads(final Reader reader) {
+    public void doReads(final Reader reader) throws IOException {
         final BufferedReader bufferedReader = new BufferedReader(reader);
         final String createByOctaveLine = readerReadLine(bufferedReader);
+	if (MISSING.equals(createByOctaveLine)) {
+	    this.data = null;
+	    return;
+	}
+	if (SCALAR.equals(createByOctaveLine)) {
+	    final OctaveDouble scalar = new OctaveDouble(1, 1);
+	    scalar.setPlain(readerReadLine(bufferedReader), 0);
+	    this.data = scalar;
+	    return;
+	}
+	if (createByOctaveLine != null && this.mappedFile != null
+	    && createByOctaveLine.startsWith(MAPPED + " ")) {
+	    try {
+		this.data = MappedSideChannel.read
+		    (this.mappedFile, 
+		     createByOctaveLine.substring(MAPPED.length()));
+	    } finally {
+		OctaveIO.deleteTempFile(this.mappedFile);
+	    }
+	    return;
+	}
+	if (BINARY.equals(createByOctaveLine) && this.binFile != null) {
+	    final Map<String, OctaveObject> map;
+	    try {
+		map = OctaveBinary.read(this.binFile);
+	    } finally {
+		OctaveIO.deleteTempFile(this.binFile);
+	    }
+	    if (!map.containsKey(this.name)) {
+		throw new OctaveParseException
+		    ("Expected variable named '" + this.name + 
+		     "' but got '" + map.keySet() + "'");
+	    }
+	    this.data = map.get(this.name);
+	    return;
+	}
+	if (STRING.equals(createByOctaveLine)) {
+	    final StringWriter string = new StringWriter();
+	    IOUtils.copy(bufferedReader, string);
+	    this.data = new OctaveString(string.toString());
+	    return;
+	}
         if (createByOctaveLine == null || 
 	    !createByOctaveLine.startsWith("# Created by Octave")) {
             throw new OctaveParseException
@@ -0,0 +1,376 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveInt;
+import eu.simuline.octave.type.OctaveLong;
+import eu.simuline.octave.type.OctaveObject;
+import eu.simuline.octave.type.matrix.AbstractGenericMatrix;
+
+/**
+ * A side channel transferring the data of large numeric matrices
+ * via memory-mapped files, preferably on a tmpfs like <code>/dev/shm</code>,
+ * whereas only a short script is passed through the pipe to octave.
+ * The data is raw, column-major and in native byte order:
+ * java copies it from the backing array into the mapped file
+ * and octave reads it by <code>fread</code>,
+ * octave writes it by <code>fwrite</code>
+ * and java copies it from the mapped file into the backing array.
+ * So neither formatting nor decoding of characters is involved
+ * and on a tmpfs the data is never written to disk.
+ * <p>
+ * The side channel applies to {@link OctaveDouble}, {@link OctaveInt}
+ * and {@link OctaveLong} with at least {@link #threshold} bytes of data,
+ * i.e. to octave types "matrix", "int32 matrix" and "int64 matrix".
+ * Smaller matrices are cheaper to transfer through the pipe.
+ * Matrices with more than {@link #MAX_SIZE} bytes of data
+ * or more than is left in {@link #dir}
+ * are transferred through the pipe as well:
+ * a mapping of a file which can not grow on a full tmpfs
+ * would crash the virtual machine when written to.
+ */
+public final class MappedSideChannel {
+
+    /**
+     * The directory of tmpfs on linux used by default.
+     */
+    private static final String SHM = "/dev/shm";
+
+    /**
+     * The octave types transferred by the side channel.
+     */
+    private static final String TYPES =
+	"{\"matrix\", \"int32 matrix\", \"int64 matrix\"}";
+
+    /**
+     * The name of the temporary variable holding the file identifier
+     * in the scripts.
+     */
+    private static final String FID = "javaoctave_fid";
+
+    /**
+     * The maximal number of bytes of the data of a matrix
+     * transferred by this side channel,
+     * which is the maximal size of a mapping.
+     */
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * The directory the files are created in.
+     */
+    private final File dir;
+
+    /**
+     * The minimal number of bytes of the data of a matrix
+     * transferred by this side channel.
+     */
+    private final int threshold;
+
+    /**
+     * @param dir
+     *    the directory the files are created in
+     *    or <code>null</code> for {@link #defaultDir()}.
+     * @param threshold
+     *    the minimal number of bytes of the data of a matrix
+     *    transferred by this side channel which must be positive.
+     */
+    public MappedSideChannel(final File dir, final int threshold) {
+	if (threshold <= 0) {
+	    throw new IllegalArgumentException
+		("Expected positive threshold but found " + threshold + ". ");
+	}
+	this.dir = dir == null ? defaultDir() : dir;
+	this.threshold = threshold;
+    }
+
+    /**
+     * Returns <code>/dev/shm</code> if this is a writable directory
+     * and the default directory for temporary files otherwise.
+     *
+     * @return
+     *    the directory files are created in by default.
+     */
+    public static File defaultDir() {
+	final File shm = new File(SHM);
+	return shm.isDirectory() && shm.canWrite()
+	    ? shm
+	    : new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Returns the size of an element of <code>value</code> in bytes
+     * or <code>0</code> if <code>value</code> is not supported.
+     */
+    private static int elementSize(final OctaveObject value) {
+	if (value instanceof OctaveDouble) {
+	    return Double.BYTES;
+	}
+	if (value instanceof OctaveInt) {
+	    return Integer.BYTES;
+	}
+	if (value instanceof OctaveLong) {
+	    return Long.BYTES;
+	}
+	return 0;
+    }
+
+    /**
+     * Returns the octave class of <code>value</code>
+     * which is also the precision for <code>fread</code>.
+     */
+    private static String octaveClass(final OctaveObject value) {
+	if (value instanceof OctaveDouble) {
+	    return "double";
+	}
+	if (value instanceof OctaveInt) {
+	    return "int32";
+	}
+	assert value instanceof OctaveLong;
+	return "int64";
+    }
+
+    /**
+     * Returns whether <code>value</code> is transferred by this side channel.
+     *
+     * @param value
+     *    an octave object.
+     * @return
+     *    whether <code>value</code> is a numeric matrix
+     *    with at least {@link #threshold} bytes of data
+     *    but at most {@link #MAX_SIZE} bytes
+     *    and at most the space left in {@link #dir}.
+     */
+    boolean isMapped(final OctaveObject value) {
+	final int size = elementSize(value);
+	if (size == 0) {
+	    return false;
+	}
+	final long bytes =
+	    (long) size * ((AbstractGenericMatrix<?, ?>) value).dataSize();
+	return bytes >= this.threshold
+	    && bytes <= MAX_SIZE
+	    && bytes <= this.dir.getUsableSpace();
+    }
+
+    /**
+     * Creates a new empty file in {@link #dir}.
+     *
+     * @throws IOException
+     *    if the file could not be created.
+     */
+    File createFile() throws IOException {
+	return File.createTempFile("javaoctave", ".raw", this.dir);
+    }
+
+    /**
+     * Returns a new file in {@link #dir} without creating it, 
+     * so that octave creates it only if it writes a value to it. 
+     */
+    File newFile() {
+	return OctaveIO.newTempFile(this.dir, ".raw");
+    }
+
+    /**
+     * Writes the data of <code>value</code> to <code>file</code>
+     * mapped into memory
+     * and returns a script reading it into the variable <code>name</code>.
+     *
+     * @param name
+     *    the name of the variable to be set.
+     * @param value
+     *    a value which {@link #isMapped(OctaveObject)}.
+     * @param file
+     *    the file to write to.
+     * @return
+     *    the script setting the variable <code>name</code> to <code>value</code>.
+     * @throws IOException
+     *    if writing fails,
+     *    in particular if there is not enough space left in {@link #dir}.
+     *    Then the value is still to be transferred otherwise.
+     */
+    String write(final String name,
+		 final OctaveObject value,
+		 final File file) throws IOException {
+	final AbstractGenericMatrix<?, ?> matrix =
+	    (AbstractGenericMatrix<?, ?>) value;
+	final int len = matrix.dataSize();
+	final ByteBuffer buf = map(file,
+				   FileChannel.MapMode.READ_WRITE,
+				   (long) len * elementSize(value));
+	if (value instanceof OctaveDouble) {
+	    ((OctaveDouble) value).getPlain(buf.asDoubleBuffer(), 0, len);
+	} else if (value instanceof OctaveInt) {
+	    ((OctaveInt) value).getPlain(buf.asIntBuffer(), 0, len);
+	} else {
+	    ((OctaveLong) value).getPlain(buf.asLongBuffer(), 0, len);
+	}
+
+	final StringBuilder dims = new StringBuilder();
+	for (int idx = 1; idx <= matrix.getSizeLength(); idx++) {
+	    dims.append(' ').append(matrix.getSize(idx));
+	}
+	final String cls = octaveClass(value);
+	return String.format("%1$s = fopen(%2$s, \"r\");\n"
+			     + "%3$s = reshape(fread(%1$s, Inf, \"%4$s=>%4$s\"), [%5$s]);\n"
+			     + "fclose(%1$s);\n"
+			     + "clear %1$s\n",
+			     FID, OctaveIO.quote(file), name, cls, dims.substring(1));
+    }
+
+    /**
+     * Returns a branch of an <code>if</code> statement
+     * in a script writing the variable <code>name</code> to <code>file</code>
+     * if it is transferred by this side channel
+     * and printing <code>marker</code> followed by the class and the dimensions
+     * as expected by {@link #read(File, String)}.
+     *
+     * @param name
+     *    the name of the variable to be read.
+     * @param file
+     *    the file to write to.
+     * @param marker
+     *    the marker printed after writing the data.
+     * @return
+     *    an <code>elseif</code> branch.
+     */
+    String elseifSave(final String name,
+		      final File file,
+		      final String marker) {
+	return String.format(
+	     "  elseif any(strcmp(typeinfo(%1$s), %2$s)) "
+	     +      "&& sizeof(%1$s) >= %3$d && sizeof(%1$s) <= %7$d\n"
+	     + "    %4$s = fopen(%5$s, \"w\");\n"
+	     + "    fwrite(%4$s, %1$s, class(%1$s));\n"
+	     + "    fclose(%4$s);\n"
+	     + "    clear %4$s\n"
+	     + "    printf(\"%6$s %%s%%s\\n\", class(%1$s), sprintf(\" %%d\", size(%1$s)));\n",
+	     name, TYPES, this.threshold, FID, OctaveIO.quote(file), marker,
+	     MAX_SIZE);
+    }
+
+    /**
+     * Reads a matrix from <code>file</code> mapped into memory
+     * directly into the backing array.
+     *
+     * @param file
+     *    the file written by the script of {@link #elseifSave(String, File, String)}.
+     * @param spec
+     *    the octave class followed by the dimensions separated by blanks.
+     * @return
+     *    the matrix read.
+     * @throws IOException
+     *    if reading fails.
+     * @throws OctaveParseException
+     *    if <code>spec</code> is malformed.
+     */
+    static OctaveObject read(final File file, final String spec)
+	throws IOException {
+	final String[] parts = spec.trim().split(" ");
+	if (parts.length < 3) {
+	    throw new OctaveParseException
+		("Expected class and dimensions but got '" + spec + "'. ");
+	}
+	final int[] dims = new int[parts.length - 1];
+	try {
+	    for (int idx = 0; idx < dims.length; idx++) {
+		dims[idx] = Integer.parseInt(parts[idx + 1]);
+	    }
+	} catch (NumberFormatException e) {
+	    throw new OctaveParseException
+		("Malformed dimensions '" + spec + "'. ", e);
+	}
+	final AbstractGenericMatrix<?, ?> res;
+	switch (parts[0]) {
+	case "double":
+	    res = new OctaveDouble(dims);
+	    break;
+	case "int32":
+	    res = new OctaveInt(dims);
+	    break;
+	case "int64":
+	    res = new OctaveLong(dims);
+	    break;
+	default:
+	    throw new OctaveParseException
+		("Unexpected class '" + parts[0] + "'. ");
+	}
+	final int len = res.dataSize();
+	final ByteBuffer buf = map(file,
+				   FileChannel.MapMode.READ_ONLY,
+				   (long) len * elementSize(res));
+	if (res instanceof OctaveDouble) {
+	    ((OctaveDouble) res).setPlain(buf.asDoubleBuffer(), 0, len);
+	} else if (res instanceof OctaveInt) {
+	    ((OctaveInt) res).setPlain(buf.asIntBuffer(), 0, len);
+	} else {
+	    ((OctaveLong) res).setPlain(buf.asLongBuffer(), 0, len);
+	}
+	return res;
+    }
+
+    /**
+     * Maps <code>size</code> bytes of <code>file</code> into memory
+     * in native byte order as used by <code>fread</code> and <code>fwrite</code>.
+     * The mapping remains valid after the channel is closed
+     * and even after the file is deleted;
+     * it is released when the buffer is garbage collected.
+     * Before writing, the space left is checked,
+     * because a page of the mapping which can not be backed
+     * is only detected by a fatal error when written to.
+     *
+     * @throws IOException
+     *    if <code>size</code> exceeds {@link #MAX_SIZE}
+     *    or if writing and there is not enough space left for the file.
+     * @throws OctaveParseException
+     *    if reading and the file is shorter than <code>size</code>.
+     */
+    private static ByteBuffer map(final File file,
+				  final FileChannel.MapMode mode,
+				  final long size) throws IOException {
+	try (FileChannel channel = mode == FileChannel.MapMode.READ_ONLY
+	     ? FileChannel.open(file.toPath(), StandardOpenOption.READ)
+	     : FileChannel.open(file.toPath(),
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+	    if (size > MAX_SIZE) {
+		throw new IOException
+		    ("Cannot map " + size + " bytes of " + file + ". ");
+	    }
+	    if (mode == FileChannel.MapMode.READ_WRITE
+		&& size > file.getUsableSpace()) {
+		throw new IOException
+		    ("Not enough space left for " + size + " bytes in "
+		     + file + ". ");
+	    }
+	    if (mode == FileChannel.MapMode.READ_ONLY && channel.size() < size) {
+		throw new OctaveParseException
+		    ("Expected " + size + " bytes but found " + channel.size()
+		     + " in " + file + ". ");
+	    }
+	    final MappedByteBuffer buf = channel.map(mode, 0, size);
+	    return buf.order(ByteOrder.nativeOrder());
+	}
+    }
+
+}
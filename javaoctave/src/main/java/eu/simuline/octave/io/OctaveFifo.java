@@ -0,0 +1,450 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A named pipe, i.e. a FIFO, streaming data between java and octave
+ * next to the pipes of the octave process.
+ * Unlike put and get, the data never exists as a single object:
+ * it is streamed in frames, each consisting of the number of elements
+ * as <code>int32</code> followed by the elements as doubles,
+ * both in native byte order.
+ * A frame with no elements terminates the stream.
+ * So memory is bounded on both sides
+ * and transfer overlaps with computation,
+ * since octave processes a frame while java writes the next one
+ * or java processes a frame while octave computes the next one.
+ * <p>
+ * A FIFO is created by {@link eu.simuline.octave.OctaveEngine#createFifo()}.
+ * A script evaluated asynchronously opens it via {@link #fopenScript(String, boolean)}
+ * and reads frames via {@link #readFrameScript(String, String)}
+ * or writes frames via {@link #writeFrameScript(String, String)}
+ * terminated by {@link #closeScript(String)},
+ * whereas java writes frames via {@link #openOutput(CompletableFuture)}
+ * or reads them via {@link #openInput(CompletableFuture)}.
+ * Opening a FIFO blocks until the other side opens it;
+ * if the script fails before, the future of its evaluation
+ * releases java from blocking.
+ * Named pipes are not available on windows.
+ */
+public final class OctaveFifo implements Closeable {
+
+    /**
+     * The permissions of the FIFO: read and write for the owner only.
+     */
+    private static final int MODE = 0600;
+
+    /**
+     * The byte order of the frames
+     * which is the native one used by <code>fread</code> and <code>fwrite</code>.
+     */
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    /**
+     * The private directory holding {@link #fifo}.
+     */
+    private final File dir;
+
+    /**
+     * The FIFO which does not yet exist before {@link #mkfifoScript()} is evaluated.
+     */
+    private final File fifo;
+
+    private OctaveFifo(final File dir) {
+	this.dir = dir;
+	this.fifo = new File(dir, "stream.fifo");
+    }
+
+    /**
+     * Creates a private directory for a FIFO
+     * to be created by evaluating {@link #mkfifoScript()}.
+     *
+     * @return
+     *    a new octave FIFO.
+     * @throws IOException
+     *    if the directory could not be created.
+     */
+    public static OctaveFifo create() throws IOException {
+	return new OctaveFifo(Files.createTempDirectory("javaoctave").toFile());
+    }
+
+    /**
+     * Returns a script creating the FIFO by octave's <code>mkfifo</code>
+     * which raises an error if this fails.
+     *
+     * @return
+     *    a script creating the FIFO.
+     */
+    public String mkfifoScript() {
+	return String.format("[javaoctave_err, javaoctave_msg] = mkfifo(%1$s, %2$d);\n"
+			     + "if javaoctave_err\n"
+			     + "  error(\"mkfifo: %%s\", javaoctave_msg);\n"
+			     + "end\n"
+			     + "clear javaoctave_err javaoctave_msg\n",
+			     getQuotedPath(), MODE);
+    }
+
+    /**
+     * Returns the FIFO.
+     *
+     * @return
+     *    the FIFO as a file.
+     */
+    public File getFile() {
+	return this.fifo;
+    }
+
+    /**
+     * Returns the path of the FIFO as an octave string.
+     *
+     * @return
+     *    the path in single quotes.
+     */
+    public String getQuotedPath() {
+	return OctaveIO.quote(this.fifo);
+    }
+
+    /**
+     * Returns a script opening the FIFO in octave
+     * and assigning the file identifier to the variable <code>fid</code>.
+     * This blocks until java opens the other side.
+     *
+     * @param fid
+     *    the name of the variable holding the file identifier.
+     * @param read
+     *    whether octave reads, otherwise octave writes.
+     * @return
+     *    a script opening the FIFO.
+     */
+    public String fopenScript(final String fid, final boolean read) {
+	return String.format("%1$s = fopen(%2$s, \"%3$s\");\n",
+			     fid, getQuotedPath(), read ? "r" : "w");
+    }
+
+    /**
+     * Returns a script reading the next frame from the file identifier
+     * <code>fid</code> into the variable <code>var</code> as a column.
+     * At the end of the stream <code>var</code> is empty.
+     *
+     * @param fid
+     *    the name of the variable holding the file identifier.
+     * @param var
+     *    the name of the variable to read the frame into.
+     * @return
+     *    a script reading a frame.
+     */
+    public static String readFrameScript(final String fid, final String var) {
+	return String.format("%2$s = fread(%1$s, 1, \"int32\");\n"
+			     + "if isempty(%2$s) || %2$s == 0\n"
+			     + "  %2$s = [];\n"
+			     + "else\n"
+			     + "  %2$s = fread(%1$s, %2$s, \"double\");\n"
+			     + "end\n",
+			     fid, var);
+    }
+
+    /**
+     * Returns a script writing the value of the expression <code>expr</code>
+     * as a frame to the file identifier <code>fid</code>.
+     * The frame is flushed to be available to java immediately.
+     *
+     * @param fid
+     *    the name of the variable holding the file identifier.
+     * @param expr
+     *    an expression with a non-empty numeric value.
+     * @return
+     *    a script writing a frame.
+     */
+    public static String writeFrameScript(final String fid, final String expr) {
+	return String.format("fwrite(%1$s, numel(%2$s), \"int32\");\n"
+			     + "fwrite(%1$s, %2$s, \"double\");\n"
+			     + "fflush(%1$s);\n",
+			     fid, expr);
+    }
+
+    /**
+     * Returns a script terminating the stream written to <code>fid</code>
+     * and closing it.
+     *
+     * @param fid
+     *    the name of the variable holding the file identifier.
+     * @return
+     *    a script writing the terminating frame and closing the stream.
+     */
+    public static String closeScript(final String fid) {
+	return String.format("fwrite(%1$s, 0, \"int32\");\n"
+			     + "fclose(%1$s);\n",
+			     fid);
+    }
+
+    /**
+     * Opens the FIFO for java to write frames to octave.
+     * This blocks until octave opens it for reading
+     * or <code>peer</code> completes.
+     *
+     * @param peer
+     *    the evaluation of the script reading the FIFO in octave.
+     * @return
+     *    the output to write frames to.
+     * @throws IOException
+     *    if opening fails or <code>peer</code> completed before.
+     */
+    public Output openOutput(final CompletableFuture<?> peer)
+	throws IOException {
+	return new Output(open(peer, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Opens the FIFO for java to read frames from octave.
+     * This blocks until octave opens it for writing
+     * or <code>peer</code> completes.
+     *
+     * @param peer
+     *    the evaluation of the script writing the FIFO in octave.
+     * @return
+     *    the input to read frames from.
+     * @throws IOException
+     *    if opening fails or <code>peer</code> completed before.
+     */
+    public Input openInput(final CompletableFuture<?> peer)
+	throws IOException {
+	return new Input(open(peer, StandardOpenOption.READ));
+    }
+
+    /**
+     * Opens the FIFO with <code>option</code>.
+     * If <code>peer</code> completes while blocking,
+     * the FIFO is opened for reading and writing, which does not block,
+     * and closed again, which releases the blocking open.
+     * Then the first read or write fails.
+     */
+    private FileChannel open(final CompletableFuture<?> peer,
+			     final StandardOpenOption option)
+	throws IOException {
+	if (peer.isDone()) {
+	    throw new IOException("Octave completed before opening the FIFO. ");
+	}
+	final AtomicBoolean opened = new AtomicBoolean();
+	peer.whenComplete((res, exc) -> {
+		if (!opened.get()) {
+		    try {
+			FileChannel.open(this.fifo.toPath(),
+					 StandardOpenOption.READ,
+					 StandardOpenOption.WRITE).close();
+		    } catch (IOException e) { // NOPMD
+			// the FIFO is gone: nobody blocks on it
+		    }
+		}
+	    });
+	final FileChannel channel = FileChannel.open(this.fifo.toPath(), option);
+	opened.set(true);
+	return channel;
+    }
+
+    /**
+     * Deletes the FIFO and its directory.
+     */
+    @Override
+    public void close() {
+	if (!this.fifo.delete() && this.fifo.exists()) {
+	    this.fifo.deleteOnExit();
+	}
+	if (!this.dir.delete() && this.dir.exists()) {
+	    this.dir.deleteOnExit();
+	}
+    }
+
+    /**
+     * The java side writing frames to octave.
+     * Closing writes the terminating frame.
+     */
+    public static final class Output implements Closeable {
+
+	private final FileChannel channel;
+
+	/**
+	 * The buffer of a frame which grows with the frames.
+	 */
+	private ByteBuffer buf = ByteBuffer.allocateDirect(0);
+
+	private Output(final FileChannel channel) {
+	    this.channel = channel;
+	}
+
+	/**
+	 * Writes a frame of <code>len</code> elements of <code>data</code>
+	 * starting at <code>off</code>.
+	 *
+	 * @param data
+	 *    the array holding the elements.
+	 * @param off
+	 *    the index of the first element.
+	 * @param len
+	 *    the number of elements which must be positive.
+	 * @throws IOException
+	 *    if writing fails, e.g. because octave closed the FIFO.
+	 */
+	public void write(final double[] data, final int off, final int len)
+	    throws IOException {
+	    if (len <= 0) {
+		throw new IllegalArgumentException
+		    ("Expected positive length but found " + len + ". ");
+	    }
+	    final int size = Integer.BYTES + len * Double.BYTES;
+	    if (this.buf.capacity() < size) {
+		this.buf = ByteBuffer.allocateDirect(size).order(ORDER);
+	    }
+	    this.buf.clear();
+	    this.buf.putInt(len);
+	    this.buf.asDoubleBuffer().put(data, off, len);
+	    this.buf.position(size);
+	    this.buf.flip();
+	    writeFully();
+	}
+
+	/**
+	 * Writes all elements of <code>data</code> as a frame.
+	 *
+	 * @param data
+	 *    the elements which must not be empty.
+	 * @throws IOException
+	 *    if writing fails, e.g. because octave closed the FIFO.
+	 */
+	public void write(final double[] data) throws IOException {
+	    write(data, 0, data.length);
+	}
+
+	private void writeFully() throws IOException {
+	    while (this.buf.hasRemaining()) {
+		this.channel.write(this.buf);
+	    }
+	}
+
+	/**
+	 * Writes the terminating frame and closes the FIFO.
+	 *
+	 * @throws IOException
+	 *    if writing fails.
+	 */
+	@Override
+	public void close() throws IOException {
+	    try {
+		this.buf = ByteBuffer.allocate(Integer.BYTES).order(ORDER);
+		this.buf.putInt(0).flip();
+		writeFully();
+	    } finally {
+		this.channel.close();
+	    }
+	}
+    } // class Output
+
+    /**
+     * The java side reading frames from octave.
+     */
+    public static final class Input implements Closeable {
+
+	private final FileChannel channel;
+
+	private final ByteBuffer header =
+	    ByteBuffer.allocate(Integer.BYTES).order(ORDER);
+
+	/**
+	 * The buffer of a frame which grows with the frames.
+	 */
+	private ByteBuffer buf = ByteBuffer.allocateDirect(0);
+
+	private Input(final FileChannel channel) {
+	    this.channel = channel;
+	}
+
+	/**
+	 * Reads the next frame.
+	 *
+	 * @return
+	 *    the elements of the frame
+	 *    or <code>null</code> at the end of the stream.
+	 * @throws IOException
+	 *    if reading fails
+	 *    or if the number of elements is negative or too large.
+	 * @throws EOFException
+	 *    if octave closed the FIFO within a frame,
+	 *    including within the number of elements.
+	 */
+	public double[] read() throws IOException {
+	    this.header.clear();
+	    if (!readFully(this.header)) {
+		// closed without terminating frame, e.g. on error
+		return null;
+	    }
+	    final int len = this.header.flip().getInt();
+	    if (len == 0) {
+		return null;
+	    }
+	    if (len < 0 || len > Integer.MAX_VALUE / Double.BYTES) {
+		throw new IOException
+		    ("Invalid number of elements " + len + " of a frame. ");
+	    }
+	    final int size = len * Double.BYTES;
+	    if (this.buf.capacity() < size) {
+		this.buf = ByteBuffer.allocateDirect(size).order(ORDER);
+	    }
+	    this.buf.clear().limit(size);
+	    if (!readFully(this.buf)) {
+		throw new EOFException("FIFO closed within a frame. ");
+	    }
+	    final double[] res = new double[len];
+	    this.buf.flip();
+	    this.buf.asDoubleBuffer().get(res);
+	    return res;
+	}
+
+	/**
+	 * Reads until <code>dst</code> is full
+	 * and returns whether this succeeded before the end of the stream.
+	 *
+	 * @throws EOFException
+	 *    if the end of the stream is reached
+	 *    after some bytes have been read.
+	 */
+	private boolean readFully(final ByteBuffer dst) throws IOException {
+	    while (dst.hasRemaining()) {
+		if (this.channel.read(dst) == -1) {
+		    if (dst.position() > 0) {
+			throw new EOFException("FIFO closed within a frame. ");
+		    }
+		    return false;
+		}
+	    }
+	    return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+	    this.channel.close();
+	}
+    } // class Input
+
+}
@@ -16,22 +16,36 @@
 package eu.simuline.octave.io;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
 
 import eu.simuline.octave.exception.OctaveClassCastException;
 import eu.simuline.octave.exception.OctaveIOException;
 import eu.simuline.octave.exception.OctaveParseException;
 import eu.simuline.octave.exec.OctaveExec;
+import eu.simuline.octave.exec.ReadFunctor;
 import eu.simuline.octave.exec.ReaderWriteFunctor;
 import eu.simuline.octave.exec.WriteFunctor;
 import eu.simuline.octave.exec.WriterReadFunctor;
+import eu.simuline.octave.io.bin.BinaryDataReader;
+import eu.simuline.octave.io.bin.OctaveBinary;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.io.spi.OctaveDataWriter;
+import eu.simuline.octave.metrics.Operation;
 import eu.simuline.octave.type.OctaveObject;
 
 // ER: Has only static methods or methods based on {@link #octaveExec} 
@@ -74,42 +88,224 @@ toText(OctaveObject)
  */
 public final class OctaveIO {
 
-    private static final String GLOBAL = "global ";
-    private static final String TYPE   = "# type: ";
-    private static final String NAME   = "# name: ";
+    private static final String TYPE   = OctaveTextLexer.TYPE;
+    private static final String NAME   = OctaveTextLexer.NAME;
  
+    /**
+     * The name of the temporary variable holding the names of the variables 
+     * which exist within the script written by {@link #getAll(Collection)}. 
+     */
+    private static final String GET_ALL_VAR = "javaoctave_getall";
+
+    /**
+     * The directory of the files named by {@link #newTempFile(File, String)} 
+     * for data transferred in binary format. 
+     */
+    private static final File TEMP_DIR = 
+	new File(System.getProperty("java.io.tmpdir"));
+
+    /**
+     * The random part of the names of the files 
+     * named by {@link #newTempFile(File, String)}. 
+     */
+    private static final String TEMP_PREFIX = 
+	Long.toUnsignedString(new SecureRandom().nextLong(), 36) + "-";
+
+    /**
+     * The counter making the names of the files 
+     * named by {@link #newTempFile(File, String)} unique. 
+     */
+    private static final AtomicLong TEMP_COUNTER = new AtomicLong();
+
     private final OctaveExec octaveExec;
 
     /**
+     * Whether variables are transferred in octave's binary format, 
+     * as far as their types are supported by {@link OctaveBinary}, 
+     * instead of the text format. 
+     * Binary data is transferred via a temporary file 
+     * since the communication with octave is based on characters. 
+     */
+    private final boolean useBinary;
+
+    /**
+     * The side channel transferring large numeric matrices 
+     * via memory-mapped files 
+     * or <code>null</code> if all data is transferred through the pipe. 
+     * It takes precedence over {@link #useBinary}. 
+     */
+    private final MappedSideChannel sideChannel;
+
+    /**
+     * Creates an octave IO transferring variables in text format. 
+     *
      * @param octaveExec
      */
     public OctaveIO(final OctaveExec octaveExec) {
+        this(octaveExec, false, null);
+    }
+
+    /**
+     * @param octaveExec
+     * @param useBinary
+     *    whether variables are transferred in binary format if possible. 
+     * @param sideChannel
+     *    the side channel for large numeric matrices or <code>null</code>. 
+     */
+    public OctaveIO(final OctaveExec octaveExec, 
+		    final boolean useBinary,
+		    final MappedSideChannel sideChannel) {
         this.octaveExec = octaveExec;
+        this.useBinary = useBinary;
+        this.sideChannel = sideChannel;
     }
 
     /**
      * Sets the variables named as keys in <code>name2val</code> 
      * to objects given by the mapped values. 
+     * If {@link #useBinary} is set, 
+     * the values supported by {@link OctaveBinary} are written 
+     * to a temporary file in binary format 
+     * loaded by octave in the same round trip as the others. 
+     * Likewise, the matrices transferred by {@link #sideChannel} 
+     * are written to memory-mapped files read by octave. 
      *
      * @param name2val
      *    a mapping from variable names to according objects. 
      */
     public void set(final Map<String, OctaveObject> name2val) {
-        final StringWriter outputWriter = new StringWriter();
-	this.octaveExec.evalRW(new DataWriteFunctor(name2val),
-			       new WriterReadFunctor(outputWriter));
+	final Map<String, OctaveObject> mapped = 
+	    new LinkedHashMap<String, OctaveObject>();
+	final Map<String, OctaveObject> binary = 
+	    new LinkedHashMap<String, OctaveObject>();
+	final Map<String, OctaveObject> text = 
+	    new LinkedHashMap<String, OctaveObject>();
+	for (Map.Entry<String, OctaveObject> entry : name2val.entrySet()) {
+	    final OctaveObject value = entry.getValue();
+	    if (this.sideChannel != null && this.sideChannel.isMapped(value)) {
+		mapped.put(entry.getKey(), value);
+	    } else if (this.useBinary && OctaveBinary.isWritable(value)) {
+		binary.put(entry.getKey(), value);
+	    } else {
+		text.put(entry.getKey(), value);
+	    }
+	}
+	final List<File> files = new ArrayList<File>();
+	try {
+	    final StringBuilder script = new StringBuilder();
+	    for (Map.Entry<String, OctaveObject> entry : mapped.entrySet()) {
+		final File file = this.sideChannel.createFile();
+		files.add(file);
+		try {
+		    script.append(this.sideChannel
+				  .write(entry.getKey(), entry.getValue(), file));
+		} catch (IOException e) {
+		    // e.g. the space left is taken meanwhile: use the pipe 
+		    if (this.useBinary && OctaveBinary.isWritable(entry.getValue())) {
+			binary.put(entry.getKey(), entry.getValue());
+		    } else {
+			text.put(entry.getKey(), entry.getValue());
+		    }
+		}
+	    }
+	    if (!binary.isEmpty()) {
+		final File file = createTempFile();
+		files.add(file);
+		OctaveBinary.write(file, binary);
+		script.append("load(\"-binary\", " + quote(file) + ")\n");
+	    }
+	    final String load = script.toString();
+	    final DataWriteFunctor textFunctor = text.isEmpty() && !load.isEmpty()
+		? null : new DataWriteFunctor(text);
+	    final WriteFunctor writeFunctor = writer -> {
+		if (textFunctor != null) {
+		    textFunctor.doWrites(writer);
+		}
+		writer.write(load);
+		writer.flush();
+	    };
+	    final StringWriter outputWriter = new StringWriter();
+	    this.octaveExec.evalRW(Operation.PUT,
+				   String.join(",", name2val.keySet()),
+				   writeFunctor,
+				   new WriterReadFunctor(outputWriter));
 	
-        final String output = outputWriter.toString();
-        if (output.length() != 0) {
-            throw new IllegalStateException
+	    final String output = outputWriter.toString();
+	    if (output.length() != 0) {
+		throw new IllegalStateException
+		    ("Unexpected output: '" + output + "'");
+	    }
+	} catch (IOException e) {
+	    throw new OctaveIOException(e);
+	} finally {
+	    for (File file : files) {
+		deleteTempFile(file);
+	    }
+	}
+    }
+
+    /**
+     * Sets the variable <code>name</code> to a real double matrix 
+     * with dimensions <code>dims</code> 
+     * the entries of which are supplied by <code>values</code> 
+     * in column major order while they are written to octave 
+     * by a {@link StreamingWriteFunctor}. 
+     * So, unlike {@link #set(Map)}, the matrix is never held in memory 
+     * and the memory needed does not depend on its size. 
+     *
+     * @param name
+     *    the name of the variable to be set. 
+     * @param dims
+     *    the dimensions of the matrix, at least two. 
+     * @param values
+     *    supplies the entries of the matrix in column major order. 
+     *    It is invoked once for each entry in the thread writing to octave. 
+     * @throws IllegalArgumentException
+     *    if there are less than two dimensions or a negative one. 
+     * @throws RuntimeException
+     *    the exception thrown by <code>values</code>. 
+     *    Then the rest of the current chunk is padded 
+     *    and the variable <code>name</code> is cleared. 
+     */
+    public void setStreaming(final String name, 
+			     final int[] dims, 
+			     final DoubleSupplier values) {
+	final StreamingWriteFunctor writeFunctor = 
+	    new StreamingWriteFunctor(name, dims, values);
+	final StringWriter outputWriter = new StringWriter();
+	this.octaveExec.evalRW(Operation.PUT, name, writeFunctor, 
+			       new WriterReadFunctor(outputWriter));
+	if (writeFunctor.getFailure() != null) {
+	    throw writeFunctor.getFailure();
+	}
+	final String output = outputWriter.toString();
+	if (output.length() != 0) {
+	    throw new IllegalStateException
 		("Unexpected output: '" + output + "'");
-        }
+	}
     }
 
     /**
      * Gets the value of the variable <code>name</code> 
-     * or null if this variable does not exist 
-     * according to {@link #existsVar(String)}. 
+     * or null if this variable does not exist in a single round trip. 
+     * The script written checks whether the variable exists 
+     * and replies according to {@link DataReadFunctor}: 
+     * If not, it prints {@link DataReadFunctor#MISSING}. 
+     * A real double scalar is printed following {@link DataReadFunctor#SCALAR} 
+     * with 17 significant digits, which is exact, 
+     * a string, i.e. a row of characters, 
+     * is printed following {@link DataReadFunctor#STRING}. 
+     * If {@link #useBinary} is set, 
+     * a value of a type supported by {@link BinaryDataReader} 
+     * is saved in binary format to a temporary file 
+     * followed by {@link DataReadFunctor#BINARY}. 
+     * Before, a large numeric matrix is written by {@link #sideChannel} 
+     * followed by {@link DataReadFunctor#MAPPED}, class and dimensions. 
+     * Any other value is saved in text format. 
+     * So the fast paths avoid the header of the text format. 
+     * The temporary files are only named in advance: 
+     * octave creates one only for a value transferred by it, 
+     * so that scalars, strings, missing and text values touch no file. 
      *
      * @param name
      *    the name of a variable 
@@ -120,49 +316,239 @@ public final class OctaveIO {
      *    if the value can not be cast to T
      */
     public OctaveObject get(final String name) {
-        if (!existsVar(name)) {
-            return null;
-        }
-        final WriteFunctor writeFunctor = 
-	    new ReaderWriteFunctor(new StringReader("save -text - " + name));
-        final DataReadFunctor readFunctor = new DataReadFunctor(name);
-        this.octaveExec.evalRW(writeFunctor, readFunctor);
+	// only named here: octave creates a file only for a value saved to it 
+	final File file = this.useBinary ? newTempFile(TEMP_DIR, ".bin") : null;
+	final File mappedFile = this.sideChannel == null 
+	    ? null : this.sideChannel.newFile();
+	boolean done = false;
+	try {
+	    final String mapped = mappedFile == null ? "" : this.sideChannel
+		.elseifSave(name, mappedFile, DataReadFunctor.MAPPED);
+	    final String binary = file == null ? "" : String.format(
+	     "  elseif any(strcmp(typeinfo(%1$s), {\"%2$s\"}))\n"
+	     + "    save(\"-binary\", %3$s, \"%1$s\");\n"
+	     + "    printf(\"%4$s\\n\");\n",
+	     name,
+	     String.join("\", \"", BinaryDataReader.getOctaveTypes()),
+	     quote(file),
+	     DataReadFunctor.BINARY);
+	    final WriteFunctor writeFunctor = new ReaderWriteFunctor
+		(new StringReader(String.format(
+	     "if exist(\"%1$s\", \"var\")\n"
+	     + "  if isa(%1$s, \"double\") && isreal(%1$s) && isscalar(%1$s) "
+	     +                                      "&& !issparse(%1$s)\n"
+	     + "    printf(\"%2$s\\n%%.17g\\n\", %1$s);\n"
+	     + "  elseif ischar(%1$s) && rows(%1$s) == 1\n"
+	     + "    printf(\"%3$s\\n%%s\", %1$s);\n"
+	     + "%5$s"
+	     + "  else\n"
+	     + "    save -text - %1$s\n"
+	     + "  end\n"
+	     + "else\n"
+	     + "  printf(\"%4$s\\n\");\n"
+	     + "end\n",
+	     name,
+	     DataReadFunctor.SCALAR, 
+	     DataReadFunctor.STRING, 
+	     DataReadFunctor.MISSING,
+	     mapped + binary)));
+	    final DataReadFunctor readFunctor = 
+		new DataReadFunctor(name, file, mappedFile);
+	    this.octaveExec.evalRW(Operation.GET, name, writeFunctor, readFunctor);
+	    done = true;
+	    return readFunctor.getData();
+	} finally {
+	    // on success, readFunctor has deleted the file it has read if any 
+	    if (!done) {
+		deleteTempFile(file);
+		deleteTempFile(mappedFile);
+	    }
+	}
+    }
+
+    /**
+     * Gets the values of the variables named <code>names</code> 
+     * in a single round trip. 
+     * The script written reports the variables which do not exist 
+     * by {@link DataMapReadFunctor#MISSING} 
+     * and saves all others by a single <code>save -text</code>. 
+     *
+     * @param names
+     *    the names of variables 
+     * @return 
+     *    a map from <code>names</code> in the order given 
+     *    to the values of the variables from octave 
+     *    or to <code>null</code> if a variable does not exist. 
+     */
+    public Map<String, OctaveObject> getAll(final Collection<String> names) {
+	if (names.isEmpty()) {
+	    return new LinkedHashMap<String, OctaveObject>();
+	}
+	final Collection<String> distinct = new LinkedHashSet<String>(names);
+	final StringBuilder script = new StringBuilder();
+	script.append(GET_ALL_VAR).append(" = {};\n");
+	for (String name : distinct) {
+	    script.append(String.format("if exist(\"%1$s\", \"var\")\n"
+					+ "  %2$s{end + 1} = \"%1$s\";\n"
+					+ "else\n"
+					+ "  printf(\"%3$s%1$s\\n\");\n"
+					+ "end\n",
+					name, GET_ALL_VAR, DataMapReadFunctor.MISSING));
+	}
+	script.append(String.format("if !isempty(%1$s)\n"
+				    + "  save(\"-text\", \"-\", %1$s{:});\n"
+				    + "end\n"
+				    + "clear %1$s\n", GET_ALL_VAR));
+        final DataMapReadFunctor readFunctor = new DataMapReadFunctor(distinct);
+        this.octaveExec.evalRW(Operation.GET, String.join(",", distinct),
+			       new ReaderWriteFunctor(new StringReader(script.toString())),
+			       readFunctor);
         return readFunctor.getData();
     }
 
     /**
-     * Returns whether the variable <code>name</code> exists. 
+     * Streams the value of the variable <code>name</code> 
+     * through an {@link OctaveTextParser} passed to <code>consumer</code>. 
+     * The variable is saved in text format 
+     * and parsed while octave writes it, 
+     * so the value is never held completely in memory. 
+     * The consumer may stop pulling events before the end; 
+     * the rest of the reply is skipped. 
      *
      * @param name
      *    the name of a variable 
+     * @param consumer
+     *    pulls the events of the variable <code>name</code> 
+     *    starting with {@link OctaveTextParser.Event#VARIABLE}. 
      * @return 
      *    whether the variable <code>name</code> exists. 
+     *    If not, <code>consumer</code> is not invoked. 
+     */
+    public boolean parse(final String name, 
+			 final Consumer<OctaveTextParser> consumer) {
+	final WriteFunctor writeFunctor = new ReaderWriteFunctor
+	    (new StringReader(String.format("if exist(\"%1$s\", \"var\")\n"
+					    + "  save -text - %1$s\n"
+					    + "else\n"
+					    + "  printf(\"%2$s\\n\");\n"
+					    + "end\n",
+					    name, DataReadFunctor.MISSING)));
+	final boolean[] exists = new boolean[1];
+	final ReadFunctor readFunctor = reader -> {
+	    final BufferedReader bufferedReader = new BufferedReader(reader);
+	    final String line = readerReadLine(bufferedReader);
+	    if (DataReadFunctor.MISSING.equals(line)) {
+		return;
+	    }
+	    if (line == null || !line.startsWith("# Created by Octave")) {
+		throw new OctaveParseException
+		    ("Not created by Octave?: '" + line + "'");
+	    }
+	    exists[0] = true;
+	    consumer.accept(new OctaveTextParser(bufferedReader));
+	};
+	this.octaveExec.evalRW(Operation.GET, name, writeFunctor, readFunctor);
+	return exists[0];
+    }
+
+    /**
+     * Returns a write functor setting the variables named as keys 
+     * in <code>name2val</code> to the mapped values 
+     * like {@link #set(Map)} followed by <code>script</code>. 
+     * So both are evaluated in a single round trip. 
+     *
+     * @param name2val
+     *    a mapping from variable names to according objects. 
+     * @param script
+     *    the script to be evaluated after setting the variables. 
+     * @return
+     *    a write functor writing the variables and the script. 
+     */
+    public static WriteFunctor setThenEval(final Map<String, OctaveObject> name2val,
+					   final String script) {
+	final DataWriteFunctor dataWriteFunctor = new DataWriteFunctor(name2val);
+	return writer -> {
+	    dataWriteFunctor.doWrites(writer);
+	    writer.write(script);
+	};
+    }
+
+    /**
+     * Evaluates <code>script</code> which shall define the variable <code>name</code> 
+     * without producing output 
+     * and returns the value of that variable in the same round trip. 
+     * Afterwards, the variable is cleared. 
+     *
+     * @param script
+     *    a script defining the variable <code>name</code> 
+     *    without producing output. 
+     * @param name
+     *    the name of a variable defined by <code>script</code>. 
+     * @return 
+     *    the value of the variable <code>name</code> 
+     *    after evaluation of <code>script</code>. 
+     * @throws OctaveParseException
+     *    if <code>script</code> does not define <code>name</code>. 
      */
-    private boolean existsVar(final String name) {
-	StringReader checkCmd = new StringReader
-	    ("printf('%d', exist('" + name + "','var'));");
-        final StringWriter existResult = new StringWriter();
-        this.octaveExec.evalRW(new ReaderWriteFunctor(checkCmd),
-			       new WriterReadFunctor(existResult));
-        final String s = existResult.toString();
-	// switch (s) {
-	// case "1":
-	//     return true;
-	// case "0": 
-	//     return false;
-	// default:
-	//     throw new OctaveParseException("Unexpected output '" + s + "'");
-	// }
-
-        if ("1".equals(s)) {
-            return true;
-        } else if ("0".equals(s)) {
-            return false;
-        } else {
-            throw new OctaveParseException("Unexpected output '" + s + "'");
+    public OctaveObject evalGet(final String script, final String name) {
+        final WriteFunctor writeFunctor = new ReaderWriteFunctor
+	    (new StringReader(script + "\nsave -text - " + name 
+			      + "\nclear " + name + "\n"));
+        final DataReadFunctor readFunctor = new DataReadFunctor(name);
+        this.octaveExec.evalRW(Operation.GET, name, writeFunctor, readFunctor);
+        return readFunctor.getData();
+    }
+
+    /**
+     * Creates a temporary file to transfer data in binary format. 
+     *
+     * @throws OctaveIOException
+     *    if the file could not be created. 
+     */
+    private static File createTempFile() {
+	try {
+	    return File.createTempFile("javaoctave", ".bin");
+	} catch (IOException e) {
+	    throw new OctaveIOException(e);
 	}
     }
 
+    /**
+     * Returns a new file in <code>dir</code> with the given suffix 
+     * without creating it. 
+     * The name is unique within this virtual machine 
+     * and hard to guess from outside. 
+     *
+     * @param dir
+     *    the directory of the file. 
+     * @param suffix
+     *    the suffix of the name of the file. 
+     */
+    static File newTempFile(final File dir, final String suffix) {
+	return new File(dir, "javaoctave" + TEMP_PREFIX 
+			+ TEMP_COUNTER.incrementAndGet() + suffix);
+    }
+
+    /**
+     * Deletes <code>file</code> created by {@link #createTempFile()} 
+     * or named by {@link #newTempFile(File, String)} 
+     * unless it is <code>null</code> or does not exist. 
+     */
+    static void deleteTempFile(final File file) {
+	if (file != null && !file.delete() && file.exists()) {
+	    file.deleteOnExit();
+	}
+    }
+
+    /**
+     * Returns the path of <code>file</code> 
+     * as a single quoted octave string 
+     * in which backslashes are not escapes. 
+     */
+    static String quote(final File file) {
+	return "'" + file.getAbsolutePath().replace("'", "''") + "'";
+    }
+
     /**
      * Reads a line from <code>reader</code> into a string if possible. 
      * Returns null at the end of the stream and throws an exception 
@@ -203,17 +589,8 @@ public final class OctaveIO {
      */
     public static OctaveObject read(final BufferedReader reader) {
 	// may throw OctaveIOException 
-        final String line = OctaveIO.readerReadLine(reader);
-	// line == null at end of stream 
-        if (line == null || !line.startsWith(TYPE)) {
-            throw new OctaveParseException
-		("Expected '" + TYPE + "' got '" + line + "'");
-        }
-        String typeGlobal = line.substring(TYPE.length());
-        // Ignore "global " prefix to type (it is not really a type)
-	String type = typeGlobal.startsWith(GLOBAL)
-	    ? typeGlobal.substring(GLOBAL.length())
-	    : typeGlobal;
+	// Ignore "global " prefix to type (it is not really a type)
+	final String type = new OctaveTextLexer(reader).readType();
         final OctaveDataReader dataReader = 
 	    OctaveDataReader.getOctaveDataReader(type);
         if (dataReader == null) {
@@ -240,12 +617,7 @@ public final class OctaveIO {
 
 	// read name from the first line 
 	// may throw OctaveIOException 
-        final String line = OctaveIO.readerReadLine(reader);
-	if (!line.startsWith(NAME)) {
-            throw new OctaveParseException
-		("Expected '" + NAME + "', but got '" + line + "'");
-        }
-        final String name = line.substring(NAME.length());
+        final String name = new OctaveTextLexer(reader).readHeader(NAME);
 	// read value and put into singleton map 
         return Collections.singletonMap(name, read(reader));
     }
@@ -0,0 +1,379 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import java.io.BufferedReader;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.util.StringUtil;
+
+/**
+ * The lexer of octave's text format written by <code>save -text</code>
+ * shared by the {@link eu.simuline.octave.io.spi.OctaveDataReader}s
+ * and by the {@link OctaveTextParser}.
+ * The format is line based:
+ * headers are lines consisting of a prefix like <code># rows: </code>
+ * followed by a value,
+ * numeric data comes either one entry per line
+ * or one row per line with entries separated by a blank.
+ * Lines are split without regular expressions
+ * and all violations of the format are reported
+ * by an {@link OctaveParseException}.
+ */
+public final class OctaveTextLexer {
+
+    /**
+     * The prefix of the line with the type of a value.
+     */
+    public static final String TYPE    = "# type: ";
+
+    /**
+     * The prefix of the line with the name of a variable or a field.
+     */
+    public static final String NAME    = "# name: ";
+
+    /**
+     * The prefix of the line with the number of dimensions.
+     */
+    public static final String NDIMS   = "# ndims: ";
+
+    /**
+     * The prefix of the line with the number of rows.
+     */
+    public static final String ROWS    = "# rows: ";
+
+    /**
+     * The prefix of the line with the number of columns.
+     */
+    public static final String COLUMNS = "# columns: ";
+
+    /**
+     * The prefix of the line with the length of a string or a struct.
+     */
+    public static final String LENGTH  = "# length: ";
+
+    /**
+     * The prefix of the line with the number of rows of a character array.
+     */
+    private static final String ELEMENTS = "# elements: ";
+
+    /**
+     * The prefix of a type of a global variable which is no part of the type.
+     */
+    private static final String GLOBAL = "global ";
+
+    private final BufferedReader reader;
+
+    /**
+     * @param reader
+     *    the reader to read lines from.
+     */
+    public OctaveTextLexer(final BufferedReader reader) {
+	this.reader = reader;
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @return
+     *    the next line or <code>null</code> at the end of the stream.
+     * @throws eu.simuline.octave.exception.OctaveIOException
+     *    if reading fails.
+     */
+    public String readLine() {
+	return OctaveIO.readerReadLine(this.reader);
+    }
+
+    /**
+     * Reads the next line which is not empty,
+     * working around differences in number of line feeds
+     * in octave 3.4 and 3.6.
+     *
+     * @return
+     *    the next non-empty line or <code>null</code> at the end of the stream.
+     */
+    public String readNonEmptyLine() {
+	String line;
+	do {
+	    line = readLine();
+	} while ("".equals(line));
+	return line;
+    }
+
+    /**
+     * Reads the next line which must be <code>expected</code>.
+     *
+     * @param expected
+     *    the line expected.
+     * @throws OctaveParseException
+     *    if the line read is another one.
+     */
+    public void readLine(final String expected) {
+	final String line = readLine();
+	if (!expected.equals(line)) {
+	    throw new OctaveParseException
+		("Expected <" + expected + "> got <" + line + ">. ");
+	}
+    }
+
+    /**
+     * Returns the rest of <code>line</code> after <code>prefix</code>.
+     *
+     * @param prefix
+     *    the prefix of a header line.
+     * @param line
+     *    the line read which may be <code>null</code>.
+     * @return
+     *    the value of the header.
+     * @throws OctaveParseException
+     *    if <code>line</code> does not start with <code>prefix</code>.
+     */
+    public static String parseHeader(final String prefix, final String line) {
+	if (line == null || !line.startsWith(prefix)) {
+	    throw new OctaveParseException
+		("Expected <" + prefix + "> got <" + line + ">. ");
+	}
+	return line.substring(prefix.length());
+    }
+
+    /**
+     * Returns the integer in <code>line</code> after <code>prefix</code>.
+     *
+     * @param prefix
+     *    the prefix of a header line.
+     * @param line
+     *    the line read which may be <code>null</code>.
+     * @return
+     *    the value of the header.
+     * @throws OctaveParseException
+     *    if <code>line</code> does not start with <code>prefix</code>
+     *    followed by an integer.
+     */
+    public static int parseIntHeader(final String prefix, final String line) {
+	return parseInt(parseHeader(prefix, line));
+    }
+
+    /**
+     * Reads a header line with prefix <code>prefix</code>.
+     *
+     * @param prefix
+     *    the prefix of the header line.
+     * @return
+     *    the value of the header.
+     * @throws OctaveParseException
+     *    if the line read does not start with <code>prefix</code>.
+     */
+    public String readHeader(final String prefix) {
+	return parseHeader(prefix, readLine());
+    }
+
+    /**
+     * Reads a header line with prefix <code>prefix</code> and integer value.
+     *
+     * @param prefix
+     *    the prefix of the header line.
+     * @return
+     *    the value of the header.
+     * @throws OctaveParseException
+     *    if the line read does not start with <code>prefix</code>
+     *    followed by an integer.
+     */
+    public int readIntHeader(final String prefix) {
+	return parseIntHeader(prefix, readLine());
+    }
+
+    /**
+     * Reads the line with the type of a value, ignoring a global flag.
+     *
+     * @return
+     *    the type of the value.
+     * @throws OctaveParseException
+     *    if the line read does not start with {@link #TYPE}.
+     */
+    public String readType() {
+	final String type = readHeader(TYPE);
+	return type.startsWith(GLOBAL) ? type.substring(GLOBAL.length()) : type;
+    }
+
+    /**
+     * Reads the line with the dimensions after the line with their number
+     * <code>ndimsLine</code>.
+     *
+     * @param ndimsLine
+     *    the line starting with {@link #NDIMS} read before.
+     * @return
+     *    the dimensions.
+     * @throws OctaveParseException
+     *    if the lines are malformed.
+     */
+    public int[] readDims(final String ndimsLine) {
+	final int ndims = parseIntHeader(NDIMS, ndimsLine);
+	final String line = readLine();
+	final String[] tokens = tokens(line, ndims);
+	final int[] dims = new int[ndims];
+	for (int idx = 0; idx < ndims; idx++) {
+	    dims[idx] = parseInt(tokens[idx]);
+	}
+	return dims;
+    }
+
+    /**
+     * Reads the line with the number of columns
+     * after the line with the number of rows <code>rowsLine</code>.
+     *
+     * @param rowsLine
+     *    the line starting with {@link #ROWS} read before.
+     * @return
+     *    the array with the number of rows and the number of columns.
+     * @throws OctaveParseException
+     *    if the lines are malformed.
+     */
+    public int[] readRowsColumns(final String rowsLine) {
+	final int rows = parseIntHeader(ROWS, rowsLine);
+	return new int[] {rows, readIntHeader(COLUMNS)};
+    }
+
+    /**
+     * Reads a row of characters in the format of <code>string</code>
+     * and <code>sq_string</code>:
+     * the number of rows which is 0 or 1, the length
+     * and the characters which may extend over several lines.
+     *
+     * @return
+     *    the characters.
+     * @throws OctaveParseException
+     *    if the format is violated or there is more than one row.
+     */
+    public String readCharRow() {
+	final String elementsLine = readLine();
+	final int elements = parseIntHeader(ELEMENTS, elementsLine);
+	if (elements == 0) {
+	    return "";
+	}
+	if (elements != 1) {
+	    throw new OctaveParseException
+		("Expected elements to be 0 or 1, '" + elementsLine + "'");
+	}
+	final int length = readIntHeader(LENGTH);
+	final StringBuilder builder = new StringBuilder(length);
+	boolean first = true;
+	while (builder.length() < length) {
+	    if (!first) {
+		builder.append('\n');
+	    }
+	    final String line = readLine();
+	    if (line == null) {
+		break;
+	    }
+	    builder.append(line);
+	    first = false;
+	}
+	if (builder.length() != length) {
+	    throw new OctaveParseException
+		("Unexpected length of string read. expected=" +
+		 length + ", actual=" + builder.length());
+	}
+	return builder.toString();
+    }
+
+    /**
+     * Splits <code>line</code> into blank separated tokens
+     * ignoring leading blanks as in rows of matrices and dimensions.
+     *
+     * @param line
+     *    the line read which may be <code>null</code>.
+     * @param num
+     *    the number of tokens expected.
+     * @return
+     *    the <code>num</code> tokens.
+     * @throws OctaveParseException
+     *    if <code>line</code> has another number of tokens.
+     */
+    public static String[] tokens(final String line, final int num) {
+	if (line == null) {
+	    throw new OctaveParseException
+		("Expected " + num + " entries but reached end of stream. ");
+	}
+	final String[] res = new String[num];
+	int count = 0;
+	int pos = 0;
+	final int len = line.length();
+	while (pos < len) {
+	    if (line.charAt(pos) == ' ') {
+		pos++;
+		continue;
+	    }
+	    final int start = pos;
+	    while (pos < len && line.charAt(pos) != ' ') {
+		pos++;
+	    }
+	    if (count == num) {
+		count++;
+		break;
+	    }
+	    res[count++] = line.substring(start, pos);
+	}
+	if (count != num) {
+	    throw new OctaveParseException
+		("Expected " + num + " entries in line '" + line + "'. ");
+	}
+	return res;
+    }
+
+    /**
+     * Parses an integer.
+     *
+     * @throws OctaveParseException
+     *    if <code>token</code> is no integer.
+     */
+    public static int parseInt(final String token) {
+	try {
+	    return Integer.parseInt(token);
+	} catch (NumberFormatException e) {
+	    throw new OctaveParseException(e);
+	}
+    }
+
+    /**
+     * Parses a complex number <code>(re,im)</code>
+     * into <code>dst[off]</code> and <code>dst[off + 1]</code>.
+     *
+     * @param token
+     *    a complex number in parentheses.
+     * @param dst
+     *    the array to store real and imaginary part in.
+     * @param off
+     *    the index of the real part in <code>dst</code>.
+     * @throws OctaveParseException
+     *    if <code>token</code> is malformed.
+     */
+    public static void parseComplex(final String token,
+				    final double[] dst,
+				    final int off) {
+	final int comma = token.indexOf(',');
+	if (comma < 0 || token.charAt(0) != '('
+	    || token.charAt(token.length() - 1) != ')') {
+	    throw new OctaveParseException
+		("Error in complex format: '" + token + "'");
+	}
+	try {
+	    dst[off]     = StringUtil.parseDouble(token.substring(1, comma));
+	    dst[off + 1] = StringUtil.parseDouble
+		(token.substring(comma + 1, token.length() - 1));
+	} catch (NumberFormatException e) {
+	    throw new OctaveParseException(e);
+	}
+    }
+
+}
@@ -0,0 +1,683 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import java.io.BufferedReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.util.StringUtil;
+
+/**
+ * A pull parser for variables in octave's text format
+ * written by <code>save -text</code>
+ * reporting the structure of the values as a sequence of {@link Event}s
+ * instead of building {@link eu.simuline.octave.type.OctaveObject}s.
+ * Numeric data is reported in blocks of bounded size
+ * which are reused from event to event,
+ * so that the memory needed does not depend on the size of the values.
+ * <p>
+ * Each value is reported as follows:
+ * <ul>
+ * <li>
+ * a numeric or boolean scalar or matrix, including a range,
+ * by {@link Event#START_MATRIX} giving type and dimensions,
+ * a sequence of {@link Event#NUMBERS}
+ * and {@link Event#END}.
+ * <li>
+ * a row of characters by a single {@link Event#STRING}.
+ * <li>
+ * a cell by {@link Event#START_CELL} giving the dimensions,
+ * the values of the elements in column major order
+ * and {@link Event#END}.
+ * <li>
+ * a scalar struct by {@link Event#START_STRUCT}
+ * giving the number of fields,
+ * for each field {@link Event#FIELD} giving its name followed by its value
+ * and {@link Event#END}.
+ * </ul>
+ * Each variable is reported by {@link Event#VARIABLE} giving its name
+ * followed by its value.
+ * Like {@link OctaveIO#read(BufferedReader)},
+ * this is based on the {@link OctaveTextLexer}.
+ */
+public final class OctaveTextParser {
+
+    /**
+     * The events reported by {@link OctaveTextParser#next()}.
+     */
+    public enum Event {
+	/**
+	 * The start of a variable with name {@link #getName()}.
+	 */
+	VARIABLE,
+	/**
+	 * The start of a numeric or boolean matrix or scalar
+	 * of type {@link #getType()} with dimensions {@link #getDims()}.
+	 */
+	START_MATRIX,
+	/**
+	 * A block of {@link #getLength()} numbers in {@link #getNumbers()}
+	 * and for integer types also in {@link #getLongs()}.
+	 * Unless the type is sparse,
+	 * the first entry has the column major index {@link #getIndex()}
+	 * and the following ones follow by {@link #getStride()}.
+	 * Complex entries take two numbers, the real and the imaginary part.
+	 * Entries of sparse types take three numbers,
+	 * the row, the column, both starting with 1, and the value.
+	 */
+	NUMBERS,
+	/**
+	 * A row of characters {@link #getString()} of type {@link #getType()}.
+	 */
+	STRING,
+	/**
+	 * The start of a cell with dimensions {@link #getDims()}.
+	 */
+	START_CELL,
+	/**
+	 * The start of a scalar struct
+	 * with {@link #getLength()} fields.
+	 */
+	START_STRUCT,
+	/**
+	 * The start of the field with name {@link #getName()} of a struct.
+	 */
+	FIELD,
+	/**
+	 * The end of a matrix, a cell or a struct.
+	 */
+	END
+    }
+
+    /**
+     * The kinds of values with nested events.
+     */
+    private enum Kind {
+	/**
+	 * A scalar given in a single line.
+	 */
+	SCALAR,
+	/**
+	 * A matrix given by one line for each row.
+	 */
+	ROWS,
+	/**
+	 * A matrix given by one line for each entry in column major order.
+	 */
+	VECTORIZED,
+	/**
+	 * A sparse matrix given by one line for each non-zero entry.
+	 */
+	SPARSE,
+	/**
+	 * A row vector given by base, limit and increment in a single line.
+	 */
+	RANGE,
+	/**
+	 * A cell.
+	 */
+	CELL,
+	/**
+	 * A scalar struct given by names and values.
+	 */
+	SCALAR_STRUCT,
+	/**
+	 * A struct with the value of each field in a 1x1 cell.
+	 */
+	STRUCT
+    }
+
+    /**
+     * A value which is not yet completely reported.
+     */
+    private static final class Frame {
+	private final Kind kind;
+	/**
+	 * The number of rows of a matrix or a cell.
+	 */
+	private final int rows;
+	/**
+	 * The number of lines of a matrix, the number of elements of a cell
+	 * or the number of fields of a struct.
+	 */
+	private final int total;
+	/**
+	 * The number of lines, elements or fields reported so far.
+	 */
+	private int done;
+
+	Frame(final Kind kind, final int rows, final int total) {
+	    this.kind = kind;
+	    this.rows = rows;
+	    this.total = total;
+	}
+    }
+
+    /**
+     * The maximal number of numbers in a block
+     * unless a single row is longer.
+     */
+    static final int BLOCK_SIZE = 1024;
+
+    /**
+     * The line preceding each element of a cell.
+     */
+    private static final String ELEMENT = "# name: <cell-element>";
+
+    /**
+     * The start of the comment line octave writes before the variables.
+     */
+    private static final String CREATED = "# Created by Octave";
+
+    private static final String NNZ = "# nnz: ";
+
+    /**
+     * The comment line preceding the line of a range
+     * with base, limit and increment.
+     */
+    private static final String RANGE_LIMIT = "# base, limit, increment";
+
+    /**
+     * The comment line preceding the line of a range
+     * with base, number of elements and increment zero.
+     */
+    private static final String RANGE_LENGTH = "# base, length, increment";
+
+    private static final String N_DIMS2 = OctaveTextLexer.NDIMS + "2";
+    private static final String V_DIMS2 = " 1 1";
+
+    private final OctaveTextLexer lexer;
+
+    /**
+     * The values which are not yet completely reported,
+     * the innermost first.
+     */
+    private final Deque<Frame> frames;
+
+    /**
+     * Whether the next event is the start of a value
+     * after {@link Event#VARIABLE} or {@link Event#FIELD}.
+     */
+    private boolean valuePending;
+
+    private String name;
+    private String type;
+    private int[] dims;
+    private String string;
+    private double[] numbers;
+    private long[] longs;
+    private int length;
+    private int index;
+    private int stride;
+
+    /**
+     * The first element of the range started last.
+     */
+    private double rangeBase;
+
+    /**
+     * The increment of the range started last.
+     */
+    private double rangeIncrement;
+
+    /**
+     * The last element of the range started last.
+     */
+    private double rangeLast;
+
+    /**
+     * @param reader
+     *    the reader to read the variables from,
+     *    possibly starting with the comment line octave writes
+     *    before the variables.
+     */
+    public OctaveTextParser(final BufferedReader reader) {
+	this.lexer = new OctaveTextLexer(reader);
+	this.frames = new ArrayDeque<Frame>();
+	this.numbers = new double[BLOCK_SIZE];
+	this.longs = new long[BLOCK_SIZE];
+    }
+
+    /**
+     * Reads the next event.
+     *
+     * @return
+     *    the next event
+     *    or <code>null</code> if the stream ends after a variable.
+     * @throws OctaveParseException
+     *    if the format is violated or the type of a value is not supported.
+     * @throws eu.simuline.octave.exception.OctaveIOException
+     *    if reading fails.
+     */
+    public Event next() {
+	if (this.valuePending) {
+	    this.valuePending = false;
+	    return startValue();
+	}
+	final Frame frame = this.frames.peek();
+	if (frame == null) {
+	    String header;
+	    do {
+		header = this.lexer.readLine();
+	    } while (header != null
+		     && (header.isEmpty() || header.startsWith(CREATED)));
+	    if (header == null) {
+		return null;
+	    }
+	    this.name = OctaveTextLexer.parseHeader(OctaveTextLexer.NAME, header);
+	    this.valuePending = true;
+	    return Event.VARIABLE;
+	}
+	if (frame.done == frame.total) {
+	    this.frames.pop();
+	    valueDone();
+	    return Event.END;
+	}
+	switch (frame.kind) {
+	case CELL:
+	    final String line = this.lexer.readNonEmptyLine();
+	    if (!ELEMENT.equals(line)) {
+		throw new OctaveParseException
+		    ("Expected <" + ELEMENT + ">, but got <" + line + ">");
+	    }
+	    return startValue();
+	case SCALAR_STRUCT:
+	case STRUCT:
+	    this.name = OctaveTextLexer.parseHeader(OctaveTextLexer.NAME,
+						    this.lexer.readNonEmptyLine());
+	    if (frame.kind == Kind.STRUCT) {
+		this.lexer.readLine(OctaveTextLexer.TYPE + "cell");
+		this.lexer.readLine(OctaveTextLexer.ROWS + "1");
+		this.lexer.readLine(OctaveTextLexer.COLUMNS + "1");
+		this.lexer.readLine(ELEMENT);
+	    }
+	    this.valuePending = true;
+	    return Event.FIELD;
+	default:
+	    readNumbers(frame);
+	    return Event.NUMBERS;
+	}
+    }
+
+    /**
+     * Skips the events up to and including the {@link Event#END}
+     * of the innermost matrix, cell or struct not yet ended,
+     * e.g. the one started by the last event.
+     * If the last event is {@link Event#VARIABLE} or {@link Event#FIELD},
+     * the value following is skipped.
+     *
+     * @throws IllegalStateException
+     *    if there is no value to be skipped.
+     */
+    public void skip() {
+	if (this.valuePending) {
+	    final Event event = next();
+	    if (event == Event.STRING) {
+		return;
+	    }
+	} else if (this.frames.isEmpty()) {
+	    throw new IllegalStateException("No value started. ");
+	}
+	final int depth = this.frames.size();
+	while (this.frames.size() >= depth) {
+	    next();
+	}
+    }
+
+    /**
+     * Reads the type of a value and reports its start.
+     */
+    private Event startValue() {
+	this.type = this.lexer.readType();
+	final boolean complex = this.type.startsWith("complex ")
+	    || this.type.startsWith("float complex ");
+	final int width = complex ? 2 : 1;
+	switch (this.type) {
+	case "string":
+	case "sq_string":
+	    this.string = this.lexer.readCharRow();
+	    valueDone();
+	    return Event.STRING;
+	case "cell":
+	    this.dims = new int[] {
+		this.lexer.readIntHeader(OctaveTextLexer.ROWS),
+		this.lexer.readIntHeader(OctaveTextLexer.COLUMNS)
+	    };
+	    if (this.dims[0] == 0) {
+		// each column ends with an empty line
+		for (int col = 0; col < this.dims[1]; col++) {
+		    this.lexer.readLine("");
+		}
+	    }
+	    this.frames.push(new Frame(Kind.CELL, this.dims[0],
+				       this.dims[0] * this.dims[1]));
+	    return Event.START_CELL;
+	case "scalar struct":
+	    this.lexer.readLine(N_DIMS2);
+	    this.lexer.readLine(V_DIMS2);
+	    return startStruct(Kind.SCALAR_STRUCT, this.lexer.readLine());
+	case "struct":
+	    String line = this.lexer.readLine();
+	    if (N_DIMS2.equals(line)) {
+		this.lexer.readLine(V_DIMS2);
+		line = this.lexer.readLine();
+	    }
+	    return startStruct(Kind.STRUCT, line);
+	case "sparse matrix":
+	case "sparse bool matrix":
+	case "sparse complex matrix":
+	    final int nnz = this.lexer.readIntHeader(NNZ);
+	    this.dims = new int[] {
+		this.lexer.readIntHeader(OctaveTextLexer.ROWS),
+		this.lexer.readIntHeader(OctaveTextLexer.COLUMNS)
+	    };
+	    this.frames.push(new Frame(Kind.SPARSE, this.dims[0], nnz));
+	    return Event.START_MATRIX;
+	case "range":
+	    return startRange();
+	default:
+	    break;
+	}
+	if ("scalar".equals(this.type) || "bool".equals(this.type)
+	    || this.type.endsWith(" scalar")) {
+	    this.dims = new int[] {1, 1};
+	    this.frames.push(new Frame(Kind.SCALAR, 1, 1));
+	    return Event.START_MATRIX;
+	}
+	if (!"matrix".equals(this.type) && !this.type.endsWith(" matrix")) {
+	    throw new OctaveParseException
+		("Unsupported octave type, type='" + this.type + "'");
+	}
+	final String line = this.lexer.readLine();
+	if (line != null && line.startsWith(OctaveTextLexer.ROWS)) {
+	    this.dims = this.lexer.readRowsColumns(line);
+	    this.frames.push(new Frame(Kind.ROWS, this.dims[0], this.dims[0]));
+	} else {
+	    this.dims = this.lexer.readDims(line);
+	    int size = 1;
+	    for (int dim : this.dims) {
+		size *= dim;
+	    }
+	    this.frames.push(new Frame(Kind.VECTORIZED, this.dims[0], size));
+	}
+	ensureCapacity(width * BLOCK_SIZE);
+	return Event.START_MATRIX;
+    }
+
+    /**
+     * Reads a range and reports its start as a row vector.
+     * Like octave, the number of elements tolerates rounding
+     * and the last element does not exceed the limit.
+     */
+    private Event startRange() {
+	final String comment = this.lexer.readLine();
+	if (!RANGE_LIMIT.equals(comment) && !RANGE_LENGTH.equals(comment)) {
+	    throw new OctaveParseException
+		("Expected <" + RANGE_LIMIT + ">, but got <" + comment + ">");
+	}
+	final String[] tokens =
+	    OctaveTextLexer.tokens(this.lexer.readLine(), 3);
+	final double limit;
+	try {
+	    this.rangeBase = StringUtil.parseDouble(tokens[0]);
+	    limit = StringUtil.parseDouble(tokens[1]);
+	    this.rangeIncrement = StringUtil.parseDouble(tokens[2]);
+	} catch (NumberFormatException e) {
+	    throw new OctaveParseException(e);
+	}
+	final double num;
+	if (RANGE_LENGTH.equals(comment)) {
+	    num = limit;
+	    this.rangeLast = this.rangeBase;
+	} else {
+	    final double quot =
+		(limit - this.rangeBase + this.rangeIncrement)
+		/ this.rangeIncrement;
+	    num = quot > 0 ? Math.floor(quot + quot * 3 * Math.ulp(1.0)) : 0;
+	    this.rangeLast = this.rangeBase + (num - 1) * this.rangeIncrement;
+	    if (this.rangeIncrement > 0 ? this.rangeLast > limit
+		: this.rangeLast < limit) {
+		this.rangeLast = limit;
+	    }
+	}
+	if (!(num >= 0 && num <= Integer.MAX_VALUE)) {
+	    throw new OctaveParseException
+		("Invalid number of elements of range: " + num + ". ");
+	}
+	this.dims = new int[] {1, (int) num};
+	this.frames.push(new Frame(Kind.RANGE, 1, (int) num));
+	return Event.START_MATRIX;
+    }
+
+    /**
+     * Reports the start of a struct with kind <code>kind</code>
+     * given the line with the number of fields.
+     */
+    private Event startStruct(final Kind kind, final String lengthLine) {
+	this.length = OctaveTextLexer.parseIntHeader(OctaveTextLexer.LENGTH,
+						     lengthLine);
+	this.frames.push(new Frame(kind, 1, this.length));
+	return Event.START_STRUCT;
+    }
+
+    /**
+     * Marks a value as completely reported within the enclosing value.
+     */
+    private void valueDone() {
+	final Frame parent = this.frames.peek();
+	if (parent == null) {
+	    return;
+	}
+	parent.done++;
+	switch (parent.kind) {
+	case CELL:
+	    if (parent.done % parent.rows == 0) {
+		// each column ends with an empty line
+		this.lexer.readLine("");
+	    }
+	    break;
+	case STRUCT:
+	    // end of the 1x1 cell holding the value of the field
+	    this.lexer.readLine("");
+	    break;
+	default:
+	    break;
+	}
+    }
+
+    /**
+     * Reads the next block of numbers of the matrix <code>frame</code>.
+     */
+    private void readNumbers(final Frame frame) {
+	final boolean complex = this.type.contains("complex");
+	final boolean integer = this.type.startsWith("int")
+	    || this.type.startsWith("uint");
+	final boolean unsigned = this.type.startsWith("uint64");
+	final int width = complex ? 2 : 1;
+	this.index = frame.done;
+	this.stride = 1;
+	int num = 0;
+	switch (frame.kind) {
+	case ROWS:
+	    this.stride = frame.rows;
+	    final String[] tokens =
+		OctaveTextLexer.tokens(this.lexer.readLine(), this.dims[1]);
+	    ensureCapacity(width * tokens.length);
+	    for (String token : tokens) {
+		num = parse(token, complex, integer, unsigned, num);
+	    }
+	    frame.done++;
+	    break;
+	case SPARSE:
+	    final int triples = Math.min(frame.total - frame.done,
+					 BLOCK_SIZE / 4);
+	    ensureCapacity(4 * triples);
+	    for (int idx = 0; idx < triples; idx++) {
+		final String[] triple = OctaveTextLexer.tokens
+		    (this.lexer.readLine(), 3);
+		this.numbers[num++] = OctaveTextLexer.parseInt(triple[0]);
+		this.numbers[num++] = OctaveTextLexer.parseInt(triple[1]);
+		num = parse(triple[2], complex, false, false, num);
+	    }
+	    frame.done += triples;
+	    break;
+	case RANGE:
+	    final int elements = Math.min(frame.total - frame.done, BLOCK_SIZE);
+	    for (int idx = frame.done; idx < frame.done + elements; idx++) {
+		this.numbers[num++] = idx == frame.total - 1
+		    ? this.rangeLast
+		    : this.rangeBase + idx * this.rangeIncrement;
+	    }
+	    frame.done += elements;
+	    break;
+	default:
+	    // SCALAR or VECTORIZED
+	    final int entries = Math.min(frame.total - frame.done, BLOCK_SIZE);
+	    for (int idx = 0; idx < entries; idx++) {
+		num = parse(OctaveTextLexer.tokens(this.lexer.readLine(), 1)[0],
+			    complex, integer, unsigned, num);
+	    }
+	    frame.done += entries;
+	    break;
+	}
+	this.length = num;
+    }
+
+    /**
+     * Parses <code>token</code> into the block at position <code>num</code>
+     * and returns the position after the numbers parsed.
+     */
+    private int parse(final String token,
+		      final boolean complex,
+		      final boolean integer,
+		      final boolean unsigned,
+		      final int num) {
+	if (complex) {
+	    OctaveTextLexer.parseComplex(token, this.numbers, num);
+	    return num + 2;
+	}
+	try {
+	    if (integer) {
+		final long value = unsigned
+		    ? Long.parseUnsignedLong(token)
+		    : Long.parseLong(token);
+		this.longs[num] = value;
+		this.numbers[num] = unsigned && value < 0
+		    ? Double.parseDouble(token)
+		    : value;
+	    } else {
+		this.numbers[num] = StringUtil.parseDouble(token);
+	    }
+	} catch (NumberFormatException e) {
+	    throw new OctaveParseException(e);
+	}
+	return num + 1;
+    }
+
+    /**
+     * Ensures that the blocks hold at least <code>capacity</code> numbers.
+     */
+    private void ensureCapacity(final int capacity) {
+	if (this.numbers.length < capacity) {
+	    this.numbers = new double[capacity];
+	    this.longs = new long[capacity];
+	}
+    }
+
+    /**
+     * Returns the name of the variable or of the field
+     * reported by the last {@link Event#VARIABLE} or {@link Event#FIELD}.
+     */
+    public String getName() {
+	return this.name;
+    }
+
+    /**
+     * Returns the octave type of the last value started,
+     * e.g. <code>matrix</code>, <code>int32 scalar</code>,
+     * <code>range</code> or <code>sq_string</code>.
+     */
+    public String getType() {
+	return this.type;
+    }
+
+    /**
+     * Returns the dimensions
+     * of the matrix or of the cell started last.
+     * The array is not used by the parser any more.
+     */
+    public int[] getDims() {
+	return this.dims.clone();
+    }
+
+    /**
+     * Returns the string reported by the last {@link Event#STRING}.
+     */
+    public String getString() {
+	return this.string;
+    }
+
+    /**
+     * Returns the block of numbers reported by the last {@link Event#NUMBERS}
+     * holding {@link #getLength()} valid numbers.
+     * The array is reused by the following events.
+     */
+    public double[] getNumbers() {
+	return this.numbers;
+    }
+
+    /**
+     * Returns the block of numbers reported by the last {@link Event#NUMBERS}
+     * exactly for types with integer entries
+     * holding {@link #getLength()} valid numbers.
+     * For other types the content is undefined.
+     * The array is reused by the following events.
+     */
+    public long[] getLongs() {
+	return this.longs;
+    }
+
+    /**
+     * Returns the number of valid numbers of the block
+     * reported by the last {@link Event#NUMBERS}
+     * or the number of fields reported by the last
+     * {@link Event#START_STRUCT}.
+     */
+    public int getLength() {
+	return this.length;
+    }
+
+    /**
+     * Returns the column major index of the first entry of the block
+     * reported by the last {@link Event#NUMBERS}, starting with 0.
+     * For sparse types, this is the number of entries reported before.
+     */
+    public int getIndex() {
+	return this.index;
+    }
+
+    /**
+     * Returns the difference of the column major indices
+     * of subsequent entries of the block
+     * reported by the last {@link Event#NUMBERS}.
+     * This is the number of rows if the matrix is given row by row
+     * and 1 otherwise.
+     */
+    public int getStride() {
+	return this.stride;
+    }
+
+}
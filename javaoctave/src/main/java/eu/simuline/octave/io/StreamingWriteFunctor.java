@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.DoubleSupplier;
+
+import eu.simuline.octave.exception.OctaveIOException;
+import eu.simuline.octave.exec.WriteFunctor;
+
+/**
+ * Writes a real double matrix in text format
+ * like {@link DataWriteFunctor}
+ * but with the entries produced one by one by a {@link DoubleSupplier}
+ * while writing,
+ * so that the matrix is never held in memory.
+ * The matrix is preallocated in octave
+ * and written in chunks of at most {@link #CHUNK_SIZE} entries,
+ * each loaded as a column in the vectorized format
+ * with one entry per line in column major order
+ * which needs no buffering of rows.
+ * Only after the last chunk, the variable is set.
+ * <p>
+ * If the supplier fails, only the rest of the current chunk
+ * is written as <code>NaN</code> to keep octave in sync,
+ * the variable is cleared
+ * and the exception is available by {@link #getFailure()}.
+ */
+final class StreamingWriteFunctor implements WriteFunctor {
+
+    /**
+     * The maximal number of entries of a chunk,
+     * which bounds the entries written after a failure of the supplier.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The name of the temporary variable holding the matrix
+     * while it is written.
+     */
+    static final String STREAM_VAR = "javaoctave_stream";
+
+    /**
+     * The name of the temporary variable holding the current chunk.
+     */
+    static final String CHUNK_VAR = "javaoctave_chunk";
+
+    private final String name;
+
+    private final int[] dims;
+
+    private final DoubleSupplier values;
+
+    /**
+     * The exception thrown by {@link #values} or <code>null</code>.
+     */
+    private RuntimeException failure;
+
+    /**
+     * @param name
+     *    the name of the variable to be set.
+     * @param dims
+     *    the dimensions of the matrix, at least two.
+     * @param values
+     *    supplies the entries of the matrix in column major order.
+     * @throws IllegalArgumentException
+     *    if there are less than two dimensions or a negative one.
+     */
+    StreamingWriteFunctor(final String name,
+			  final int[] dims,
+			  final DoubleSupplier values) {
+	if (dims.length < 2) {
+	    throw new IllegalArgumentException
+		("Expected at least two dimensions but found "
+		 + dims.length + ". ");
+	}
+	for (int dim : dims) {
+	    if (dim < 0) {
+		throw new IllegalArgumentException
+		    ("Expected non-negative dimensions. ");
+	    }
+	}
+	this.name = name;
+	this.dims = dims.clone();
+	this.values = values;
+    }
+
+    @Override
+    public void doWrites(final Writer writer) {
+	try {
+	    final StringBuilder dimsStr = new StringBuilder();
+	    long size = 1;
+	    for (int dim : this.dims) {
+		dimsStr.append(' ').append(dim);
+		size *= dim;
+	    }
+	    writer.write(STREAM_VAR + " = zeros([" + dimsStr.substring(1)
+			 + "]);\n");
+	    for (long offset = 0; offset < size; offset += CHUNK_SIZE) {
+		final long chunk = Math.min(CHUNK_SIZE, size - offset);
+		writer.write("load(\"-text\", \"-\")\n");
+		writer.write(OctaveTextLexer.NAME + CHUNK_VAR + "\n");
+		writer.write(OctaveTextLexer.TYPE + "matrix\n");
+		writer.write(OctaveTextLexer.NDIMS + "2\n");
+		writer.write(" " + chunk + " 1\n");
+		for (long idx = 0; idx < chunk; idx++) {
+		    writer.write(' ');
+		    writer.write(this.failure == null ? next() : "NaN");
+		    writer.write('\n');
+		}
+		// exit octave from read data mode
+		writer.write(OctaveTextLexer.NAME + "\n");
+		if (this.failure != null) {
+		    writer.write("clear " + this.name + " " + STREAM_VAR + " "
+				 + CHUNK_VAR + "\n");
+		    writer.flush();
+		    return;
+		}
+		writer.write(STREAM_VAR + "(" + (offset + 1) + ":"
+			     + (offset + chunk) + ") = " + CHUNK_VAR + ";\n");
+	    }
+	    writer.write(this.name + " = " + STREAM_VAR + ";\n");
+	    writer.write("clear " + STREAM_VAR + " " + CHUNK_VAR + "\n");
+	    writer.flush();
+	} catch (final IOException e) {
+	    throw new OctaveIOException(e);
+	}
+    }
+
+    /**
+     * Returns the next entry in text format
+     * or <code>NaN</code> if {@link #values} fails.
+     */
+    private String next() {
+	try {
+	    return Double.toString(this.values.getAsDouble());
+	} catch (final RuntimeException e) {
+	    this.failure = e;
+	    return "NaN";
+	}
+    }
+
+    /**
+     * Returns the exception thrown by the supplier of the entries
+     * or <code>null</code> if there is none.
+     */
+    RuntimeException getFailure() {
+	return this.failure;
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveObject;
+
+/**
+ * Service Provider Interface for reading {@link OctaveObject}s
+ * in the binary format written by octave's <code>save -binary</code>.
+ * This is the binary counterpart
+ * of {@link eu.simuline.octave.io.spi.OctaveDataReader}:
+ * The octave type which can be read is given by {@link #octaveType()}
+ * whereas {@link #read(ByteBuffer)} performs reading
+ * of the data following the type.
+ * <p>
+ * The implementations are in this package and extend this class.
+ * These classes are registered in the jar-file
+ * under <code>META-INF/services/eu.simuline.octave.io.bin.BinaryDataReader</code>.
+ */
+public abstract class BinaryDataReader {
+
+    /**
+     * The save types of octave's <code>data-conv.h</code>,
+     * i.e. the formats of the elements of a double array
+     * indexed by the byte preceding the elements:
+     * unsigned char, short, int, then signed char, short, int,
+     * then float, double and finally unsigned and signed long.
+     * Octave saves double arrays with integer entries in a smaller type.
+     */
+    private static final int
+	LS_U_CHAR = 0, LS_U_SHORT = 1, LS_U_INT = 2,
+	LS_CHAR = 3, LS_SHORT = 4, LS_INT = 5,
+	LS_FLOAT = 6, LS_DOUBLE = 7,
+	LS_U_LONG = 8, LS_LONG = 9;
+
+    /**
+     * Maps the {@link #octaveType()}
+     * of a {@link BinaryDataReader} to the {@link BinaryDataReader} itself.
+     */
+    private static Map<String, BinaryDataReader> rEADERS = null;
+
+    /**
+     * @param type
+     * @return The BinaryDataReader or null if it does not exist
+     */
+    public static BinaryDataReader getBinaryDataReader(final String type) {
+        initReaderIfNecessary();
+        return rEADERS.get(type);
+    }
+
+    /**
+     * Returns the octave types which can be read in binary format.
+     *
+     * @return
+     *    an unmodifiable set of the {@link #octaveType()}s of all readers.
+     */
+    public static Set<String> getOctaveTypes() {
+        initReaderIfNecessary();
+        return Collections.unmodifiableSet(rEADERS.keySet());
+    }
+
+    private static synchronized void initReaderIfNecessary() {
+        if (rEADERS != null) {
+            return;
+        }
+	rEADERS = new HashMap<String, BinaryDataReader>();
+	final Iterator<BinaryDataReader> sp =
+	    ServiceLoader.load(BinaryDataReader.class).iterator();
+	BinaryDataReader bdr, bdrOrg;
+	while (sp.hasNext()) {
+	    bdr = sp.next();
+	    assert bdr != null;
+	    bdrOrg = rEADERS.put(bdr.octaveType(), bdr);
+	    if (bdrOrg != null) {
+		 throw new IllegalStateException
+		     ("Octave type " + bdr.octaveType() +
+		      " has binary readers of type " + bdr.getClass() +
+		      " and " + bdrOrg.getClass() + ". ");
+	    }
+	}
+    }
+
+    /**
+     * The octave type as given by <code>typeinfo</code>,
+     * e.g. "matrix" or "int32 scalar".
+     *
+     * @return
+     *    the string representation of the octave type
+     *    read by this {@link BinaryDataReader}
+     */
+    public abstract String octaveType();
+
+    /**
+     * Reads an {@link OctaveObject} from <code>buf</code>
+     * which is positioned after the type
+     * and has the byte order of the data.
+     *
+     * @param buf
+     *    the buffer to read from
+     *    which is positioned after the object on return.
+     * @return
+     *   the object read from <code>buf</code>.
+     * @throws BufferUnderflowException
+     *    if <code>buf</code> ends within the object.
+     */
+    public abstract OctaveObject read(ByteBuffer buf);
+
+    /**
+     * Reads the dimensions of an array
+     * given by the negated number of dimensions followed by the dimensions.
+     * A positive number indicates the format of octave versions before 2.1
+     * which is not supported.
+     *
+     * @param buf
+     *    the buffer to read from.
+     * @return
+     *    the dimensions read.
+     * @throws OctaveParseException
+     *    if the number of dimensions is not negative
+     *    or less than two dimensions are given.
+     */
+    protected static int[] readDims(final ByteBuffer buf) {
+	final int mdims = buf.getInt();
+	if (mdims > -2) {
+	    throw new OctaveParseException
+		("Expected at least two dimensions but got " + (-mdims) + ". ");
+	}
+	final int[] dims = new int[-mdims];
+	for (int idx = 0; idx < dims.length; idx++) {
+	    dims[idx] = buf.getInt();
+	}
+	return dims;
+    }
+
+    /**
+     * Reads <code>len</code> elements of a double array
+     * in the format given by a leading save type byte
+     * into the beginning of <code>dst</code>.
+     * Doubles are copied in bulk, other types are converted.
+     * The entries are set assuming resize is not necessary.
+     *
+     * @param buf
+     *    the buffer to read from.
+     * @param dst
+     *    the matrix to read into with at least <code>len</code> entries.
+     * @param len
+     *    the number of elements to be read.
+     * @throws OctaveParseException
+     *    if the save type is unknown.
+     */
+    protected static void readDoubles(final ByteBuffer buf,
+				      final OctaveDouble dst,
+				      final int len) {
+	final byte saveType = buf.get();
+	switch (saveType) {
+	case LS_DOUBLE:
+	    dst.setPlain(buf.asDoubleBuffer(), 0, len);
+	    buf.position(buf.position() + len * Double.BYTES);
+	    return;
+	case LS_FLOAT:
+	    for (int idx = 0; idx < len; idx++) {
+		dst.setPlain(buf.getFloat(), idx);
+	    }
+	    return;
+	case LS_U_CHAR:
+	    for (int idx = 0; idx < len; idx++) {
+		dst.setPlain(Byte.toUnsignedInt(buf.get()), idx);
+	    }
+	    return;
+	case LS_U_SHORT:
+	    for (int idx = 0; idx < len; idx++) {
+		dst.setPlain(Short.toUnsignedInt(buf.getShort()), idx);
+	    }
+	    return;
+	case LS_U_INT:
+	    for (int idx = 0; idx < len; idx++) {
+		dst.setPlain(Integer.toUnsignedLong(buf.getInt()), idx);
+	    }
+	    return;
+	case LS_CHAR:
+	    for (int idx = 0; idx < len; idx++) {
+		dst.setPlain(buf.get(), idx);
+	    }
+	    return;
+	case LS_SHORT:
+	    for (int idx = 0; idx < len; idx++) {
+		dst.setPlain(buf.getShort(), idx);
+	    }
+	    return;
+	case LS_INT:
+	    for (int idx = 0; idx < len; idx++) {
+		dst.setPlain(buf.getInt(), idx);
+	    }
+	    return;
+	case LS_U_LONG:
+	    for (int idx = 0; idx < len; idx++) {
+		final long val = buf.getLong();
+		// unsigned conversion
+		dst.setPlain(val >= 0 ? val : (val >>> 1) * 2.0 + (val & 1),
+			     idx);
+	    }
+	    return;
+	case LS_LONG:
+	    for (int idx = 0; idx < len; idx++) {
+		dst.setPlain(buf.getLong(), idx);
+	    }
+	    return;
+	default:
+	    throw new OctaveParseException
+		("Unknown save type " + saveType + ". ");
+	}
+    }
+
+    /**
+     * Returns the number of elements of an array with dimensions <code>dims</code>.
+     */
+    protected static int numel(final int[] dims) {
+	int res = 1;
+	for (int dim : dims) {
+	    res *= dim;
+	}
+	return res;
+    }
+
+}
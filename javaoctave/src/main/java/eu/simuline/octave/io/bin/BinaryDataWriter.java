@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import eu.simuline.octave.type.OctaveObject;
+import eu.simuline.octave.type.matrix.AbstractGenericMatrix;
+
+/**
+ * Service Provider Interface for writing {@link OctaveObject}s
+ * in the binary format read by octave's <code>load -binary</code>.
+ * This is the binary counterpart
+ * of {@link eu.simuline.octave.io.spi.OctaveDataWriter}.
+ * Since the size of the data is known in advance,
+ * the writer first yields the size by {@link #byteSize(OctaveObject)}
+ * and then writes into a buffer of appropriate size
+ * by {@link #write(ByteBuffer, OctaveObject)}.
+ * <p>
+ * The implementations are in this package and extend this class.
+ * These classes are registered in the jar-file
+ * under <code>META-INF/services/eu.simuline.octave.io.bin.BinaryDataWriter</code>.
+ *
+ * @param <T>
+ *    the type extending {@link OctaveObject} this writer can write.
+ */
+public abstract class BinaryDataWriter<T extends OctaveObject> {
+
+    /**
+     * The save type of octave's <code>data-conv.h</code>
+     * signifying that the elements of a double array are doubles.
+     */
+    protected static final byte LS_DOUBLE = 7;
+
+    /**
+     * Maps the {@link #javaType()}
+     * of a {@link BinaryDataWriter} to the {@link BinaryDataWriter} itself.
+     */
+    private static
+	Map<Class<? extends OctaveObject>, BinaryDataWriter<?>> wRITERS;
+
+    /**
+     * @param <T>
+     * @param type
+     * @return The BinaryDataWriter or null if it does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends OctaveObject>
+	BinaryDataWriter<T> getBinaryDataWriter(final T type) {
+        initWriterIfNecessary();
+        return (BinaryDataWriter<T>) wRITERS.get(type.getClass());
+    }
+
+    private static synchronized void initWriterIfNecessary() {
+	if (wRITERS != null) {
+	    return;
+	}
+	wRITERS = new HashMap
+	    <Class<? extends OctaveObject>, BinaryDataWriter<?>>();
+	@SuppressWarnings("rawtypes")
+	final Iterator<BinaryDataWriter> sp =
+	    ServiceLoader.load(BinaryDataWriter.class).iterator();
+	BinaryDataWriter<?> bdw, bdwOrg;
+	while (sp.hasNext()) {
+	    bdw = sp.next();
+	    assert bdw != null;
+	    bdwOrg = wRITERS.put(bdw.javaType(), bdw);
+	    if (bdwOrg != null) {
+		throw new IllegalStateException
+		    ("Java type " + bdw.javaType() +
+		     " has binary writers of type " + bdw.getClass() +
+		     " and " + bdwOrg.getClass() + ". ");
+	    }
+	}
+    }
+
+    /**
+     * @return the {@link Class} of the {@link OctaveObject}
+     *    that this writer writes
+     */
+    public abstract Class<T> javaType();
+
+    /**
+     * Returns the octave type <code>value</code> is written as,
+     * e.g. "matrix" or "scalar".
+     *
+     * @param value
+     *    the value to be written.
+     * @return
+     *    the octave type as given by <code>typeinfo</code>.
+     */
+    public abstract String octaveType(T value);
+
+    /**
+     * Returns the number of bytes written by {@link #write(ByteBuffer, OctaveObject)}.
+     *
+     * @param value
+     *    the value to be written.
+     * @return
+     *    the number of bytes of the data following the type.
+     */
+    public abstract int byteSize(T value);
+
+    /**
+     * Writes the data of <code>value</code> following the type to <code>buf</code>
+     * which has the byte order of the data.
+     *
+     * @param buf
+     *    the buffer to write to
+     *    with at least {@link #byteSize(OctaveObject)} bytes remaining.
+     * @param value
+     *    the value to be written.
+     */
+    public abstract void write(ByteBuffer buf, T value);
+
+    /**
+     * Returns whether <code>value</code> is a 1x1 matrix.
+     */
+    protected static boolean isScalar(final AbstractGenericMatrix<?, ?> value) {
+	return value.getSizeLength() == 2
+	    && value.getSize(1) == 1
+	    && value.getSize(2) == 1;
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #writeDims(ByteBuffer, AbstractGenericMatrix)}.
+     */
+    protected static int dimsSize(final AbstractGenericMatrix<?, ?> value) {
+	return Integer.BYTES * (1 + value.getSizeLength());
+    }
+
+    /**
+     * Writes the dimensions of <code>value</code>
+     * as the negated number of dimensions followed by the dimensions.
+     */
+    protected static void writeDims(final ByteBuffer buf,
+				    final AbstractGenericMatrix<?, ?> value) {
+	buf.putInt(-value.getSizeLength());
+	for (int idx = 1; idx <= value.getSizeLength(); idx++) {
+	    buf.putInt(value.getSize(idx));
+	}
+    }
+
+}
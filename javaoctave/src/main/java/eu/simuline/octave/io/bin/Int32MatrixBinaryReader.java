@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.nio.ByteBuffer;
+
+import eu.simuline.octave.type.OctaveInt;
+
+/**
+ * The binary reader for the octave type "int32 matrix" 
+ * reading an {@link OctaveInt} from a {@link ByteBuffer} 
+ * directly into its backing array. 
+ */
+public final class Int32MatrixBinaryReader extends BinaryDataReader {
+
+    @Override
+    public String octaveType() {
+        return "int32 matrix";
+    }
+
+    @Override
+    public OctaveInt read(final ByteBuffer buf) {
+	final int[] dims = readDims(buf);
+	final OctaveInt res = new OctaveInt(dims);
+	final int len = numel(dims);
+	res.setPlain(buf.asIntBuffer(), 0, len);
+	buf.position(buf.position() + len * Integer.BYTES);
+	return res;
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.nio.ByteBuffer;
+
+import eu.simuline.octave.type.OctaveInt;
+
+/**
+ * The binary writer for the octave types "int32 matrix" 
+ * and "int32 scalar" 
+ * writing an {@link OctaveInt} to a {@link ByteBuffer} 
+ * directly from its backing array. 
+ */
+public final class Int32MatrixBinaryWriter extends BinaryDataWriter<OctaveInt> {
+
+    @Override
+    public Class<OctaveInt> javaType() {
+        return OctaveInt.class;
+    }
+
+    @Override
+    public String octaveType(final OctaveInt value) {
+        return isScalar(value) ? "int32 scalar" : "int32 matrix";
+    }
+
+    @Override
+    public int byteSize(final OctaveInt value) {
+	final int size = value.dataSize() * Integer.BYTES;
+	return isScalar(value) ? size : dimsSize(value) + size;
+    }
+
+    @Override
+    public void write(final ByteBuffer buf, final OctaveInt value) {
+	if (!isScalar(value)) {
+	    writeDims(buf, value);
+	}
+	final int len = value.dataSize();
+	value.getPlain(buf.asIntBuffer(), 0, len);
+	buf.position(buf.position() + len * Integer.BYTES);
+    }
+
+}
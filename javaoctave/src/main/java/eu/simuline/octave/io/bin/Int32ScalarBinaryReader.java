@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.nio.ByteBuffer;
+
+import eu.simuline.octave.type.OctaveInt;
+
+/**
+ * The binary reader for the octave type "int32 scalar" 
+ * reading an {@link OctaveInt} from a {@link ByteBuffer}. 
+ */
+public final class Int32ScalarBinaryReader extends BinaryDataReader {
+
+    @Override
+    public String octaveType() {
+        return "int32 scalar";
+    }
+
+    @Override
+    public OctaveInt read(final ByteBuffer buf) {
+	final OctaveInt res = new OctaveInt(1, 1);
+	res.setPlain(buf.getInt(), 0);
+	return res;
+    }
+
+}
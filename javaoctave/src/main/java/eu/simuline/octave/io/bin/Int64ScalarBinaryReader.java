@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.nio.ByteBuffer;
+
+import eu.simuline.octave.type.OctaveLong;
+
+/**
+ * The binary reader for the octave type "int64 scalar" 
+ * reading an {@link OctaveLong} from a {@link ByteBuffer}. 
+ */
+public final class Int64ScalarBinaryReader extends BinaryDataReader {
+
+    @Override
+    public String octaveType() {
+        return "int64 scalar";
+    }
+
+    @Override
+    public OctaveLong read(final ByteBuffer buf) {
+	final OctaveLong res = new OctaveLong(1, 1);
+	res.setPlain(buf.getLong(), 0);
+	return res;
+    }
+
+}
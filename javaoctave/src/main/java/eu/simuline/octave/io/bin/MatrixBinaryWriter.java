@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.nio.ByteBuffer;
+
+import eu.simuline.octave.type.OctaveDouble;
+
+/**
+ * The binary writer for the octave types "matrix" and "scalar" 
+ * writing an {@link OctaveDouble} to a {@link ByteBuffer} 
+ * directly from its backing array. 
+ * Unlike octave, this writes doubles only, 
+ * never integer valued arrays in a smaller type. 
+ */
+public final class MatrixBinaryWriter extends BinaryDataWriter<OctaveDouble> {
+
+    @Override
+    public Class<OctaveDouble> javaType() {
+        return OctaveDouble.class;
+    }
+
+    @Override
+    public String octaveType(final OctaveDouble value) {
+        return isScalar(value) ? "scalar" : "matrix";
+    }
+
+    @Override
+    public int byteSize(final OctaveDouble value) {
+	// the save type and the data 
+	final int size = 1 + value.dataSize() * Double.BYTES;
+	return isScalar(value) ? size : dimsSize(value) + size;
+    }
+
+    @Override
+    public void write(final ByteBuffer buf, final OctaveDouble value) {
+	if (!isScalar(value)) {
+	    writeDims(buf, value);
+	}
+	buf.put(LS_DOUBLE);
+	final int len = value.dataSize();
+	value.getPlain(buf.asDoubleBuffer(), 0, len);
+	buf.position(buf.position() + len * Double.BYTES);
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.type.OctaveObject;
+
+/**
+ * Encodes and decodes maps from variable names to {@link OctaveObject}s
+ * in octave's native binary format
+ * written by <code>save -binary</code> and read by <code>load -binary</code>.
+ * Unlike the text format, numbers are transferred bit-exact
+ * without formatting and parsing decimals
+ * and arrays are copied in bulk from and to the backing arrays.
+ * The types supported are given by the {@link BinaryDataReader}s
+ * and the {@link BinaryDataWriter}s registered.
+ * <p>
+ * The format consists of the header {@link #MAGIC_LE} or {@link #MAGIC_BE}
+ * determining the byte order followed by a byte with the float format
+ * and then for each variable
+ * the length and the name, the length and the doc string,
+ * the global flag, the byte {@link #NEW_FORMAT},
+ * the length and the octave type and finally the data.
+ */
+public final class OctaveBinary {
+
+    /**
+     * The header of data in little endian byte order.
+     */
+    static final String MAGIC_LE = "Octave-1-L";
+
+    /**
+     * The header of data in big endian byte order.
+     */
+    static final String MAGIC_BE = "Octave-1-B";
+
+    /**
+     * The float format IEEE little endian
+     * following the header as written by this class.
+     * Octave also reads other float formats and converts.
+     */
+    private static final byte FLOAT_FORMAT = 0;
+
+    /**
+     * The byte following the global flag to signify that the octave type
+     * is given by name and not by a number as in ancient versions.
+     */
+    private static final byte NEW_FORMAT = (byte) 255;
+
+    private OctaveBinary() {
+    }
+
+    /**
+     * Returns whether <code>value</code> can be written in binary format.
+     *
+     * @param value
+     *    an octave object.
+     * @return
+     *    whether there is a {@link BinaryDataWriter} for <code>value</code>.
+     */
+    public static boolean isWritable(final OctaveObject value) {
+	return BinaryDataWriter.getBinaryDataWriter(value) != null;
+    }
+
+    /**
+     * Encodes the variables of <code>name2val</code> in binary format.
+     *
+     * @param name2val
+     *    a map from variable names to values
+     *    all of which are {@link #isWritable(OctaveObject)}.
+     * @return
+     *    a buffer positioned at 0 holding the encoded variables.
+     * @throws IllegalArgumentException
+     *    if a value can not be written in binary format.
+     */
+    public static ByteBuffer encode(final Map<String, OctaveObject> name2val) {
+	final ByteBuffer buf = ByteBuffer.allocate(byteSize(name2val))
+	    .order(ByteOrder.LITTLE_ENDIAN);
+	encode(buf, name2val);
+	buf.flip();
+	return buf;
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #encode(Map)}.
+     *
+     * @throws IllegalArgumentException
+     *    if a value can not be written in binary format.
+     */
+    private static int byteSize(final Map<String, OctaveObject> name2val) {
+	int size = MAGIC_LE.length() + 1;
+	for (Map.Entry<String, OctaveObject> entry : name2val.entrySet()) {
+	    final OctaveObject value = entry.getValue();
+	    final BinaryDataWriter<OctaveObject> writer = writer(value);
+	    // name, doc, global, new format, type, data
+	    size += Integer.BYTES + bytes(entry.getKey()).length
+		+ Integer.BYTES + 1 + 1
+		+ Integer.BYTES + bytes(writer.octaveType(value)).length
+		+ writer.byteSize(value);
+	}
+	return size;
+    }
+
+    /**
+     * Writes the variables of <code>name2val</code> to <code>buf</code>
+     * in little endian byte order
+     * which must have {@link #byteSize(Map)} bytes remaining.
+     */
+    private static void encode(final ByteBuffer buf,
+			       final Map<String, OctaveObject> name2val) {
+	buf.put(bytes(MAGIC_LE)).put(FLOAT_FORMAT);
+	for (Map.Entry<String, OctaveObject> entry : name2val.entrySet()) {
+	    final OctaveObject value = entry.getValue();
+	    final BinaryDataWriter<OctaveObject> writer = writer(value);
+	    putString(buf, entry.getKey());
+	    // no doc string, not global
+	    buf.putInt(0).put((byte) 0).put(NEW_FORMAT);
+	    putString(buf, writer.octaveType(value));
+	    writer.write(buf, value);
+	}
+    }
+
+    /**
+     * Decodes variables in binary format.
+     *
+     * @param buf
+     *    a buffer holding variables in binary format
+     *    as written by <code>save -binary</code>.
+     * @return
+     *    a map from the names of the variables in the order read
+     *    to their values.
+     * @throws OctaveParseException
+     *    if the data is malformed or a type is not supported.
+     */
+    public static Map<String, OctaveObject> decode(final ByteBuffer buf) {
+	final Map<String, OctaveObject> res =
+	    new LinkedHashMap<String, OctaveObject>();
+	try {
+	    final byte[] magic = new byte[MAGIC_LE.length()];
+	    buf.get(magic);
+	    final String header = new String(magic, StandardCharsets.US_ASCII);
+	    if (MAGIC_LE.equals(header)) {
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+	    } else if (MAGIC_BE.equals(header)) {
+		buf.order(ByteOrder.BIG_ENDIAN);
+	    } else {
+		throw new OctaveParseException
+		    ("Expected binary header but got '" + header + "'. ");
+	    }
+	    // the float format: IEEE assumed
+	    buf.get();
+	    while (buf.hasRemaining()) {
+		final String name = getString(buf);
+		// skip the doc string and the global flag
+		final int docLen = buf.getInt();
+		buf.position(buf.position() + docLen + 1);
+		if (buf.get() != NEW_FORMAT) {
+		    throw new OctaveParseException
+			("Ancient binary format of variable '" + name + "'. ");
+		}
+		final String type = getString(buf);
+		final BinaryDataReader reader =
+		    BinaryDataReader.getBinaryDataReader(type);
+		if (reader == null) {
+		    throw new OctaveParseException
+			("No binary reader for octave type '" + type + "'. ");
+		}
+		res.put(name, reader.read(buf));
+	    }
+	} catch (BufferUnderflowException e) {
+	    throw new OctaveParseException("Binary data truncated. ", e);
+	}
+	return res;
+    }
+
+    /**
+     * Writes the variables of <code>name2val</code> in binary format
+     * to <code>file</code> which is overwritten.
+     *
+     * @param file
+     *    the file to write to.
+     * @param name2val
+     *    a map from variable names to values
+     *    all of which are {@link #isWritable(OctaveObject)}.
+     * @throws IOException
+     *    if writing fails.
+     */
+    public static void write(final File file,
+			     final Map<String, OctaveObject> name2val)
+	throws IOException {
+	final ByteBuffer buf = encode(name2val);
+	try (FileChannel channel = FileChannel.open
+	     (file.toPath(),
+	      StandardOpenOption.WRITE,
+	      StandardOpenOption.CREATE,
+	      StandardOpenOption.TRUNCATE_EXISTING)) {
+	    while (buf.hasRemaining()) {
+		channel.write(buf);
+	    }
+	}
+    }
+
+    /**
+     * Reads the variables in binary format from <code>file</code>.
+     *
+     * @param file
+     *    a file written by <code>save -binary</code>.
+     * @return
+     *    a map from the names of the variables to their values.
+     * @throws IOException
+     *    if reading fails.
+     * @throws OctaveParseException
+     *    if the data is malformed or a type is not supported.
+     */
+    public static Map<String, OctaveObject> read(final File file)
+	throws IOException {
+	return decode(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    private static BinaryDataWriter<OctaveObject> writer(final OctaveObject value) {
+	final BinaryDataWriter<OctaveObject> writer =
+	    BinaryDataWriter.getBinaryDataWriter(value);
+	if (writer == null) {
+	    throw new IllegalArgumentException
+		("No binary writer for java type " + value.getClass() + ". ");
+	}
+	return writer;
+    }
+
+    private static byte[] bytes(final String str) {
+	return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(final ByteBuffer buf, final String str) {
+	final byte[] bytes = bytes(str);
+	buf.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(final ByteBuffer buf) {
+	final byte[] bytes = new byte[buf.getInt()];
+	buf.get(bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Codecs for octave's native binary format
+ * written by <code>save -binary</code> and read by <code>load -binary</code>,
+ * the binary counterpart of {@link eu.simuline.octave.io.impl}.
+ * The service provider interfaces are
+ * {@link eu.simuline.octave.io.bin.BinaryDataReader} and
+ * {@link eu.simuline.octave.io.bin.BinaryDataWriter};
+ * the implementations are registered in
+ * <code>META-INF/services/eu.simuline.octave.io.bin.BinaryDataReader</code>
+ * and <code>META-INF/services/eu.simuline.octave.io.bin.BinaryDataWriter</code>.
+ * {@link eu.simuline.octave.io.bin.OctaveBinary} encodes and decodes
+ * maps of variables.
+ * <p>
+ * The numeric types are supported,
+ * i.e. octave "scalar" and "matrix"
+ * represented by {@link eu.simuline.octave.type.OctaveDouble},
+ * "int32 scalar" and "int32 matrix"
+ * represented by {@link eu.simuline.octave.type.OctaveInt} and
+ * "int64 scalar" and "int64 matrix"
+ * represented by {@link eu.simuline.octave.type.OctaveLong}.
+ * The data is read into and written from the backing arrays in bulk
+ * and is bit-exact unlike the decimals of the text format.
+ * All other types are transferred in text format.
+ */
+package eu.simuline.octave.io.bin;
@@ -20,7 +20,7 @@ package eu.simuline.octave.io.impl;
 import java.io.BufferedReader;
 
 import eu.simuline.octave.exception.OctaveParseException;
-import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.matrix.AbstractGenericMatrix;
 
@@ -35,10 +35,9 @@ abstract class AbstractPrimitiveMatrixReader
     <T extends AbstractGenericMatrix<?,?>> 
     extends OctaveDataReader {
 
-    // **** to be eliminated: is in according writer 
-    protected static final String NDIMS    = "# ndims: ";
-    protected static final String NROWS    = "# rows: ";
-    protected static final String NCOLUMNS = "# columns: ";
+    protected static final String NDIMS    = OctaveTextLexer.NDIMS;
+    protected static final String NROWS    = OctaveTextLexer.ROWS;
+    protected static final String NCOLUMNS = OctaveTextLexer.COLUMNS;
 
 
     abstract T createOctaveValue(int[] size);
@@ -51,13 +50,13 @@ abstract class AbstractPrimitiveMatrixReader
      * and in the next line the lengths in all these dimensions 
      * and all the following lines the vectorized data, 
      * each in a separate line. 
-     * This is read by {@link #readVectorizedMatrix(BufferedReader, String)}. 
+     * This is read by {@link #readVectorizedMatrix(OctaveTextLexer, String)}. 
      * <li><tt># rows: </tt> specifying the number of rows 
      * and <tt># columns: </tt> specifying the number of columns 
      * in the next line (which works only for matrices, i.e. up to dimension 2) 
      * and then for each row a line follows 
      * each of which holds the entries separated by a blank. 
-     * This is read by {@link #read2dmatrix(BufferedReader, String)}. 
+     * This is read by {@link #read2dmatrix(OctaveTextLexer, String)}. 
      * </ul>
      */
     // **** caution: this distinction is valid only for floating point types. 
@@ -65,15 +64,16 @@ abstract class AbstractPrimitiveMatrixReader
     // **** this may indicate inappropriate design. 
     @Override
     public T read(final BufferedReader reader) {
-        final String line = OctaveIO.readerReadLine(reader);
+	final OctaveTextLexer lexer = new OctaveTextLexer(reader);
+        final String line = lexer.readLine();
         // 2d or 2d+?
-        if (line.startsWith(NROWS)) {
+        if (line != null && line.startsWith(NROWS)) {
 	    // this case does not occur for int types, 
 	    // just for float (including complex) and bool 
 	    // **** so this implementation may read things which do not occur 
-            return read2dmatrix(reader, line);
-        } else if (line.startsWith(NDIMS)) {
-	    return readVectorizedMatrix(reader, line);
+            return read2dmatrix(lexer, line);
+        } else if (line != null && line.startsWith(NDIMS)) {
+	    return readVectorizedMatrix(lexer, line);
         } else {
             throw new OctaveParseException
 		("Expected <" + NROWS + "> or <" + NDIMS + 
@@ -81,98 +81,32 @@ abstract class AbstractPrimitiveMatrixReader
         }
     }
 
-    private T readVectorizedMatrix(BufferedReader reader, 
-				   String dimsLine) {
-	int[] size = readSizeVectorizedMatrix(reader, dimsLine);
- 	T res = createOctaveValue(size);
-  	String line;
+    private T readVectorizedMatrix(final OctaveTextLexer lexer, 
+				   final String ndimsLine) {
+ 	final T res = createOctaveValue(lexer.readDims(ndimsLine));
 	// **** in the long run dataLength is not what we need 
 	// active entries only 
 	for (int idx = 0; idx < res.dataSize(); idx++) {
-            line = OctaveIO.readerReadLine(reader);
- 	    res.setPlain(line, idx);
+ 	    res.setPlain(lexer.readLine(), idx);
 	}
         return res;
     }
 
-    /**
-     * Reads a line {@link #NDIMS num of dims} 
-     * followed by a line of dimensions: integers separated by blank 
-     * and returns an array with the according entries. 
-     * In particular the length is {@link #NDIMS num of dims}. 
-     */
-    private int[] readSizeVectorizedMatrix(BufferedReader reader, 
-					   String ndimsLine) {
-        String line = ndimsLine;
-        if (!line.startsWith(NDIMS)) {
-            throw new OctaveParseException
-		("Expected <" + NDIMS + ">, but got <" + line + ">. ");
-        }
-        final int ndims = Integer.parseInt(line.substring(NDIMS.length()));
-
-        line = OctaveIO.readerReadLine(reader);
-        final String[] split = line.substring(1).split(" ");
-        if (split.length != ndims) {
-            throw new OctaveParseException
-		("Expected <" + ndims + "> dimension, but got <" + 
-		 split.length + "> (line was <" + line + ">). ");
-        }
-        final int[] size = new int[split.length];
-        for (int dim = 0; dim < split.length; dim++) {
-            size[dim] = Integer.parseInt(split[dim]);
-        }
-	return size;
-    }
-
-
     // maybe this just throws an exception because this case does not occur. 
-    private T read2dmatrix(BufferedReader reader, 
-			   String rowsLine) {
-	int[] size = readSize2dmatrix(reader, rowsLine);
-	T res = createOctaveValue(size);
-
-	int rows    = size[0];
-	int columns = size[1];
-	String line;
-
-	for (int r = 1; r <= rows; ++r) {
-            line = OctaveIO.readerReadLine(reader);
-            final String[] split = line.split(" ");
-            if (split.length != columns + 1) {
-                throw new OctaveParseException
-		    ("Error in matrix-format: '" + line + "'");
-            }
-            for (int c = 1; c < split.length; c++) {
-		res.setPlain(split[c], (r - 1) + (c - 1) * rows);
+    private T read2dmatrix(final OctaveTextLexer lexer, 
+			   final String rowsLine) {
+	final int[] size = lexer.readRowsColumns(rowsLine);
+	final T res = createOctaveValue(size);
+
+	final int rows    = size[0];
+	final int columns = size[1];
+	for (int r = 0; r < rows; ++r) {
+            final String[] tokens = 
+		OctaveTextLexer.tokens(lexer.readLine(), columns);
+            for (int c = 0; c < columns; c++) {
+		res.setPlain(tokens[c], r + c * rows);
             }
         }
         return res;
     }
-
-    /**
-     * Reads lines {@link #NROWS num of rows} and {@link #NCOLUMNS num of cols}
-     * and returns an array {nrows ncols}. 
-     */
-    protected int[] readSize2dmatrix(BufferedReader reader, 
-				     String rowsLine) {
-        // # rows: 1
-        String line = rowsLine;
-        if (!line.startsWith(NROWS)) {
-            throw new OctaveParseException
-		("Expected <" + NROWS + "> got <" + line + ">. ");
-        }
-        final int rows = Integer.parseInt(line.substring(NROWS.length()));
-        // # columns: 3
-        line = OctaveIO.readerReadLine(reader);
-        if (!line.startsWith(NCOLUMNS)) {
-            throw new OctaveParseException
-		("Expected <" + NCOLUMNS + "> got <" + line + ">. ");
-        }
-        final int columns = Integer.parseInt(line.substring(NCOLUMNS.length()));
-        // 1 2 3
-        // final int[] size = new int[2];
-        // size[0] = rows;
-        // size[1] = columns;
-        return new int[] {rows, columns};
-    }
 }
@@ -15,7 +15,7 @@
  */
 package eu.simuline.octave.io.impl;
 
-import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.matrix.AbstractGenericMatrix;
 
@@ -34,7 +34,7 @@ abstract class AbstractPrimitiveScalarReader
 
     @Override
     public final T read(final BufferedReader reader) {
-        final String line = OctaveIO.readerReadLine(reader);
+        final String line = new OctaveTextLexer(reader).readLine();
         final T ret = createOctaveScalar();
 	ret.setPlain(line, 0);
         return ret;
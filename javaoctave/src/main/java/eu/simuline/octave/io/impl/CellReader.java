@@ -19,6 +19,7 @@ import java.io.BufferedReader;
 
 import eu.simuline.octave.exception.OctaveParseException;
 import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.OctaveCell;
 import eu.simuline.octave.type.OctaveObject;
@@ -33,6 +34,11 @@ import static eu.simuline.octave.io.impl.CellWriter.NCOLUMNS;
  */
 public final class CellReader extends OctaveDataReader {
 
+    /**
+     * The line preceding each element. 
+     */
+    private static final String ELEMENT = "# name: <cell-element>";
+
     @Override
     public String octaveType() {
         return "cell";
@@ -40,22 +46,9 @@ public final class CellReader extends OctaveDataReader {
 
     @Override
     public OctaveCell read(final BufferedReader reader) {
-        String line = OctaveIO.readerReadLine(reader);
-        String token = NROWS;
-
-        if (!line.startsWith(token)) {
-            throw new OctaveParseException
-		("Expected <" + token + ">, but got <" + line + ">");
-        }
-        final int nrows = Integer.parseInt(line.substring(token.length()));
-
-        line = OctaveIO.readerReadLine(reader);
-        token = NCOLUMNS;
-        if (!line.startsWith(token)) {
-            throw new OctaveParseException
-		("Expected <" + token + ">, but got <" + line + ">");
-        }
-        final int ncols = Integer.parseInt(line.substring(token.length()));
+	final OctaveTextLexer lexer = new OctaveTextLexer(reader);
+        final int nrows = lexer.readIntHeader(NROWS);
+        final int ncols = lexer.readIntHeader(NCOLUMNS);
 
         final OctaveCell octaveCell = new OctaveCell(nrows, ncols);
 
@@ -64,23 +57,15 @@ public final class CellReader extends OctaveDataReader {
 		// Work around differences in number of line feeds 
 		// in octave 3.4 and 3.6: 
 		// keep reading until line is non-empty
-		do {
-                    line = OctaveIO.readerReadLine(reader);
-                } while ("".equals(line));
-		token = "# name: <cell-element>";
-		if (!line.equals(token)) {
+		final String line = lexer.readNonEmptyLine();
+		if (!ELEMENT.equals(line)) {
                     throw new OctaveParseException
-			("Expected <" + token + ">, but got <" + line + ">");
+			("Expected <" + ELEMENT + ">, but got <" + line + ">");
                 }
                 final OctaveObject octaveType = OctaveIO.read(reader);
                 octaveCell.set(octaveType, row, col);
             }
-            line = OctaveIO.readerReadLine(reader);
-            token = "";
-            if (line == null || !line.equals(token)) {
-                throw new OctaveParseException
-		    ("Expected <" + token + ">, but got <" + line + ">");
-            }
+            lexer.readLine("");
         }
 
         return octaveCell;
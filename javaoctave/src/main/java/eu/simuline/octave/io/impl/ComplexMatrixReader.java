@@ -17,11 +17,9 @@ package eu.simuline.octave.io.impl;
 
 import java.io.BufferedReader;
 
-import eu.simuline.octave.exception.OctaveParseException;
-import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.OctaveComplex;
-import eu.simuline.octave.util.StringUtil;
 
 /**
  * Reader for the octave type "complex matrix" 
@@ -43,8 +41,8 @@ import eu.simuline.octave.util.StringUtil;
 public final class ComplexMatrixReader extends OctaveDataReader {
 
 
-    private static final String COLUMNS = "# columns: ";
-    private static final String ROWS    = "# rows: ";
+    private static final String COLUMNS = OctaveTextLexer.COLUMNS;
+    private static final String ROWS    = OctaveTextLexer.ROWS;
 
     @Override
     public String octaveType() {
@@ -53,25 +51,18 @@ public final class ComplexMatrixReader extends OctaveDataReader {
 
     @Override
     public OctaveComplex read(final BufferedReader reader) {
-        final int rows = parseRows(reader);
-        final int columns = parseColumns(reader);
+	final OctaveTextLexer lexer = new OctaveTextLexer(reader);
+        final int rows = lexer.readIntHeader(ROWS);
+        final int columns = lexer.readIntHeader(COLUMNS);
         final OctaveComplex complex = new OctaveComplex(rows, columns);
+	final double[] reIm = new double[2];
         for (int r = 1; r <= rows; ++r) {
-            final String line = OctaveIO.readerReadLine(reader);
-            final String[] split = line.split(" ");
-            if (split.length != columns + 1) {
-                throw new OctaveParseException
-		    ("Error in complex matrix-format: '" + line + "'");
-            }
-            for (int c = 1; c < split.length; c++) {
-                final int commaIndex = split[c].indexOf(',');
-                final double real = StringUtil
-		    .parseDouble(split[c].substring(1, commaIndex));
-                final double imag = StringUtil
-		    .parseDouble(split[c].substring(commaIndex + 1,
-						    split[c].length() - 1));
-                complex.setReal(real, r, c);
-                complex.setImag(imag, r, c);
+            final String[] split = 
+		OctaveTextLexer.tokens(lexer.readLine(), columns);
+            for (int c = 1; c <= columns; c++) {
+		OctaveTextLexer.parseComplex(split[c - 1], reIm, 0);
+                complex.setReal(reIm[0], r, c);
+                complex.setImag(reIm[1], r, c);
             }
         }
         return complex;
@@ -83,12 +74,7 @@ public final class ComplexMatrixReader extends OctaveDataReader {
      *   the number of rows
      */
     public int parseRows(final BufferedReader reader) {
-        final String line = OctaveIO.readerReadLine(reader);
-        if (!line.startsWith(ROWS)) {
-            throw new OctaveParseException
-		("Expected <" + ROWS + "> got <" + line + ">");
-        }
-        return Integer.parseInt(line.substring(ROWS.length()));
+        return new OctaveTextLexer(reader).readIntHeader(ROWS);
     }
 
     /**
@@ -97,12 +83,7 @@ public final class ComplexMatrixReader extends OctaveDataReader {
      *    the number of columns
      */
     public int parseColumns(final BufferedReader reader) {
-        final String line = OctaveIO.readerReadLine(reader);
-        if (!line.startsWith(COLUMNS)) {
-            throw new OctaveParseException
-		("Expected <" + COLUMNS + "> got <" + line + ">");
-        }
-        return Integer.parseInt(line.substring(COLUMNS.length()));
+        return new OctaveTextLexer(reader).readIntHeader(COLUMNS);
     }
 
 }
@@ -17,10 +17,9 @@ package eu.simuline.octave.io.impl;
 
 import java.io.BufferedReader;
 
-import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.OctaveComplex;
-import eu.simuline.octave.util.StringUtil;
 
 /**
  * The reader for the octave type "complex scalar" with 'double' components 
@@ -40,18 +39,14 @@ public final class ComplexScalarReader extends OctaveDataReader {
         return "complex scalar";
     }
 
-    // **** parsing of complex numbers shall be done in StringUtil centralized 
     @Override
     public OctaveComplex read(final BufferedReader reader) {
-        final String line = OctaveIO.readerReadLine(reader);
-        final int commaIndex = line.indexOf(',');
-        final double real = StringUtil
-	    .parseDouble(line.substring(1, commaIndex));
-        final double imag = StringUtil
-	    .parseDouble(line.substring(commaIndex + 1, line.length() - 1));
+	final double[] reIm = new double[2];
+	OctaveTextLexer.parseComplex(new OctaveTextLexer(reader).readLine(),
+				     reIm, 0);
         final OctaveComplex complex = new OctaveComplex(1, 1);
-        complex.setReal(real, 1, 1);
-        complex.setImag(imag, 1, 1);
+        complex.setReal(reIm[0], 1, 1);
+        complex.setImag(reIm[1], 1, 1);
         return complex;
     }
 
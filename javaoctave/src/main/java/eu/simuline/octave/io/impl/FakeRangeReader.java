@@ -17,7 +17,7 @@ package eu.simuline.octave.io.impl;
 
 import java.io.BufferedReader;
 
-import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.OctaveFake;
 
@@ -40,8 +40,9 @@ public final class FakeRangeReader extends OctaveDataReader {
 
     @Override
     public OctaveFake read(final BufferedReader reader) {
-        final String line1 = OctaveIO.readerReadLine(reader);
-        final String line2 = OctaveIO.readerReadLine(reader);
+	final OctaveTextLexer lexer = new OctaveTextLexer(reader);
+        final String line1 = lexer.readLine();
+        final String line2 = lexer.readLine();
         return new OctaveFake("# type: range\n" + line1 + "\n" + line2 + "\n");
     }
 
@@ -21,6 +21,7 @@ import java.util.Map;
 
 import eu.simuline.octave.exception.OctaveParseException;
 import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.OctaveObject;
 import eu.simuline.octave.type.OctaveStruct;
@@ -32,8 +33,8 @@ import eu.simuline.octave.type.OctaveStruct;
  * reading an {@link OctaveObject} from a {@link BufferedReader}.
  */
 public final class ScalarStructReader extends OctaveDataReader {
-    private static final String NAME = "# name: ";
-    private static final String LENGTH = "# length: ";
+    private static final String NAME = OctaveTextLexer.NAME;
+    private static final String LENGTH = OctaveTextLexer.LENGTH;
     private static final String N_DIMS2 = "# ndims: 2";
     private static final String V_DIMS2 = " 1 1";
 
@@ -44,28 +45,24 @@ public final class ScalarStructReader extends OctaveDataReader {
 
     @Override
     public OctaveStruct read(final BufferedReader reader) {
+	final OctaveTextLexer lexer = new OctaveTextLexer(reader);
 	// **** this i cannot see in Writer 
         // # ndims: 2
-        String line = OctaveIO.readerReadLine(reader);
+        String line = lexer.readLine();
         if (!N_DIMS2.equals(line)) {
             throw new OctaveParseException
 		("JavaOctave does not support matrix structs, read=" + line);
         }
 
         // 1 1
-        line = OctaveIO.readerReadLine(reader);
+        line = lexer.readLine();
         if (!V_DIMS2.equals(line)) {
             throw new OctaveParseException
 		("JavaOctave does not support matrix structs, read=" + line);
         }
 
         // # length: 4
-        line = OctaveIO.readerReadLine(reader);
-        if (line == null || !line.startsWith(LENGTH)) {
-            throw new OctaveParseException
-		("Expected <" + LENGTH + "> got <" + line + ">. ");
-       }
-        final int length = Integer.parseInt(line.substring(LENGTH.length()));
+        final int length = lexer.readIntHeader(LENGTH);
 	// only used during conversion
 
         final Map<String, OctaveObject> data =
@@ -76,17 +73,8 @@ public final class ScalarStructReader extends OctaveDataReader {
 	    // Work around differences in number of line feeds 
 	    // in octave 3.4 and 3.6
 	    // keep reading until line is non-empty
-            do {
-                line = OctaveIO.readerReadLine(reader);
-            } while ("".equals(line));
-            if (!line.startsWith(NAME)) {
-                throw new OctaveParseException
-		    ("Expected <" + NAME + "> got <" + line + ">. ");
-            }
-            final String subname = line.substring(NAME.length());
-
-
-
+            final String subname = 
+		OctaveTextLexer.parseHeader(NAME, lexer.readNonEmptyLine());
 
             // data...
             final OctaveObject value = OctaveIO.read(reader);
@@ -19,7 +19,7 @@ import java.io.BufferedReader;
 
 import eu.simuline.octave.exception.OctaveParseException;
 
-import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.OctaveSparseBoolean;
@@ -40,6 +40,8 @@ import eu.simuline.octave.util.StringUtil;
  */
 public final class SparseBooleanReader extends OctaveDataReader {
 
+    private static final String NNZ = "# nnz: ";
+
     @Override
     public String octaveType() {
         return "sparse bool matrix";
@@ -53,45 +55,22 @@ public final class SparseBooleanReader extends OctaveDataReader {
     // 3 is clear from SparseBooleanWriter 
     // **** seems buggy: headline "# type: sparse bool matrix\n" not read. 
     public OctaveSparseBoolean read(final BufferedReader reader) {
-        final int nnz     = parseHeader("# nnz: ", 
-					OctaveIO.readerReadLine(reader));
-        final int rows    = parseHeader("# rows: ", 
-					OctaveIO.readerReadLine(reader));
-        final int columns = parseHeader("# columns: ", 
-					OctaveIO.readerReadLine(reader));
+	final OctaveTextLexer lexer = new OctaveTextLexer(reader);
+        final int nnz     = lexer.readIntHeader(NNZ);
+        final int rows    = lexer.readIntHeader(OctaveTextLexer.ROWS);
+        final int columns = lexer.readIntHeader(OctaveTextLexer.COLUMNS);
 
         final OctaveSparseBoolean sparse = 
 	    new OctaveSparseBoolean(rows, columns, nnz);
         for (int n = 0; n < nnz; ++n) {
-            final String line = OctaveIO.readerReadLine(reader);
-            final String[] split = line.split(" ");
-            if (split.length != 3) { // NOPMD 
-                throw new OctaveParseException("split.length != 3");
-            }
-            try {
-                final int row       = Integer.parseInt(split[0]);
-                final int column    = Integer.parseInt(split[1]);
-                final boolean value = StringUtil.parseBoolean(split[2]);
-                sparse.set(value, row, column);
-            } catch (final NumberFormatException e) {
-                throw new OctaveParseException(e);
-            }
+            final String[] split = OctaveTextLexer.tokens(lexer.readLine(), 3);
+            final int row       = OctaveTextLexer.parseInt(split[0]);
+            final int column    = OctaveTextLexer.parseInt(split[1]);
+            final boolean value = StringUtil.parseBoolean(split[2]);
+            sparse.set(value, row, column);
         }
 
         return sparse;
     }
 
-    private int parseHeader(final String prefix, final String line) {
-        if (line == null || !line.startsWith(prefix)) {
-            throw new OctaveParseException
-		("Expected a line that should start with '" + prefix + 
-		 "', got '" + line + "'");
-        }
-        try {
-            return Integer.parseInt(line.substring(prefix.length()));
-        } catch (final NumberFormatException e) {
-            throw new OctaveParseException(e);
-        }
-    }
-
 }
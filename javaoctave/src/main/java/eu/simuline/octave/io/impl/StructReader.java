@@ -20,7 +20,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import eu.simuline.octave.exception.OctaveParseException;
-import eu.simuline.octave.io.OctaveIO;
+import eu.simuline.octave.io.OctaveTextLexer;
 import eu.simuline.octave.io.spi.OctaveDataReader;
 import eu.simuline.octave.type.OctaveCell;
 import eu.simuline.octave.type.OctaveObject;
@@ -47,12 +47,12 @@ public final class StructReader extends OctaveDataReader {
     }
 
     @Override
-    @SuppressWarnings("PMD.NPathComplexity")
     public OctaveStruct read(final BufferedReader reader) {
-        String line = OctaveIO.readerReadLine(reader);
+	final OctaveTextLexer lexer = new OctaveTextLexer(reader);
+        String line = lexer.readLine();
         // In octave 3.6 dimension of the scalar is also written now 
 	// **** this i cannot see in Writer 
-        if (line != null && line.startsWith("# ndims:")) {
+        if (line != null && line.startsWith(OctaveTextLexer.NDIMS)) {
             if (!N_DIMS2.equals(line)) {
                 throw new OctaveParseException
 		    ("JavaOctave does not support matrix structs, read '" + 
@@ -60,22 +60,17 @@ public final class StructReader extends OctaveDataReader {
             }
 
 	    // 1 1
-            line = OctaveIO.readerReadLine(reader);
+            line = lexer.readLine();
             if (!V_DIMS2.equals(line)) {
                 throw new OctaveParseException
 		    ("JavaOctave does not support matrix structs, read '" + 
 		     line + "'");
             }
-            line = OctaveIO.readerReadLine(reader);
+            line = lexer.readLine();
         }
 
         // # length: 4
-//        String line = OctaveIO.readerReadLine(reader);
-        if (line == null || !line.startsWith(LENGTH)) {
-            throw new OctaveParseException
-		("Expected <" + LENGTH + "> got <" + line + ">. ");
-        }
-        final int length = Integer.parseInt(line.substring(LENGTH.length()));
+        final int length = OctaveTextLexer.parseIntHeader(LENGTH, line);
 	// only used during conversion
 
         final Map<String, OctaveObject> data = 
@@ -86,23 +81,9 @@ public final class StructReader extends OctaveDataReader {
 	    // Work around differences in number of line feeds 
 	    // in octave 3.4 and 3.6: 
 	    // keep reading until line is non-empty
-            do {
-                line = OctaveIO.readerReadLine(reader);
-            } while ("".equals(line));
-            if (!line.startsWith(NAME)) {
-                throw new OctaveParseException
-		    ("Expected <" + NAME + "> got <" + line + ">. ");
-            }
-            final String subname = line.substring(NAME.length());
-
-
-
-
-            line = OctaveIO.readerReadLine(reader);
-            if (!line.equals(TYPE_CELL)) {
-                throw new OctaveParseException
-		    ("Expected '" + TYPE_CELL + "' got '" + line + "'");
-            }
+            final String subname = 
+		OctaveTextLexer.parseHeader(NAME, lexer.readNonEmptyLine());
+            lexer.readLine(TYPE_CELL);
 
             final OctaveCell cell = CELL_READER.read(reader);
             if (cell.getSize(1) != 1 || cell.getSize(2) != 1) {
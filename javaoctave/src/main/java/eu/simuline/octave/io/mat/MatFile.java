@@ -0,0 +1,255 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.mat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.type.OctaveObject;
+
+/**
+ * Encodes and decodes maps from variable names to {@link OctaveObject}s
+ * in the MAT-file format version 5,
+ * written by octave's <code>save -v6</code> or <code>save -v7</code>
+ * and read by <code>load</code>, without octave.
+ * <p>
+ * A MAT-file consists of a header of {@link #HEADER_SIZE} bytes
+ * ending with the version and the endian indicator
+ * followed by data elements.
+ * Each data element starts with a tag consisting of the type
+ * and the number of bytes of the data
+ * which is padded to a multiple of 8 bytes.
+ * In the small format, type and number of bytes share the first four bytes
+ * and the data takes the second four bytes of the tag.
+ * Each variable is an element of type {@link #MI_MATRIX}
+ * optionally compressed by zlib in an element of type {@link #MI_COMPRESSED}.
+ * An {@link #MI_MATRIX} consists of the array flags, the dimensions, the name
+ * and the data which depends on the class given by the array flags.
+ * <p>
+ * Files written are little endian.
+ * Files are read in either byte order.
+ */
+public final class MatFile {
+
+    // data types
+
+    static final int MI_INT8       = 1;
+    static final int MI_UINT8      = 2;
+    static final int MI_INT16      = 3;
+    static final int MI_UINT16     = 4;
+    static final int MI_INT32      = 5;
+    static final int MI_UINT32     = 6;
+    static final int MI_SINGLE     = 7;
+    static final int MI_DOUBLE     = 9;
+    static final int MI_INT64      = 12;
+    static final int MI_UINT64     = 13;
+    static final int MI_MATRIX     = 14;
+    static final int MI_COMPRESSED = 15;
+    static final int MI_UTF8       = 16;
+    static final int MI_UTF16      = 17;
+
+    // array classes given by the array flags
+
+    static final int MX_CELL   = 1;
+    static final int MX_STRUCT = 2;
+    static final int MX_CHAR   = 4;
+    static final int MX_SPARSE = 5;
+    static final int MX_DOUBLE = 6;
+    static final int MX_SINGLE = 7;
+    static final int MX_INT8   = 8;
+    static final int MX_UINT8  = 9;
+    static final int MX_INT16  = 10;
+    static final int MX_UINT16 = 11;
+    static final int MX_INT32  = 12;
+    static final int MX_UINT32 = 13;
+    static final int MX_INT64  = 14;
+    static final int MX_UINT64 = 15;
+
+    // bits of the array flags besides the class
+
+    static final int FLAG_COMPLEX = 0x800;
+    static final int FLAG_LOGICAL = 0x200;
+
+    /**
+     * The number of bytes of the header.
+     */
+    static final int HEADER_SIZE = 128;
+
+    /**
+     * The number of bytes of the descriptive text at the start of the header.
+     */
+    static final int TEXT_SIZE = 116;
+
+    /**
+     * The descriptive text of files written.
+     */
+    static final String TEXT = "MATLAB 5.0 MAT-file, written by javaoctave";
+
+    /**
+     * The version at offset {@link #TEXT_SIZE} + 8 of the header.
+     */
+    static final short VERSION = 0x0100;
+
+    /**
+     * The endian indicator at the end of the header,
+     * a 16 bit value with bytes <code>MI</code> in big endian files
+     * and <code>IM</code> in little endian files.
+     */
+    static final String ENDIAN = "MI";
+
+    private MatFile() {
+    }
+
+    /**
+     * Returns whether <code>value</code> can be written in MAT-file format.
+     *
+     * @param value
+     *    an octave object.
+     * @return
+     *    whether <code>value</code> is of a supported type
+     *    with all values inside, if it is a cell or a struct.
+     */
+    public static boolean isWritable(final OctaveObject value) {
+	return MatWriter.isWritable(value);
+    }
+
+    /**
+     * Encodes the variables of <code>name2val</code> in MAT-file format.
+     *
+     * @param name2val
+     *    a map from variable names to values
+     *    all of which are {@link #isWritable(OctaveObject)}.
+     * @param compress
+     *    whether each variable is compressed by zlib.
+     * @return
+     *    a little endian buffer positioned at 0
+     *    holding the header and the encoded variables.
+     * @throws IllegalArgumentException
+     *    if a value can not be written in MAT-file format.
+     */
+    public static ByteBuffer encode(final Map<String, OctaveObject> name2val,
+				    final boolean compress) {
+	final MatWriter writer = new MatWriter();
+	writer.writeHeader();
+	for (Map.Entry<String, OctaveObject> entry : name2val.entrySet()) {
+	    writer.writeVariable(entry.getKey(), entry.getValue(), compress);
+	}
+	return writer.toBuffer();
+    }
+
+    /**
+     * Decodes variables in MAT-file format.
+     * Elements other than variables are skipped.
+     *
+     * @param buf
+     *    a buffer holding a MAT-file of version 5
+     *    as written by <code>save -v6</code> or <code>save -v7</code>.
+     * @return
+     *    a map from the names of the variables in the order read
+     *    to their values.
+     * @throws OctaveParseException
+     *    if the data is malformed or a type is not supported.
+     */
+    public static Map<String, OctaveObject> decode(final ByteBuffer buf) {
+	final Map<String, OctaveObject> res =
+	    new LinkedHashMap<String, OctaveObject>();
+	try {
+	    if (buf.remaining() < HEADER_SIZE) {
+		throw new OctaveParseException("MAT-file header truncated. ");
+	    }
+	    final byte[] endian = new byte[2];
+	    buf.position(buf.position() + HEADER_SIZE - endian.length);
+	    buf.get(endian);
+	    final String indicator = new String(endian, StandardCharsets.US_ASCII);
+	    if (ENDIAN.equals(indicator)) {
+		buf.order(ByteOrder.BIG_ENDIAN);
+	    } else if (new StringBuilder(ENDIAN).reverse().toString()
+		       .equals(indicator)) {
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+	    } else {
+		throw new OctaveParseException
+		    ("Expected MAT-file version 5 but found endian indicator '"
+		     + indicator + "'. ");
+	    }
+	    while (buf.hasRemaining()) {
+		MatReader.readElement(buf, res);
+	    }
+	} catch (BufferUnderflowException | IllegalArgumentException e) {
+	    // IllegalArgumentException from positioning beyond the limit
+	    throw new OctaveParseException("MAT-file data truncated. ", e);
+	}
+	return res;
+    }
+
+    /**
+     * Writes the variables of <code>name2val</code> in MAT-file format
+     * to <code>file</code> which is overwritten.
+     *
+     * @param file
+     *    the file to write to.
+     * @param name2val
+     *    a map from variable names to values
+     *    all of which are {@link #isWritable(OctaveObject)}.
+     * @param compress
+     *    whether each variable is compressed by zlib.
+     * @throws IOException
+     *    if writing fails.
+     */
+    public static void write(final File file,
+			     final Map<String, OctaveObject> name2val,
+			     final boolean compress) throws IOException {
+	final ByteBuffer buf = encode(name2val, compress);
+	try (FileChannel channel = FileChannel.open
+	     (file.toPath(),
+	      StandardOpenOption.WRITE,
+	      StandardOpenOption.CREATE,
+	      StandardOpenOption.TRUNCATE_EXISTING)) {
+	    while (buf.hasRemaining()) {
+		channel.write(buf);
+	    }
+	}
+    }
+
+    /**
+     * Reads the variables from the MAT-file <code>file</code>
+     * mapped into memory.
+     *
+     * @param file
+     *    a MAT-file of version 5.
+     * @return
+     *    a map from the names of the variables to their values.
+     * @throws IOException
+     *    if reading fails.
+     * @throws OctaveParseException
+     *    if the data is malformed or a type is not supported.
+     */
+    public static Map<String, OctaveObject> read(final File file)
+	throws IOException {
+	try (FileChannel channel = FileChannel.open(file.toPath(),
+						    StandardOpenOption.READ)) {
+	    return decode(channel.map(FileChannel.MapMode.READ_ONLY,
+				      0, channel.size()));
+	}
+    }
+
+}
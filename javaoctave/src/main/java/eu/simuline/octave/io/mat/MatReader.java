@@ -0,0 +1,591 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.mat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.type.OctaveBoolean;
+import eu.simuline.octave.type.OctaveCell;
+import eu.simuline.octave.type.OctaveComplex;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveInt;
+import eu.simuline.octave.type.OctaveLong;
+import eu.simuline.octave.type.OctaveObject;
+import eu.simuline.octave.type.OctaveSparseBoolean;
+import eu.simuline.octave.type.OctaveString;
+import eu.simuline.octave.type.OctaveStruct;
+
+/**
+ * Reads the data elements of a MAT-file as described in {@link MatFile}.
+ * <p>
+ * Numeric classes are read as {@link OctaveDouble}
+ * or {@link OctaveComplex} if complex,
+ * integer classes up to 32 bit as {@link OctaveInt}
+ * and unsigned 32 bit and 64 bit integers as {@link OctaveLong},
+ * logical ones as {@link OctaveBoolean} or {@link OctaveSparseBoolean}.
+ * Character arrays with at most one row are read as {@link OctaveString},
+ * cells as {@link OctaveCell} and scalar structs as {@link OctaveStruct}.
+ * All other arrays are not supported, just as by the text format.
+ */
+final class MatReader {
+
+    /**
+     * The number of bytes of a tag.
+     */
+    private static final int TAG_SIZE = 8;
+
+    /**
+     * The bits of the array flags holding the class.
+     */
+    private static final int CLASS_MASK = 0xff;
+
+    /**
+     * The bits of the first word of a tag holding the number of bytes
+     * if the tag is in small format.
+     */
+    private static final int SMALL_SHIFT = 16;
+
+    private MatReader() {
+    }
+
+    /**
+     * Reads the tag at the position of <code>buf</code>
+     * and returns the type and the number of bytes of the data,
+     * leaving <code>buf</code> positioned at the data.
+     * For the small format, the data is within the tag.
+     */
+    private static int[] readTag(final ByteBuffer buf) {
+	final int first = buf.getInt();
+	final int small = first >>> SMALL_SHIFT;
+	if (small != 0) {
+	    return new int[] {first & ((1 << SMALL_SHIFT) - 1), small};
+	}
+	final int size = buf.getInt();
+	if (size < 0) {
+	    throw new OctaveParseException
+		("Negative size of data element: " + size + ". ");
+	}
+	return new int[] {first, size};
+    }
+
+    /**
+     * Returns <code>size</code> bytes from the position of <code>buf</code>
+     * as a buffer of the same byte order
+     * and positions <code>buf</code> behind them padded to 8 bytes
+     * or behind the small tag, if <code>size</code> is at most 4.
+     *
+     * @param start
+     *    the position of the tag.
+     */
+    private static ByteBuffer data(final ByteBuffer buf,
+				   final int start,
+				   final int size) {
+	final ByteBuffer res = buf.slice().order(buf.order());
+	res.limit(size);
+	final int end = buf.position() == start + Integer.BYTES
+	    ? start + TAG_SIZE
+	    : buf.position() + padded(size);
+	buf.position(Math.min(end, buf.limit()));
+	return res;
+    }
+
+    /**
+     * Returns <code>size</code> rounded up to a multiple of 8.
+     */
+    private static int padded(final int size) {
+	return (size + TAG_SIZE - 1) & -TAG_SIZE;
+    }
+
+    /**
+     * Reads the top level element at the position of <code>buf</code>
+     * and adds it to <code>name2val</code> if it is a variable.
+     *
+     * @param buf
+     *    a buffer positioned at a tag.
+     * @param name2val
+     *    the map from names to values read so far.
+     * @throws OctaveParseException
+     *    if the element is malformed or of an unsupported class.
+     */
+    static void readElement(final ByteBuffer buf,
+			    final Map<String, OctaveObject> name2val) {
+	final int start = buf.position();
+	final int[] tag = readTag(buf);
+	switch (tag[0]) {
+	case MatFile.MI_COMPRESSED:
+	    // not padded
+	    final ByteBuffer compressed = buf.slice().order(buf.order());
+	    compressed.limit(tag[1]);
+	    buf.position(buf.position() + tag[1]);
+	    readElement(inflate(compressed), name2val);
+	    break;
+	case MatFile.MI_MATRIX:
+	    final String[] name = new String[1];
+	    final OctaveObject value =
+		readMatrix(data(buf, start, tag[1]), name);
+	    name2val.put(name[0], value);
+	    break;
+	default:
+	    // not a variable: skipped
+	    data(buf, start, tag[1]);
+	    break;
+	}
+    }
+
+    /**
+     * Inflates the element compressed in <code>compressed</code>.
+     * The size is determined from the tag inflated first.
+     */
+    private static ByteBuffer inflate(final ByteBuffer compressed) {
+	final Inflater inflater = new Inflater();
+	try {
+	    inflater.setInput(compressed);
+	    final byte[] tag = new byte[TAG_SIZE];
+	    inflateFully(inflater, tag, 0);
+	    final ByteBuffer tagBuf = ByteBuffer.wrap(tag).order(compressed.order());
+	    final int[] typeSize = readTag(tagBuf);
+	    final int size = tagBuf.position() == Integer.BYTES
+		? TAG_SIZE
+		: TAG_SIZE + typeSize[1];
+	    final byte[] element = new byte[size];
+	    System.arraycopy(tag, 0, element, 0, TAG_SIZE);
+	    inflateFully(inflater, element, TAG_SIZE);
+	    return ByteBuffer.wrap(element).order(compressed.order());
+	} catch (DataFormatException e) {
+	    throw new OctaveParseException("Malformed compressed element. ", e);
+	} finally {
+	    inflater.end();
+	}
+    }
+
+    private static void inflateFully(final Inflater inflater,
+				     final byte[] dst,
+				     final int off) throws DataFormatException {
+	int pos = off;
+	while (pos < dst.length) {
+	    final int num = inflater.inflate(dst, pos, dst.length - pos);
+	    if (num == 0 && (inflater.finished() || inflater.needsInput())) {
+		throw new OctaveParseException("Compressed element truncated. ");
+	    }
+	    pos += num;
+	}
+    }
+
+    /**
+     * Reads the element at the position of <code>buf</code>
+     * which must be an {@link MatFile#MI_MATRIX}
+     * as is the case for cell entries and struct fields.
+     */
+    private static OctaveObject readNested(final ByteBuffer buf) {
+	final int start = buf.position();
+	final int[] tag = readTag(buf);
+	if (tag[0] != MatFile.MI_MATRIX) {
+	    throw new OctaveParseException
+		("Expected matrix element but found type " + tag[0] + ". ");
+	}
+	return readMatrix(data(buf, start, tag[1]), new String[1]);
+    }
+
+    /**
+     * Reads the data of an {@link MatFile#MI_MATRIX} element.
+     *
+     * @param buf
+     *    the data of the element.
+     * @param name
+     *    an array to return the name of the matrix in its single entry.
+     */
+    @SuppressWarnings("checkstyle:cyclomaticcomplexity")
+    private static OctaveObject readMatrix(final ByteBuffer buf,
+					   final String[] name) {
+	if (!buf.hasRemaining()) {
+	    // an empty element stands for an empty matrix
+	    name[0] = "";
+	    return new OctaveDouble(0, 0);
+	}
+	final int[] flags = readInts(buf);
+	final int cls = flags[0] & CLASS_MASK;
+	final boolean complex = (flags[0] & MatFile.FLAG_COMPLEX) != 0;
+	final boolean logical = (flags[0] & MatFile.FLAG_LOGICAL) != 0;
+	final int[] dims = readInts(buf);
+	name[0] = new String(readBytes(buf), StandardCharsets.US_ASCII);
+
+	switch (cls) {
+	case MatFile.MX_CELL:
+	    return readCell(buf, dims);
+	case MatFile.MX_STRUCT:
+	    return readStruct(buf, dims);
+	case MatFile.MX_CHAR:
+	    return readChar(buf, dims);
+	case MatFile.MX_SPARSE:
+	    if (complex || !logical) {
+		throw new OctaveParseException
+		    ("Sparse matrices are supported if logical only. ");
+	    }
+	    return readSparseBoolean(buf, dims);
+	case MatFile.MX_DOUBLE:
+	case MatFile.MX_SINGLE:
+	    final double[] real = readDoubles(buf);
+	    checkNumel(real.length, dims);
+	    if (logical) {
+		return toBoolean(real, dims);
+	    }
+	    if (complex) {
+		final double[] imag = readDoubles(buf);
+		checkNumel(imag.length, dims);
+		return new OctaveComplex(new OctaveDouble(real, dims),
+					 new OctaveDouble(imag, dims));
+	    }
+	    return new OctaveDouble(real, dims);
+	case MatFile.MX_INT8:
+	case MatFile.MX_UINT8:
+	case MatFile.MX_INT16:
+	case MatFile.MX_UINT16:
+	case MatFile.MX_INT32:
+	case MatFile.MX_UINT32:
+	case MatFile.MX_INT64:
+	case MatFile.MX_UINT64:
+	    if (complex) {
+		throw new OctaveParseException
+		    ("Complex integer matrices are not supported. ");
+	    }
+	    final long[] longs = readLongs(buf);
+	    checkNumel(longs.length, dims);
+	    if (logical) {
+		final double[] vals = new double[longs.length];
+		for (int idx = 0; idx < vals.length; idx++) {
+		    vals[idx] = longs[idx];
+		}
+		return toBoolean(vals, dims);
+	    }
+	    return toInteger(cls, longs, dims);
+	default:
+	    throw new OctaveParseException
+		("Unsupported array class " + cls + " of '" + name[0] + "'. ");
+	}
+    }
+
+    private static void checkNumel(final int len, final int[] dims) {
+	long numel = 1;
+	for (int dim : dims) {
+	    numel *= dim;
+	}
+	if (len != numel) {
+	    throw new OctaveParseException
+		("Expected " + numel + " elements but found " + len + ". ");
+	}
+    }
+
+    /**
+     * Returns the position of the entry with linear index <code>ind</code>
+     * in a matrix with dimensions <code>dims</code>,
+     * all 1-based as in octave.
+     */
+    private static int[] ind2pos(final int ind, final int[] dims) {
+	final int[] pos = new int[dims.length];
+	int rest = ind - 1;
+	for (int idx = 0; idx < dims.length; idx++) {
+	    pos[idx] = rest % dims[idx] + 1;
+	    rest /= dims[idx];
+	}
+	return pos;
+    }
+
+    private static OctaveCell readCell(final ByteBuffer buf, final int[] dims) {
+	final OctaveCell cell = new OctaveCell(dims);
+	final int numel = cell.dataSize();
+	for (int ind = 1; ind <= numel; ind++) {
+	    cell.set(readNested(buf), ind2pos(ind, dims));
+	}
+	return cell;
+    }
+
+    /**
+     * Reads a struct which must be scalar
+     * consisting of the maximal length of the field names,
+     * the field names each padded to this length by zeros
+     * and the values of the fields.
+     */
+    private static OctaveStruct readStruct(final ByteBuffer buf,
+					   final int[] dims) {
+	for (int dim : dims) {
+	    if (dim != 1) {
+		throw new OctaveParseException
+		    ("JavaOctave does not support matrix structs. ");
+	    }
+	}
+	final int len = readInts(buf)[0];
+	final byte[] names = readBytes(buf);
+	if (len <= 0 || names.length % len != 0) {
+	    throw new OctaveParseException
+		("Malformed field names of struct. ");
+	}
+	final OctaveStruct struct = new OctaveStruct();
+	for (int off = 0; off < names.length; off += len) {
+	    int end = off;
+	    while (end < off + len && names[end] != 0) {
+		end++;
+	    }
+	    final String field =
+		new String(names, off, end - off, StandardCharsets.US_ASCII);
+	    struct.set(field, readNested(buf));
+	}
+	return struct;
+    }
+
+    /**
+     * Reads a character array with at most one row.
+     */
+    private static OctaveString readChar(final ByteBuffer buf,
+					 final int[] dims) {
+	if (dims.length != 2 || dims[0] > 1) {
+	    throw new OctaveParseException
+		("JavaOctave does not support character matrices. ");
+	}
+	final int start = buf.position();
+	final int[] tag = readTag(buf);
+	final ByteBuffer data = data(buf, start, tag[1]);
+	final Charset charset;
+	switch (tag[0]) {
+	case MatFile.MI_UINT16:
+	case MatFile.MI_UTF16:
+	    final char[] chars = new char[tag[1] / Character.BYTES];
+	    data.asCharBuffer().get(chars);
+	    return new OctaveString(new String(chars));
+	case MatFile.MI_UTF8:
+	    charset = StandardCharsets.UTF_8;
+	    break;
+	case MatFile.MI_INT8:
+	case MatFile.MI_UINT8:
+	    charset = StandardCharsets.ISO_8859_1;
+	    break;
+	default:
+	    throw new OctaveParseException
+		("Unsupported type " + tag[0] + " of characters. ");
+	}
+	final byte[] bytes = new byte[tag[1]];
+	data.get(bytes);
+	return new OctaveString(new String(bytes, charset));
+    }
+
+    /**
+     * Reads a logical sparse matrix consisting of
+     * the zero-based row indices of the non-zeros,
+     * for each column the index of its first non-zero
+     * followed by the number of non-zeros
+     * and the values of the non-zeros.
+     */
+    private static OctaveSparseBoolean readSparseBoolean(final ByteBuffer buf,
+							 final int[] dims) {
+	if (dims.length != 2) {
+	    throw new OctaveParseException
+		("Expected two dimensions of sparse matrix. ");
+	}
+	final int[] rowIdx = readInts(buf);
+	final int[] colIdx = readInts(buf);
+	final double[] vals = readDoubles(buf);
+	final int columns = dims[1];
+	if (colIdx.length != columns + 1) {
+	    throw new OctaveParseException
+		("Expected " + (columns + 1) + " column indices but found "
+		 + colIdx.length + ". ");
+	}
+	final int nnz = colIdx[columns];
+	if (rowIdx.length < nnz || vals.length < nnz) {
+	    throw new OctaveParseException
+		("Sparse matrix with " + nnz + " non-zeros truncated. ");
+	}
+	final OctaveSparseBoolean res =
+	    new OctaveSparseBoolean(dims[0], columns, nnz);
+	for (int col = 0; col < columns; col++) {
+	    for (int idx = colIdx[col]; idx < colIdx[col + 1]; idx++) {
+		res.set(vals[idx] != 0, rowIdx[idx] + 1, col + 1);
+	    }
+	}
+	return res;
+    }
+
+    private static OctaveBoolean toBoolean(final double[] vals,
+					   final int[] dims) {
+	final boolean[] data = new boolean[vals.length];
+	for (int idx = 0; idx < data.length; idx++) {
+	    data[idx] = vals[idx] != 0;
+	}
+	return new OctaveBoolean(data, dims);
+    }
+
+    /**
+     * Converts the values of an integer class
+     * to {@link OctaveInt} if they fit into 32 bit
+     * and to {@link OctaveLong} otherwise.
+     *
+     * @throws OctaveParseException
+     *    for unsigned 64 bit values exceeding {@link Long#MAX_VALUE}.
+     */
+    private static OctaveObject toInteger(final int cls,
+					  final long[] vals,
+					  final int[] dims) {
+	switch (cls) {
+	case MatFile.MX_UINT32:
+	case MatFile.MX_INT64:
+	    return new OctaveLong(vals, dims);
+	case MatFile.MX_UINT64:
+	    for (long val : vals) {
+		if (val < 0) {
+		    throw new OctaveParseException
+			("Unsigned 64 bit value exceeds " + Long.MAX_VALUE + ". ");
+		}
+	    }
+	    return new OctaveLong(vals, dims);
+	default:
+	    final int[] ints = new int[vals.length];
+	    for (int idx = 0; idx < ints.length; idx++) {
+		ints[idx] = (int) vals[idx];
+	    }
+	    return new OctaveInt(ints, dims);
+	}
+    }
+
+    /**
+     * Returns the number of bytes of a numeric data type.
+     *
+     * @throws OctaveParseException
+     *    if <code>type</code> is not numeric.
+     */
+    private static int typeSize(final int type) {
+	switch (type) {
+	case MatFile.MI_INT8:
+	case MatFile.MI_UINT8:
+	    return Byte.BYTES;
+	case MatFile.MI_INT16:
+	case MatFile.MI_UINT16:
+	    return Short.BYTES;
+	case MatFile.MI_INT32:
+	case MatFile.MI_UINT32:
+	case MatFile.MI_SINGLE:
+	    return Integer.BYTES;
+	case MatFile.MI_DOUBLE:
+	case MatFile.MI_INT64:
+	case MatFile.MI_UINT64:
+	    return Long.BYTES;
+	default:
+	    throw new OctaveParseException
+		("Expected numeric type but found " + type + ". ");
+	}
+    }
+
+    /**
+     * Reads the element at the position of <code>buf</code>
+     * with values of any numeric data type as doubles.
+     * This is lossless except for 64 bit integers beyond 2^53.
+     */
+    private static double[] readDoubles(final ByteBuffer buf) {
+	final int start = buf.position();
+	final int[] tag = readTag(buf);
+	final ByteBuffer data = data(buf, start, tag[1]);
+	final double[] res = new double[tag[1] / typeSize(tag[0])];
+	if (tag[0] == MatFile.MI_DOUBLE) {
+	    data.asDoubleBuffer().get(res);
+	    return res;
+	}
+	for (int idx = 0; idx < res.length; idx++) {
+	    res[idx] = tag[0] == MatFile.MI_SINGLE
+		? data.getFloat()
+		: getLong(data, tag[0]);
+	}
+	return res;
+    }
+
+    /**
+     * Reads the element at the position of <code>buf</code>
+     * with values of any integer data type or integral doubles as longs.
+     */
+    private static long[] readLongs(final ByteBuffer buf) {
+	final int start = buf.position();
+	final int[] tag = readTag(buf);
+	final ByteBuffer data = data(buf, start, tag[1]);
+	final long[] res = new long[tag[1] / typeSize(tag[0])];
+	for (int idx = 0; idx < res.length; idx++) {
+	    switch (tag[0]) {
+	    case MatFile.MI_DOUBLE:
+		res[idx] = (long) data.getDouble();
+		break;
+	    case MatFile.MI_SINGLE:
+		res[idx] = (long) data.getFloat();
+		break;
+	    default:
+		res[idx] = getLong(data, tag[0]);
+		break;
+	    }
+	}
+	return res;
+    }
+
+    /**
+     * Reads the element at the position of <code>buf</code>
+     * with values of any integer data type as ints.
+     */
+    private static int[] readInts(final ByteBuffer buf) {
+	final long[] longs = readLongs(buf);
+	final int[] res = new int[longs.length];
+	for (int idx = 0; idx < res.length; idx++) {
+	    res[idx] = (int) longs[idx];
+	}
+	return res;
+    }
+
+    /**
+     * Reads the element at the position of <code>buf</code> as raw bytes.
+     */
+    private static byte[] readBytes(final ByteBuffer buf) {
+	final int start = buf.position();
+	final int[] tag = readTag(buf);
+	final byte[] res = new byte[tag[1]];
+	data(buf, start, tag[1]).get(res);
+	return res;
+    }
+
+    /**
+     * Reads a value of the integer data type <code>type</code>.
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    private static long getLong(final ByteBuffer data, final int type) {
+	switch (type) {
+	case MatFile.MI_INT8:
+	    return data.get();
+	case MatFile.MI_UINT8:
+	    return data.get() & 0xffL;
+	case MatFile.MI_INT16:
+	    return data.getShort();
+	case MatFile.MI_UINT16:
+	    return data.getShort() & 0xffffL;
+	case MatFile.MI_INT32:
+	    return data.getInt();
+	case MatFile.MI_UINT32:
+	    return data.getInt() & 0xffffffffL;
+	case MatFile.MI_INT64:
+	case MatFile.MI_UINT64:
+	    return data.getLong();
+	default:
+	    throw new OctaveParseException
+		("Expected integer type but found " + type + ". ");
+	}
+    }
+
+}
@@ -0,0 +1,415 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.mat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import eu.simuline.octave.type.OctaveBoolean;
+import eu.simuline.octave.type.OctaveCell;
+import eu.simuline.octave.type.OctaveComplex;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveInt;
+import eu.simuline.octave.type.OctaveLong;
+import eu.simuline.octave.type.OctaveObject;
+import eu.simuline.octave.type.OctaveSparseBoolean;
+import eu.simuline.octave.type.OctaveString;
+import eu.simuline.octave.type.OctaveStruct;
+import eu.simuline.octave.type.matrix.AbstractGenericMatrix;
+
+/**
+ * Writes the data elements of a MAT-file as described in {@link MatFile}
+ * into a growing little endian buffer.
+ * <p>
+ * {@link OctaveDouble} and {@link OctaveComplex} are written as class double,
+ * {@link OctaveInt} as int32, {@link OctaveLong} as int64,
+ * {@link OctaveBoolean} as logical uint8,
+ * {@link OctaveSparseBoolean} as logical sparse,
+ * {@link OctaveString} as char with a single row,
+ * {@link OctaveCell} as cell and {@link OctaveStruct} as scalar struct.
+ * Tags are never written in small format.
+ */
+final class MatWriter {
+
+    /**
+     * The number of bytes of a tag.
+     */
+    private static final int TAG_SIZE = 8;
+
+    /**
+     * The initial capacity of the buffer.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The buffer written to, positioned at its end.
+     */
+    private ByteBuffer buf;
+
+    MatWriter() {
+	this.buf = ByteBuffer.allocate(INITIAL_CAPACITY)
+	    .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns whether <code>value</code> can be written.
+     */
+    static boolean isWritable(final OctaveObject value) {
+	if (value instanceof OctaveCell) {
+	    final OctaveCell cell = (OctaveCell) value;
+	    for (int idx = 0; idx < cell.dataSize(); idx++) {
+		if (!isWritable(cell.getPlain(idx))) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+	if (value instanceof OctaveStruct) {
+	    for (OctaveObject field : ((OctaveStruct) value).getData().values()) {
+		if (!isWritable(field)) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+	return value instanceof OctaveDouble
+	    || value instanceof OctaveComplex
+	    || value instanceof OctaveInt
+	    || value instanceof OctaveLong
+	    || value instanceof OctaveBoolean
+	    || value instanceof OctaveSparseBoolean
+	    || value instanceof OctaveString;
+    }
+
+    /**
+     * Returns the bytes written so far as a buffer positioned at 0.
+     */
+    ByteBuffer toBuffer() {
+	final ByteBuffer res = this.buf.duplicate().order(this.buf.order());
+	res.flip();
+	return res;
+    }
+
+    /**
+     * Ensures that <code>num</code> further bytes can be written.
+     */
+    private void ensure(final int num) {
+	if (this.buf.remaining() >= num) {
+	    return;
+	}
+	final int capacity = Math.max(2 * this.buf.capacity(),
+				      this.buf.position() + num);
+	final ByteBuffer grown = ByteBuffer.allocate(capacity)
+	    .order(this.buf.order());
+	this.buf.flip();
+	grown.put(this.buf);
+	this.buf = grown;
+    }
+
+    /**
+     * Writes the header: the text padded by blanks,
+     * no subsystem data, the version and the endian indicator.
+     */
+    void writeHeader() {
+	ensure(MatFile.HEADER_SIZE);
+	final byte[] text = new byte[MatFile.TEXT_SIZE];
+	Arrays.fill(text, (byte) ' ');
+	final byte[] given = MatFile.TEXT.getBytes(StandardCharsets.US_ASCII);
+	System.arraycopy(given, 0, text, 0, given.length);
+	this.buf.put(text);
+	this.buf.putLong(0);
+	this.buf.putShort(MatFile.VERSION);
+	// the bytes are reversed in little endian
+	this.buf.put(MatFile.ENDIAN.getBytes(StandardCharsets.US_ASCII)[1]);
+	this.buf.put(MatFile.ENDIAN.getBytes(StandardCharsets.US_ASCII)[0]);
+    }
+
+    /**
+     * Writes the variable <code>name</code> with value <code>value</code>.
+     *
+     * @param compress
+     *    whether the variable is compressed by zlib.
+     * @throws IllegalArgumentException
+     *    if <code>value</code> is not {@link #isWritable(OctaveObject)}.
+     */
+    void writeVariable(final String name,
+		       final OctaveObject value,
+		       final boolean compress) {
+	if (!compress) {
+	    writeMatrix(name, value);
+	    return;
+	}
+	final MatWriter inner = new MatWriter();
+	inner.writeMatrix(name, value);
+	final ByteBuffer element = inner.toBuffer();
+
+	final Deflater deflater = new Deflater();
+	try {
+	    deflater.setInput(element);
+	    deflater.finish();
+	    final int sizePos = beginTag(MatFile.MI_COMPRESSED);
+	    while (!deflater.finished()) {
+		ensure(INITIAL_CAPACITY);
+		final int num = deflater.deflate(this.buf.array(),
+						 this.buf.arrayOffset()
+						 + this.buf.position(),
+						 this.buf.remaining());
+		this.buf.position(this.buf.position() + num);
+	    }
+	    // not padded
+	    this.buf.putInt(sizePos, this.buf.position() - sizePos - Integer.BYTES);
+	} finally {
+	    deflater.end();
+	}
+    }
+
+    /**
+     * Writes the type of a tag and a placeholder for the size
+     * and returns the position of the placeholder.
+     */
+    private int beginTag(final int type) {
+	ensure(TAG_SIZE);
+	this.buf.putInt(type);
+	final int sizePos = this.buf.position();
+	this.buf.putInt(0);
+	return sizePos;
+    }
+
+    /**
+     * Sets the size of the tag begun with {@link #beginTag(int)}
+     * and pads the data to a multiple of 8 bytes.
+     */
+    private void endTag(final int sizePos) {
+	final int size = this.buf.position() - sizePos - Integer.BYTES;
+	this.buf.putInt(sizePos, size);
+	final int pad = -size & (TAG_SIZE - 1);
+	ensure(pad);
+	for (int idx = 0; idx < pad; idx++) {
+	    this.buf.put((byte) 0);
+	}
+    }
+
+    /**
+     * Writes an {@link MatFile#MI_MATRIX} element.
+     *
+     * @throws IllegalArgumentException
+     *    if <code>value</code> is not {@link #isWritable(OctaveObject)}.
+     */
+    @SuppressWarnings("checkstyle:cyclomaticcomplexity")
+    private void writeMatrix(final String name, final OctaveObject value) {
+	final int sizePos = beginTag(MatFile.MI_MATRIX);
+	if (value instanceof OctaveDouble) {
+	    final OctaveDouble matrix = (OctaveDouble) value;
+	    writeHead(MatFile.MX_DOUBLE, 0, dims(matrix), name, 0);
+	    writeDoubles(matrix);
+	} else if (value instanceof OctaveComplex) {
+	    final OctaveComplex complex = (OctaveComplex) value;
+	    writeHead(MatFile.MX_DOUBLE, MatFile.FLAG_COMPLEX,
+		      dims(complex.getRealPart()), name, 0);
+	    writeDoubles(complex.getRealPart());
+	    writeDoubles(complex.getImagPart());
+	} else if (value instanceof OctaveInt) {
+	    final OctaveInt matrix = (OctaveInt) value;
+	    writeHead(MatFile.MX_INT32, 0, dims(matrix), name, 0);
+	    final int len = matrix.dataSize();
+	    final int dataPos = beginTag(MatFile.MI_INT32);
+	    ensure(len * Integer.BYTES);
+	    matrix.getPlain(this.buf.asIntBuffer(), 0, len);
+	    this.buf.position(this.buf.position() + len * Integer.BYTES);
+	    endTag(dataPos);
+	} else if (value instanceof OctaveLong) {
+	    final OctaveLong matrix = (OctaveLong) value;
+	    writeHead(MatFile.MX_INT64, 0, dims(matrix), name, 0);
+	    final int len = matrix.dataSize();
+	    final int dataPos = beginTag(MatFile.MI_INT64);
+	    ensure(len * Long.BYTES);
+	    matrix.getPlain(this.buf.asLongBuffer(), 0, len);
+	    this.buf.position(this.buf.position() + len * Long.BYTES);
+	    endTag(dataPos);
+	} else if (value instanceof OctaveBoolean) {
+	    final OctaveBoolean matrix = (OctaveBoolean) value;
+	    writeHead(MatFile.MX_UINT8, MatFile.FLAG_LOGICAL,
+		      dims(matrix), name, 0);
+	    final int len = matrix.dataSize();
+	    final int dataPos = beginTag(MatFile.MI_UINT8);
+	    ensure(len);
+	    for (int idx = 0; idx < len; idx++) {
+		this.buf.put(matrix.getPlain(idx) ? (byte) 1 : (byte) 0);
+	    }
+	    endTag(dataPos);
+	} else if (value instanceof OctaveSparseBoolean) {
+	    writeSparseBoolean(name, (OctaveSparseBoolean) value);
+	} else if (value instanceof OctaveString) {
+	    final String str = ((OctaveString) value).getString();
+	    // octave's empty string is 0x0
+	    writeHead(MatFile.MX_CHAR, 0,
+		      new int[] {str.isEmpty() ? 0 : 1, str.length()}, name, 0);
+	    final int dataPos = beginTag(MatFile.MI_UINT16);
+	    ensure(str.length() * Character.BYTES);
+	    for (int idx = 0; idx < str.length(); idx++) {
+		this.buf.putChar(str.charAt(idx));
+	    }
+	    endTag(dataPos);
+	} else if (value instanceof OctaveCell) {
+	    final OctaveCell cell = (OctaveCell) value;
+	    writeHead(MatFile.MX_CELL, 0, dims(cell), name, 0);
+	    for (int idx = 0; idx < cell.dataSize(); idx++) {
+		writeMatrix("", cell.getPlain(idx));
+	    }
+	} else if (value instanceof OctaveStruct) {
+	    writeStruct(name, ((OctaveStruct) value).getData());
+	} else {
+	    throw new IllegalArgumentException
+		("No MAT-file writer for java type " + value.getClass() + ". ");
+	}
+	endTag(sizePos);
+    }
+
+    /**
+     * Writes the array flags, the dimensions and the name of a matrix.
+     *
+     * @param cls
+     *    the array class.
+     * @param flags
+     *    the flags besides the class.
+     * @param nzmax
+     *    the maximal number of non-zeros of a sparse matrix.
+     */
+    private void writeHead(final int cls,
+			   final int flags,
+			   final int[] dims,
+			   final String name,
+			   final int nzmax) {
+	int pos = beginTag(MatFile.MI_UINT32);
+	ensure(2 * Integer.BYTES);
+	this.buf.putInt(cls | flags).putInt(nzmax);
+	endTag(pos);
+
+	writeInts(dims, dims.length);
+
+	pos = beginTag(MatFile.MI_INT8);
+	final byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+	ensure(bytes.length);
+	this.buf.put(bytes);
+	endTag(pos);
+    }
+
+    private static int[] dims(final AbstractGenericMatrix<?, ?> matrix) {
+	final int[] res = new int[matrix.getSizeLength()];
+	for (int idx = 0; idx < res.length; idx++) {
+	    res[idx] = matrix.getSize(idx + 1);
+	}
+	return res;
+    }
+
+    private void writeDoubles(final OctaveDouble matrix) {
+	final int len = matrix.dataSize();
+	final int pos = beginTag(MatFile.MI_DOUBLE);
+	ensure(len * Double.BYTES);
+	matrix.getPlain(this.buf.asDoubleBuffer(), 0, len);
+	this.buf.position(this.buf.position() + len * Double.BYTES);
+	endTag(pos);
+    }
+
+    private void writeInts(final int[] data, final int len) {
+	final int pos = beginTag(MatFile.MI_INT32);
+	ensure(len * Integer.BYTES);
+	this.buf.asIntBuffer().put(data, 0, len);
+	this.buf.position(this.buf.position() + len * Integer.BYTES);
+	endTag(pos);
+    }
+
+    /**
+     * Writes a logical sparse matrix with the non-zeros in column-major order:
+     * the zero-based row indices of the non-zeros,
+     * for each column the index of its first non-zero
+     * followed by the number of non-zeros
+     * and the values of the non-zeros.
+     * Entries set to false are omitted.
+     */
+    private void writeSparseBoolean(final String name,
+				    final OctaveSparseBoolean sparse) {
+	final int[] rows = sparse.getRowIndexes();
+	final int[] cols = sparse.getColumnIndexes();
+	final boolean[] data = sparse.getData();
+	// sort the indices of the true entries column-major
+	final Integer[] order = new Integer[sparse.getNnz()];
+	int nnz = 0;
+	for (int idx = 0; idx < order.length; idx++) {
+	    if (data[idx]) {
+		order[nnz++] = idx;
+	    }
+	}
+	final Integer[] sorted = Arrays.copyOf(order, nnz);
+	Arrays.sort(sorted, (idx1, idx2) -> cols[idx1] == cols[idx2]
+		    ? Integer.compare(rows[idx1], rows[idx2])
+		    : Integer.compare(cols[idx1], cols[idx2]));
+
+	final int columns = sparse.getColumns();
+	final int[] rowIdx = new int[nnz];
+	final int[] colIdx = new int[columns + 1];
+	for (int idx = 0; idx < nnz; idx++) {
+	    rowIdx[idx] = rows[sorted[idx]] - 1;
+	    colIdx[cols[sorted[idx]]]++;
+	}
+	for (int col = 0; col < columns; col++) {
+	    colIdx[col + 1] += colIdx[col];
+	}
+
+	writeHead(MatFile.MX_SPARSE, MatFile.FLAG_LOGICAL,
+		  new int[] {sparse.getRows(), columns}, name, Math.max(nnz, 1));
+	writeInts(rowIdx, nnz);
+	writeInts(colIdx, columns + 1);
+	final int pos = beginTag(MatFile.MI_UINT8);
+	ensure(nnz);
+	for (int idx = 0; idx < nnz; idx++) {
+	    this.buf.put((byte) 1);
+	}
+	endTag(pos);
+    }
+
+    /**
+     * Writes a scalar struct:
+     * the maximal length of the field names including a terminating zero,
+     * the field names each padded to this length by zeros
+     * and the values of the fields.
+     */
+    private void writeStruct(final String name,
+			     final Map<String, OctaveObject> fields) {
+	writeHead(MatFile.MX_STRUCT, 0, new int[] {1, 1}, name, 0);
+	int len = 1;
+	for (String field : fields.keySet()) {
+	    len = Math.max(len, field.length() + 1);
+	}
+	writeInts(new int[] {len}, 1);
+
+	final int pos = beginTag(MatFile.MI_INT8);
+	ensure(len * fields.size());
+	for (String field : fields.keySet()) {
+	    final byte[] bytes = Arrays.copyOf
+		(field.getBytes(StandardCharsets.US_ASCII), len);
+	    this.buf.put(bytes);
+	}
+	endTag(pos);
+
+	for (OctaveObject field : fields.values()) {
+	    writeMatrix("", field);
+	}
+    }
+
+}
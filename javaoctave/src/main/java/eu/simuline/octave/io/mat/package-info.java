@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A codec for MAT-files of version 5 in pure java,
+ * so that java can read and write the files octave reads by <code>load</code>
+ * and writes by <code>save -v6</code> or <code>save -v7</code>
+ * without passing the data through octave.
+ * {@link eu.simuline.octave.io.mat.MatFile} encodes and decodes
+ * maps of variables, optionally compressed by zlib,
+ * and reads and writes files via a {@link java.nio.channels.FileChannel},
+ * reading by memory mapping.
+ * <p>
+ * Supported are {@link eu.simuline.octave.type.OctaveDouble},
+ * {@link eu.simuline.octave.type.OctaveComplex},
+ * {@link eu.simuline.octave.type.OctaveInt},
+ * {@link eu.simuline.octave.type.OctaveLong},
+ * {@link eu.simuline.octave.type.OctaveBoolean},
+ * {@link eu.simuline.octave.type.OctaveSparseBoolean},
+ * {@link eu.simuline.octave.type.OctaveString},
+ * {@link eu.simuline.octave.type.OctaveCell} and
+ * {@link eu.simuline.octave.type.OctaveStruct}
+ * with the restrictions of the text format:
+ * structs are scalar and strings have a single row.
+ */
+package eu.simuline.octave.io.mat;
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for starting an engine
+ * including its octave process,
+ * emitted by {@link eu.simuline.octave.OctaveEngineFactory#getScriptEngine()}.
+ * The duration of the event is the duration of the startup.
+ */
+@Name("eu.simuline.octave.EngineStart")
+@Label("Octave Engine Start")
+@Category({"Octave"})
+@Description("Starting an octave engine and its process")
+@StackTrace(false)
+public final class EngineStartEvent extends Event {
+
+    /**
+     * The type of this event to check cheaply whether it is enabled
+     * or <code>null</code> if not yet needed.
+     * This is determined lazily by {@link #isTypeEnabled()}.
+     */
+    private static volatile EventType type;
+
+    @Label("Engine Id")
+    @Description("The id of the engine, unique within the runtime")
+    private int engineId;
+
+    @Label("Command")
+    @Description("The octave command with its arguments")
+    private String command;
+
+    /**
+     * Returns whether this kind of events is enabled
+     * in some running recording.
+     * Before the flight recorder is initialized, this is not the case
+     * and the event type is not registered.
+     *
+     * @return
+     *    whether this kind of event is enabled.
+     */
+    public static boolean isTypeEnabled() {
+	if (!FlightRecorder.isInitialized()) {
+	    return false;
+	}
+	EventType res = type;
+	if (res == null) {
+	    res = EventType.getEventType(EngineStartEvent.class);
+	    type = res;
+	}
+	return res.isEnabled();
+    }
+
+    /**
+     * Sets the id of the engine started.
+     *
+     * @param engineId
+     *    the id of the engine started.
+     */
+    public void setEngineId(final int engineId) {
+	this.engineId = engineId;
+    }
+
+    /**
+     * Sets the command the octave process is started with.
+     *
+     * @param command
+     *    the command and its arguments separated by blanks.
+     */
+    public void setCommand(final String command) {
+	this.command = command;
+    }
+
+}
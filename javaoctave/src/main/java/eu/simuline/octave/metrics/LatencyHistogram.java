@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations in nanoseconds
+ * with log-linear buckets in the style of HDR histograms:
+ * Each power of two is divided into {@link #SUB_BUCKETS} buckets
+ * of equal width,
+ * so the relative error of a recorded value is below <code>1/32</code>
+ * over the whole range of non-negative <code>long</code>s,
+ * whereas values below {@link #SUB_BUCKETS} are recorded exactly.
+ * Recording is a few atomic increments and allocates nothing.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The binary logarithm of {@link #SUB_BUCKETS}.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * The number of buckets each power of two is divided into.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * The number of buckets: values up to {@link Long#MAX_VALUE}
+     * have index below this.
+     */
+    private static final int NUM_BUCKETS =
+	(Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    /**
+     * The counts of the values recorded per bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+    /**
+     * The number of values recorded.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The sum of the values recorded.
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * The maximum of the values recorded or <code>0</code> if none.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Returns the index of the bucket of <code>value</code>.
+     */
+    static int index(final long value) {
+	if (value < 2 * SUB_BUCKETS) {
+	    return (int) value;
+	}
+	final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value)
+	    - SUB_BITS;
+	return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the least value of the bucket with index <code>index</code>.
+     */
+    static long lowerBound(final int index) {
+	if (index < 2 * SUB_BUCKETS) {
+	    return index;
+	}
+	final int shift = index / SUB_BUCKETS - 1;
+	return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Returns the greatest value of the bucket with index <code>index</code>.
+     */
+    static long upperBound(final int index) {
+	return index == NUM_BUCKETS - 1
+	    ? Long.MAX_VALUE
+	    : lowerBound(index + 1) - 1;
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos
+     *    the duration in nanoseconds.
+     *    Negative values which may occur
+     *    because phases of a round trip overlap, are recorded as zero.
+     */
+    public void record(final long nanos) {
+	final long value = Math.max(nanos, 0);
+	this.counts.incrementAndGet(index(value));
+	this.count.increment();
+	this.sum.add(value);
+	if (value > this.max.get()) {
+	    this.max.accumulateAndGet(value, Math::max);
+	}
+    }
+
+    /**
+     * Returns the number of durations recorded.
+     *
+     * @return
+     *    the number of durations recorded.
+     */
+    public long getCount() {
+	return this.count.sum();
+    }
+
+    /**
+     * Returns the mean of the durations recorded in nanoseconds.
+     *
+     * @return
+     *    the mean of the durations recorded
+     *    or <code>0</code> if none is recorded.
+     */
+    public double getMean() {
+	final long cnt = getCount();
+	return cnt == 0 ? 0 : (double) this.sum.sum() / cnt;
+    }
+
+    /**
+     * Returns the maximum of the durations recorded in nanoseconds.
+     *
+     * @return
+     *    the maximum of the durations recorded
+     *    or <code>0</code> if none is recorded.
+     */
+    public long getMax() {
+	return this.max.get();
+    }
+
+    /**
+     * Returns the duration in nanoseconds
+     * which is not exceeded by <code>percentile</code> percent
+     * of the durations recorded, up to the precision of the buckets.
+     * Precisely, this is the upper bound of the according bucket,
+     * but not more than {@link #getMax()}.
+     *
+     * @param percentile
+     *    a percentage between <code>0</code> and <code>100</code>.
+     * @return
+     *    the duration at <code>percentile</code>
+     *    or <code>0</code> if none is recorded.
+     * @throws IllegalArgumentException
+     *    if <code>percentile</code> is out of range.
+     */
+    public long getValueAtPercentile(final double percentile) {
+	if (percentile < 0 || percentile > 100) {
+	    throw new IllegalArgumentException
+		("Expected percentile in [0, 100] but found " +
+		 percentile + ". ");
+	}
+	long total = 0;
+	final long[] snapshot = new long[NUM_BUCKETS];
+	for (int i = 0; i < NUM_BUCKETS; i++) {
+	    snapshot[i] = this.counts.get(i);
+	    total += snapshot[i];
+	}
+	if (total == 0) {
+	    return 0;
+	}
+	final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+	long seen = 0;
+	for (int i = 0; i < NUM_BUCKETS; i++) {
+	    seen += snapshot[i];
+	    if (seen >= rank) {
+		return Math.min(upperBound(i), getMax());
+	    }
+	}
+	throw new IllegalStateException("Rank beyond total count. ");
+    }
+
+    /**
+     * Resets this histogram.
+     * Values recorded concurrently may be lost or partially reset.
+     */
+    public void reset() {
+	for (int i = 0; i < NUM_BUCKETS; i++) {
+	    this.counts.set(i, 0);
+	}
+	this.count.reset();
+	this.sum.reset();
+	this.max.set(0);
+    }
+
+}
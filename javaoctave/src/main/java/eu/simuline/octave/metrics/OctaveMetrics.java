@@ -0,0 +1,355 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The metrics of the round trips of an engine to octave.
+ * For each {@link Operation}, this counts round trips, errors
+ * and characters written and read
+ * and records the durations of the {@link Phase}s in histograms.
+ * A round trip is recorded via a {@link Sample}
+ * obtained from {@link #start(OctaveMetrics, int, Operation, String)}
+ * which also emits a {@link RoundTripEvent} for the flight recorder.
+ * <p>
+ * If metrics are disabled, the engine has no metrics object at all,
+ * so disabled metrics cost a check for <code>null</code> per round trip.
+ * The event type is not registered with the flight recorder
+ * before the flight recorder is initialized by some recording,
+ * so without recordings events cost a check of a flag per round trip.
+ * If enabled, recording costs some reads of {@link System#nanoTime()}
+ * and some atomic increments.
+ */
+public final class OctaveMetrics implements OctaveMetricsMXBean {
+
+    private static final Log LOG = LogFactory.getLog(OctaveMetrics.class);
+
+    /**
+     * The domain of the object names of the MBeans registered.
+     */
+    public static final String JMX_DOMAIN = "eu.simuline.octave";
+
+    /**
+     * The metrics of a single operation.
+     */
+    private static final class OperationMetrics {
+	private final LongAdder count = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder charsWritten = new LongAdder();
+	private final LongAdder charsRead = new LongAdder();
+	private final Map<Phase, LatencyHistogram> phase2histogram =
+	    new EnumMap<Phase, LatencyHistogram>(Phase.class);
+
+	OperationMetrics() {
+	    for (Phase phase : Phase.values()) {
+		this.phase2histogram.put(phase, new LatencyHistogram());
+	    }
+	}
+
+	void reset() {
+	    this.count.reset();
+	    this.errors.reset();
+	    this.charsWritten.reset();
+	    this.charsRead.reset();
+	    for (LatencyHistogram histogram : this.phase2histogram.values()) {
+		histogram.reset();
+	    }
+	}
+    } // class OperationMetrics
+
+    /**
+     * The measurement of a single round trip 
+     * recorded in the metrics of its operation, if any, 
+     * and emitted as a {@link RoundTripEvent}, if enabled. 
+     * The writing side invokes {@link #written(long)},
+     * the reading side {@link #firstRead()} and {@link #read(long)}
+     * and finally the caller {@link #stop(boolean)}.
+     * Writing and reading may take place on different threads;
+     * the caller sees their effects
+     * since it waits for both sides to complete.
+     */
+    public static final class Sample {
+
+	/**
+	 * The metrics of the operation
+	 * or <code>null</code> if metrics are disabled.
+	 */
+	private final OperationMetrics opMetrics;
+
+	/**
+	 * The event emitted at the end
+	 * or <code>null</code> if this kind of events is not enabled.
+	 */
+	private final RoundTripEvent event;
+
+	private final long start;
+
+	private long writeEnd;
+
+	private long firstRead;
+
+	private long charsWritten;
+
+	private long charsRead;
+
+	Sample(final OperationMetrics opMetrics, final RoundTripEvent event) {
+	    this.opMetrics = opMetrics;
+	    this.event = event;
+	    if (event != null) {
+		event.begin();
+	    }
+	    this.start = System.nanoTime();
+	}
+
+	/**
+	 * Records that the script is completely written.
+	 *
+	 * @param chars
+	 *    the number of characters written.
+	 */
+	public void written(final long chars) {
+	    this.writeEnd = System.nanoTime();
+	    this.charsWritten = chars;
+	}
+
+	/**
+	 * Records that the first output of octave is read,
+	 * unless recorded before.
+	 */
+	public void firstRead() {
+	    if (this.firstRead == 0) {
+		this.firstRead = System.nanoTime();
+	    }
+	}
+
+	/**
+	 * Records that the response is read completely.
+	 *
+	 * @param chars
+	 *    the number of characters read.
+	 */
+	public void read(final long chars) {
+	    this.charsRead = chars;
+	}
+
+	/**
+	 * Records the end of the round trip, 
+	 * passes this sample to the metrics of its operation, if any, 
+	 * and emits the event, if enabled.
+	 *
+	 * @param success
+	 *    whether the round trip succeeded.
+	 */
+	public void stop(final boolean success) {
+	    final long end = System.nanoTime();
+	    final long writeEnd1 = this.writeEnd == 0 ? end : this.writeEnd;
+	    final long firstRead1 = this.firstRead == 0 ? end : this.firstRead;
+	    final long writeNanos = writeEnd1 - this.start;
+	    final long waitNanos = Math.max(firstRead1 - writeEnd1, 0);
+	    final long readNanos = end - Math.max(firstRead1, writeEnd1);
+
+	    final OperationMetrics opm = this.opMetrics;
+	    if (opm != null) {
+		opm.count.increment();
+		if (!success) {
+		    opm.errors.increment();
+		}
+		opm.charsWritten.add(this.charsWritten);
+		opm.charsRead.add(this.charsRead);
+		opm.phase2histogram.get(Phase.WRITE).record(writeNanos);
+		opm.phase2histogram.get(Phase.WAIT).record(waitNanos);
+		opm.phase2histogram.get(Phase.READ).record(readNanos);
+		opm.phase2histogram.get(Phase.TOTAL).record(end - this.start);
+	    }
+
+	    final RoundTripEvent evt = this.event;
+	    if (evt != null) {
+		evt.end();
+		if (evt.shouldCommit()) {
+		    evt.charsWritten = this.charsWritten;
+		    evt.charsRead = this.charsRead;
+		    evt.writeDuration = writeNanos;
+		    evt.waitDuration = waitNanos;
+		    evt.readDuration = readNanos;
+		    evt.success = success;
+		    evt.commit();
+		}
+	    }
+	}
+    } // class Sample
+
+    /**
+     * The metrics per operation.
+     */
+    private final Map<Operation, OperationMetrics> op2metrics =
+	new EnumMap<Operation, OperationMetrics>(Operation.class);
+
+    /**
+     * The name this is registered with as an MBean
+     * or <code>null</code> if not registered.
+     */
+    private ObjectName objectName;
+
+    /**
+     * Creates empty metrics.
+     */
+    public OctaveMetrics() {
+	for (Operation op : Operation.values()) {
+	    this.op2metrics.put(op, new OperationMetrics());
+	}
+    }
+
+    /**
+     * Starts recording a round trip 
+     * in <code>metrics</code>, if not <code>null</code>, 
+     * and as a {@link RoundTripEvent}, if enabled. 
+     * If neither applies, this returns <code>null</code> 
+     * so that the round trip can be performed without recording.
+     *
+     * @param metrics
+     *    the metrics to record the round trip in 
+     *    or <code>null</code> if metrics are disabled.
+     * @param engineId
+     *    the id of the engine performing the round trip.
+     * @param operation
+     *    the operation performed by the round trip.
+     * @param variables
+     *    the names of the variables set or got separated by commas
+     *    or <code>null</code> if not applicable.
+     * @return
+     *    the sample to record the round trip 
+     *    or <code>null</code> if there is nothing to record.
+     */
+    public static Sample start(final OctaveMetrics metrics,
+			       final int engineId,
+			       final Operation operation,
+			       final String variables) {
+	RoundTripEvent event = null;
+	if (RoundTripEvent.isTypeEnabled()) {
+	    event = new RoundTripEvent();
+	    event.engineId = engineId;
+	    event.operation = operation.name();
+	    event.variables = variables;
+	} else if (metrics == null) {
+	    return null;
+	}
+	return new Sample(metrics == null ? null : metrics.op2metrics.get(operation),
+			  event);
+    }
+
+    /**
+     * Returns the histogram of the durations of <code>phase</code>
+     * of round trips performing <code>operation</code>.
+     *
+     * @param operation
+     *    the operation.
+     * @param phase
+     *    the phase.
+     * @return
+     *    the histogram of durations in nanoseconds.
+     */
+    public LatencyHistogram getHistogram(final Operation operation,
+					 final Phase phase) {
+	return this.op2metrics.get(operation).phase2histogram.get(phase);
+    }
+
+    /**
+     * Returns a snapshot of the metrics of <code>operation</code>.
+     *
+     * @param operation
+     *    the operation.
+     * @return
+     *    a snapshot of the metrics of <code>operation</code>.
+     */
+    public OperationStats getStats(final Operation operation) {
+	final OperationMetrics opm = this.op2metrics.get(operation);
+	return new OperationStats(operation,
+				  opm.count.sum(),
+				  opm.errors.sum(),
+				  opm.charsWritten.sum(),
+				  opm.charsRead.sum(),
+				  opm.phase2histogram);
+    }
+
+    @Override
+    public OperationStats getPut() {
+	return getStats(Operation.PUT);
+    }
+
+    @Override
+    public OperationStats getGet() {
+	return getStats(Operation.GET);
+    }
+
+    @Override
+    public OperationStats getEval() {
+	return getStats(Operation.EVAL);
+    }
+
+    @Override
+    public void reset() {
+	for (OperationMetrics opm : this.op2metrics.values()) {
+	    opm.reset();
+	}
+    }
+
+    /**
+     * Registers this as an MBean with the platform MBean server
+     * with object name <code>eu.simuline.octave:type=OctaveEngine,id=</code>
+     * followed by <code>engineId</code>.
+     * Failure is logged only, since metrics shall not break an engine.
+     *
+     * @param engineId
+     *    the id of the engine these metrics belong to.
+     */
+    public synchronized void registerMBean(final int engineId) {
+	try {
+	    final ObjectName name = new ObjectName
+		(JMX_DOMAIN + ":type=OctaveEngine,id=" + engineId);
+	    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	    server.registerMBean(this, name);
+	    this.objectName = name;
+	} catch (final JMException | RuntimeException e) {
+	    LOG.warn("Could not register metrics MBean. ", e);
+	}
+    }
+
+    /**
+     * Unregisters this MBean if registered by {@link #registerMBean(int)}.
+     */
+    public synchronized void unregisterMBean() {
+	if (this.objectName == null) {
+	    return;
+	}
+	try {
+	    ManagementFactory.getPlatformMBeanServer()
+		.unregisterMBean(this.objectName);
+	} catch (final JMException | RuntimeException e) {
+	    LOG.warn("Could not unregister metrics MBean. ", e);
+	}
+	this.objectName = null;
+    }
+
+}
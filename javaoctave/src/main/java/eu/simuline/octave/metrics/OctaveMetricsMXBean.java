@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+/**
+ * The management interface of the {@link OctaveMetrics} of an engine.
+ * Each attribute is a snapshot of the metrics of an {@link Operation}.
+ * Durations are given in microseconds.
+ */
+public interface OctaveMetricsMXBean {
+
+    /**
+     * Returns the metrics of {@link Operation#PUT}.
+     *
+     * @return
+     *    a snapshot of the metrics of {@link Operation#PUT}.
+     */
+    OperationStats getPut();
+
+    /**
+     * Returns the metrics of {@link Operation#GET}.
+     *
+     * @return
+     *    a snapshot of the metrics of {@link Operation#GET}.
+     */
+    OperationStats getGet();
+
+    /**
+     * Returns the metrics of {@link Operation#EVAL}.
+     *
+     * @return
+     *    a snapshot of the metrics of {@link Operation#EVAL}.
+     */
+    OperationStats getEval();
+
+    /**
+     * Resets all metrics.
+     */
+    void reset();
+
+}
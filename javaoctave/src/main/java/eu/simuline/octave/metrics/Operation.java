@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+/**
+ * The kinds of round trips to octave metrics are collected for.
+ */
+public enum Operation {
+
+    /**
+     * Setting variables as in
+     * {@link eu.simuline.octave.OctaveEngine#putAll(java.util.Map)}.
+     */
+    PUT,
+
+    /**
+     * Getting the value of a variable as in
+     * {@link eu.simuline.octave.OctaveEngine#get(String)},
+     * including checking whether the variable exists.
+     */
+    GET,
+
+    /**
+     * Evaluating a script as in
+     * {@link eu.simuline.octave.OctaveEngine#unsafeEval(String)}
+     * and all other round trips.
+     */
+    EVAL;
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the metrics of an {@link Operation}
+ * as returned by {@link OctaveMetrics#getStats(Operation)}.
+ * Durations are given in microseconds.
+ * The getters make this an open type for {@link OctaveMetricsMXBean}.
+ * Sizes are given in characters;
+ * since octave's text format is ascii except for non-ascii strings,
+ * this is the number of bytes in the common encodings.
+ */
+public final class OperationStats {
+
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final Operation operation;
+    private final long count;
+    private final long errors;
+    private final long charsWritten;
+    private final long charsRead;
+    private final Map<Phase, Double> meanMicros;
+    private final double totalP50Micros;
+    private final double totalP99Micros;
+    private final double totalP999Micros;
+    private final double totalMaxMicros;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param operation
+     *    the operation of the snapshot.
+     * @param count
+     *    the number of round trips.
+     * @param errors
+     *    the number of round trips which failed.
+     * @param charsWritten
+     *    the number of characters written to octave.
+     * @param charsRead
+     *    the number of characters read from octave.
+     * @param phase2histogram
+     *    the histograms of the durations of the phases.
+     */
+    OperationStats(final Operation operation,
+		   final long count,
+		   final long errors,
+		   final long charsWritten,
+		   final long charsRead,
+		   final Map<Phase, LatencyHistogram> phase2histogram) {
+	this.operation = operation;
+	this.count = count;
+	this.errors = errors;
+	this.charsWritten = charsWritten;
+	this.charsRead = charsRead;
+	this.meanMicros = new EnumMap<Phase, Double>(Phase.class);
+	for (Map.Entry<Phase, LatencyHistogram> entry
+		 : phase2histogram.entrySet()) {
+	    this.meanMicros.put(entry.getKey(),
+				entry.getValue().getMean() / NANOS_PER_MICRO);
+	}
+	final LatencyHistogram total = phase2histogram.get(Phase.TOTAL);
+	this.totalP50Micros  = total.getValueAtPercentile(50)   / NANOS_PER_MICRO;
+	this.totalP99Micros  = total.getValueAtPercentile(99)   / NANOS_PER_MICRO;
+	this.totalP999Micros = total.getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+	this.totalMaxMicros  = total.getMax()                   / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Returns the name of the operation.
+     *
+     * @return
+     *    the name of the operation.
+     */
+    public String getOperation() {
+	return this.operation.name();
+    }
+
+    /**
+     * Returns the number of round trips including the failed ones.
+     *
+     * @return
+     *    the number of round trips.
+     */
+    public long getCount() {
+	return this.count;
+    }
+
+    /**
+     * Returns the number of round trips which failed.
+     *
+     * @return
+     *    the number of round trips which failed.
+     */
+    public long getErrors() {
+	return this.errors;
+    }
+
+    /**
+     * Returns the number of characters written to octave.
+     *
+     * @return
+     *    the number of characters written to octave.
+     */
+    public long getCharsWritten() {
+	return this.charsWritten;
+    }
+
+    /**
+     * Returns the number of characters read from octave.
+     *
+     * @return
+     *    the number of characters read from octave.
+     */
+    public long getCharsRead() {
+	return this.charsRead;
+    }
+
+    /**
+     * Returns the mean duration of the given phase.
+     *
+     * @param phase
+     *    a phase of a round trip.
+     * @return
+     *    the mean duration of <code>phase</code> in microseconds.
+     */
+    public double meanMicros(final Phase phase) {
+	return this.meanMicros.get(phase);
+    }
+
+    /**
+     * Returns the mean duration of {@link Phase#WRITE}.
+     *
+     * @return
+     *    the mean duration of writing in microseconds.
+     */
+    public double getWriteMeanMicros() {
+	return meanMicros(Phase.WRITE);
+    }
+
+    /**
+     * Returns the mean duration of {@link Phase#WAIT}.
+     *
+     * @return
+     *    the mean duration of waiting in microseconds.
+     */
+    public double getWaitMeanMicros() {
+	return meanMicros(Phase.WAIT);
+    }
+
+    /**
+     * Returns the mean duration of {@link Phase#READ}.
+     *
+     * @return
+     *    the mean duration of reading in microseconds.
+     */
+    public double getReadMeanMicros() {
+	return meanMicros(Phase.READ);
+    }
+
+    /**
+     * Returns the mean duration of {@link Phase#TOTAL}.
+     *
+     * @return
+     *    the mean duration of round trips in microseconds.
+     */
+    public double getTotalMeanMicros() {
+	return meanMicros(Phase.TOTAL);
+    }
+
+    /**
+     * Returns the median of the durations of round trips.
+     *
+     * @return
+     *    the median of the durations of round trips in microseconds.
+     */
+    public double getTotalP50Micros() {
+	return this.totalP50Micros;
+    }
+
+    /**
+     * Returns the 99th percentile of the durations of round trips.
+     *
+     * @return
+     *    the 99th percentile of the durations of round trips
+     *    in microseconds.
+     */
+    public double getTotalP99Micros() {
+	return this.totalP99Micros;
+    }
+
+    /**
+     * Returns the 99.9th percentile of the durations of round trips.
+     *
+     * @return
+     *    the 99.9th percentile of the durations of round trips
+     *    in microseconds.
+     */
+    public double getTotalP999Micros() {
+	return this.totalP999Micros;
+    }
+
+    /**
+     * Returns the maximal duration of round trips.
+     *
+     * @return
+     *    the maximal duration of round trips in microseconds.
+     */
+    public double getTotalMaxMicros() {
+	return this.totalMaxMicros;
+    }
+
+    @Override
+    public String toString() {
+	return String.format("%s: count=%d errors=%d written=%d read=%d "
+			     + "write=%.1fus wait=%.1fus read=%.1fus "
+			     + "total=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+			     getOperation(), this.count, this.errors,
+			     this.charsWritten, this.charsRead,
+			     getWriteMeanMicros(), getWaitMeanMicros(),
+			     getReadMeanMicros(), getTotalMeanMicros(),
+			     this.totalP50Micros, this.totalP99Micros,
+			     this.totalMaxMicros);
+    }
+
+}
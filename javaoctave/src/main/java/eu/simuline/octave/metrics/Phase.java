@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+/**
+ * The phases of a round trip to octave
+ * the durations of which are recorded separately.
+ * Since writing and reading run concurrently,
+ * the phases may overlap for large requests;
+ * then {@link #WAIT} is zero.
+ */
+public enum Phase {
+
+    /**
+     * Serializing and writing the script to octave
+     * until the script is completely written.
+     */
+    WRITE,
+
+    /**
+     * Waiting for the first output of octave
+     * after the script is written.
+     * This is essentially the time octave computes.
+     */
+    WAIT,
+
+    /**
+     * Reading and parsing the output of octave
+     * from the first output until the end of the response.
+     */
+    READ,
+
+    /**
+     * The round trip as a whole.
+     */
+    TOTAL;
+
+}
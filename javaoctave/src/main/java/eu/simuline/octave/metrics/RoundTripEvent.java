@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event for a round trip to octave,
+ * i.e. writing a script and reading back the response.
+ * The duration of the event is the duration of the round trip.
+ * This is emitted via {@link OctaveMetrics.Sample}
+ * if the event is enabled in the recording, no matter whether
+ * metrics are enabled.
+ */
+@Name("eu.simuline.octave.RoundTrip")
+@Label("Octave Round Trip")
+@Category({"Octave"})
+@Description("Writing a script to octave and reading back the response")
+@StackTrace(false)
+final class RoundTripEvent extends Event {
+
+    /**
+     * The type of this event to check cheaply whether it is enabled
+     * or <code>null</code> if not yet needed.
+     * This is determined lazily by {@link #isTypeEnabled()}.
+     */
+    private static volatile EventType type;
+
+    @Label("Engine Id")
+    @Description("The id of the engine, unique within the runtime")
+    int engineId;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Variables")
+    @Description("The names of the variables set or got, if any")
+    String variables;
+
+    @Label("Characters Written")
+    long charsWritten;
+
+    @Label("Characters Read")
+    long charsRead;
+
+    @Label("Write")
+    @Description("Serializing and writing the script")
+    @Timespan(Timespan.NANOSECONDS)
+    long writeDuration;
+
+    @Label("Wait")
+    @Description("Waiting for the first output after writing")
+    @Timespan(Timespan.NANOSECONDS)
+    long waitDuration;
+
+    @Label("Read")
+    @Description("Reading and parsing the response")
+    @Timespan(Timespan.NANOSECONDS)
+    long readDuration;
+
+    @Label("Success")
+    boolean success;
+
+    /**
+     * Returns whether this kind of events is enabled
+     * in some running recording.
+     * Before the flight recorder is initialized, this is not the case
+     * and the event type is not registered.
+     *
+     * @return
+     *    whether this kind of event is enabled.
+     */
+    static boolean isTypeEnabled() {
+	if (!FlightRecorder.isInitialized()) {
+	    return false;
+	}
+	EventType res = type;
+	if (res == null) {
+	    res = EventType.getEventType(RoundTripEvent.class);
+	    type = res;
+	}
+	return res.isEnabled();
+    }
+
+}
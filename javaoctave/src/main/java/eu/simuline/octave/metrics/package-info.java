@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Low overhead metrics of the round trips to octave
+ * collected per engine if enabled
+ * via {@link eu.simuline.octave.OctaveEngineFactory#setMetrics(boolean)}.
+ * <p>
+ * For each {@link eu.simuline.octave.metrics.Operation},
+ * {@link eu.simuline.octave.metrics.OctaveMetrics} counts requests,
+ * errors and characters written and read
+ * and records the durations of the {@link eu.simuline.octave.metrics.Phase}s
+ * in {@link eu.simuline.octave.metrics.LatencyHistogram}s.
+ * Snapshots are {@link eu.simuline.octave.metrics.OperationStats}
+ * which are also exposed via JMX
+ * through {@link eu.simuline.octave.metrics.OctaveMetricsMXBean}.
+ * <p>
+ * Independently of metrics,
+ * each round trip is emitted as a {@link eu.simuline.octave.metrics.RoundTripEvent}
+ * and each engine startup as an {@link eu.simuline.octave.metrics.EngineStartEvent}
+ * for the JDK flight recorder, if these events are enabled in a recording.
+ * Otherwise, they cost a check of a flag per round trip.
+ */
+package eu.simuline.octave.metrics;
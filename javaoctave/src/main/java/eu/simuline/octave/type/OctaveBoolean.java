@@ -88,11 +88,13 @@ public final class OctaveBoolean
      */
     public final void setPlain(final boolean value, final int pos) {
 	this.dataL.set(pos, value);
+	markChanged(pos);
     }
 
     // api-docs inherited from AbstractGenericMatrix 
     public final void setPlain(final String value, final int pos) {
 	this.dataL.set(pos, StringUtil.parseBoolean(value));
+	markChanged(pos);
     }
 
     /**
@@ -105,6 +107,16 @@ public final class OctaveBoolean
  	return this.dataL.getBoolean(pos2ind(pos));
     }
 
+    /**
+     * Get the value at plain position <code>pos</code>. 
+     * 
+     * @param pos
+     * @return value at pos
+     */
+    public final boolean getPlain(final int pos) {
+	return this.dataL.getBoolean(pos);
+    }
+
     public final String getPlainString(int pos) {
 	return StringUtil.toString(this.dataL.getBoolean(pos));
     }
@@ -89,6 +89,19 @@ public final class OctaveCell
 
     }
 
+    /**
+     * Returns the value at plain position <code>pos</code> itself, not a copy, 
+     * or an empty matrix for the default value. 
+     * 
+     * @param pos
+     * @return value at pos
+     */
+    @Override
+    public OctaveObject getPlain(final int pos) {
+        final OctaveObject get = super.getPlain(pos);
+	return get == null ? DEFAULT_VALUE.shallowCopy() : get;
+    }
+
     /**
      * @param <T>
      * @param pos
@@ -15,6 +15,8 @@
  */
 package eu.simuline.octave.type;
 
+import java.util.Arrays;
+
 /**
  * Represents a complex matrix. 
  */
@@ -51,6 +53,48 @@ public final class OctaveComplex implements OctaveObject {
 	this.imag = r.zero();
     }
 
+    /**
+     * Create complex matrix from its real and its imaginary part 
+     * which must have the same size. 
+     * 
+     * @param real
+     *    the real part which will be referenced, not copied. 
+     * @param imag
+     *    the imaginary part which will be referenced, not copied. 
+     */
+    public OctaveComplex(final OctaveDouble real, final OctaveDouble imag) {
+	if (!Arrays.equals(size(real), size(imag))) {
+	    throw new IllegalArgumentException
+		("Real and imaginary part differ in size. ");
+	}
+	this.real = real;
+	this.imag = imag;
+    }
+
+    private static int[] size(final OctaveDouble matrix) {
+	final int[] res = new int[matrix.getSizeLength()];
+	for (int idx = 0; idx < res.length; idx++) {
+	    res[idx] = matrix.getSize(idx + 1);
+	}
+	return res;
+    }
+
+    /**
+     * @return
+     *    reference to the real part 
+     */
+    public OctaveDouble getRealPart() {
+	return this.real;
+    }
+
+    /**
+     * @return
+     *    reference to the imaginary part 
+     */
+    public OctaveDouble getImagPart() {
+	return this.imag;
+    }
+
     /**
      * @param i
      *            dimension number in 1 based numbering, 1=row, 2=column
@@ -15,6 +15,9 @@
  */
 package eu.simuline.octave.type;
 
+import java.nio.DoubleBuffer;
+import java.util.Objects;
+
 import eu.simuline.octave.type.matrix.AbstractGenericMatrix;
 
 import eu.simuline.octave.util.StringUtil;
@@ -98,11 +101,13 @@ public final class OctaveDouble
      */
     public final void setPlain(final double value, final int pos) {
 	this.dataL.set(pos, value);
+	markChanged(pos);
     }
 
     // api-docs inherited from AbstractGenericMatrix 
     public final void setPlain(final String value, final int pos) {
 	this.dataL.set(pos, StringUtil.parseDouble(value));
+	markChanged(pos);
     }
 
     /**
@@ -115,6 +120,54 @@ public final class OctaveDouble
 	return this.dataL.getDouble(pos2ind(pos));
     }
 
+    /**
+     * Get the value at plain position <code>pos</code>. 
+     * 
+     * @param pos
+     * @return value at pos
+     */
+    public final double getPlain(final int pos) {
+	return this.dataL.getDouble(pos);
+    }
+
+    /**
+     * Puts the values at the plain positions 
+     * <code>pos</code> to <code>pos + len - 1</code> 
+     * into <code>dst</code> in bulk, e.g. for binary transfer. 
+     * 
+     * @param dst
+     * @param pos
+     * @param len
+     * @throws IndexOutOfBoundsException
+     *    if the positions exceed {@link #dataSize()}. 
+     */
+    public final void getPlain(final DoubleBuffer dst, 
+			       final int pos, 
+			       final int len) {
+	Objects.checkFromIndexSize(pos, len, dataSize());
+	dst.put(this.dataL.elements(), pos, len);
+    }
+
+    /**
+     * Sets the values at the plain positions 
+     * <code>pos</code> to <code>pos + len - 1</code> 
+     * getting them from <code>src</code> in bulk, e.g. for binary transfer, 
+     * assuming resize is not necessary. 
+     * 
+     * @param src
+     * @param pos
+     * @param len
+     * @throws IndexOutOfBoundsException
+     *    if the positions exceed {@link #dataSize()}. 
+     */
+    public final void setPlain(final DoubleBuffer src, 
+			       final int pos, 
+			       final int len) {
+	Objects.checkFromIndexSize(pos, len, dataSize());
+	src.get(this.dataL.elements(), pos, len);
+	markChanged(pos, len);
+    }
+
     public final String getPlainString(int pos) {
 	return Double.toString(this.dataL.getDouble(pos));
     }
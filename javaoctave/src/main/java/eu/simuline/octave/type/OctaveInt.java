@@ -15,6 +15,9 @@
  */
 package eu.simuline.octave.type;
 
+import java.nio.IntBuffer;
+import java.util.Objects;
+
 import eu.simuline.octave.type.matrix.AbstractGenericMatrix;
 
 import it.unimi.dsi.fastutil.ints.IntArrayList;
@@ -92,11 +95,13 @@ public final class OctaveInt
      */
     public final void setPlain(final int value, final int pos) {
 	this.dataL.set(pos, value);
+	markChanged(pos);
     }
 
     // api-docs inherited from AbstractGenericMatrix 
     public final void setPlain(final String value, final int pos) {
 	this.dataL.set(pos, Integer.parseInt(value.trim()));
+	markChanged(pos);
     }
 
     /**
@@ -109,6 +114,54 @@ public final class OctaveInt
 	return this.dataL.getInt(pos2ind(pos));
     }
 
+    /**
+     * Get the value at plain position <code>pos</code>. 
+     * 
+     * @param pos
+     * @return value at pos
+     */
+    public final int getPlain(final int pos) {
+	return this.dataL.getInt(pos);
+    }
+
+    /**
+     * Puts the values at the plain positions 
+     * <code>pos</code> to <code>pos + len - 1</code> 
+     * into <code>dst</code> in bulk, e.g. for binary transfer. 
+     * 
+     * @param dst
+     * @param pos
+     * @param len
+     * @throws IndexOutOfBoundsException
+     *    if the positions exceed {@link #dataSize()}. 
+     */
+    public final void getPlain(final IntBuffer dst, 
+			       final int pos, 
+			       final int len) {
+	Objects.checkFromIndexSize(pos, len, dataSize());
+	dst.put(this.dataL.elements(), pos, len);
+    }
+
+    /**
+     * Sets the values at the plain positions 
+     * <code>pos</code> to <code>pos + len - 1</code> 
+     * getting them from <code>src</code> in bulk, e.g. for binary transfer, 
+     * assuming resize is not necessary. 
+     * 
+     * @param src
+     * @param pos
+     * @param len
+     * @throws IndexOutOfBoundsException
+     *    if the positions exceed {@link #dataSize()}. 
+     */
+    public final void setPlain(final IntBuffer src, 
+			       final int pos, 
+			       final int len) {
+	Objects.checkFromIndexSize(pos, len, dataSize());
+	src.get(this.dataL.elements(), pos, len);
+	markChanged(pos, len);
+    }
+
     public final String getPlainString(int pos) {
 	return Integer.toString(this.dataL.getInt(pos));
     }
@@ -15,6 +15,9 @@
  */
 package eu.simuline.octave.type;
 
+import java.nio.LongBuffer;
+import java.util.Objects;
+
 import eu.simuline.octave.type.matrix.AbstractGenericMatrix;
 
 import it.unimi.dsi.fastutil.longs.LongArrayList;
@@ -95,11 +98,13 @@ public final class OctaveLong
      */
     public final void setPlain(final long value, final int pos) {
 	this.dataL.set(pos, value);
+	markChanged(pos);
     }
 
     // api-docs inherited from AbstractGenericMatrix 
     public final void setPlain(final String value, final int pos) {
 	this.dataL.set(pos, Long.parseLong(value.trim()));
+	markChanged(pos);
     }
 
     /**
@@ -112,6 +117,54 @@ public final class OctaveLong
 	return this.dataL.getLong(pos2ind(pos));
     }
 
+    /**
+     * Get the value at plain position <code>pos</code>. 
+     * 
+     * @param pos
+     * @return value at pos
+     */
+    public final long getPlain(final int pos) {
+	return this.dataL.getLong(pos);
+    }
+
+    /**
+     * Puts the values at the plain positions 
+     * <code>pos</code> to <code>pos + len - 1</code> 
+     * into <code>dst</code> in bulk, e.g. for binary transfer. 
+     * 
+     * @param dst
+     * @param pos
+     * @param len
+     * @throws IndexOutOfBoundsException
+     *    if the positions exceed {@link #dataSize()}. 
+     */
+    public final void getPlain(final LongBuffer dst, 
+			       final int pos, 
+			       final int len) {
+	Objects.checkFromIndexSize(pos, len, dataSize());
+	dst.put(this.dataL.elements(), pos, len);
+    }
+
+    /**
+     * Sets the values at the plain positions 
+     * <code>pos</code> to <code>pos + len - 1</code> 
+     * getting them from <code>src</code> in bulk, e.g. for binary transfer, 
+     * assuming resize is not necessary. 
+     * 
+     * @param src
+     * @param pos
+     * @param len
+     * @throws IndexOutOfBoundsException
+     *    if the positions exceed {@link #dataSize()}. 
+     */
+    public final void setPlain(final LongBuffer src, 
+			       final int pos, 
+			       final int len) {
+	Objects.checkFromIndexSize(pos, len, dataSize());
+	src.get(this.dataL.elements(), pos, len);
+	markChanged(pos, len);
+    }
+
     // api-docs inherited from AbstractGenericMatrix 
     public final String getPlainString(int pos) {
 	return Long.toString(this.dataL.getLong(pos));
@@ -19,6 +19,7 @@ import eu.simuline.octave.type.OctaveObject;
 import eu.simuline.octave.type.OctaveDouble;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -48,6 +49,14 @@ public abstract class AbstractGenericMatrix<D, L extends List<?>>
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected L dataL;//final 
 
+    /**
+     * The plain positions of the entries set 
+     * since {@link #trackChanges()} or {@link #clearChanges()} 
+     * or <code>null</code> if changes are not tracked. 
+     * Entries written through {@link #getDataA()} are not tracked. 
+     */
+    private BitSet changed;
+
     /**
      * Constructor that creates new blank matrix. 
      * 
@@ -157,6 +166,10 @@ public abstract class AbstractGenericMatrix<D, L extends List<?>>
     /**
      * Returns the data store as an array. 
      * There are subclasses with array of primitive types. 
+     * This is the backing array, not a copy, 
+     * holding the data vectorized in its first {@link #dataSize()} entries. 
+     * Entries written through this array are not tracked 
+     * by {@link #trackChanges()}. 
      */
     protected abstract D getDataA();
 
@@ -176,6 +189,94 @@ public abstract class AbstractGenericMatrix<D, L extends List<?>>
     // design ok? **** 
     public abstract void setPlain(String value, int pos);
 
+    /**
+     * Starts tracking the entries set by the setters of the subclasses, 
+     * e.g. to transfer only these to octave 
+     * by {@link eu.simuline.octave.OctaveEngine#sync(String, OctaveDouble)}. 
+     * If changes are tracked already, the entries tracked are forgotten. 
+     * Entries set in bulk, e.g. from a buffer, are tracked as well. 
+     */
+    public final void trackChanges() {
+	this.changed = new BitSet();
+    }
+
+    /**
+     * Returns whether changes are tracked since {@link #trackChanges()}. 
+     * Copies do not track changes. 
+     */
+    public final boolean isTrackingChanges() {
+	return this.changed != null;
+    }
+
+    /**
+     * Forgets the entries set so far if changes are tracked. 
+     */
+    public final void clearChanges() {
+	if (this.changed != null) {
+	    this.changed.clear();
+	}
+    }
+
+    /**
+     * Returns the number of entries set since changes are tracked 
+     * or since {@link #clearChanges()}. 
+     * If the matrix was resized, all entries are considered changed. 
+     *
+     * @throws IllegalStateException
+     *    if changes are not tracked. 
+     */
+    public final int getNumChanged() {
+	return changed().cardinality();
+    }
+
+    /**
+     * Returns the plain positions of the entries set 
+     * since changes are tracked or since {@link #clearChanges()} 
+     * in ascending order. 
+     *
+     * @throws IllegalStateException
+     *    if changes are not tracked. 
+     */
+    public final int[] getChangedPositions() {
+	return changed().stream().toArray();
+    }
+
+    /**
+     * Returns {@link #changed} if changes are tracked. 
+     *
+     * @throws IllegalStateException
+     *    if changes are not tracked. 
+     */
+    private BitSet changed() {
+	if (this.changed == null) {
+	    throw new IllegalStateException("Changes are not tracked. ");
+	}
+	return this.changed;
+    }
+
+    /**
+     * Records that the entry with plain position <code>pos</code> is set 
+     * if changes are tracked. 
+     * To be invoked by the setters of the subclasses. 
+     */
+    protected final void markChanged(final int pos) {
+	if (this.changed != null) {
+	    this.changed.set(pos);
+	}
+    }
+
+    /**
+     * Records that the <code>len</code> entries 
+     * starting at plain position <code>pos</code> are set 
+     * if changes are tracked. 
+     * To be invoked by the bulk setters of the subclasses. 
+     */
+    protected final void markChanged(final int pos, final int len) {
+	if (this.changed != null) {
+	    this.changed.set(pos, pos + len);
+	}
+    }
+
     /**
      * @param ns
      * @return product of ns
@@ -225,6 +326,10 @@ public abstract class AbstractGenericMatrix<D, L extends List<?>>
 	if (!resizeNeeded) {
 	    return;
 	}
+	if (this.changed != null) {
+	    // plain positions are shifted: all entries are changed 
+	    this.changed.set(0, product(this.size));
+	}
 
 	// Here, orgSize[0] is defined 
 	final int cpyLen    = orgSize[0];
@@ -104,6 +104,7 @@ public abstract class AbstractObjectMatrix<T>
      */
     public final void setPlain(final T value, final int pos) {
 	 this.dataL.set(pos, value);
+	 markChanged(pos);
     }
 
     // api-docs inherited from AbstractGenericMatrix 
@@ -124,6 +125,21 @@ public abstract class AbstractObjectMatrix<T>
 	return this.dataL.get(pos2ind(pos));
     }
 
+    /**
+     * Get the value at plain position <code>pos</code>. 
+     * Unlike {@link #get(int...)} in subclasses, 
+     * this is the value itself, not a copy, 
+     * intended for reading in bulk, e.g. by writers. 
+     * 
+     * @param pos
+     * @return value at pos
+     */
+    // overwritten in OctaveCell 
+    @SuppressWarnings("checkstyle:designforextension")
+    public T getPlain(final int pos) {
+	return this.dataL.get(pos);
+    }
+
     // **** may dataL be null??  
     public final String getPlainString(int pos) {
 	return StringUtil.toString(this.dataL.get(pos));
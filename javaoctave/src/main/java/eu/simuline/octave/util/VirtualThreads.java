@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Access to virtual threads, if the runtime provides them.
+ * Since this software is compiled for java 11,
+ * but virtual threads are available since java 21 only,
+ * they are accessed via reflection.
+ * <p>
+ * Virtual threads are scheduled by a scheduler shared by the whole runtime
+ * mounting them on few carrier threads.
+ * So engines using virtual threads do not own thread pools.
+ * Note that a virtual thread blocked in <code>synchronized</code>
+ * pins its carrier thread,
+ * so code running on virtual threads shall use locks instead.
+ */
+public final class VirtualThreads {
+
+    private static final Log LOG = LogFactory.getLog(VirtualThreads.class);
+
+    /**
+     * The prefix of the names of the virtual threads created.
+     */
+    private static final String NAME_PREFIX = "javaoctave-virtual-";
+
+    /**
+     * The factory creating virtual threads
+     * or <code>null</code> if virtual threads are not available.
+     */
+    private static final ThreadFactory FACTORY = createFactory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns a factory creating virtual threads
+     * via <code>Thread.ofVirtual().name(NAME_PREFIX, 0).factory()</code>
+     * or <code>null</code> if the runtime does not provide virtual threads.
+     */
+    private static ThreadFactory createFactory() {
+	try {
+	    final Class<?> builderCls = Class.forName("java.lang.Thread$Builder");
+	    Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+	    builder = builderCls.getMethod("name", String.class, long.class)
+		.invoke(builder, NAME_PREFIX, 0L);
+	    return (ThreadFactory) builderCls.getMethod("factory").invoke(builder);
+	} catch (ReflectiveOperationException | RuntimeException e) {
+	    // also if preview features are not enabled
+	    LOG.debug("Virtual threads not available. ", e);
+	    return null;
+	}
+    }
+
+    /**
+     * Returns whether the runtime provides virtual threads.
+     *
+     * @return
+     *    whether the runtime provides virtual threads.
+     */
+    public static boolean isAvailable() {
+	return FACTORY != null;
+    }
+
+    /**
+     * Returns a factory creating virtual threads.
+     *
+     * @return
+     *    a factory creating virtual threads.
+     * @throws UnsupportedOperationException
+     *    if the runtime does not provide virtual threads.
+     */
+    public static ThreadFactory threadFactory() {
+	if (FACTORY == null) {
+	    throw new UnsupportedOperationException
+		("Virtual threads require java 21 or later. ");
+	}
+	return FACTORY;
+    }
+
+    /**
+     * Returns an executor starting a new virtual thread for each task.
+     * Such an executor is cheap and pools no threads,
+     * so each engine may own one.
+     *
+     * @return
+     *    an executor starting a new virtual thread for each task.
+     * @throws UnsupportedOperationException
+     *    if the runtime does not provide virtual threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+	final ThreadFactory factory = threadFactory();
+	try {
+	    return (ExecutorService) Executors.class
+		.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+		.invoke(null, factory);
+	} catch (ReflectiveOperationException e) {
+	    throw new IllegalStateException("Exception should not happen", e);
+	}
+    }
+
+}
@@ -7,14 +7,13 @@
  * {@link eu.simuline.octave.util.NoCloseWriter} 
  * are special writers, 
  * {@link eu.simuline.octave.util.IOUtils} is some utility class. 
- * In conjunctions with reader/writer, 
- * there is a thread copying reader to writer, 
- * {@link eu.simuline.octave.util.ReaderWriterPipeThread} 
  * <li>
  * some deal with strings 
  * {@link eu.simuline.octave.util.StringUtil}
  * <li>
- * Finally there is a thread factory to create a named thread from a runnable. 
+ * Finally there is a thread factory to create a named thread from a runnable 
+ * and {@link eu.simuline.octave.util.VirtualThreads} 
+ * providing virtual threads if the runtime does. 
  * </ul>
  */
 package eu.simuline.octave.util;
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave;
+
+import eu.simuline.octave.type.Octave;
+
+/**
+ * Benchmark comparing the latency per call of small requests
+ * with and without caller-runs mode,
+ * see {@link OctaveEngineFactory#setCallerRunsThreshold(int)}.
+ * This is no test and so it is not run by surefire.
+ * Run it via its main method with octave installed.
+ */
+public final class BenchmarkCallerRuns {
+
+    private static final int NUM_WARMUP = 500;
+
+    private static final int NUM_CALLS = 5000;
+
+    private BenchmarkCallerRuns() {
+    }
+
+    /**
+     * Runs the benchmark without and with caller-runs mode.
+     *
+     * @param args
+     *    ignored.
+     */
+    public static void main(final String[] args) {
+	double off = run(0);
+	double on  = run(16 * 1024);
+	System.out.printf("executor hops: %8.1f us/call%n", off);
+	System.out.printf("caller-runs:   %8.1f us/call%n", on);
+	System.out.printf("gain:          %8.1f us/call%n", off - on);
+    }
+
+    /**
+     * Returns the average latency in microseconds per request
+     * for a mix of a minimal eval, a small put and a small get.
+     */
+    private static double run(final int callerRunsThreshold) {
+	final OctaveEngine octave = new OctaveEngineFactory()
+	    .setCallerRunsThreshold(callerRunsThreshold).getScriptEngine();
+	octave.setWriter(null);
+	try {
+	    for (int i = 0; i < NUM_WARMUP; i++) {
+		roundTrips(octave, i);
+	    }
+	    final long start = System.nanoTime();
+	    for (int i = 0; i < NUM_CALLS; i++) {
+		roundTrips(octave, i);
+	    }
+	    // three requests per round: get needs a single round trip
+	    return (System.nanoTime() - start) / 1000.0 / (3 * NUM_CALLS);
+	} finally {
+	    octave.close();
+	}
+    }
+
+    private static void roundTrips(final OctaveEngine octave, final int idx) {
+	octave.unsafeEval("");
+	octave.put("x", Octave.scalar(idx));
+	octave.get("x");
+    }
+
+}
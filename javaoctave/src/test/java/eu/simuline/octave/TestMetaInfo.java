@@ -136,6 +136,27 @@ public class TestMetaInfo {
 	assertEquals(File.separator, octave.getFilesep());
     }
 
+    /**
+     * Test that the meta info is fetched in a single round trip 
+     * and fetched again only after a script which may change it. 
+     */
+    @Test public void testMetaInfoCached() {
+	final OctaveEngine octave = new OctaveEngineFactory()
+	    .setMetrics(true).getScriptEngine();
+	final String version = octave.getOctaveVersion();
+	octave.getFilesep();
+	octave.getInstHomeDir();
+	octave.getNamesOfPackagesInstalled();
+	assertEquals(1, octave.getMetrics().getGet().getCount());
+	octave.eval("x = 1;");
+	assertEquals(version, octave.getOctaveVersion());
+	assertEquals(1, octave.getMetrics().getGet().getCount());
+	octave.eval("cd .");
+	assertEquals(version, octave.getOctaveVersion());
+	assertEquals(2, octave.getMetrics().getGet().getCount());
+	octave.close();
+    }
+
     /**
      * Tests {@link OctaveEngine#getInstHomeDir()}, {@link OctaveEngine#getOctaveVersion()} 
      * and {@link OctaveEngine#getDescForName(String)} at the same time.
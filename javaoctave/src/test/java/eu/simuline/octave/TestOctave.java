@@ -23,18 +23,37 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
+import eu.simuline.octave.exception.OctaveEvalException;
 import eu.simuline.octave.exception.OctaveException;
 import eu.simuline.octave.exception.OctaveIOException;
+import eu.simuline.octave.exception.OctaveTimeoutException;
+import eu.simuline.octave.io.OctaveFifo;
+import eu.simuline.octave.io.OctaveTextParser;
+import eu.simuline.octave.io.mat.MatFile;
 import eu.simuline.octave.type.Octave;
 import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveInt;
+import eu.simuline.octave.type.OctaveLong;
 import eu.simuline.octave.type.OctaveObject;
+import eu.simuline.octave.type.OctaveString;
+import eu.simuline.octave.util.VirtualThreads;
 
 /**
  * Tests eu.simuline.octave.Octave.*
@@ -252,4 +271,432 @@ public class TestOctave {
         octave.close();
     }
 
+    /**
+     * Test pipelined mode: 
+     * several threads use the engine concurrently 
+     * and each one gets back the results of its own requests. 
+     */
+    @Test public void testPipelined() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory()
+	    .setPipelined(true).getScriptEngine();
+	final int numThreads = 4;
+	final Thread[] threads = new Thread[numThreads];
+	final Throwable[] failures = new Throwable[numThreads];
+	for (int i = 0; i < numThreads; i++) {
+	    final int idx = i;
+	    threads[i] = new Thread(() -> {
+		    try {
+			for (int j = 0; j < 20; j++) {
+			    String name = "x" + idx + "_" + j;
+			    octave.put(name, Octave.scalar(100 * idx + j));
+			    OctaveDouble res = octave.get(OctaveDouble.class, name);
+			    assertEquals(100 * idx + j, res.get(1), 0);
+			}
+		    } catch (Throwable e) { // NOPMD
+			failures[idx] = e;
+		    }
+	    });
+	    threads[i].start();
+	}
+	for (int i = 0; i < numThreads; i++) {
+	    threads[i].join();
+	    if (failures[i] != null) {
+		throw new AssertionError("thread " + i + " failed", failures[i]);
+	    }
+	}
+	octave.close();
+    }
+
+    /**
+     * Test the asynchronous api: 
+     * order of completion and propagation of exceptions. 
+     */
+    @Test public void testAsync() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory().getScriptEngine();
+	final CompletableFuture<Void> put = octave.putAsync("x", Octave.scalar(42));
+	final CompletableFuture<Void> eval = octave.evalAsync("x = x + 1;");
+	final CompletableFuture<Void> fail = octave.evalAsync("error('async');");
+	final CompletableFuture<OctaveDouble> get = 
+	    octave.getAsync(OctaveDouble.class, "x");
+	assertEquals(43, get.get().get(1), 0);
+	// completion follows submission 
+	assertTrue(put.isDone());
+	assertTrue(eval.isDone());
+	assertTrue(fail.isDone());
+	try {
+	    fail.get();
+	    fail("Expected exception");
+	} catch (ExecutionException e) {
+	    assertTrue(e.getCause() instanceof OctaveEvalException);
+	}
+	octave.close();
+    }
+
+    /**
+     * Test that in binary mode numeric values are transferred bit-exact 
+     * and that other values fall back to the text format. 
+     */
+    @Test public void testBinary() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory()
+	    .setBinary(true).getScriptEngine();
+	final OctaveDouble matrix = new OctaveDouble(new double[] {
+		0.1, 1.0 / 3, Double.NaN, Double.MIN_VALUE, -0.0, 1e300}, 2, 3);
+	final OctaveInt ints = new OctaveInt(new int[] {
+		Integer.MIN_VALUE, Integer.MAX_VALUE}, 1, 2);
+	final OctaveLong longs = new OctaveLong(new long[] {
+		Long.MIN_VALUE, Long.MAX_VALUE}, 2, 1);
+	final Map<String, OctaveObject> vars = 
+	    new LinkedHashMap<String, OctaveObject>();
+	vars.put("m", matrix);
+	vars.put("i", ints);
+	vars.put("l", longs);
+	vars.put("b", Octave.bool(true));
+	octave.putAll(vars);
+	assertEquals(matrix, octave.get("m"));
+	assertEquals(ints, octave.get("i"));
+	assertEquals(longs, octave.get("l"));
+	assertEquals(Octave.bool(true), octave.get("b"));
+
+	// integer valued doubles saved by octave in a smaller type 
+	octave.eval("z = zeros(100, 100) + 200;");
+	final OctaveDouble zeros = octave.get(OctaveDouble.class, "z");
+	assertEquals(200, zeros.get(100, 100), 0);
+	octave.close();
+    }
+
+    /**
+     * Test that large numeric matrices are transferred 
+     * via memory-mapped files bit-exact 
+     * and that small ones pass the pipe as before. 
+     */
+    @Test public void testSideChannel() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory()
+	    .setSideChannelThreshold(64).getScriptEngine();
+	final double[] data = new double[300];
+	for (int i = 0; i < data.length; i++) {
+	    data[i] = Math.sqrt(i) / 3;
+	}
+	final OctaveDouble matrix = new OctaveDouble(data, 10, 10, 3);
+	final OctaveLong longs = new OctaveLong(new long[] {
+		Long.MIN_VALUE, 1, 2, 3, 4, 5, 6, 7, 8, Long.MAX_VALUE}, 2, 5);
+	final OctaveInt small = new OctaveInt(new int[] {1, 2}, 1, 2);
+	octave.put("m", matrix);
+	octave.put("l", longs);
+	octave.put("s", small);
+	assertEquals(matrix, octave.get("m"));
+	assertEquals(longs, octave.get("l"));
+	assertEquals(small, octave.get("s"));
+
+	octave.eval("ok = isequal(m(:)', sqrt(0:299) / 3);");
+	assertEquals(Octave.bool(true), octave.get("ok"));
+	octave.close();
+    }
+
+    /**
+     * Test that MAT-files written by java are loaded by octave 
+     * and those saved by octave are read by java. 
+     */
+    @Test public void testMatFile() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory().getScriptEngine();
+	final File file = File.createTempFile("javaoctave", ".mat");
+	try {
+	    final Map<String, OctaveObject> vars = 
+		new LinkedHashMap<String, OctaveObject>();
+	    vars.put("m", new OctaveDouble(new double[] {1, 2, 3, 4}, 2, 2));
+	    vars.put("s", new OctaveString("text"));
+	    vars.put("i", new OctaveInt(new int[] {-1, 1}, 1, 2));
+	    MatFile.write(file, vars, true);
+	    octave.eval("load('" + file.getPath() + "');");
+	    for (Map.Entry<String, OctaveObject> entry : vars.entrySet()) {
+		assertEquals(entry.getValue(), octave.get(entry.getKey()));
+	    }
+
+	    octave.eval("b = [true false]; c = {1, 'a'}; st.x = 2;");
+	    for (String format : Arrays.asList("-v6", "-v7")) {
+		octave.eval("save('" + format + "', '" + file.getPath() 
+			    + "', 'm', 'b', 'c', 'st');");
+		final Map<String, OctaveObject> read = MatFile.read(file);
+		for (String name : read.keySet()) {
+		    assertEquals(octave.get(name), read.get(name));
+		}
+		assertEquals(4, read.size());
+	    }
+	} finally {
+	    assertTrue(file.delete());
+	}
+	octave.close();
+    }
+
+    /**
+     * Test that a matrix is synced by its changed entries 
+     * and by the full value if the variable was modified in octave. 
+     */
+    @Test public void testSync() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory().getScriptEngine();
+	final OctaveDouble matrix = new OctaveDouble(10, 10);
+	octave.sync("m", matrix);
+	assertTrue(matrix.isTrackingChanges());
+	matrix.set(3, 2, 5);
+	matrix.set(4, 10, 10);
+	octave.sync("m", matrix);
+	assertEquals(0, matrix.getNumChanged());
+	assertEquals(matrix, octave.get("m"));
+
+	octave.eval("m = 0;");
+	matrix.set(5, 1, 1);
+	octave.sync("m", matrix);
+	assertEquals(matrix, octave.get("m"));
+	octave.close();
+    }
+
+    /**
+     * Test that rows and columns are appended in a single round trip, 
+     * keeping a rolling window if requested. 
+     */
+    @Test public void testAppend() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory().getScriptEngine();
+	octave.appendRows("w", new OctaveDouble(new double[] {1, 2}, 1, 2));
+	octave.appendAll(Arrays.asList
+			 (OctaveAppend.rows("w", new OctaveDouble
+					    (new double[] {3, 5, 4, 6}, 2, 2), 2),
+			  OctaveAppend.columns("c", Octave.scalar(1)),
+			  OctaveAppend.columns("c", Octave.scalar(2))));
+	assertEquals(new OctaveDouble(new double[] {3, 5, 4, 6}, 2, 2),
+		     octave.get("w"));
+	assertEquals(new OctaveDouble(new double[] {1, 2}, 1, 2),
+		     octave.get("c"));
+	try {
+	    octave.appendColumns("w", Octave.scalar(7));
+	    fail("Exception expected. ");
+	} catch (final OctaveEvalException e) {
+	    // expected: the number of rows differs 
+	}
+	assertEquals(new OctaveDouble(new double[] {3, 5, 4, 6}, 2, 2),
+		     octave.get("w"));
+	octave.close();
+    }
+
+    /**
+     * Test that a matrix is set with entries produced while streaming 
+     * and that a failing producer clears the variable. 
+     */
+    @Test public void testPutStreaming() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory().getScriptEngine();
+	final double[] next = new double[1];
+	octave.putStreaming("x", new int[] {2, 2, 2}, () -> next[0]++);
+	final OctaveDouble expected = new OctaveDouble
+	    (new double[] {0, 1, 2, 3, 4, 5, 6, 7}, 2, 2, 2);
+	assertEquals(expected, octave.get("x"));
+
+	// a variable set before is gone after a failure 
+	octave.put("y", Octave.scalar(1));
+	try {
+	    octave.putStreaming("y", new int[] {1, 3}, () -> {
+		    throw new IllegalStateException();
+		});
+	    fail("Exception expected. ");
+	} catch (final IllegalStateException e) {
+	    // expected 
+	}
+	assertNull(octave.get("y"));
+	assertNull(octave.get("javaoctave_stream"));
+	octave.close();
+    }
+
+    /**
+     * Test that a variable is streamed through the pull parser 
+     * and that a missing variable is reported. 
+     */
+    @Test public void testParse() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory().getScriptEngine();
+	octave.eval("x = reshape(1:3000, 3, 1000);");
+	final double[] sum = new double[1];
+	assertTrue(octave.parse("x", parser -> {
+		    assertEquals(OctaveTextParser.Event.VARIABLE, parser.next());
+		    assertEquals(OctaveTextParser.Event.START_MATRIX,
+				 parser.next());
+		    while (parser.next() == OctaveTextParser.Event.NUMBERS) {
+			for (int idx = 0; idx < parser.getLength(); idx++) {
+			    sum[0] += parser.getNumbers()[idx];
+			}
+		    }
+		}));
+	assertEquals(3000.0 * 3001 / 2, sum[0], 0);
+	assertFalse(octave.parse("undefined", parser -> fail()));
+	// the engine is usable after the reply is skipped partially
+	assertTrue(octave.parse("x", parser -> parser.next()));
+	octave.eval("y = 2;");
+	assertEquals(new OctaveDouble(new double[] {2}, 1, 1), octave.get("y"));
+	octave.close();
+    }
+
+    /**
+     * Test that frames are streamed through a FIFO
+     * to octave and back while octave evaluates asynchronously.
+     */
+    @Test public void testFifo() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory().getScriptEngine();
+	try (OctaveFifo fifo = octave.createFifo()) {
+	    // java to octave
+	    CompletableFuture<Void> peer = octave.evalAsync
+		(fifo.fopenScript("fid", true)
+		 + "total = 0;\n"
+		 + "while true\n"
+		 + OctaveFifo.readFrameScript("fid", "blk")
+		 + "  if isempty(blk)\n"
+		 + "    break;\n"
+		 + "  end\n"
+		 + "  total = total + sum(blk);\n"
+		 + "end\n"
+		 + "fclose(fid);\n");
+	    double expected = 0;
+	    try (OctaveFifo.Output out = fifo.openOutput(peer)) {
+		final double[] block = new double[1000];
+		for (int frame = 0; frame < 100; frame++) {
+		    for (int i = 0; i < block.length; i++) {
+			block[i] = frame + i / 1000.0;
+			expected += block[i];
+		    }
+		    out.write(block);
+		}
+	    }
+	    peer.get(10, TimeUnit.SECONDS);
+	    assertEquals(expected,
+			 octave.get(OctaveDouble.class, "total").get(1), 1e-6);
+
+	    // octave to java
+	    peer = octave.evalAsync(fifo.fopenScript("fid", false)
+				    + "for k = 1:50\n"
+				    + OctaveFifo.writeFrameScript("fid", "k * ones(1, k)")
+				    + "end\n"
+				    + OctaveFifo.closeScript("fid"));
+	    int numFrames = 0;
+	    try (OctaveFifo.Input in = fifo.openInput(peer)) {
+		for (double[] frame = in.read(); frame != null; frame = in.read()) {
+		    numFrames++;
+		    assertEquals(numFrames, frame.length);
+		    assertEquals(numFrames, frame[0], 0);
+		}
+	    }
+	    assertEquals(50, numFrames);
+	    peer.get(10, TimeUnit.SECONDS);
+	}
+	octave.close();
+    }
+
+    /**
+     * Test that {@link OctaveEngine#getAll(java.util.Collection)} 
+     * gets all variables in a single round trip 
+     * mapping those which do not exist to <code>null</code>. 
+     */
+    @Test public void testGetAll() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory()
+	    .setMetrics(true).getScriptEngine();
+	octave.eval("a = 1; b = [1 2; 3 4]; c = 'text';");
+	final long numGets = octave.getMetrics().getGet().getCount();
+	final Map<String, OctaveObject> vars = 
+	    octave.getAll(Arrays.asList("c", "missing", "a", "b"));
+	assertEquals(numGets + 1, octave.getMetrics().getGet().getCount());
+	assertEquals(Arrays.asList("c", "missing", "a", "b"), 
+		     new ArrayList<String>(vars.keySet()));
+	assertEquals(octave.get("a"), vars.get("a"));
+	assertEquals(octave.get("b"), vars.get("b"));
+	assertEquals(octave.get("c"), vars.get("c"));
+	assertNull(vars.get("missing"));
+	assertNull(octave.getAll(Arrays.asList("missing")).get("missing"));
+	octave.close();
+    }
+
+    /**
+     * Test that a timeout and cancellation interrupt the script 
+     * but keep the engine and its workspace. 
+     */
+    @Test public void testTimeout() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory().getScriptEngine();
+	octave.put("x", Octave.scalar(42));
+	long start = System.nanoTime();
+	try {
+	    octave.eval("pause(30);", Duration.ofMillis(500));
+	    fail("Expected OctaveTimeoutException");
+	} catch (OctaveTimeoutException e) {
+	    assertFalse(e.isDestroyed());
+	}
+	assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+	assertEquals(42, octave.get(OctaveDouble.class, "x").get(1), 0);
+	octave.eval("x = x + 1;", Duration.ofSeconds(10));
+	assertEquals(43, octave.get(OctaveDouble.class, "x").get(1), 0);
+
+	start = System.nanoTime();
+	final CompletableFuture<Void> pause = octave.unsafeEvalAsync("pause(30);");
+	Thread.sleep(500);
+	assertTrue(pause.cancel(true));
+	// queued after the cancelled one 
+	assertEquals(43, octave.getAsync(OctaveDouble.class, "x").get().get(1), 0);
+	assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+	octave.close();
+    }
+
+    /**
+     * Test that in watchdog mode an engine survives the death of octave 
+     * restoring variables and setup. 
+     */
+    @Test public void testWatchdog() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory()
+	    .setWatchdog(true).getScriptEngine();
+	octave.put("x", Octave.scalar(42));
+	octave.evalSetup("y = x + 1;");
+	try {
+	    octave.unsafeEval("exit(1);");
+	    fail("Expected OctaveIOException");
+	} catch (OctaveIOException e) {
+	    // octave died 
+	}
+	assertEquals(42, octave.get(OctaveDouble.class, "x").get(1), 0);
+	assertEquals(43, octave.get(OctaveDouble.class, "y").get(1), 0);
+	assertEquals(1, octave.getNumRestarts());
+	octave.close();
+	assertFalse(octave.isAlive());
+    }
+
+    /**
+     * Test caller-runs mode both below and above the threshold. 
+     */
+    @Test public void testCallerRuns() throws Exception {
+        final OctaveEngine octave = new OctaveEngineFactory()
+	    .setCallerRunsThreshold(1024).getScriptEngine();
+	octave.put("x", Octave.scalar(42));
+	assertEquals(42, octave.get(OctaveDouble.class, "x").get(1), 0);
+	// exceeds threshold: reading is handed over to executor 
+	final double[] data = new double[10000];
+	for (int i = 0; i < data.length; i++) {
+	    data[i] = i;
+	}
+	octave.put("y", new OctaveDouble(data, 1, data.length));
+	final OctaveDouble y = octave.get(OctaveDouble.class, "y");
+	assertEquals(data.length - 1, y.get(1, data.length), 0);
+	octave.close();
+    }
+
+    /**
+     * Test running all io on virtual threads if available, 
+     * else test that the factory refuses. 
+     */
+    @Test public void testVirtualThreads() throws Exception {
+	final OctaveEngineFactory factory = new OctaveEngineFactory();
+	if (!VirtualThreads.isAvailable()) {
+	    try {
+		factory.setVirtualThreads(true);
+		fail("Expected UnsupportedOperationException");
+	    } catch (UnsupportedOperationException e) {
+		// expected 
+	    }
+	    return;
+	}
+        final OctaveEngine octave = factory.setVirtualThreads(true)
+	    .getScriptEngine();
+	octave.put("x", Octave.scalar(42));
+	assertEquals(42, octave.get(OctaveDouble.class, "x").get(1), 0);
+	octave.close();
+    }
+
 }
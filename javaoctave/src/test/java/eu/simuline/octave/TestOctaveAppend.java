@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import eu.simuline.octave.type.Octave;
+
+/**
+ * Tests the scripts of {@link OctaveAppend} which needs no octave.
+ */
+public class TestOctaveAppend {
+
+    /**
+     * Tests that rows and columns are concatenated
+     * and that only the rows or columns to be kept are kept.
+     */
+    @Test public void testScript() {
+	final String rows = OctaveAppend.rows("x", Octave.scalar(1)).script("t");
+	assertTrue(rows.contains("x = [x; t];"));
+	assertTrue(rows.contains("x = t;"));
+	assertFalse(rows.contains("end - "));
+
+	final String window = OctaveAppend.rows("x", Octave.scalar(1), 100)
+	    .script("t");
+	assertTrue(window.contains("if rows(x) > 100\n"
+				   + "  x = x(end - 100 + 1:end, :);\n"));
+
+	final OctaveAppend append = OctaveAppend.columns("y", Octave.scalar(2), 3);
+	assertEquals("y", append.getName());
+	assertEquals(Octave.scalar(2), append.getBlock());
+	final String columns = append.script("t");
+	assertTrue(columns.contains("y = [y, t];"));
+	assertTrue(columns.contains("if columns(y) > 3\n"
+				    + "  y = y(:, end - 3 + 1:end);\n"));
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import eu.simuline.octave.type.Octave;
+import eu.simuline.octave.type.OctaveDouble;
+
+/**
+ * Test {@link OctaveEngineFactory}.
+ */
+public class TestOctaveEngineFactory {
+
+    /**
+     * Test that engines are handed out in prefork mode
+     * and started in parallel, each with a workspace of its own.
+     */
+    @Test public void testPrefork() {
+	final OctaveEngineFactory factory =
+	    new OctaveEngineFactory().setPrefork(1);
+	try {
+	    final OctaveEngine octave = factory.getScriptEngine();
+	    octave.put("x", Octave.scalar(1));
+	    assertEquals(1, octave.get(OctaveDouble.class, "x").get(1), 0);
+	    octave.close();
+
+	    final List<OctaveEngine> engines = factory.getScriptEngines(3);
+	    assertEquals(3, engines.size());
+	    for (int i = 0; i < engines.size(); i++) {
+		engines.get(i).put("x", Octave.scalar(i));
+	    }
+	    for (int i = 0; i < engines.size(); i++) {
+		final OctaveEngine engine = engines.get(i);
+		assertTrue(engine.isAlive());
+		assertEquals(i, engine.get(OctaveDouble.class, "x").get(1), 0);
+		engine.close();
+	    }
+	} finally {
+	    factory.setPrefork(0);
+	}
+    }
+
+    /**
+     * Test that negative numbers of engines are rejected.
+     */
+    @Test public void testNegative() {
+	final OctaveEngineFactory factory = new OctaveEngineFactory();
+	try {
+	    factory.setPrefork(-1);
+	    fail("Expected IllegalArgumentException");
+	} catch (final IllegalArgumentException e) {
+	    // expected
+	}
+	try {
+	    factory.getScriptEngines(-1);
+	    fail("Expected IllegalArgumentException");
+	} catch (final IllegalArgumentException e) {
+	    // expected
+	}
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import eu.simuline.octave.exception.OctaveException;
+import eu.simuline.octave.type.Octave;
+import eu.simuline.octave.type.OctaveDouble;
+
+/**
+ * Test {@link OctaveEnginePool}.
+ */
+public class TestOctaveEnginePool {
+
+    /**
+     * Test that warm-up variables survive reset
+     * whereas variables of a borrower are cleared.
+     */
+    @Test public void testResetKeepsWarmUp() {
+	final OctaveEnginePool pool =
+	    new OctaveEnginePool(new OctaveEngineFactory(), 1, "c = 42;");
+	try {
+	    try (OctaveEnginePool.Lease lease = pool.lease()) {
+		final OctaveEngine octave = lease.getEngine();
+		assertEquals(42, octave.get(OctaveDouble.class, "c").get(1), 0);
+		octave.put("x", Octave.scalar(1));
+	    }
+	    try (OctaveEnginePool.Lease lease = pool.lease()) {
+		final OctaveEngine octave = lease.getEngine();
+		assertNull(octave.get("x"));
+		assertEquals(42, octave.get(OctaveDouble.class, "c").get(1), 0);
+	    }
+	} finally {
+	    pool.close();
+	}
+    }
+
+    /**
+     * Test borrow with timeout and the statistics.
+     */
+    @Test public void testBorrowTimeout() {
+	final OctaveEnginePool pool =
+	    new OctaveEnginePool(new OctaveEngineFactory(), 1);
+	try {
+	    final OctaveEngine octave = pool.borrow();
+	    assertNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+	    OctaveEnginePool.Statistics stats = pool.getStatistics();
+	    assertEquals(1, stats.numBorrowed);
+	    assertEquals(1, stats.numBorrows);
+	    assertEquals(1, stats.numTimeouts);
+	    assertEquals(1.0, stats.getUtilization(), 0);
+	    pool.release(octave);
+	    stats = pool.getStatistics();
+	    assertEquals(0, stats.numBorrowed);
+	    assertNotNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+	} finally {
+	    pool.destroy();
+	}
+    }
+
+    /**
+     * Test that a dead engine is replaced.
+     */
+    @Test public void testReplaceDead() {
+	final OctaveEnginePool pool =
+	    new OctaveEnginePool(new OctaveEngineFactory(), 1);
+	try {
+	    final OctaveEngine octave = pool.borrow();
+	    octave.destroy();
+	    assertTrue(!octave.isAlive());
+	    pool.release(octave);
+	    final OctaveEngine repl = pool.borrow(30, TimeUnit.SECONDS);
+	    assertNotNull(repl);
+	    assertTrue(repl != octave);
+	    assertTrue(repl.isAlive());
+	    assertEquals(1, pool.getStatistics().numReplaced);
+	    pool.release(repl);
+	} finally {
+	    pool.close();
+	}
+	try {
+	    pool.borrow();
+	    fail("borrow from closed pool shall fail. ");
+	} catch (IllegalStateException e) {
+	    // expected
+	}
+    }
+
+    /**
+     * Test that giving back an engine twice fails.
+     */
+    @Test public void testDoubleRelease() {
+	final OctaveEnginePool pool =
+	    new OctaveEnginePool(new OctaveEngineFactory(), 1);
+	try {
+	    final OctaveEngine octave = pool.borrow();
+	    pool.release(octave);
+	    try {
+		pool.release(octave);
+		fail("double release shall fail. ");
+	    } catch (IllegalStateException e) {
+		// expected
+	    }
+	    assertEquals(0, pool.getStatistics().numBorrowed);
+	    assertTrue(octave == pool.borrow(10, TimeUnit.MILLISECONDS));
+	    assertNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+	} finally {
+	    pool.destroy();
+	}
+    }
+
+    /**
+     * Test that a failure creating a replacement
+     * is thrown to the borrower waiting.
+     */
+    @Test public void testReplaceFails() {
+	final OctaveEngineFactory factory = new OctaveEngineFactory();
+	final OctaveEnginePool pool = new OctaveEnginePool(factory, 1);
+	try {
+	    final OctaveEngine octave = pool.borrow();
+	    factory.setOctaveProgramFile(new File("/nonexistent/octave"));
+	    octave.destroy();
+	    pool.release(octave);
+	    try {
+		pool.borrow();
+		fail("borrow without engine shall fail. ");
+	    } catch (OctaveException e) {
+		// expected
+	    }
+	} finally {
+	    pool.destroy();
+	}
+    }
+
+    /**
+     * Test that a bounded borrow does not recreate a lost engine itself
+     * but returns within its timeout
+     * and that the engine is recreated asynchronously.
+     */
+    @Test public void testBoundedBorrowWithLostEngine() {
+	final OctaveEngineFactory factory = new OctaveEngineFactory();
+	// makes creating an engine take longer than the timeout below
+	final OctaveEnginePool pool =
+	    new OctaveEnginePool(factory, 1, "pause(2);");
+	try {
+	    final OctaveEngine octave = pool.borrow();
+	    factory.setOctaveProgramFile(new File("/nonexistent/octave"));
+	    octave.destroy();
+	    pool.release(octave);
+	    try {
+		pool.borrow();
+		fail("borrow without engine shall fail. ");
+	    } catch (OctaveException e) {
+		// expected: engine is lost
+	    }
+	    factory.setOctaveProgramFile(null);
+
+	    final long start = System.nanoTime();
+	    assertNull(pool.borrow(200, TimeUnit.MILLISECONDS));
+	    final long waited = System.nanoTime() - start;
+	    assertTrue("bounded borrow took " + waited + "ns. ",
+		       waited < TimeUnit.MILLISECONDS.toNanos(1000));
+
+	    final OctaveEngine repl = pool.borrow(30, TimeUnit.SECONDS);
+	    assertNotNull(repl);
+	    pool.release(repl);
+	} finally {
+	    pool.destroy();
+	}
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import eu.simuline.octave.type.Octave;
+import eu.simuline.octave.type.OctaveDouble;
+
+/**
+ * Tests {@link OctaveJournal} which needs no octave.
+ */
+public class TestOctaveJournal {
+
+    /**
+     * Replays <code>journal</code> into a list of strings
+     * describing the requests in order.
+     */
+    private static List<String> replay(final OctaveJournal journal) {
+	final List<String> res = new ArrayList<String>();
+	journal.replay(vars -> res.add("put " + vars.keySet()),
+		       script -> res.add("eval " + script));
+	return res;
+    }
+
+    /**
+     * Tests that puts between setup scripts are merged
+     * but never reordered across setup scripts.
+     */
+    @Test public void testReplay() {
+	final OctaveJournal journal = new OctaveJournal();
+	journal.put(Collections.singletonMap("x", Octave.scalar(1)));
+	journal.put(Collections.singletonMap("y", Octave.scalar(2)));
+	journal.put(Collections.singletonMap("x", Octave.scalar(3)));
+	journal.evalSetup("z = x + y;");
+	journal.put(Collections.singletonMap("x", Octave.scalar(4)));
+	journal.put(Collections.singletonMap("x", Octave.scalar(5)));
+	assertEquals(3, journal.size());
+	assertEquals(List.of("put [x, y]", "eval z = x + y;", "put [x]"),
+		     replay(journal));
+
+	// the latest value of x before the setup script is replayed
+	final List<Double> xs = new ArrayList<Double>();
+	journal.replay(vars -> xs.add(((OctaveDouble) vars.get("x")).get(1)),
+		       script -> { });
+	assertEquals(List.of(3.0, 5.0), xs);
+    }
+
+    /**
+     * Tests that former values are dropped
+     * unless a setup script in between mentions the variable
+     * and that forgotten variables are no longer replayed.
+     */
+    @Test public void testPrune() {
+	final OctaveJournal journal = new OctaveJournal();
+	for (int i = 0; i < 10; i++) {
+	    journal.put(Collections.singletonMap("x", Octave.scalar(i)));
+	    journal.evalSetup("pkg load statistics");
+	}
+	journal.put(Collections.singletonMap("x", Octave.scalar(10)));
+	assertEquals(11, journal.size());
+	final List<String> expected = new ArrayList<String>();
+	for (int i = 0; i < 10; i++) {
+	    expected.add("eval pkg load statistics");
+	}
+	expected.add("put [x]");
+	assertEquals(expected, replay(journal));
+
+	journal.evalSetup("y = 2 * x;");
+	journal.put(Collections.singletonMap("x", Octave.scalar(11)));
+	journal.put(Collections.singletonMap("xx", Octave.scalar(12)));
+	assertEquals(13, journal.size());
+
+	journal.forget("x");
+	assertEquals(12, journal.size());
+	expected.remove(expected.size() - 1);
+	expected.add("eval y = 2 * x;");
+	expected.add("put [xx]");
+	assertEquals(expected, replay(journal));
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Benchmark for the throughput of reading large responses
+ * as produced by <code>save -text</code> for a large matrix,
+ * comparing {@link OctaveProcessReader}
+ * with the former reader based on {@link BufferedReader#readLine()}.
+ * This needs no octave and is no test, so it is not run by surefire.
+ * Run it via its main method.
+ */
+public final class BenchmarkOctaveProcessReader {
+
+    private static final String SPACER =
+	"-=+X+=- Octave.java spacer -=+X+=- 1234567 -=+X+=-";
+
+    private static final int ROWS = 2000;
+
+    private static final int COLS = 500;
+
+    private static final int NUM_RUNS = 10;
+
+    private BenchmarkOctaveProcessReader() {
+    }
+
+    /**
+     * The former reader: reads line by line,
+     * compares each line with the spacer
+     * and copies it into a new {@link StringBuffer}.
+     */
+    static final class LineBasedReader extends Reader {
+	private final BufferedReader reader;
+	private StringBuffer buffer = null;
+	private boolean firstLine = true;
+	private boolean eof = false;
+
+	LineBasedReader(final BufferedReader reader) {
+	    this.reader = reader;
+	}
+
+	@Override
+	public int read(final char[] cbuf, final int off, final int len)
+	    throws IOException {
+	    if (this.eof) {
+		return -1;
+	    }
+	    if (this.buffer == null) {
+		final String line = this.reader.readLine();
+		if (line == null) {
+		    throw new IOException("Pipe to octave-process broken");
+		}
+		if (SPACER.equals(line)) {
+		    this.eof = true;
+		    return -1;
+		}
+		this.buffer = new StringBuffer(line.length() + 1);
+		if (this.firstLine) {
+		    this.firstLine = false;
+		} else {
+		    this.buffer.append('\n');
+		}
+		this.buffer.append(line);
+	    }
+	    final int charsRead = Math.min(this.buffer.length(), len);
+	    this.buffer.getChars(0, charsRead, cbuf, off);
+	    if (charsRead == this.buffer.length()) {
+		this.buffer = null;
+	    } else {
+		this.buffer.delete(0, charsRead);
+	    }
+	    return charsRead;
+	}
+
+	@Override
+	public void close() {
+	    // not needed
+	}
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *    ignored.
+     * @throws IOException
+     *    if reading fails which should not happen.
+     */
+    public static void main(final String[] args) throws IOException {
+	final byte[] response = createResponse();
+	final double mbytes = response.length / (1024.0 * 1024.0);
+	System.out.printf("response size: %.1f MB%n", mbytes);
+	for (int run = 0; run < NUM_RUNS; run++) {
+	    long start = System.nanoTime();
+	    final long sum1 = consume(new LineBasedReader(new BufferedReader
+		(new InputStreamReader(new ByteArrayInputStream(response),
+				       StandardCharsets.UTF_8))));
+	    final double secsOld = (System.nanoTime() - start) / 1e9;
+
+	    start = System.nanoTime();
+	    final long sum2 = consume(new OctaveProcessReader
+				      (new ByteArrayInputStream(response),
+				       StandardCharsets.UTF_8)
+				      .responseReader(SPACER));
+	    final double secsNew = (System.nanoTime() - start) / 1e9;
+	    if (sum1 != sum2) {
+		throw new IllegalStateException("Readers differ in length. ");
+	    }
+	    System.out.printf("run %2d: readLine %7.1f MB/s, " +
+			      "byte scanning %7.1f MB/s%n",
+			      run, mbytes / secsOld, mbytes / secsNew);
+	}
+    }
+
+    /**
+     * Returns a response as for <code>save -text - x</code>
+     * for a random matrix <code>x</code> followed by the spacer.
+     */
+    private static byte[] createResponse() {
+	final Random random = new Random(4711);
+	final StringBuilder res = new StringBuilder();
+	res.append("# Created by Octave 8.4.0\n");
+	res.append("# name: x\n# type: matrix\n");
+	res.append("# rows: ").append(ROWS).append('\n');
+	res.append("# columns: ").append(COLS).append('\n');
+	for (int i = 0; i < ROWS; i++) {
+	    for (int j = 0; j < COLS; j++) {
+		res.append(' ').append(random.nextDouble());
+	    }
+	    res.append('\n');
+	}
+	res.append("\n\n").append(SPACER).append('\n');
+	return res.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads <code>reader</code> to its end as read functors do
+     * and returns the number of chars read. 
+     * Equivalence of the readers is tested in {@link TestOctaveProcessReader}.
+     */
+    private static long consume(final Reader reader) throws IOException {
+	final char[] cbuf = new char[4096];
+	long sum = 0;
+	int len;
+	while ((len = reader.read(cbuf)) != -1) {
+	    // cheap, so that reading dominates 
+	    sum += len;
+	}
+	reader.close();
+	return sum;
+    }
+
+}
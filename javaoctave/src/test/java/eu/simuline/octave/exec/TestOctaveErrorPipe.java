@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link OctaveErrorPipe} without octave,
+ * writing the error stream through a pipe.
+ */
+public class TestOctaveErrorPipe {
+
+    /**
+     * Tests that messages are split, tagged and collected between the markers
+     * and that the markers are not forwarded.
+     */
+    @Test public void testDiagnostics() throws IOException {
+	final PipedWriter stderr = new PipedWriter();
+	final StringWriter forwarded = new StringWriter();
+	final OctaveErrorPipe pipe = OctaveErrorPipe
+	    .start(new PipedReader(stderr), forwarded, Thread::new);
+
+	pipe.collect(1);
+	pipe.setRequest(1);
+	stderr.write(OctaveErrorPipe.MARKER + "1\n");
+	stderr.write("warning: foo\nerror: bar\n    called from\n\tf at line 1\n");
+	stderr.write("no newline" + OctaveErrorPipe.MARKER + "1\n");
+	stderr.flush();
+	List<OctaveDiagnostic> diags = pipe.diagnostics(1, 2000);
+	assertEquals(3, diags.size());
+	assertEquals(OctaveDiagnostic.Severity.WARNING, diags.get(0).getSeverity());
+	assertEquals("warning: foo", diags.get(0).getMessage());
+	assertEquals(OctaveDiagnostic.Severity.ERROR, diags.get(1).getSeverity());
+	assertEquals("error: bar\n    called from\n\tf at line 1",
+		     diags.get(1).getMessage());
+	assertEquals(OctaveDiagnostic.Severity.OTHER, diags.get(2).getSeverity());
+	assertEquals("no newline", diags.get(2).getMessage());
+	assertEquals(1, diags.get(2).getRequestId());
+
+	// messages of requests not collected are forwarded only, 
+	// even if they arrive after the next request is tagged 
+	pipe.setRequest(2);
+	pipe.collect(3);
+	pipe.setRequest(3);
+	stderr.write("warning: uncollected\n");
+	stderr.write(OctaveErrorPipe.MARKER + "3\n");
+	stderr.write("warning: baz\r\n" + OctaveErrorPipe.MARKER + "3\n");
+	stderr.flush();
+	diags = pipe.diagnostics(3, 2000);
+	assertEquals(1, diags.size());
+	assertEquals("warning: baz", diags.get(0).getMessage());
+	assertEquals(3, diags.get(0).getRequestId());
+
+	stderr.write("tail");
+	stderr.close();
+	pipe.close();
+	assertEquals("warning: foo\nerror: bar\n    called from\n\tf at line 1\n"
+		     + "no newline"
+		     + "warning: uncollected\nwarning: baz\r\ntail",
+		     forwarded.toString());
+    }
+
+    /**
+     * Tests that a long line exceeding the ring buffer is forwarded
+     * up to the dropped characters
+     * and that the pipe terminates at end of stream
+     * releasing requests waiting for their marker.
+     */
+    @Test public void testOverflowAndEndOfStream() throws IOException {
+	final PipedWriter stderr = new PipedWriter();
+	final StringWriter forwarded = new StringWriter();
+	final OctaveErrorPipe pipe = OctaveErrorPipe
+	    .start(new PipedReader(stderr), forwarded, Thread::new);
+	pipe.collect(1);
+	pipe.setRequest(1);
+	stderr.write(OctaveErrorPipe.MARKER + "1\n");
+	final StringBuilder str = new StringBuilder();
+	for (int i = 0; i < 3 * OctaveErrorPipe.RING_CAPACITY; i++) {
+	    str.append((char) ('a' + i % 26));
+	}
+	str.append('\n');
+	stderr.write(str.toString());
+	stderr.close();
+	final List<OctaveDiagnostic> diags = pipe.diagnostics(1, 2000);
+	assertEquals(3, diags.size());
+	pipe.close();
+	final String out = forwarded.toString();
+	// either everything arrived or the oldest characters are dropped
+	assertEquals(true, out.length() <= str.length());
+	assertEquals(true, str.toString().endsWith(out));
+    }
+
+    /**
+     * Tests that closing gives up waiting
+     * if the error stream never ends,
+     * e.g. because it is inherited by a child process of octave.
+     */
+    @Test public void testCloseBounded() throws IOException {
+	final PipedWriter stderr = new PipedWriter();
+	final OctaveErrorPipe pipe = OctaveErrorPipe
+	    .start(new PipedReader(stderr), new StringWriter(), run -> {
+		    final Thread thread = new Thread(run);
+		    thread.setDaemon(true);
+		    return thread;
+		});
+	stderr.write("warning: pending\n");
+	stderr.flush();
+	final long start = System.nanoTime();
+	pipe.close();
+	final long millis = (System.nanoTime() - start) / 1_000_000;
+	assertTrue(millis >= OctaveErrorPipe.CLOSE_TIMEOUT_MILLIS);
+	assertTrue(millis < 2 * OctaveErrorPipe.CLOSE_TIMEOUT_MILLIS);
+    }
+
+}
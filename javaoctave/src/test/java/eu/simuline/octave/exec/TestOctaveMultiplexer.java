@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link OctaveMultiplexer} without octave,
+ * using <code>cat</code> to echo what is written as a response.
+ */
+public class TestOctaveMultiplexer {
+
+    private static final String SPACER =
+	"-=+X+=- Octave.java spacer -=+X+=- 1234567 -=+X+=-";
+
+    private static void write(final OutputStream stdin, final String str)
+	throws IOException {
+	stdin.write(str.getBytes(StandardCharsets.UTF_8));
+	stdin.flush();
+    }
+
+    private static String get(final CompletableFuture<byte[]> future)
+	throws InterruptedException, ExecutionException, TimeoutException {
+	return new String(future.get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8);
+    }
+
+    @Test public void testResponses() throws Exception {
+	final Process cat = new ProcessBuilder("cat").start();
+	final StringWriter stderr = new StringWriter();
+	final OctaveErrorPipe pipe =
+	    OctaveErrorPipe.fed(StandardCharsets.UTF_8, stderr);
+	final OctaveMultiplexer.Channel channel =
+	    OctaveMultiplexer.register(cat, pipe);
+	final OutputStream stdin = cat.getOutputStream();
+
+	// a response arriving in pieces, the spacer within a line ignored
+	CompletableFuture<byte[]> response = channel.expect(SPACER);
+	write(stdin, "ans = 1\nx" + SPACER + "\n");
+	write(stdin, "\n" + SPACER.substring(0, 10));
+	Thread.sleep(50);
+	assertFalse(response.isDone());
+	write(stdin, SPACER.substring(10) + "\r");
+	Thread.sleep(50);
+	assertFalse(response.isDone());
+	write(stdin, "\nnext");
+	assertEquals("ans = 1\nx" + SPACER + "\n\n" + SPACER + "\r\n",
+		     get(response));
+
+	// output before expecting is kept
+	write(stdin, "\n" + SPACER + "\n");
+	Thread.sleep(50);
+	response = channel.expect(SPACER);
+	assertEquals("next\n" + SPACER + "\n", get(response));
+
+	// at the end, a response awaited fails and the rest is kept
+	response = channel.expect(SPACER);
+	write(stdin, "rest\n");
+	stdin.close();
+	assertEquals("rest\n", new String(channel.end().get(5, TimeUnit.SECONDS),
+					  StandardCharsets.UTF_8));
+	try {
+	    response.get(5, TimeUnit.SECONDS);
+	    fail("Expected ExecutionException");
+	} catch (final ExecutionException e) {
+	    assertEquals(IOException.class, e.getCause().getClass());
+	}
+	pipe.close();
+	assertEquals("", stderr.toString());
+    }
+
+    /**
+     * Tests that a response withdrawn, e.g. because writing failed,
+     * is cancelled and no longer matched.
+     */
+    @Test public void testCancel() throws Exception {
+	final Process cat = new ProcessBuilder("cat").start();
+	final OctaveErrorPipe pipe =
+	    OctaveErrorPipe.fed(StandardCharsets.UTF_8, new StringWriter());
+	final OctaveMultiplexer.Channel channel =
+	    OctaveMultiplexer.register(cat, pipe);
+	final OutputStream stdin = cat.getOutputStream();
+
+	final CompletableFuture<byte[]> cancelled = channel.expect(SPACER);
+	channel.cancel(cancelled);
+	assertTrue(cancelled.isCancelled());
+	write(stdin, "x\n" + SPACER + "\n");
+	Thread.sleep(50);
+
+	final CompletableFuture<byte[]> response = channel.expect(SPACER);
+	// cancelling a response no longer awaited does nothing
+	channel.cancel(cancelled);
+	assertEquals("x\n" + SPACER + "\n", get(response));
+	stdin.close();
+	channel.end().get(5, TimeUnit.SECONDS);
+	pipe.close();
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link OctaveProcessReader}
+ * against the former line based implementation.
+ */
+public class TestOctaveProcessReader {
+
+    private static final String SPACER1 =
+	"-=+X+=- Octave.java spacer -=+X+=- 1234567 -=+X+=-";
+
+    private static final String SPACER2 =
+	"-=+X+=- Octave.java spacer -=+X+=- -7654321 -=+X+=-";
+
+    /**
+     * An input stream delivering at most one byte per read.
+     */
+    static final class TrickleInputStream extends FilterInputStream {
+	TrickleInputStream(final InputStream in) {
+	    super(in);
+	}
+
+	@Override
+	public int read(final byte[] buf, final int off, final int len)
+	    throws IOException {
+	    return super.read(buf, off, Math.min(len, 1));
+	}
+    }
+
+    /**
+     * The former implementation: read lines up to the spacer
+     * and join them with newline.
+     */
+    static String readLineBased(final String stream, final String spacer)
+	throws IOException {
+	final BufferedReader reader = new BufferedReader(new StringReader(stream));
+	final StringBuilder res = new StringBuilder();
+	boolean first = true;
+	String line;
+	while (!spacer.equals(line = reader.readLine())) {
+	    if (line == null) {
+		throw new IOException("Pipe to octave-process broken");
+	    }
+	    if (!first) {
+		res.append('\n');
+	    }
+	    first = false;
+	    res.append(line);
+	}
+	return res.toString();
+    }
+
+    static String readAll(final Reader reader, final int chunk)
+	throws IOException {
+	final StringWriter res = new StringWriter();
+	final char[] cbuf = new char[chunk];
+	int len;
+	while ((len = reader.read(cbuf)) != -1) {
+	    res.write(cbuf, 0, len);
+	}
+	reader.close();
+	return res.toString();
+    }
+
+    /**
+     * Checks that for the given output of octave
+     * the new implementation coincides with the former one
+     * for various buffer sizes, chunks and stream behavior.
+     */
+    private static void check(final String output) throws IOException {
+	final String stream = output + "\n" + SPACER1 + "\n";
+	final String expected = readLineBased(stream, SPACER1);
+	final byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+	for (int bufSize : new int[] {128, 1024, OctaveProcessReader.BUF_SIZE}) {
+	    for (boolean trickle : new boolean[] {false, true}) {
+		for (int chunk : new int[] {1, 7, 4096}) {
+		    InputStream in = new ByteArrayInputStream(bytes);
+		    if (trickle) {
+			in = new TrickleInputStream(in);
+		    }
+		    final OctaveProcessReader opr =
+			new OctaveProcessReader(in, StandardCharsets.UTF_8, bufSize);
+		    assertEquals(expected,
+				 readAll(opr.responseReader(SPACER1), chunk));
+		    assertEquals(false, opr.ready());
+		}
+	    }
+	}
+    }
+
+    @Test public void testSimple() throws IOException {
+	check("");
+	check("ans = 42");
+	check("ans = 42\n");
+	check("\n\n");
+	check("a\nb\n\nc");
+	check("no newline at end");
+    }
+
+    @Test public void testLineTerminators() throws IOException {
+	check("a\r\nb\r\n");
+	check("a\rb\r");
+	check("a\r\r\nb");
+	check("\r");
+	check("\r\n");
+	check("a\n\rb");
+    }
+
+    @Test public void testPartialSpacer() throws IOException {
+	check(SPACER1.substring(0, 20));
+	check("\n" + SPACER1.substring(0, 30) + "\n");
+	check("\n-=+X+=- Octave.java spacer -=+X+=- 1234567 -=+X+=- not quite");
+	check(SPACER2);
+    }
+
+    @Test public void testNonAscii() throws IOException {
+	check("äöü € 😀");
+	final StringBuilder str = new StringBuilder();
+	for (int i = 0; i < 300; i++) {
+	    str.append("x€\n");
+	}
+	check(str.toString());
+    }
+
+    @Test public void testLarge() throws IOException {
+	final Random random = new Random(4711);
+	final StringBuilder str = new StringBuilder();
+	str.append("# name: x\n# type: matrix\n# rows: 1000\n# columns: 20\n");
+	for (int i = 0; i < 1000; i++) {
+	    for (int j = 0; j < 20; j++) {
+		str.append(' ').append(random.nextDouble());
+	    }
+	    str.append('\n');
+	}
+	check(str.toString());
+    }
+
+    /**
+     * Tests consecutive responses as occurring in pipelined mode
+     * and reading a line afterwards as done when closing.
+     */
+    @Test public void testConsecutive() throws IOException {
+	final String stream = "first\n" + SPACER1 + "\n"
+	    + "\n" + SPACER2 + "\n"
+	    + "second\r\n\n" + SPACER1 + "\r\n"
+	    + "\n";
+	final OctaveProcessReader opr = new OctaveProcessReader
+	    (new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)),
+	     StandardCharsets.UTF_8, 128);
+	assertEquals("first",     readAll(opr.responseReader(SPACER1), 5));
+	assertEquals(true, opr.ready());
+	assertEquals("",          readAll(opr.responseReader(SPACER2), 5));
+	assertEquals("second\n",  readAll(opr.responseReader(SPACER1), 5));
+	assertEquals("", opr.readLine());
+	assertNull(opr.readLine());
+    }
+
+    /**
+     * Tests that closing without reading slurps the response.
+     */
+    @Test public void testCloseSlurps() throws IOException {
+	final String stream = "ignored\nignored\n" + SPACER1 + "\n"
+	    + "next\n" + SPACER2 + "\n";
+	final OctaveProcessReader opr = new OctaveProcessReader
+	    (new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)),
+	     StandardCharsets.UTF_8, 128);
+	opr.responseReader(SPACER1).close();
+	assertEquals("next", readAll(opr.responseReader(SPACER2), 100));
+    }
+
+    /**
+     * Tests that a stream ending before the spacer is an error.
+     */
+    @Test public void testBroken() throws IOException {
+	final OctaveProcessReader opr = new OctaveProcessReader
+	    (new ByteArrayInputStream("abc\n".getBytes(StandardCharsets.UTF_8)),
+	     StandardCharsets.UTF_8);
+	try {
+	    readAll(opr.responseReader(SPACER1), 100);
+	    fail("Expected IOException");
+	} catch (IOException e) {
+	    assertEquals("Pipe to octave-process broken", e.getMessage());
+	}
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.exec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link StatusReadFunctor} without octave.
+ */
+public class TestStatusReadFunctor {
+
+    /**
+     * Returns a reader returning the characters of <code>str</code>
+     * one by one to exercise all positions of the separator.
+     */
+    private static Reader slowReader(final String str) {
+	return new StringReader(str) {
+	    @Override
+	    public int read(final char[] cbuf, final int off, final int len)
+		throws IOException {
+		return super.read(cbuf, off, Math.min(len, 1));
+	    }
+	};
+    }
+
+    /**
+     * Reads <code>str</code> via a status read functor
+     * forwarding the output to <code>output</code>.
+     */
+    private static StatusReadFunctor read(final String str,
+					  final StringWriter output)
+	throws IOException {
+	final StatusReadFunctor status =
+	    new StatusReadFunctor(new WriterReadFunctor(output));
+	status.doReads(slowReader(str));
+	return status;
+    }
+
+    /**
+     * Tests that the output is forwarded up to the separator
+     * including parts of the separator which turn out not to be one.
+     */
+    @Test public void testOk() throws IOException {
+	final String out = "ans = 1\n\n\n\u0001javaoctave-stat\n\u0001x\n";
+	final StringWriter output = new StringWriter();
+	final StatusReadFunctor status =
+	    read(out + StatusReadFunctor.SEPARATOR + "ok\n", output);
+	assertEquals(out, output.toString());
+	assertTrue(status.hasStatus());
+	assertNull(status.getErrorMessage());
+    }
+
+    /**
+     * Tests that the error message is read
+     * also if the wrapped functor does not read the output.
+     */
+    @Test public void testError() throws IOException {
+	final StatusReadFunctor status = new StatusReadFunctor(reader -> { });
+	status.doReads(new StringReader("no newline"
+					+ StatusReadFunctor.SEPARATOR
+					+ "error\nerror: 'x' undefined\n"));
+	assertTrue(status.hasStatus());
+	assertEquals("error: 'x' undefined\n", status.getErrorMessage());
+    }
+
+    /**
+     * Tests that missing status is detected
+     * and all output is forwarded nevertheless.
+     */
+    @Test public void testMissing() throws IOException {
+	final String out = "interrupted\n";
+	final StringWriter output = new StringWriter();
+	StatusReadFunctor status = read(out, output);
+	assertEquals(out, output.toString());
+	assertFalse(status.hasStatus());
+
+	output.getBuffer().setLength(0);
+	status = read(out + StatusReadFunctor.SEPARATOR.substring(0, 3), output);
+	assertEquals(out + StatusReadFunctor.SEPARATOR.substring(0, 3),
+		     output.toString());
+	assertFalse(status.hasStatus());
+    }
+
+}
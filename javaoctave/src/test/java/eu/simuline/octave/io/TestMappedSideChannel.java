@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.type.Octave;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveInt;
+import eu.simuline.octave.type.OctaveLong;
+import eu.simuline.octave.type.OctaveObject;
+
+/**
+ * Tests {@link MappedSideChannel} without octave.
+ */
+public class TestMappedSideChannel {
+
+    /**
+     * Writes <code>value</code> and reads it back 
+     * as if octave had written it with class and dimensions 
+     * given by <code>spec</code>. 
+     */
+    private static OctaveObject roundTrip(final MappedSideChannel channel,
+					  final OctaveObject value,
+					  final String spec) throws IOException {
+	final File file = channel.createFile();
+	try {
+	    final String script = channel.write("x", value, file);
+	    assertTrue(script, script.contains("x = reshape(fread("));
+	    return MappedSideChannel.read(file, spec);
+	} finally {
+	    assertTrue(file.delete());
+	}
+    }
+
+    /**
+     * Tests that data is written and read back bit-exact 
+     * and that the threshold applies. 
+     */
+    @Test public void testRoundTrip() throws IOException {
+	final MappedSideChannel channel = new MappedSideChannel(null, 16);
+	final OctaveDouble doubles = new OctaveDouble(new double[] {
+		0.1, Double.NaN, -0.0, Double.MAX_VALUE, 1e-300, 7}, 3, 1, 2);
+	assertTrue(channel.isMapped(doubles));
+	assertEquals(doubles, roundTrip(channel, doubles, " double 3 1 2"));
+
+	final OctaveInt ints = new OctaveInt(new int[] {
+		Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE}, 2, 2);
+	assertTrue(channel.isMapped(ints));
+	assertEquals(ints, roundTrip(channel, ints, " int32 2 2"));
+
+	final OctaveLong longs = new OctaveLong(new long[] {
+		Long.MIN_VALUE, Long.MAX_VALUE}, 1, 2);
+	assertTrue(channel.isMapped(longs));
+	assertEquals(longs, roundTrip(channel, longs, " int64 1 2"));
+
+	assertFalse(channel.isMapped(Octave.scalar(1)));
+	assertFalse(channel.isMapped(new OctaveInt(new int[] {1, 2, 3}, 1, 3)));
+	assertFalse(channel.isMapped(Octave.bool(true)));
+    }
+
+    /**
+     * Tests that a matrix is not transferred by the side channel 
+     * if there is no space left in its directory. 
+     */
+    @Test public void testNoSpace() {
+	final File dir = new File(MappedSideChannel.defaultDir(), 
+				  "javaoctave-missing-dir");
+	assertFalse(dir.exists());
+	final MappedSideChannel channel = new MappedSideChannel(dir, 16);
+	assertFalse(channel.isMapped(new OctaveDouble(new double[] {
+		    1, 2, 3, 4}, 2, 2)));
+    }
+
+    /**
+     * Tests that a file shorter than specified 
+     * and malformed specifications are rejected. 
+     */
+    @Test public void testMalformed() throws IOException {
+	final MappedSideChannel channel = new MappedSideChannel(null, 8);
+	final File file = channel.createFile();
+	try {
+	    for (String spec : new String[] {" double 2 2", " double 1", 
+					     " logical 0 0", " double 1 x"}) {
+		try {
+		    MappedSideChannel.read(file, spec);
+		    fail("Expected OctaveParseException for '" + spec + "'");
+		} catch (OctaveParseException e) {
+		    // expected 
+		}
+	    }
+	} finally {
+	    assertTrue(file.delete());
+	}
+	try {
+	    new MappedSideChannel(null, 0);
+	    fail("Expected IllegalArgumentException");
+	} catch (IllegalArgumentException e) {
+	    // expected 
+	}
+    }
+
+}
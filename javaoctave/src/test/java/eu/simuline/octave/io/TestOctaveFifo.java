@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link OctaveFifo} without octave 
+ * creating the FIFO by the command <code>mkfifo</code> 
+ * and with java on both sides. 
+ * Skipped where there is no such command. 
+ */
+public class TestOctaveFifo {
+
+    /**
+     * Creates a FIFO by the command <code>mkfifo</code> 
+     * and skips the test if this fails. 
+     */
+    private static OctaveFifo mkfifo() throws Exception {
+	final OctaveFifo fifo = OctaveFifo.create();
+	boolean created;
+	try {
+	    created = new ProcessBuilder("mkfifo", fifo.getFile().getPath())
+		.start().waitFor() == 0;
+	} catch (IOException e) {
+	    created = false;
+	}
+	if (!created) {
+	    fifo.close();
+	}
+	assumeTrue("mkfifo not available", created);
+	return fifo;
+    }
+
+    /**
+     * Tests that frames are read as written 
+     * up to the terminating frame. 
+     */
+    @Test public void testFrames() throws Exception {
+	final double[] data = {
+	    1.0 / 3, Double.NaN, Double.NEGATIVE_INFINITY, -0.0, 1e300};
+	try (OctaveFifo fifo = mkfifo()) {
+	    final CompletableFuture<Void> writer =
+		CompletableFuture.runAsync(() -> {
+			try (OctaveFifo.Output out =
+			     fifo.openOutput(new CompletableFuture<Void>())) {
+			    out.write(data);
+			    out.write(data, 1, 3);
+			    out.write(data, 4, 1);
+			} catch (IOException e) {
+			    throw new IllegalStateException(e);
+			}
+		    });
+	    try (OctaveFifo.Input in = fifo.openInput(writer)) {
+		assertArrayEquals(data, in.read(), 0);
+		assertArrayEquals(new double[] {
+			Double.NaN, Double.NEGATIVE_INFINITY, -0.0},
+		    in.read(), 0);
+		assertArrayEquals(new double[] {1e300}, in.read(), 0);
+		assertNull(in.read());
+	    }
+	    writer.get(10, TimeUnit.SECONDS);
+	}
+    }
+
+    /**
+     * Writes <code>bytes</code> to <code>fifo</code> raw, 
+     * i.e. not in frames. 
+     */
+    private static CompletableFuture<Void> writeRaw(final OctaveFifo fifo,
+						    final byte[] bytes) {
+	return CompletableFuture.runAsync(() -> {
+		try (FileChannel out = FileChannel
+		     .open(fifo.getFile().toPath(), StandardOpenOption.WRITE)) {
+		    out.write(ByteBuffer.wrap(bytes));
+		} catch (IOException e) {
+		    throw new IllegalStateException(e);
+		}
+	    });
+    }
+
+    /**
+     * Tests that a truncated number of elements 
+     * and an invalid number of elements are rejected. 
+     */
+    @Test public void testMalformed() throws Exception {
+	try (OctaveFifo fifo = mkfifo()) {
+	    final CompletableFuture<Void> writer = 
+		writeRaw(fifo, new byte[] {1, 0});
+	    try (OctaveFifo.Input in = fifo.openInput(writer)) {
+		in.read();
+		fail("Expected EOFException");
+	    } catch (EOFException e) {
+		// expected 
+	    }
+	    writer.get(10, TimeUnit.SECONDS);
+	}
+	try (OctaveFifo fifo = mkfifo()) {
+	    final CompletableFuture<Void> writer = writeRaw
+		(fifo, ByteBuffer.allocate(Integer.BYTES)
+		 .order(ByteOrder.nativeOrder()).putInt(-1).array());
+	    try (OctaveFifo.Input in = fifo.openInput(writer)) {
+		in.read();
+		fail("Expected IOException");
+	    } catch (IOException e) {
+		assertFalse(e instanceof EOFException);
+	    }
+	    writer.get(10, TimeUnit.SECONDS);
+	}
+    }
+
+    /**
+     * Tests that opening does not block forever 
+     * if the peer completes without opening the FIFO, 
+     * and that the FIFO is deleted on closing. 
+     */
+    @Test public void testPeerFailed() throws Exception {
+	final OctaveFifo fifo = mkfifo();
+	final CompletableFuture<Void> peer = new CompletableFuture<Void>();
+	CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS)
+	    .execute(() -> peer.completeExceptionally
+		     (new IllegalStateException("failed before fopen")));
+	try (OctaveFifo.Input in = fifo.openInput(peer)) {
+	    assertNull(in.read());
+	}
+	assertTrue(fifo.getFile().exists());
+	fifo.close();
+	assertFalse(fifo.getFile().exists());
+    }
+
+}
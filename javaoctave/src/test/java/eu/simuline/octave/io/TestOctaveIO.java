@@ -1,14 +1,23 @@
 package eu.simuline.octave.io;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import eu.simuline.octave.exception.OctaveParseException;
 import eu.simuline.octave.type.Octave;
 import eu.simuline.octave.type.OctaveDouble;
 import eu.simuline.octave.type.OctaveObject;
+import eu.simuline.octave.type.OctaveString;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
@@ -47,4 +56,130 @@ public class TestOctaveIO {
         }
     }
 
+    /**
+     * Test that {@link DataReadFunctor} reads the replies 
+     * of {@link OctaveIO#get(String)}: 
+     * missing variable, scalar and string fast path and text format. 
+     */
+    @Test public void testDataReadFunctor() throws IOException {
+        DataReadFunctor functor = new DataReadFunctor("x");
+        functor.doReads(new StringReader(DataReadFunctor.MISSING + "\n"));
+        assertNull(functor.getData());
+
+        functor = new DataReadFunctor("x");
+        functor.doReads(new StringReader(DataReadFunctor.SCALAR 
+					 + "\n0.10000000000000001\n"));
+        assertEquals(Octave.scalar(0.1), functor.getData());
+
+        functor = new DataReadFunctor("x");
+        functor.doReads(new StringReader(DataReadFunctor.SCALAR + "\n-Inf\n"));
+        assertEquals(Octave.scalar(Double.NEGATIVE_INFINITY), functor.getData());
+
+        functor = new DataReadFunctor("x");
+        functor.doReads(new StringReader(DataReadFunctor.STRING 
+					 + "\nline 1\n\nline 3\n"));
+        assertEquals(new OctaveString("line 1\n\nline 3\n"), functor.getData());
+
+        functor = new DataReadFunctor("x");
+        functor.doReads(new StringReader("# Created by Octave 8.4.0\n" + 
+					 "# name: x\n" + 
+					 "# type: scalar\n" + 
+					 "42\n"));
+        assertEquals(Octave.scalar(42), functor.getData());
+    }
+
+    /**
+     * Test that {@link DataMapReadFunctor} reads the reply 
+     * of {@link OctaveIO#getAll(java.util.Collection)}: 
+     * missing variables and variables saved by a single save. 
+     */
+    @Test public void testDataMapReadFunctor() throws IOException {
+        final DataMapReadFunctor functor = 
+	    new DataMapReadFunctor(Arrays.asList("b", "x", "a"));
+        functor.doReads(new StringReader(DataMapReadFunctor.MISSING + "x\n" + 
+					 "# Created by Octave 8.4.0\n" + 
+					 "# name: a\n" + 
+					 "# type: scalar\n" + 
+					 "42\n" + 
+					 "\n\n" + 
+					 "# name: b\n" + 
+					 "# type: string\n" + 
+					 "# elements: 1\n" + 
+					 "# length: 3\n" + 
+					 "abc\n" + 
+					 "\n\n"));
+        final Map<String, OctaveObject> vars = functor.getData();
+        assertEquals(Arrays.asList("b", "x", "a"), 
+		     new ArrayList<String>(vars.keySet()));
+        assertEquals(Octave.scalar(42), vars.get("a"));
+        assertEquals(new OctaveString("abc"), vars.get("b"));
+        assertNull(vars.get("x"));
+
+        try {
+            new DataMapReadFunctor(Arrays.asList("a", "b"))
+		.doReads(new StringReader("# Created by Octave 8.4.0\n" + 
+					  "# name: a\n" + 
+					  "# type: scalar\n" + 
+					  "42\n"));
+            fail("Expected OctaveParseException");
+        } catch (final OctaveParseException e) {
+            // expected: b neither missing nor read 
+        }
+    }
+
+    /**
+     * Test that {@link StreamingWriteFunctor} writes a matrix 
+     * in chunks readable by {@link OctaveIO#readWithName(String)} 
+     * and that a failing supplier leaves the input in sync 
+     * padding the current chunk only. 
+     */
+    @Test public void testStreamingWriteFunctor() {
+	final String load = "load(\"-text\", \"-\")\n";
+	final String end = "# name: \n";
+	final int size = StreamingWriteFunctor.CHUNK_SIZE + 2;
+	final double[] next = new double[1];
+	StringWriter writer = new StringWriter();
+	new StreamingWriteFunctor("x", new int[] {1, size}, () -> next[0]++)
+	    .doWrites(writer);
+	String text = writer.toString();
+	assertTrue(text.startsWith("javaoctave_stream = zeros([1 " + size 
+				   + "]);\n" + load));
+	assertTrue(text.endsWith("x = javaoctave_stream;\n"
+				 + "clear javaoctave_stream javaoctave_chunk\n"));
+	final String[] chunks = text.split(Pattern.quote(load), -1);
+	assertEquals(3, chunks.length);
+	double value = 0;
+	for (int idx = 1; idx < chunks.length; idx++) {
+	    final String chunk = chunks[idx];
+	    final OctaveDouble column = (OctaveDouble) OctaveIO.readWithName
+		(chunk.substring(0, chunk.indexOf(end))).get("javaoctave_chunk");
+	    for (int row = 1; row <= column.getSize(1); row++) {
+		assertEquals(value++, column.get(row, 1), 0);
+	    }
+	}
+	assertEquals(size, value, 0);
+	assertTrue(chunks[2].contains
+		   (end + "javaoctave_stream(" + (size - 1) + ":" + size 
+		    + ") = javaoctave_chunk;\n"));
+
+	final int[] count = new int[1];
+	final StreamingWriteFunctor failing = new StreamingWriteFunctor
+	    ("y", new int[] {1, size}, () -> {
+		if (count[0]++ == 5) {
+		    throw new IllegalStateException("cursor closed");
+		}
+		return 0;
+	    });
+	writer = new StringWriter();
+	failing.doWrites(writer);
+	text = writer.toString();
+	assertEquals("cursor closed", failing.getFailure().getMessage());
+	assertEquals(6, count[0]);
+	assertTrue(text.endsWith
+		   (end + "clear y javaoctave_stream javaoctave_chunk\n"));
+	assertEquals(2, text.split(Pattern.quote(load), -1).length);
+	assertEquals(StreamingWriteFunctor.CHUNK_SIZE - 5, 
+		     text.split(" NaN\n", -1).length - 1);
+    }
+
 }
@@ -0,0 +1,267 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.io.OctaveTextParser.Event;
+import eu.simuline.octave.type.OctaveCell;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveInt;
+import eu.simuline.octave.type.OctaveString;
+import eu.simuline.octave.type.OctaveStruct;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link OctaveTextParser} on text written by {@link OctaveIO}
+ * and on text as written by octave's <code>save -text</code>.
+ */
+public class TestOctaveTextParser {
+
+    private static OctaveTextParser parser(final String text) {
+	return new OctaveTextParser(new BufferedReader(new StringReader(text)));
+    }
+
+    /**
+     * Tests the events of a struct with a matrix and a cell
+     * holding a string and an integer matrix.
+     */
+    @Test public void testStructure() {
+	final OctaveStruct struct = new OctaveStruct();
+	struct.set("m", new OctaveDouble(new double[] {1, 2, 3, 4, 5, 6}, 2, 3));
+	final OctaveCell cell = new OctaveCell(2, 1);
+	cell.set(new OctaveString("ab"), 1, 1);
+	cell.set(new OctaveInt(new int[] {-1, 7}, 1, 2), 2, 1);
+	struct.set("c", cell);
+	final OctaveTextParser parser = parser
+	    ("# Created by Octave 4.2.1\n\n" + OctaveIO.toText("s", struct));
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals("s", parser.getName());
+	assertEquals(Event.START_STRUCT, parser.next());
+	assertEquals(2, parser.getLength());
+	for (int field = 0; field < 2; field++) {
+	    assertEquals(Event.FIELD, parser.next());
+	    if ("m".equals(parser.getName())) {
+		assertEquals(Event.START_MATRIX, parser.next());
+		assertEquals("matrix", parser.getType());
+		assertArrayEquals(new int[] {2, 3}, parser.getDims());
+		final double[] data = new double[6];
+		while (parser.next() == Event.NUMBERS) {
+		    assertEquals(3, parser.getLength());
+		    assertEquals(2, parser.getStride());
+		    for (int idx = 0; idx < parser.getLength(); idx++) {
+			data[parser.getIndex() + idx * parser.getStride()] =
+			    parser.getNumbers()[idx];
+		    }
+		}
+		assertArrayEquals(new double[] {1, 2, 3, 4, 5, 6}, data, 0);
+		continue;
+	    }
+	    assertEquals("c", parser.getName());
+	    assertEquals(Event.START_CELL, parser.next());
+	    assertArrayEquals(new int[] {2, 1}, parser.getDims());
+	    assertEquals(Event.STRING, parser.next());
+	    assertEquals("ab", parser.getString());
+	    assertEquals(Event.START_MATRIX, parser.next());
+	    assertEquals("int32 matrix", parser.getType());
+	    assertArrayEquals(new int[] {1, 2}, parser.getDims());
+	    assertEquals(Event.NUMBERS, parser.next());
+	    assertEquals(2, parser.getLength());
+	    assertEquals(-1, parser.getLongs()[0]);
+	    assertEquals(7, parser.getLongs()[1]);
+	    assertEquals(Event.END, parser.next());
+	    assertEquals(Event.END, parser.next());
+	}
+	assertEquals(Event.END, parser.next());
+	assertNull(parser.next());
+    }
+
+    /**
+     * Tests that a large matrix in vectorized format
+     * is reported in blocks of bounded size.
+     */
+    @Test public void testBlocks() {
+	final int size = 5 * OctaveTextParser.BLOCK_SIZE / 2;
+	final StringBuilder text = new StringBuilder
+	    ("# name: x\n# type: matrix\n# ndims: 3\n 1 " + size + " 1\n");
+	for (int idx = 0; idx < size; idx++) {
+	    text.append(' ').append(idx).append('\n');
+	}
+	final OctaveTextParser parser = parser(text.toString());
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertArrayEquals(new int[] {1, size, 1}, parser.getDims());
+	int count = 0;
+	while (parser.next() == Event.NUMBERS) {
+	    assertEquals(count, parser.getIndex());
+	    assertEquals(1, parser.getStride());
+	    assertEquals(Math.min(OctaveTextParser.BLOCK_SIZE, size - count),
+			 parser.getLength());
+	    for (int idx = 0; idx < parser.getLength(); idx++) {
+		assertEquals(count + idx, parser.getNumbers()[idx], 0);
+	    }
+	    count += parser.getLength();
+	}
+	assertEquals(size, count);
+	assertNull(parser.next());
+    }
+
+    /**
+     * Tests complex, sparse and scalar types, a scalar struct
+     * and skipping values, as written by octave.
+     */
+    @Test public void testOctaveFormat() {
+	final OctaveTextParser parser = parser
+	    ("# Created by Octave 4.2.1\n"
+	     + "# name: z\n# type: complex matrix\n# rows: 1\n# columns: 2\n"
+	     + " (1,2) (-3.5,Inf)\n\n\n"
+	     + "# name: sp\n# type: sparse bool matrix\n"
+	     + "# nnz: 2\n# rows: 3\n# columns: 3\n1 1 1\n3 2 1\n\n\n"
+	     + "# name: st\n# type: scalar struct\n# ndims: 2\n 1 1\n"
+	     + "# length: 2\n"
+	     + "# name: a\n# type: uint64 scalar\n18446744073709551615\n\n\n"
+	     + "# name: b\n# type: matrix\n# rows: 1\n# columns: 2\n 1 2\n\n\n"
+	     + "\n\n"
+	     + "# name: y\n# type: scalar\n2.5\n\n\n");
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals("z", parser.getName());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertEquals(Event.NUMBERS, parser.next());
+	assertArrayEquals(new double[] {1, 2, -3.5, Double.POSITIVE_INFINITY},
+			  Arrays.copyOf(parser.getNumbers(), parser.getLength()),
+			  0);
+	assertEquals(Event.END, parser.next());
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertArrayEquals(new int[] {3, 3}, parser.getDims());
+	assertEquals(Event.NUMBERS, parser.next());
+	assertArrayEquals(new double[] {1, 1, 1, 3, 2, 1},
+			  Arrays.copyOf(parser.getNumbers(), parser.getLength()),
+			  0);
+	assertEquals(Event.END, parser.next());
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals(Event.START_STRUCT, parser.next());
+	assertEquals(Event.FIELD, parser.next());
+	assertEquals("a", parser.getName());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertEquals(Event.NUMBERS, parser.next());
+	assertEquals(-1L, parser.getLongs()[0]);
+	assertEquals(Event.END, parser.next());
+	assertEquals(Event.FIELD, parser.next());
+	assertEquals("b", parser.getName());
+	parser.skip();
+	assertEquals(Event.END, parser.next());
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals("y", parser.getName());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertArrayEquals(new int[] {1, 1}, parser.getDims());
+	assertEquals(Event.NUMBERS, parser.next());
+	assertEquals(2.5, parser.getNumbers()[0], 0);
+	assertEquals(Event.END, parser.next());
+	assertNull(parser.next());
+    }
+
+    /**
+     * Tests that ranges are reported as row vectors 
+     * with the last element not exceeding the limit. 
+     */
+    @Test public void testRange() {
+	final OctaveTextParser parser = parser
+	    ("# name: r\n# type: range\n# base, limit, increment\n"
+	     + "0 1 0.1\n\n\n"
+	     + "# name: d\n# type: range\n# base, limit, increment\n"
+	     + "5 0.5 -2\n\n\n"
+	     + "# name: z\n# type: range\n# base, length, increment\n"
+	     + "7 3 0\n\n\n"
+	     + "# name: e\n# type: range\n# base, limit, increment\n"
+	     + "1 0 1\n\n\n");
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertEquals("range", parser.getType());
+	assertArrayEquals(new int[] {1, 11}, parser.getDims());
+	assertEquals(Event.NUMBERS, parser.next());
+	assertEquals(11, parser.getLength());
+	assertEquals(0, parser.getIndex());
+	assertEquals(1, parser.getStride());
+	assertEquals(0.3, parser.getNumbers()[3], 1e-15);
+	assertEquals(1, parser.getNumbers()[10], 0);
+	assertEquals(Event.END, parser.next());
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertArrayEquals(new int[] {1, 3}, parser.getDims());
+	assertEquals(Event.NUMBERS, parser.next());
+	assertArrayEquals(new double[] {5, 3, 1},
+			  Arrays.copyOf(parser.getNumbers(), parser.getLength()),
+			  0);
+	assertEquals(Event.END, parser.next());
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertEquals(Event.NUMBERS, parser.next());
+	assertArrayEquals(new double[] {7, 7, 7},
+			  Arrays.copyOf(parser.getNumbers(), parser.getLength()),
+			  0);
+	assertEquals(Event.END, parser.next());
+
+	assertEquals(Event.VARIABLE, parser.next());
+	assertEquals(Event.START_MATRIX, parser.next());
+	assertArrayEquals(new int[] {1, 0}, parser.getDims());
+	assertEquals(Event.END, parser.next());
+	assertNull(parser.next());
+    }
+
+    /**
+     * Tests that unsupported types and malformed data are reported
+     * by an {@link OctaveParseException}.
+     */
+    @Test public void testMalformed() {
+	final OctaveTextParser handle = parser
+	    ("# name: h\n# type: function handle\n@sin\n");
+	assertEquals(Event.VARIABLE, handle.next());
+	try {
+	    handle.next();
+	    fail("Exception expected. ");
+	} catch (OctaveParseException e) {
+	    // expected
+	}
+
+	final OctaveTextParser matrix = parser
+	    ("# name: m\n# type: matrix\n# rows: 1\n# columns: 2\n 1\n");
+	assertEquals(Event.VARIABLE, matrix.next());
+	assertEquals(Event.START_MATRIX, matrix.next());
+	try {
+	    matrix.next();
+	    fail("Exception expected. ");
+	} catch (OctaveParseException e) {
+	    // expected
+	}
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.bin;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.type.Octave;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveInt;
+import eu.simuline.octave.type.OctaveLong;
+import eu.simuline.octave.type.OctaveObject;
+
+/**
+ * Tests {@link OctaveBinary} without octave.
+ */
+public class TestOctaveBinary {
+
+    /**
+     * Tests that encoded variables are decoded bit-exact
+     * in the order given.
+     */
+    @Test public void testRoundTrip() {
+	final Map<String, OctaveObject> vars =
+	    new LinkedHashMap<String, OctaveObject>();
+	vars.put("s", Octave.scalar(0.1));
+	vars.put("m", new OctaveDouble(new double[] {
+		    1.0 / 3, Double.NaN, Double.NEGATIVE_INFINITY,
+		    Double.MIN_VALUE, -0.0, 1e300}, 2, 3));
+	vars.put("e", new OctaveDouble(0, 0));
+	vars.put("n", new OctaveDouble(new double[] {
+		    1, 2, 3, 4, 5, 6, 7, 8}, 2, 2, 2));
+	vars.put("i", new OctaveInt(new int[] {
+		    Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE}, 1, 4));
+	vars.put("is", new OctaveInt(new int[] {42}, 1, 1));
+	vars.put("l", new OctaveLong(new long[] {
+		    Long.MIN_VALUE, Long.MAX_VALUE}, 2, 1));
+	vars.put("ls", new OctaveLong(new long[] {-42}, 1, 1));
+	for (OctaveObject value : vars.values()) {
+	    assertTrue(OctaveBinary.isWritable(value));
+	}
+
+	final ByteBuffer buf = OctaveBinary.encode(vars);
+	final Map<String, OctaveObject> read = OctaveBinary.decode(buf);
+	assertFalse(buf.hasRemaining());
+	assertEquals(new ArrayList<String>(vars.keySet()),
+		     new ArrayList<String>(read.keySet()));
+	assertEquals(vars, read);
+	final OctaveDouble matrix = (OctaveDouble) read.get("m");
+	assertEquals(Double.doubleToRawLongBits(-0.0),
+		     Double.doubleToRawLongBits(matrix.getPlain(4)));
+	assertTrue(Double.isNaN(matrix.getPlain(1)));
+    }
+
+    /**
+     * Tests reading as written by octave:
+     * big endian and integer valued matrices in a smaller type.
+     */
+    @Test public void testOctaveFormat() {
+	final ByteBuffer buf = ByteBuffer.allocate(128).order(ByteOrder.BIG_ENDIAN);
+	buf.put(OctaveBinary.MAGIC_BE.getBytes(StandardCharsets.US_ASCII))
+	    .put((byte) 1);
+	buf.putInt(1).put((byte) 'x')
+	    // doc, global, new format
+	    .putInt(0).put((byte) 0).put((byte) 255)
+	    .putInt(6).put("matrix".getBytes(StandardCharsets.US_ASCII))
+	    .putInt(-2).putInt(1).putInt(3)
+	    // LS_U_CHAR and LS_SHORT
+	    .put((byte) 0).put((byte) 1).put((byte) 200).put((byte) 255);
+	buf.putInt(1).put((byte) 'y')
+	    .putInt(0).put((byte) 1).put((byte) 255)
+	    .putInt(6).put("scalar".getBytes(StandardCharsets.US_ASCII))
+	    .put((byte) 4).putShort((short) -7);
+	buf.flip();
+
+	final Map<String, OctaveObject> read = OctaveBinary.decode(buf);
+	assertEquals(Arrays.asList("x", "y"),
+		     new ArrayList<String>(read.keySet()));
+	assertEquals(new OctaveDouble(new double[] {1, 200, 255}, 1, 3),
+		     read.get("x"));
+	assertEquals(Octave.scalar(-7), read.get("y"));
+    }
+
+    /**
+     * Tests that malformed and unsupported data is rejected.
+     */
+    @Test public void testMalformed() {
+	final Map<String, OctaveObject> vars =
+	    new LinkedHashMap<String, OctaveObject>();
+	vars.put("m", new OctaveDouble(new double[] {1, 2}, 1, 2));
+	final ByteBuffer buf = OctaveBinary.encode(vars);
+	buf.limit(buf.limit() - 1);
+	try {
+	    OctaveBinary.decode(buf);
+	    fail("Expected OctaveParseException");
+	} catch (OctaveParseException e) {
+	    // expected: truncated
+	}
+
+	try {
+	    OctaveBinary.decode(ByteBuffer.wrap
+				("Octave-2-L\0".getBytes(StandardCharsets.US_ASCII)));
+	    fail("Expected OctaveParseException");
+	} catch (OctaveParseException e) {
+	    // expected: no header
+	}
+
+	assertFalse(OctaveBinary.isWritable(Octave.bool(true)));
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.io.mat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import eu.simuline.octave.exception.OctaveParseException;
+import eu.simuline.octave.type.Octave;
+import eu.simuline.octave.type.OctaveBoolean;
+import eu.simuline.octave.type.OctaveCell;
+import eu.simuline.octave.type.OctaveComplex;
+import eu.simuline.octave.type.OctaveDouble;
+import eu.simuline.octave.type.OctaveFunctionHandle;
+import eu.simuline.octave.type.OctaveInt;
+import eu.simuline.octave.type.OctaveLong;
+import eu.simuline.octave.type.OctaveObject;
+import eu.simuline.octave.type.OctaveSparseBoolean;
+import eu.simuline.octave.type.OctaveString;
+import eu.simuline.octave.type.OctaveStruct;
+
+/**
+ * Tests {@link MatFile} without octave.
+ */
+public class TestMatFile {
+
+    /**
+     * Returns variables of all supported types except complex.
+     */
+    private static Map<String, OctaveObject> variables() {
+	final Map<String, OctaveObject> vars =
+	    new LinkedHashMap<String, OctaveObject>();
+	vars.put("m", new OctaveDouble(new double[] {
+		    1.0 / 3, Double.NaN, Double.NEGATIVE_INFINITY,
+		    Double.MIN_VALUE, -0.0, 1e300}, 2, 3));
+	vars.put("e", new OctaveDouble(0, 0));
+	vars.put("n", new OctaveDouble(new double[] {
+		    1, 2, 3, 4, 5, 6, 7, 8}, 2, 2, 2));
+	vars.put("i", new OctaveInt(new int[] {
+		    Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE}, 1, 4));
+	vars.put("l", new OctaveLong(new long[] {
+		    Long.MIN_VALUE, Long.MAX_VALUE}, 2, 1));
+	vars.put("b", new OctaveBoolean(new boolean[] {
+		    true, false, true}, 3, 1));
+	vars.put("s", new OctaveString("text with 'quotes'"));
+	vars.put("es", new OctaveString(""));
+	final OctaveSparseBoolean sparse = new OctaveSparseBoolean(3, 4, 3);
+	sparse.set(true, 2, 1);
+	sparse.set(true, 1, 3);
+	sparse.set(true, 3, 3);
+	vars.put("sp", sparse);
+	final OctaveCell cell = new OctaveCell(2, 2);
+	cell.set(Octave.scalar(1), 1, 1);
+	cell.set(new OctaveString("a"), 2, 1);
+	cell.set(new OctaveCell(0, 0), 2, 2);
+	vars.put("c", cell);
+	final OctaveStruct struct = new OctaveStruct();
+	struct.set("x", Octave.scalar(2));
+	struct.set("longer_name", new OctaveString("b"));
+	struct.set("cell", cell);
+	vars.put("st", struct);
+	return vars;
+    }
+
+    private static void assertRoundTrip(final boolean compress) {
+	final Map<String, OctaveObject> vars = variables();
+	final OctaveComplex complex = new OctaveComplex(
+	    new OctaveDouble(new double[] {1, 2, 3}, 1, 3),
+	    new OctaveDouble(new double[] {-1, 0, 0.5}, 1, 3));
+	vars.put("z", complex);
+	for (OctaveObject value : vars.values()) {
+	    assertTrue(MatFile.isWritable(value));
+	}
+
+	final ByteBuffer buf = MatFile.encode(vars, compress);
+	final Map<String, OctaveObject> read = MatFile.decode(buf);
+	assertFalse(buf.hasRemaining());
+	assertEquals(new ArrayList<String>(vars.keySet()),
+		     new ArrayList<String>(read.keySet()));
+	final OctaveComplex readComplex = (OctaveComplex) read.remove("z");
+	assertEquals(complex.getRealPart(), readComplex.getRealPart());
+	assertEquals(complex.getImagPart(), readComplex.getImagPart());
+	vars.remove("z");
+	assertEquals(vars, read);
+	assertEquals(Double.doubleToRawLongBits(-0.0),
+		     Double.doubleToRawLongBits(((OctaveDouble) read.get("m"))
+						.getPlain(4)));
+    }
+
+    /**
+     * Tests that encoded variables are decoded as written
+     * in the order given.
+     */
+    @Test public void testRoundTrip() {
+	assertRoundTrip(false);
+    }
+
+    /**
+     * Tests that compressed variables are decoded as written
+     * and that compression saves space.
+     */
+    @Test public void testCompressed() {
+	assertRoundTrip(true);
+	final Map<String, OctaveObject> vars =
+	    new LinkedHashMap<String, OctaveObject>();
+	vars.put("zeros", new OctaveDouble(100, 100));
+	final ByteBuffer compressed = MatFile.encode(vars, true);
+	assertTrue(compressed.remaining() < MatFile.encode(vars, false).remaining());
+	assertEquals(vars, MatFile.decode(compressed));
+    }
+
+    /**
+     * Tests writing and reading files.
+     */
+    @Test public void testFile() throws IOException {
+	final File file = File.createTempFile("javaoctave", ".mat");
+	try {
+	    MatFile.write(file, variables(), true);
+	    assertEquals(variables(), MatFile.read(file));
+	} finally {
+	    assertTrue(file.delete());
+	}
+    }
+
+    /**
+     * Tests reading as written by others:
+     * big endian, small data elements,
+     * doubles stored in a smaller type and integer classes.
+     */
+    @Test public void testForeignFormat() {
+	final ByteBuffer buf = ByteBuffer.allocate(256).order(ByteOrder.BIG_ENDIAN);
+	buf.put(new byte[MatFile.TEXT_SIZE + 8]).putShort(MatFile.VERSION)
+	    .put(MatFile.ENDIAN.getBytes(StandardCharsets.US_ASCII));
+	// x = [1 200 255] as uint8 data
+	buf.putInt(MatFile.MI_MATRIX).putInt(48)
+	    .putInt(MatFile.MI_UINT32).putInt(8)
+	    .putInt(MatFile.MX_DOUBLE).putInt(0)
+	    .putInt(MatFile.MI_INT32).putInt(8).putInt(1).putInt(3)
+	    // small format name
+	    .putShort((short) 1).putShort((short) MatFile.MI_INT8)
+	    .put((byte) 'x').put(new byte[3])
+	    .putShort((short) 3).putShort((short) MatFile.MI_UINT8)
+	    .put((byte) 1).put((byte) 200).put((byte) 255).put((byte) 0);
+	// y = int16([-7 7])
+	buf.putInt(MatFile.MI_MATRIX).putInt(48)
+	    .putInt(MatFile.MI_UINT32).putInt(8)
+	    .putInt(MatFile.MX_INT16).putInt(0)
+	    .putInt(MatFile.MI_INT32).putInt(8).putInt(1).putInt(2)
+	    .putShort((short) 1).putShort((short) MatFile.MI_INT8)
+	    .put((byte) 'y').put(new byte[3])
+	    .putShort((short) 4).putShort((short) MatFile.MI_INT16)
+	    .putShort((short) -7).putShort((short) 7);
+	buf.flip();
+
+	final Map<String, OctaveObject> read = MatFile.decode(buf);
+	assertEquals(Arrays.asList("x", "y"),
+		     new ArrayList<String>(read.keySet()));
+	assertEquals(new OctaveDouble(new double[] {1, 200, 255}, 1, 3),
+		     read.get("x"));
+	assertEquals(new OctaveInt(new int[] {-7, 7}, 1, 2), read.get("y"));
+    }
+
+    /**
+     * Tests that malformed and unsupported data is rejected.
+     */
+    @Test public void testMalformed() {
+	final ByteBuffer buf = MatFile.encode(variables(), false);
+	buf.limit(buf.limit() - 1);
+	try {
+	    MatFile.decode(buf);
+	    fail("Expected OctaveParseException");
+	} catch (OctaveParseException e) {
+	    // expected: truncated
+	}
+
+	final ByteBuffer compressed = MatFile.encode(variables(), true);
+	compressed.limit(compressed.limit() - 1);
+	try {
+	    MatFile.decode(compressed);
+	    fail("Expected OctaveParseException");
+	} catch (OctaveParseException e) {
+	    // expected: truncated
+	}
+
+	try {
+	    MatFile.decode(ByteBuffer.allocate(MatFile.HEADER_SIZE));
+	    fail("Expected OctaveParseException");
+	} catch (OctaveParseException e) {
+	    // expected: no endian indicator
+	}
+
+	assertFalse(MatFile.isWritable(new OctaveFunctionHandle("@(x) x")));
+	final OctaveCell cell = new OctaveCell(1, 1);
+	cell.set(new OctaveFunctionHandle("@(x) x"), 1, 1);
+	assertFalse(MatFile.isWritable(cell));
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link RoundTripEvent} and {@link EngineStartEvent}
+ * are emitted with their fields,
+ * which needs no octave.
+ */
+public class TestFlightRecorderEvents {
+
+    private static final String ROUND_TRIP = "eu.simuline.octave.RoundTrip";
+
+    private static final String ENGINE_START = "eu.simuline.octave.EngineStart";
+
+    /**
+     * Stops <code>recording</code> and returns the events recorded.
+     */
+    private static List<RecordedEvent> events(final Recording recording)
+	throws IOException {
+	recording.stop();
+	final Path file = Files.createTempFile("octave", ".jfr");
+	try {
+	    recording.dump(file);
+	    return RecordingFile.readAllEvents(file);
+	} finally {
+	    Files.delete(file);
+	}
+    }
+
+    /**
+     * Returns the events of <code>events</code> named <code>name</code>.
+     */
+    private static List<RecordedEvent> named(final List<RecordedEvent> events,
+					     final String name) {
+	final List<RecordedEvent> res = new ArrayList<RecordedEvent>();
+	for (RecordedEvent event : events) {
+	    if (name.equals(event.getEventType().getName())) {
+		res.add(event);
+	    }
+	}
+	return res;
+    }
+
+    /**
+     * Tests that a round trip recorded without metrics
+     * is emitted as an event with its fields
+     * while a recording is running only.
+     */
+    @Test public void testRoundTrip() throws IOException {
+	assertNull(OctaveMetrics.start(null, 7, Operation.PUT, "x"));
+	final List<RecordedEvent> events;
+	try (Recording recording = new Recording()) {
+	    recording.enable(ROUND_TRIP);
+	    recording.start();
+	    final OctaveMetrics.Sample sample =
+		OctaveMetrics.start(null, 7, Operation.PUT, "x,y");
+	    assertNotNull(sample);
+	    sample.written(12);
+	    sample.firstRead();
+	    sample.read(34);
+	    sample.stop(false);
+	    events = named(events(recording), ROUND_TRIP);
+	}
+	assertEquals(1, events.size());
+	final RecordedEvent event = events.get(0);
+	assertEquals(7, event.getInt("engineId"));
+	assertEquals("PUT", event.getString("operation"));
+	assertEquals("x,y", event.getString("variables"));
+	assertEquals(12, event.getLong("charsWritten"));
+	assertEquals(34, event.getLong("charsRead"));
+	assertEquals(false, event.getBoolean("success"));
+	assertTrue(event.getDuration("writeDuration").toNanos() >= 0);
+	assertTrue(event.getDuration("waitDuration").toNanos() >= 0);
+	assertTrue(event.getDuration("readDuration").toNanos() >= 0);
+    }
+
+    /**
+     * Tests that an engine start is emitted as an event with its fields.
+     */
+    @Test public void testEngineStart() throws IOException {
+	final List<RecordedEvent> events;
+	try (Recording recording = new Recording()) {
+	    recording.enable(ENGINE_START);
+	    recording.start();
+	    assertTrue(EngineStartEvent.isTypeEnabled());
+	    final EngineStartEvent event = new EngineStartEvent();
+	    event.begin();
+	    event.end();
+	    event.setEngineId(3);
+	    event.setCommand("octave --no-gui");
+	    event.commit();
+	    events = named(events(recording), ENGINE_START);
+	}
+	assertEquals(1, events.size());
+	assertEquals(3, events.get(0).getInt("engineId"));
+	assertEquals("octave --no-gui", events.get(0).getString("command"));
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.simuline.octave.metrics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LatencyHistogram}.
+ */
+public class TestLatencyHistogram {
+
+    /**
+     * Tests that buckets are contiguous, cover all values
+     * and have a relative width of at most 1/32.
+     */
+    @Test public void testBuckets() {
+	assertEquals(0, LatencyHistogram.index(0));
+	assertEquals(63, LatencyHistogram.index(63));
+	for (int i = 0; LatencyHistogram.upperBound(i) != Long.MAX_VALUE; i++) {
+	    final long lower = LatencyHistogram.lowerBound(i);
+	    final long upper = LatencyHistogram.upperBound(i);
+	    assertEquals(i, LatencyHistogram.index(lower));
+	    assertEquals(i, LatencyHistogram.index(upper));
+	    if (i > 0) {
+		assertEquals(LatencyHistogram.upperBound(i - 1) + 1, lower);
+	    }
+	    assertTrue(upper - lower <= lower / 32);
+	}
+	assertEquals(Long.MAX_VALUE,
+		     LatencyHistogram.upperBound(LatencyHistogram
+						 .index(Long.MAX_VALUE)));
+    }
+
+    /**
+     * Tests count, mean, max and percentiles.
+     */
+    @Test public void testRecord() {
+	final LatencyHistogram hist = new LatencyHistogram();
+	assertEquals(0, hist.getValueAtPercentile(50));
+	for (long v = 1; v <= 1000; v++) {
+	    hist.record(v * 1000);
+	}
+	hist.record(-5);
+	assertEquals(1001, hist.getCount());
+	assertEquals(500500000.0 / 1001, hist.getMean(), 1e-6);
+	assertEquals(1000000, hist.getMax());
+	assertEquals(0, hist.getValueAtPercentile(0));
+	assertEquals(1000000, hist.getValueAtPercentile(100));
+	final long p50 = hist.getValueAtPercentile(50);
+	assertTrue(p50 >= 500000 && p50 <= 500000 * 33 / 32);
+	final long p99 = hist.getValueAtPercentile(99);
+	assertTrue(p99 >= 990000 && p99 <= 1000000);
+
+	hist.reset();
+	assertEquals(0, hist.getCount());
+	assertEquals(0, hist.getMax());
+    }
+
+    /**
+     * Tests that percentiles are within the precision of the buckets
+     * for random values.
+     */
+    @Test public void testPrecision() {
+	final Random random = new Random(4711);
+	final LatencyHistogram hist = new LatencyHistogram();
+	final long[] values = new long[10000];
+	for (int i = 0; i < values.length; i++) {
+	    values[i] = (long) Math.exp(random.nextDouble() * 30);
+	    hist.record(values[i]);
+	}
+	Arrays.sort(values);
+	for (double p : new double[] {10, 50, 90, 99, 99.9}) {
+	    final long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+	    final long approx = hist.getValueAtPercentile(p);
+	    assertTrue(approx >= exact);
+	    assertTrue(approx - exact <= exact / 32);
+	}
+    }
+
+}
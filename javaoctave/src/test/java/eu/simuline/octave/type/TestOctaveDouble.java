@@ -17,7 +17,11 @@ package eu.simuline.octave.type;
 
 import        eu.simuline.testhelpers.Actions;
 
+import java.nio.DoubleBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -332,6 +336,35 @@ public class TestOctaveDouble {
         assertEquals(33.0, d.get(2, 2), 0.0);
     }
 
+    /**
+     * Test that entries set are tracked after {@link OctaveDouble#trackChanges()} 
+     * and that a resize marks all entries changed. 
+     */
+    @Test public void testTrackChanges() {
+        final OctaveDouble d = new OctaveDouble(2, 2);
+        d.set(1, 1, 1);
+        assertFalse(d.isTrackingChanges());
+        d.trackChanges();
+        assertEquals(0, d.getNumChanged());
+        d.set(5, 2, 2);
+        d.setPlain(6, 2);
+        d.setPlain(7, 2);
+        assertArrayEquals(new int[] {2, 3}, d.getChangedPositions());
+        assertFalse(d.shallowCopy().isTrackingChanges());
+        d.clearChanges();
+        assertEquals(0, d.getNumChanged());
+        d.setPlain(DoubleBuffer.wrap(new double[] {9, 10}), 0, 2);
+        assertArrayEquals(new int[] {0, 1}, d.getChangedPositions());
+        d.set(8, 3, 1);
+        assertEquals(6, d.getNumChanged());
+        try {
+            new OctaveDouble(1, 1).getNumChanged();
+            fail("Exception expected. ");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
     /* -------------------------------------------------------------------- *
      * framework.                                                           *
      * -------------------------------------------------------------------- */